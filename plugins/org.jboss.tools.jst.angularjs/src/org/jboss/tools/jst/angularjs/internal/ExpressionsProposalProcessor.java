@@ -12,9 +12,12 @@ package org.jboss.tools.jst.angularjs.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
+import org.eclipse.core.resources.IResource;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.jboss.tools.common.text.TextProposal;
 import org.jboss.tools.jst.angularjs.AngularJsPlugin;
@@ -29,6 +32,20 @@ import org.jboss.tools.jst.web.kb.internal.BrowserDataProviderManager;
 public class ExpressionsProposalProcessor implements IProposalProcessor {
 
 	private ImageDescriptor image;
+	private BrowserDataProviderManager manager;
+
+	public ExpressionsProposalProcessor() {
+		this(BrowserDataProviderManager.getInstance());
+	}
+
+	/**
+	 * Creates a processor that gets members of scope objects from the given manager.
+	 * 
+	 * @param manager
+	 */
+	public ExpressionsProposalProcessor(BrowserDataProviderManager manager) {
+		this.manager = manager;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.jboss.tools.jst.web.kb.IProposalProcessor#getProposals(org.jboss.tools.jst.web.kb.KbQuery, org.jboss.tools.jst.web.kb.IPageContext)
@@ -47,48 +64,37 @@ public class ExpressionsProposalProcessor implements IProposalProcessor {
 		if(startEl>-1) {
 			String value = qValue.substring(startEl + 2);
 			if(!value.contains("\n") && !value.contains("}") && (new AngularJSRecognizer()).isUsed(context)) {
-				// Create a JS
-				String js = generateJs(value, context);
-				Collection<Object> results = BrowserDataProviderManager.getInstance().evaluate(js, context);
+				int dotIndex = value.lastIndexOf('.');
+				String parent = value.substring(0, dotIndex + 1);
+				String remove = value.substring(dotIndex + 1);
+				int expressionStart = query.getOffset() - qValue.length() + startEl;
+				Members members = getMembers(parent, expressionStart, context);
 				// Convert the data to a list of proposals
-				if(!results.isEmpty()) {
-					if(image == null) {
-						image = ImageDescriptor.createFromFile(AngularJsPlugin.class, "angular.png");
-					}
-					for (Object object : results) {
-						if(object==BrowserDataProviderManager.DATA_LOADING) {
-							ReplacementString rs = getReplacementString(query, "", qValue, "");
-							TextProposal proposal = new TextProposal();
-							proposal.setLabel(AngularMessages.dataLoading);
-							proposal.setReplacementString(rs.string);
-							proposal.setPosition(rs.position);
-							proposal.setImageDescriptor(image);
-							proposal.setAutoActivationContentAssistantAfterApplication(true);
-							proposal.setRelevance(Integer.MAX_VALUE);
-							proposals.add(proposal);
-						} else {
-							String result = object.toString();
-							StringTokenizer st = new StringTokenizer(result, ";", false);
-							int dotIndex = value.lastIndexOf('.');
-							String remove = value;
-							if(dotIndex>-1) {
-								remove = value.substring(dotIndex + 1);
-							}
-							while(st.hasMoreElements()) {
-								String label = st.nextToken().trim();
-								if(!label.matches("\\d+")) { // Ignore numbers
-									ReplacementString rs = getReplacementString(query, label, qValue, remove);
-									TextProposal proposal = new TextProposal();
-									proposal.setRelevance(TextProposal.R_TAG_TEMPLATE + 10);
-									proposal.setLabel(label);
-									proposal.setReplacementString(rs.string);
-									proposal.setPosition(rs.position);
-									proposal.setImageDescriptor(image);
-									proposal.setAutoActivationContentAssistantAfterApplication(false);
-									proposals.add(proposal);
-								}
-							}
-						}
+				if(image == null) {
+					image = ImageDescriptor.createFromFile(AngularJsPlugin.class, "angular.png");
+				}
+				if(members.loading) {
+					ReplacementString rs = getReplacementString(query, "", qValue, "");
+					TextProposal proposal = new TextProposal();
+					proposal.setLabel(AngularMessages.dataLoading);
+					proposal.setReplacementString(rs.string);
+					proposal.setPosition(rs.position);
+					proposal.setImageDescriptor(image);
+					proposal.setAutoActivationContentAssistantAfterApplication(true);
+					proposal.setRelevance(Integer.MAX_VALUE);
+					proposals.add(proposal);
+				}
+				for (String label: members.names) {
+					if(label.startsWith(remove)) {
+						ReplacementString rs = getReplacementString(query, label, qValue, remove);
+						TextProposal proposal = new TextProposal();
+						proposal.setRelevance(TextProposal.R_TAG_TEMPLATE + 10);
+						proposal.setLabel(label);
+						proposal.setReplacementString(rs.string);
+						proposal.setPosition(rs.position);
+						proposal.setImageDescriptor(image);
+						proposal.setAutoActivationContentAssistantAfterApplication(false);
+						proposals.add(proposal);
 					}
 				}
 			}
@@ -133,58 +139,164 @@ public class ExpressionsProposalProcessor implements IProposalProcessor {
 		int position;
 	}
 
-	private String generateJs(String value, IPageContext context) {
-		String js =
-				  "var ORG_JBOSS_TOOLS_JST = {};"
-
-				+ "ORG_JBOSS_TOOLS_JST.getProposals = function(element, value) {"
-				+ 	"var result = '';"
-				+   "if(typeof angular == \"object\") {"
-				+ 	    "var scope = angular.element(element).scope();"
-				+ 	    "var values = value.split(\".\");"
-				+ 	    "var parentObject = scope;"
-				+ 	    "for (var i = 0; i < values.length-1; i++) {"
-				+ 	        "parentObject = ORG_JBOSS_TOOLS_JST.getMemberObject(parentObject, values[i]);"
-				+ 	    "}"
-				+ 	    "if(parentObject) {"
-				+ 	        "result = ORG_JBOSS_TOOLS_JST.getProposalsForLastSegment(parentObject, values[values.length-1]);"
-				+ 	    "}"
-				+   "}"
-				+ 	"return result;"
-				+ "};"
-
-				+ "ORG_JBOSS_TOOLS_JST.getProposalsForLastSegment = function(member, nameMask) {"
-				+ 	"var result = '';"
-				+ 	"for (var p in member) {"
-				+ 		"if ((p.indexOf('$') !== 0) && (p.lastIndexOf(nameMask, 0) === 0)) {" //Not Angular internal variable which starts with nameMask
-				+ 			"result += p;"
-				+ 			"if (typeof member[p] === \"function\") {"
-				+ 				"var funStr = member[p].toString();"
-				+ 				"var funArgsStr = funStr.slice(funStr.indexOf('(') + 1, funStr.indexOf(')'));"
-				+ 				"result += '(' + funArgsStr + ')';"
-				+ 			"}"
-				+ 			"result += ';';"
-				+ 		"}"
-				+ 	"}"
-				+	"return result;"
-				+ "};"
-
-				+ "ORG_JBOSS_TOOLS_JST.getMemberObject = function(parentObject, memberName) {"
-				+ 	"var brIndex = memberName.indexOf('(');"
-				+	"var name = memberName;"
-				+	"if(brIndex>0) {"
-				+		"name = memberName.slice(0, brIndex);"
-				+	"}"
-				+	"for(var propertyName in parentObject) {"
-				+		"if(propertyName == name) {"
-				+			"return parentObject[propertyName];"
-				+		"}"
-				+	"}"
-				+ "};"
+	/**
+	 * Members of a scope object in the browser, the last evaluated for an expression.
+	 */
+	public static class Members {
+		long time = System.currentTimeMillis();
+		List<String> names = new ArrayList<String>();
+		boolean loading = false;
+
+		public List<String> getNames() {
+			return names;
+		}
+
+		public boolean isLoading() {
+			return loading;
+		}
+	}
+
+	/**
+	 * Time in milliseconds during which members of a scope object are reused.
+	 */
+	static final long CACHE_TIME = 10000;
+	static final int CACHE_SIZE = 32;
+
+	/**
+	 * Members by page resource, modification stamp of the saved file, start of the expression 
+	 * and the parent object. The browser shows the saved page, so unsaved edits, like typing 
+	 * the expression, do not invalidate them, while saving the page does.
+	 */
+	@SuppressWarnings("serial")
+	private static final Map<String, Members> cache = new LinkedHashMap<String, Members>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Members> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
 
+	/**
+	 * Returns all members of the object the parent expression refers to, or of the scope if the parent is empty.
+	 * 
+	 * @param parent expression ending with '.', or empty string
+	 * @param expressionStart offset of '{{'
+	 * @param context
+	 * @return
+	 */
+	public Members getMembers(String parent, int expressionStart, IPageContext context) {
+		IResource resource = context.getResource();
+		long stamp = resource == null ? IResource.NULL_STAMP : resource.getModificationStamp();
+		String key = stamp == IResource.NULL_STAMP ? null : resource.getFullPath() + "|" + stamp + "|" + expressionStart + "|" + parent;
+		if(key != null) {
+			synchronized (cache) {
+				Members members = cache.get(key);
+				if(members != null && System.currentTimeMillis() - members.time < CACHE_TIME) {
+					return members;
+				}
+			}
+		}
+		String js = generateJs(parent);
+		Collection<Object> results = manager.evaluate(js, context, BrowserDataProviderManager.DEFAULT_BUDGET);
+		if(results.contains(HELPER_MISSING)) {
+			// The page was loaded after the helper had been installed, or the helper was never installed
+			results = manager.evaluate(HELPER + js, context, BrowserDataProviderManager.DEFAULT_BUDGET);
+		}
+		Members members = new Members();
+		for (Object object : results) {
+			if(object == BrowserDataProviderManager.DATA_LOADING || HELPER_MISSING.equals(object)) {
+				members.loading = true;
+			} else if(object != null) {
+				StringTokenizer st = new StringTokenizer(object.toString(), ";", false);
+				while(st.hasMoreElements()) {
+					String label = st.nextToken().trim();
+					if(!label.matches("\\d+") && !members.names.contains(label)) { // Ignore numbers
+						members.names.add(label);
+					}
+				}
+			}
+		}
+		if(key != null && !members.loading) {
+			synchronized (cache) {
+				cache.put(key, members);
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * Returned by the script if the helper object is not installed in the browser document.
+	 */
+	static final String HELPER_MISSING = "ORG_JBOSS_TOOLS_JST_MISSING";
+
+	/**
+	 * Helper object installed into the browser document once.
+	 */
+	static final String HELPER =
+			  "window.ORG_JBOSS_TOOLS_JST = {};"
+
+			+ "window.ORG_JBOSS_TOOLS_JST.getProposals = function(element, value) {"
+			+ 	"var result = '';"
+			+   "if(typeof angular == \"object\") {"
+			+ 	    "var scope = angular.element(element).scope();"
+			+ 	    "var values = value.split(\".\");"
+			+ 	    "var parentObject = scope;"
+			+ 	    "for (var i = 0; i < values.length-1; i++) {"
+			+ 	        "parentObject = ORG_JBOSS_TOOLS_JST.getMemberObject(parentObject, values[i]);"
+			+ 	    "}"
+			+ 	    "if(parentObject) {"
+			+ 	        "result = ORG_JBOSS_TOOLS_JST.getProposalsForLastSegment(parentObject, values[values.length-1]);"
+			+ 	    "}"
+			+   "}"
+			+ 	"return result;"
+			+ "};"
+
+			+ "window.ORG_JBOSS_TOOLS_JST.getProposalsForLastSegment = function(member, nameMask) {"
+			+ 	"var result = '';"
+			+ 	"for (var p in member) {"
+			+ 		"if ((p.indexOf('$') !== 0) && (p.lastIndexOf(nameMask, 0) === 0)) {" //Not Angular internal variable which starts with nameMask
+			+ 			"result += p;"
+			+ 			"if (typeof member[p] === \"function\") {"
+			+ 				"var funStr = member[p].toString();"
+			+ 				"var funArgsStr = funStr.slice(funStr.indexOf('(') + 1, funStr.indexOf(')'));"
+			+ 				"result += '(' + funArgsStr + ')';"
+			+ 			"}"
+			+ 			"result += ';';"
+			+ 		"}"
+			+ 	"}"
+			+	"return result;"
+			+ "};"
+
+			+ "window.ORG_JBOSS_TOOLS_JST.getMemberObject = function(parentObject, memberName) {"
+			+ 	"var brIndex = memberName.indexOf('(');"
+			+	"var name = memberName;"
+			+	"if(brIndex>0) {"
+			+		"name = memberName.slice(0, brIndex);"
+			+	"}"
+			+	"for(var propertyName in parentObject) {"
+			+		"if(propertyName == name) {"
+			+			"return parentObject[propertyName];"
+			+		"}"
+			+	"}"
+			+ "};";
+
+	/**
+	 * Generates a script that returns all members of the parent object, provided that the helper is installed.
+	 */
+	private static String generateJs(String parent) {
+		String value = parent.replace("\\", "\\\\").replace("'", "\\'");
+		String js =
+				  "if(!window.ORG_JBOSS_TOOLS_JST) {"
+				+ 	"return '" + HELPER_MISSING + "';"
+				+ "}"
 				+ "var element = document.querySelector(\"[#{" + BrowserDataProviderManager.ELEMENT_ID_PARAM + "}='#{" + BrowserDataProviderManager.ELEMENT_ID_VALUE_PARAM + "}']\");"
 				+ "if(element) { "
-				+ 	"return ORG_JBOSS_TOOLS_JST.getProposals(element, '" + value + "');"
+				+ 	"return window.ORG_JBOSS_TOOLS_JST.getProposals(element, '" + value + "');"
 				+ "}"
 				+ "return \"\"";
 		return js;
@@ -17,6 +17,8 @@ public interface IBrowserDataProvider {
 
 	/**
 	 * Evaluates a script containing javascript commands in the context of the current document of the browser.
+	 * BrowserDataProviderManager calls it in the UI thread, callers that are not in the UI thread
+	 * wait for the result within a time budget.
 	 * @param js
 	 * @param context
 	 * @return the return value of executing the script
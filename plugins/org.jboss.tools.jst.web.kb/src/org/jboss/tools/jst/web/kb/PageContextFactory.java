@@ -20,6 +20,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.filebuffers.FileBuffers;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
@@ -48,6 +49,7 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Region;
@@ -82,6 +84,7 @@ import org.eclipse.wst.sse.core.internal.provisional.IModelManager;
 import org.eclipse.wst.sse.core.internal.provisional.INodeNotifier;
 import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
 import org.eclipse.wst.sse.core.internal.provisional.IndexedRegion;
+import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocument;
 import org.eclipse.wst.sse.core.internal.provisional.text.IStructuredDocumentRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegion;
 import org.eclipse.wst.sse.core.internal.provisional.text.ITextRegionList;
@@ -108,8 +111,10 @@ import org.jboss.tools.common.validation.ValidationELReference;
 import org.jboss.tools.jst.web.WebUtils;
 import org.jboss.tools.jst.web.kb.include.IncludeContextBuilder;
 import org.jboss.tools.jst.web.kb.include.PageInclude;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex;
 import org.jboss.tools.jst.web.kb.internal.FaceletPageContextImpl;
 import org.jboss.tools.jst.web.kb.internal.JspContextImpl;
+import org.jboss.tools.jst.web.kb.internal.PageContextCache;
 import org.jboss.tools.jst.web.kb.internal.RemoteFileManager;
 import org.jboss.tools.jst.web.kb.internal.ResourceBundle;
 import org.jboss.tools.jst.web.kb.internal.XmlContextImpl;
@@ -162,8 +167,11 @@ public class PageContextFactory implements IResourceChangeListener {
 	 * If context for that file is already cached, the listener is added to the document.
 	 * When editor is closed, listener is removed.
 	 * For a file not opened in an editor, no listener is added to the document.
+	 * The listener keeps the cached context of the file up to date with the document:
+	 * changes of text in element content that contain no markup and no EL are applied 
+	 * to the context, other changes clean it up.
 	 */
-	Map<IFile, DocListener> listeners = new HashMap<IFile, DocListener>();
+	Map<IFile, DocListener> listeners = new ConcurrentHashMap<IFile, DocListener>();
 	PartListener partListener;
 
 	private PageContextFactory() {
@@ -258,6 +266,14 @@ public class PageContextFactory implements IResourceChangeListener {
 		IDocument document;
 		int references;
 
+		/*
+		 * State of the document before the current change, 
+		 * set if the replaced text can be applied to the context.
+		 */
+		boolean contentChange = false;
+		long stampBeforeChange;
+		int removedLines;
+
 		public DocListener(IFile file, IDocument document) {
 			this.file = file;
 			this.document = document;
@@ -267,10 +283,29 @@ public class PageContextFactory implements IResourceChangeListener {
 		}
 		@Override
 		public void documentChanged(DocumentEvent event) {
-			cleanUp(file);
+			boolean applied = contentChange && isContentText(event.getText()) 
+					&& applyTextEdit(file, event, stampBeforeChange, removedLines);
+			contentChange = false;
+			if(!applied) {
+				cleanUp(file);
+			}
 		}						
 		@Override
 		public void documentAboutToBeChanged(DocumentEvent event) {
+			contentChange = isContentChange(event.getDocument(), event.getOffset(), event.getLength());
+			if(contentChange) {
+				stampBeforeChange = getModificationStamp(event.getDocument());
+				try {
+					removedLines = event.getDocument().computeNumberOfLines(event.getDocument().get(event.getOffset(), event.getLength()));
+				} catch (BadLocationException e) {
+					contentChange = false;
+				}
+			}
+		}
+
+		long getStamp() {
+			IDocument d = document;
+			return d == null ? IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP : getModificationStamp(d);
 		}
 
 		public void add() {
@@ -307,6 +342,98 @@ public class PageContextFactory implements IResourceChangeListener {
 		}
 	}
 
+	/*
+	 * Characters that may change the structure of a page or its EL references.
+	 */
+	static final String STRUCTURE_CHARACTERS = "<>{}#$%&\\"; //$NON-NLS-1$
+
+	static boolean isContentText(String text) {
+		if(text != null) {
+			for (int i = 0; i < text.length(); i++) {
+				if(STRUCTURE_CHARACTERS.indexOf(text.charAt(i)) >= 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the text to be replaced lies in element content 
+	 * and contains no markup and no EL.
+	 * 
+	 * @param document
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	static boolean isContentChange(IDocument document, int offset, int length) {
+		if(!(document instanceof IStructuredDocument) || !(document instanceof IDocumentExtension4)) {
+			return false;
+		}
+		IStructuredDocumentRegion region = ((IStructuredDocument)document).getRegionAtCharacterOffset(offset);
+		if(region == null || region.getType() != DOMRegionContext.XML_CONTENT
+				|| region.getStartOffset() > offset || region.getEndOffset() < offset + length) {
+			return false;
+		}
+		try {
+			return isContentText(document.get(offset, length));
+		} catch (BadLocationException e) {
+			return false;
+		}
+	}
+
+	static long getModificationStamp(IDocument document) {
+		return document instanceof IDocumentExtension4 
+				? ((IDocumentExtension4)document).getModificationStamp() 
+				: IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	/**
+	 * Applies change of text in element content to the cached context of the file,
+	 * if the context is up to date with the document before the change.
+	 * Cached contexts including the file are cleaned up.
+	 * 
+	 * @param file
+	 * @param event
+	 * @param stampBeforeChange
+	 * @param removedLines
+	 * @return true if the context is updated
+	 */
+	private boolean applyTextEdit(IFile file, DocumentEvent event, long stampBeforeChange, int removedLines) {
+		SimpleELContext context = cache.get(file);
+		if(!(context instanceof XmlContextImpl) || stampBeforeChange == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+			return false;
+		}
+		XmlContextImpl xmlContext = (XmlContextImpl)context;
+		if(xmlContext.getDocumentStamp() != stampBeforeChange) {
+			return false;
+		}
+		String text = event.getText();
+		int newLength = text == null ? 0 : text.length();
+		int lineDelta = (text == null ? 0 : event.getDocument().computeNumberOfLines(text)) - removedLines;
+		if(!xmlContext.applyTextEdit(event.getOffset(), event.getLength(), newLength, lineDelta)) {
+			return false;
+		}
+		xmlContext.setDocumentStamp(getModificationStamp(event.getDocument()));
+		for (IFile dependent: cache.getDependents(file)) {
+			cache.remove(dependent);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns modification stamp of the document of the file open in an editor,
+	 * if the document is listened to.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	private long getTrackedDocumentStamp(IFile file) {
+		DocListener listener = file == null ? null : listeners.get(file);
+		return listener == null ? IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP : listener.getStamp();
+	}
+
 	private IDocument getConnectedDocument(IEditorInput input) {
 		IDocumentProvider provider= DocumentProviderRegistry.getDefault().getDocumentProvider(input);
 		IDocument result = null;
@@ -322,24 +449,29 @@ public class PageContextFactory implements IResourceChangeListener {
 
 	/*
 	 * The cache to store the created contexts
-	 * The key is IFile.getFullPath().toString() of the resource of the context 
+	 * The key is the resource of the context 
 	 */
-	private Map<IFile, SimpleELContext> cache = new HashMap<IFile, SimpleELContext>();
+	private PageContextCache cache = new PageContextCache();
 
 	private SimpleELContext getSavedContext(IFile resource) {
-		synchronized (cache) {
-			return cache.get(resource);
-		}
+		return cache.get(resource);
 	}
 
-	private void saveConvext(SimpleELContext context) {
+	private void saveConvext(SimpleELContext context, long weight) {
 		if (context.getResource() != null) {
-			synchronized (cache) {
-				cache.put(context.getResource(), context);
-			}
+			cache.put(context, weight);
 		}
 	}
 
+	/**
+	 * Returns the current state and hit/miss/eviction counters of the context cache.
+	 * 
+	 * @return
+	 */
+	public PageContextCache.Statistics getCacheStatistics() {
+		return cache.getStatistics();
+	}
+
 	/**
 	 * Creates a page context for the specified context document
 	 *
@@ -413,21 +545,8 @@ public class PageContextFactory implements IResourceChangeListener {
 	 * @param file
 	 */
 	public void cleanUp(IFile file) {
-		synchronized (cache) {
-			ELContext removedContext = cache.remove(file);
-			if (removedContext == null || removedContext.getResource() == null)
-				return;
-			ELContext[] contexts = null;
-			// Remove all the contexts that are parent to the removed context
-			contexts = cache.values().toArray(new ELContext[cache.values().size()]);
-			if (contexts != null) {
-				for (ELContext context : contexts) {
-					if (isDependencyContext(context, file)) {
-						cache.remove(file);
-					}
-				}
-			}
-		}
+		// Removes the context and all the contexts that include the file
+		cache.remove(file);
 	}
 
 	/**
@@ -436,27 +555,22 @@ public class PageContextFactory implements IResourceChangeListener {
 	 * @param file
 	 */
 	public void cleanUp(IProject project) {
-		synchronized (cache) {
-			// Remove all the contexts that are parent to the removed context
-			IFile[] files = cache.keySet().toArray(new IFile[cache.size()]);
-			for (IFile file : files) {
-				if (project.equals(file.getProject())) {
-					cleanUp(file);
-				}
-			}
-		}
+		cache.remove(project);
 	}
 
 	/**
-	 * Cleans up the contexts for the resource change delta
+	 * Cleans up the contexts for the resource change delta.
+	 * The contexts of the changed resources stop being returned at once,
+	 * and are removed from the cache in a background job as one batch,
+	 * so that readers do not wait for the delta to be processed.
 	 * 
 	 * @param file
 	 */
 	public void cleanUp(IResourceDelta delta) {
-		synchronized (cache) {
-			if(!cache.isEmpty() && checkDelta(delta)) {
-				processDelta(delta);
-			}
+		if(!cache.isEmpty() && checkDelta(delta)) {
+			List<IResource> resources = new ArrayList<IResource>();
+			processDelta(delta, resources);
+			cache.invalidateLater(resources);
 		}
 	}
 
@@ -546,9 +660,17 @@ public class PageContextFactory implements IResourceChangeListener {
 		}
 
 		boolean modified = EclipseUIUtil.isOpenInActiveEditor(file);
-		boolean isContextCachingAllowed = !dontUseCache && !modified; 
+		// Context of a file modified in an editor is cached while it is kept up to date 
+		// with the document by the document listener.
+		long documentStamp = modified ? getTrackedDocumentStamp(file) : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		boolean isContextCachingAllowed = !dontUseCache && (!modified || documentStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP); 
 		SimpleELContext context = isContextCachingAllowed ? getSavedContext(file) : null;
+		if (context != null && modified && 
+				(!(context instanceof XmlContextImpl) || ((XmlContextImpl)context).getDocumentStamp() != documentStamp)) {
+			context = null;
+		}
 		if (context == null) {
+			long weight = document != null ? document.getLength() : 0;
 			String typeId = getContentTypeIdentifier(file == null ? document : file);
 
 			if(JavaCore.JAVA_SOURCE_CONTENT_TYPE.equalsIgnoreCase(typeId)) {
@@ -578,6 +700,7 @@ public class PageContextFactory implements IResourceChangeListener {
 												createContextInstanceOfType(defaultContextType);
 							if (context != null) {
 								IDOMDocument domDocument = domModel.getDocument();
+								weight = model.getStructuredDocument().getLength();
 								context.setResource(file);
 								if (document == null && context instanceof XmlContextImpl) {
 									document = model.getStructuredDocument();
@@ -616,7 +739,15 @@ public class PageContextFactory implements IResourceChangeListener {
 
 			if (context != null) { // && isContextCachingAllowed) {  <- Save context even for modified files to prevent multiple initialization when invoked from NON-UI thread.
 				context.setDirty(modified);
-				saveConvext(context);
+				if (context instanceof XmlContextImpl && documentStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP 
+						&& !dontUseCache && documentStamp == getTrackedDocumentStamp(file)) {
+					((XmlContextImpl)context).setDocumentStamp(documentStamp);
+				}
+				saveConvext(context, weight);
+				if (context instanceof ICSSContainerSupport && listeners.containsKey(file)) {
+					// The page is opened in an editor, prepare its CSS classes for content assist and hyperlinks
+					CSSClassIndex.getInstance().schedule((ICSSContainerSupport)context);
+				}
 			}
 		}
 		return context;
@@ -646,7 +777,12 @@ public class PageContextFactory implements IResourceChangeListener {
 			if (!(model instanceof IDOMModel))
 				return;
 
-			fillCSSStyleSheetDescriptorsForChildNodes(((IDOMModel)model).getDocument(), context);
+			Set<String> remoteStyleSheets = new HashSet<String>();
+			fillCSSStyleSheetDescriptorsForChildNodes(((IDOMModel)model).getDocument(), context, remoteStyleSheets);
+			// Remote style sheets linked from the page are downloaded together rather than one after another.
+			if(!remoteStyleSheets.isEmpty()) {
+				RemoteFileManager.getInstance().prefetch(remoteStyleSheets);
+			}
 		} catch (CoreException e) {
 			WebKbPlugin.getDefault().logError(e);
 		} catch (IOException e) {
@@ -658,18 +794,18 @@ public class PageContextFactory implements IResourceChangeListener {
 		}
 	}
 
-	private static void fillCSSStyleSheetDescriptorsForChildNodes(IDOMNode parent, IPageContext context) {
+	private static void fillCSSStyleSheetDescriptorsForChildNodes(IDOMNode parent, IPageContext context, Set<String> remoteStyleSheets) {
 		NodeList children = parent.getChildNodes();
 		for(int i = 0; children != null && i < children.getLength(); i++) {
 			Node child = children.item(i);
 			if (child instanceof IDOMNode) {
-				fillCSSStyleSheetDescriptorForNode((IDOMNode)child, context);
-				fillCSSStyleSheetDescriptorsForChildNodes((IDOMNode)child, context);
+				fillCSSStyleSheetDescriptorForNode((IDOMNode)child, context, remoteStyleSheets);
+				fillCSSStyleSheetDescriptorsForChildNodes((IDOMNode)child, context, remoteStyleSheets);
 			}
 		}
 	}
 	
-	private static void fillCSSStyleSheetDescriptorForNode(IDOMNode node, IPageContext context) {
+	private static void fillCSSStyleSheetDescriptorForNode(IDOMNode node, IPageContext context, Set<String> remoteStyleSheets) {
 		if (!(context instanceof ICSSContainerSupport) || !(node instanceof IDOMElement))
 			return;
 		
@@ -681,12 +817,14 @@ public class PageContextFactory implements IResourceChangeListener {
 		for (String uri : uris) {
 			if(IncludeContextBuilder.isCSSStyleSheetContainer(uri, tagName)) {
 				fillCSSStyleSheetFromElement(((IDOMElement)node), (ICSSContainerSupport)context, false);
+				addRemoteStyleSheet((IDOMElement)node, "href", remoteStyleSheets); //$NON-NLS-1$
 			} else if(IncludeContextBuilder.isJSF2CSSStyleSheetContainer(uri, tagName)) {
 				fillCSSStyleSheetFromElement(((IDOMElement)node), (ICSSContainerSupport)context, true);
 			} else {
 				String[] cssAttributes = IncludeContextBuilder.getCSSStyleSheetAttributes(uri, tagName);
 				for (String attr : cssAttributes) {
 					fillCSSStyleSheetFromAttribute(((IDOMElement)node), attr, (ICSSContainerSupport)context, false);
+					addRemoteStyleSheet((IDOMElement)node, attr, remoteStyleSheets);
 				}
 				cssAttributes = IncludeContextBuilder.getJSF2CSSStyleSheetAttributes(uri, tagName);
 				for (String attr : cssAttributes) {
@@ -1212,6 +1350,13 @@ public class PageContextFactory implements IResourceChangeListener {
 		context.addResourceBundle(new ResourceBundle(basename, var));
 	}
 
+	private static void addRemoteStyleSheet(IDOMElement node, String attribute, Set<String> remoteStyleSheets) {
+		String url = node.getAttribute(attribute);
+		if(RemoteFileManager.isRemoteStyleSheet(url)) {
+			remoteStyleSheets.add(url.trim());
+		}
+	}
+
 	private static void fillCSSStyleSheetFromAttribute(IDOMElement node,
 			String attribute, ICSSContainerSupport context, boolean jsf2Source) {
 		context.addCSSStyleSheetDescriptor(new CSSStyleSheetDescriptorForAttribute(node, attribute, jsf2Source));
@@ -1686,41 +1831,26 @@ public class PageContextFactory implements IResourceChangeListener {
 		return true;
 	}
 
-	private void processDelta(IResourceDelta delta) {
+	private void processDelta(IResourceDelta delta, List<IResource> resources) {
 		if(delta!= null) {
 			int kind = delta.getKind();
 			IResource resource = delta.getResource();
 	
 			if(resource instanceof IProject &&
 					kind == IResourceDelta.REMOVED) {
-				cleanUp((IProject)resource);
+				resources.add(resource);
 			} else if (resource instanceof IFile && (
 				kind == IResourceDelta.CHANGED || 
 				kind == IResourceDelta.ADDED ||
 				kind == IResourceDelta.REMOVED ||
 				kind == IResourceDelta.CONTENT)) {
-				cleanUp((IFile)resource);
+				resources.add(resource);
 			}
 			
 			IResourceDelta[] cs = delta.getAffectedChildren();
 			for (int i = 0; i < cs.length; i++) {
-				processDelta(cs[i]);
-			}
-		}
-	}
-
-	private static boolean isDependencyContext(ELContext context, IFile resource) {
-		if (resource.equals(context.getResource())) {
-			return true;
-		}
-
-		if(context instanceof IIncludedContextSupport) {
-			List<ELContext> includedContexts = ((IIncludedContextSupport)context).getIncludedContexts();
-			for (ELContext includedContext : includedContexts) {
-				if (isDependencyContext(includedContext, resource))
-					return true;
+				processDelta(cs[i], resources);
 			}
 		}
-		return false;
 	}
 }
\ No newline at end of file
@@ -32,10 +32,15 @@ import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.swt.graphics.Image;
 import org.jboss.tools.common.EclipseUtil;
 import org.jboss.tools.common.log.BaseUIPlugin;
+import org.jboss.tools.common.util.FileUtil;
 import org.jboss.tools.jst.web.WebModelPlugin;
+import org.jboss.tools.jst.web.kb.internal.ELReferenceIndex;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics;
 import org.jboss.tools.jst.web.kb.internal.KbBuilder;
 import org.jboss.tools.jst.web.kb.internal.KbProject;
 import org.jboss.tools.jst.web.kb.internal.RemoteFileManager;
+import org.jboss.tools.jst.web.kb.internal.ResourcePathIndex;
+import org.jboss.tools.jst.web.kb.internal.scanner.LibraryDeclarationsCache;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -90,6 +95,7 @@ public class WebKbPlugin extends BaseUIPlugin {
 							}
 						}
 						remoteFileManager.savingState(context);
+						KbBuildStatistics.getInstance().savingState();
 						break;
 					case ISaveContext.PROJECT_SAVE:
 						KbProject sp = (KbProject)KbProjectFactory.getKbProject(context.getProject(), false, true);
@@ -129,6 +135,20 @@ public class WebKbPlugin extends BaseUIPlugin {
 		}
 		WebKbPlugin plugin = WebKbPlugin.getDefault();
 		if(plugin!=null) {
+			LibraryDeclarationsCache cache = LibraryDeclarationsCache.getInstance();
+			cache.retainProjects(projectNames);
+			try {
+				cache.store();
+			} catch (IOException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+			ELReferenceIndex elIndex = ELReferenceIndex.getInstance();
+			elIndex.retainProjects(projectNames);
+			try {
+				elIndex.store();
+			} catch (IOException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
 			IPath path = plugin.getStateLocation();
 			File file = new File(path.toFile(), "projects"); //$NON-NLS-1$
 			if(!file.isDirectory()) return;
@@ -140,6 +160,11 @@ public class WebKbPlugin extends BaseUIPlugin {
 					if(!projectNames.contains(name)) {
 						f.delete();
 					}
+				} else if(name.endsWith(".paths") && f.isDirectory()) { //$NON-NLS-1$
+					name = name.substring(0, name.length() - 6);
+					if(!projectNames.contains(name)) {
+						FileUtil.remove(f);
+					}
 				}
 			}
 		}
@@ -168,6 +193,8 @@ public class WebKbPlugin extends BaseUIPlugin {
 					}
 				}
 			} else if(event.getType() == IResourceChangeEvent.POST_CHANGE) {
+				ResourcePathIndex.getInstance().resourceChanged(event.getDelta());
+				ELReferenceIndex.getInstance().resourceChanged(event.getDelta());
 				IResourceDelta[] cs = event.getDelta().getAffectedChildren(IResourceDelta.CHANGED);
 				for (IResourceDelta c: cs) {
 					if((c.getFlags() & IResourceDelta.OPEN) != 0 && c.getResource() instanceof IProject) {
@@ -11,11 +11,14 @@
 package org.jboss.tools.jst.web.kb.include;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
@@ -26,6 +29,7 @@ import org.jboss.tools.common.el.core.resolver.ELContextImpl;
 import org.jboss.tools.common.el.core.resolver.Var;
 import org.jboss.tools.common.xml.XMLUtilities;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.IIncludeModelExtension;
 import org.w3c.dom.Element;
 
 /**
@@ -33,23 +37,40 @@ import org.w3c.dom.Element;
  * @author Viacheslav Kabanovich
  *
  */
-public class IncludeModel implements IIncludeModel {
+public class IncludeModel implements IIncludeModelExtension {
 	private Map<IPath, List<PageInclude>> directReferences = new HashMap<IPath, List<PageInclude>>();
 	private Map<IPath, List<PageInclude>> parentReferences = new HashMap<IPath, List<PageInclude>>();
 
+	/*
+	 * Cached results of getVars(), getIncludedPages() and getIncludingPages().
+	 * When an include is added or removed, only entries of pages 
+	 * which closures contain it are dropped.
+	 */
+	private Map<IPath, List<Var>> vars = new HashMap<IPath, List<Var>>();
+	private Map<IPath, Set<IPath>> includedPages = new HashMap<IPath, Set<IPath>>();
+	private Map<IPath, Set<IPath>> includingPages = new HashMap<IPath, Set<IPath>>();
+
 	public IncludeModel() {}
 
 	public synchronized void clean(IPath path) {
 		List<PageInclude> old = directReferences.remove(path);
 		if(old != null && !old.isEmpty()) {
-			for (IPath child: parentReferences.keySet()) {
-				Iterator<PageInclude> is = parentReferences.get(child).iterator();
-				while(is.hasNext()) {
-					PageInclude i = is.next();
-					if(i.getParent().equals(path)) {
-						is.remove();
+			for (PageInclude include: old) {
+				IPath child = include.getPath();
+				List<PageInclude> is = parentReferences.get(child);
+				if(is != null) {
+					Iterator<PageInclude> it = is.iterator();
+					while(it.hasNext()) {
+						PageInclude i = it.next();
+						if(i.getParent().equals(path)) {
+							it.remove();
+						}
+					}
+					if(is.isEmpty()) {
+						parentReferences.remove(child);
 					}
 				}
+				includeChanged(path, child);
 			}
 		}
 	}
@@ -68,21 +89,114 @@ public class IncludeModel implements IIncludeModel {
 			parentReferences.put(child, is);
 		}
 		is.add(include);
+		includeChanged(path, child);
+	}
+
+	/**
+	 * Drops cached data that depends on the include of child into parent.
+	 * Closures of the parent and of the pages including it lose or gain 
+	 * the child and pages included by it, and vice versa.
+	 * 
+	 * @param parent
+	 * @param child
+	 */
+	private void includeChanged(IPath parent, IPath child) {
+		vars.remove(child);
+		if(!includedPages.isEmpty()) {
+			includedPages.remove(parent);
+			for (IPath p: collect(parent, false)) {
+				includedPages.remove(p);
+			}
+		}
+		if(!includingPages.isEmpty()) {
+			includingPages.remove(child);
+			for (IPath p: collect(child, true)) {
+				includingPages.remove(p);
+			}
+		}
 	}
 
 	public synchronized List<Var> getVars(IPath path) {
+		List<Var> result = vars.get(path);
+		if(result != null) {
+			return result;
+		}
 		List<PageInclude> is = parentReferences.get(path);
 		if(is == null ||is.isEmpty()) {
 			return ELContextImpl.EMPTY;
 		} else if(is.size() == 1) {
-			return is.get(0).getVars();
+			result = Collections.unmodifiableList(new ArrayList<Var>(is.get(0).getVars()));
 		} else {
-			List<Var> result = new ArrayList<Var>();
+			List<Var> list = new ArrayList<Var>();
 			for (PageInclude i: is) {
-				result.addAll(i.getVars());
+				list.addAll(i.getVars());
+			}
+			result = Collections.unmodifiableList(list);
+		}
+		vars.put(path, result);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jboss.tools.jst.web.kb.internal.IIncludeModelExtension#getIncludedPages(org.eclipse.core.runtime.IPath)
+	 */
+	public synchronized Set<IPath> getIncludedPages(IPath path) {
+		Set<IPath> result = includedPages.get(path);
+		if(result == null) {
+			result = Collections.unmodifiableSet(collect(path, true));
+			includedPages.put(path, result);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jboss.tools.jst.web.kb.internal.IIncludeModelExtension#getIncludingPages(org.eclipse.core.runtime.IPath)
+	 */
+	public synchronized Set<IPath> getIncludingPages(IPath path) {
+		Set<IPath> result = includingPages.get(path);
+		if(result == null) {
+			result = Collections.unmodifiableSet(collect(path, false));
+			includingPages.put(path, result);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.jboss.tools.jst.web.kb.internal.IIncludeModelExtension#getAffectedPages(org.eclipse.core.runtime.IPath)
+	 */
+	public Set<IPath> getAffectedPages(IPath path) {
+		return getIncludingPages(path);
+	}
+
+	/**
+	 * Walks the include graph from the path down to included pages or 
+	 * up to including pages. The path itself is included into the result
+	 * only if it is reached by a cycle.
+	 * 
+	 * @param path
+	 * @param down
+	 * @return
+	 */
+	private Set<IPath> collect(IPath path, boolean down) {
+		Set<IPath> result = new HashSet<IPath>();
+		List<IPath> queue = new ArrayList<IPath>();
+		queue.add(path);
+		for (int k = 0; k < queue.size(); k++) {
+			List<PageInclude> is = down ? directReferences.get(queue.get(k)) : parentReferences.get(queue.get(k));
+			if(is == null) {
+				continue;
+			}
+			for (PageInclude i: is) {
+				IPath next = down ? i.getPath() : i.getParent();
+				if(result.add(next)) {
+					queue.add(next);
+				}
 			}
-			return result;
 		}
+		return result;
 	}
 
 	static final String STORE_ELEMENT_INCLUDES = "includes"; //$NON-NLS-1$
@@ -10,10 +10,20 @@
  ******************************************************************************/
 package org.jboss.tools.jst.web.kb.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
@@ -21,6 +31,8 @@ import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
 import org.jboss.tools.jst.web.kb.IBrowserDataProvider;
 import org.jboss.tools.jst.web.kb.IPageContext;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
@@ -34,13 +46,34 @@ public class BrowserDataProviderManager {
 	public static final String ELEMENT_ID_VALUE_PARAM = "idParamValue";
 	public static final Object DATA_LOADING = new Object(); // If the browser evaluation result equals to this object then it means that the data is still loading (for example the browser may still be being initialized. 
 
+	/**
+	 * Time in milliseconds that callers in UI should wait for browser data.
+	 */
+	public static final long DEFAULT_BUDGET = 300;
+
+	/**
+	 * Time in milliseconds after which an evaluation that nobody asked for is dropped.
+	 */
+	static final long PENDING_TIME = 10000;
+
 	private static final BrowserDataProviderManager INSTANCE = new BrowserDataProviderManager();
 
 	private Set<IBrowserDataProvider> providers;
+	private Map<String, Evaluation> pending = new HashMap<String, Evaluation>();
 
 	private BrowserDataProviderManager() {
 	}
 
+	/**
+	 * Creates a manager that uses the given providers instead of 
+	 * the ones contributed to extension point browserDataProvider.
+	 * 
+	 * @param providers
+	 */
+	public BrowserDataProviderManager(Collection<IBrowserDataProvider> providers) {
+		this.providers = new LinkedHashSet<IBrowserDataProvider>(providers);
+	}
+
 	public static BrowserDataProviderManager getInstance() {
 		return INSTANCE;
 	}
@@ -84,10 +117,156 @@ public class BrowserDataProviderManager {
 		return results;
 	}
 
+	/**
+	 * Evaluates the script by all providers in the UI thread, and waits for results not longer
+	 * than the budget. If called in the UI thread, providers are called one by one until 
+	 * the budget is spent, a provider that has been started is not interrupted. 
+	 * Otherwise, the evaluation is dispatched to the UI thread.
+	 * Providers that did not finish in time contribute DATA_LOADING.
+	 * Their evaluation is reused by next calls with the same script
+	 * and context, so that the results of slow providers are not lost.
+	 * 
+	 * @param js
+	 * @param pageContext
+	 * @param budget time in milliseconds
+	 * @return
+	 */
+	public Collection<Object> evaluate(String js, IPageContext pageContext, long budget) {
+		init();
+		Set<Object> results = new HashSet<Object>();
+		if(providers.isEmpty()) {
+			return results;
+		}
+		String key = (pageContext.getResource() == null ? "" : pageContext.getResource().getFullPath().toString()) + "|" + js; //$NON-NLS-1$ //$NON-NLS-2$
+		Evaluation evaluation = null;
+		synchronized (pending) {
+			long now = System.currentTimeMillis();
+			Iterator<Evaluation> it = pending.values().iterator();
+			while(it.hasNext()) {
+				if(now - it.next().time > PENDING_TIME) {
+					it.remove();
+				}
+			}
+			evaluation = pending.get(key);
+			if(evaluation == null) {
+				evaluation = new Evaluation(js, pageContext);
+				pending.put(key, evaluation);
+			}
+		}
+		boolean done = true;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+		Display display = getDisplay();
+		boolean inline = display == null || display.getThread() == Thread.currentThread();
+		if(!inline) {
+			evaluation.dispatch(display);
+		}
+		for (FutureTask<Object> task: evaluation.tasks) {
+			try {
+				if(!inline) {
+					results.add(task.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+					continue;
+				}
+				if(!task.isDone() && deadline - System.nanoTime() > 0) {
+					task.run();
+				}
+				if(!task.isDone()) {
+					throw new TimeoutException();
+				}
+				results.add(task.get());
+			} catch (TimeoutException e) {
+				results.add(DATA_LOADING);
+				done = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				results.add(DATA_LOADING);
+				done = false;
+				break;
+			} catch (ExecutionException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+		if(done) {
+			synchronized (pending) {
+				if(pending.get(key) == evaluation) {
+					pending.remove(key);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns display of the workbench, or null if there is no UI thread to dispatch to.
+	 */
+	private static Display getDisplay() {
+		if(!PlatformUI.isWorkbenchRunning()) {
+			return null;
+		}
+		Display display = PlatformUI.getWorkbench().getDisplay();
+		return display.isDisposed() ? null : display;
+	}
+
+	/**
+	 * Evaluation of a script by all providers. A task that is both dispatched 
+	 * and run inline is executed once.
+	 */
+	class Evaluation {
+		long time = System.currentTimeMillis();
+		List<FutureTask<Object>> tasks = new ArrayList<FutureTask<Object>>();
+		boolean dispatched = false;
+
+		Evaluation(final String js, final IPageContext pageContext) {
+			for (final IBrowserDataProvider provider : providers) {
+				tasks.add(new FutureTask<Object>(new Callable<Object>() {
+					public Object call() {
+						return provider.evaluate(js, pageContext);
+					}
+				}));
+			}
+		}
+
+		synchronized void dispatch(Display display) {
+			if(!dispatched) {
+				dispatched = true;
+				for (FutureTask<Object> task: tasks) {
+					display.asyncExec(task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces each #{name} in the script with the value of parameter 'name'.
+	 * Values are inserted as is.
+	 * 
+	 * @param js
+	 * @param parameters
+	 * @return
+	 */
 	public static String format(String js, Map<String, String> parameters) {
-		for (String name : parameters.keySet()) {
-			js = js.replaceAll("#\\{" + name + "\\}", parameters.get(name));
+		StringBuilder result = null;
+		int last = 0;
+		int i = js.indexOf("#{"); //$NON-NLS-1$
+		while(i >= 0) {
+			int end = js.indexOf('}', i + 2);
+			if(end < 0) {
+				break;
+			}
+			String value = parameters.get(js.substring(i + 2, end));
+			if(value != null) {
+				if(result == null) {
+					result = new StringBuilder(js.length() + 64);
+				}
+				result.append(js, last, i).append(value);
+				last = end + 1;
+				i = js.indexOf("#{", last); //$NON-NLS-1$
+			} else {
+				i = js.indexOf("#{", i + 2); //$NON-NLS-1$
+			}
+		}
+		if(result == null) {
+			return js;
 		}
-		return js;
+		return result.append(js, last, js.length()).toString();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.wst.css.core.internal.provisional.document.ICSSDocument;
+import org.eclipse.wst.css.core.internal.provisional.document.ICSSModel;
+import org.jboss.tools.jst.web.kb.ICSSContainerSupport;
+import org.jboss.tools.jst.web.kb.PageContextFactory.CSSStyleSheetDescriptor;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.proposal.CSSClassProposalType;
+import org.w3c.dom.css.CSSMediaRule;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleRule;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * Index of CSS class names declared in style sheets, shared by
+ * content assist, hyperlinks and validation.
+ *
+ * Each style sheet is indexed once, the index is kept while the sheet is alive
+ * and the modification stamp of its document is not changed. Sheets of pages
+ * opened in editors are indexed in background. Indexes refer to rules of sheets
+ * weakly, since rules refer to their sheets, which are weak keys of the index.
+ */
+@SuppressWarnings("restriction")
+public class CSSClassIndex {
+	private static final CSSClassIndex INSTANCE = new CSSClassIndex();
+
+	public static final char[] SPACE_CHARS = {' ', '\t', '\r', '\n', '\f'};
+
+	private final Map<CSSStyleSheet, Entry> entries = new WeakHashMap<CSSStyleSheet, Entry>();
+	private final Set<ICSSContainerSupport> scheduled = new LinkedHashSet<ICSSContainerSupport>();
+	private final IndexingJob job = new IndexingJob();
+
+	public static CSSClassIndex getInstance() {
+		return INSTANCE;
+	}
+
+	private CSSClassIndex() {}
+
+	/**
+	 * Returns the index of the style sheet, builds it if the sheet
+	 * has not been indexed yet or has been modified since.
+	 *
+	 * @param sheet
+	 * @return
+	 */
+	public StyleSheetIndex getIndex(CSSStyleSheet sheet) {
+		long stamp = getModificationStamp(sheet);
+		Entry entry = null;
+		synchronized (entries) {
+			entry = entries.get(sheet);
+			if(entry == null) {
+				entry = new Entry();
+				entries.put(sheet, entry);
+			}
+		}
+		synchronized (entry) {
+			if(entry.index == null || entry.stamp != stamp || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+				entry.index = new StyleSheetIndex(sheet);
+				entry.stamp = stamp;
+			}
+			return entry.index;
+		}
+	}
+
+	/**
+	 * Returns indexes of style sheets available in the context,
+	 * in the order of their declaration.
+	 *
+	 * @param context
+	 * @return
+	 */
+	public List<StyleSheetIndex> getIndexes(ICSSContainerSupport context) {
+		List<StyleSheetIndex> result = new ArrayList<StyleSheetIndex>();
+		List<CSSStyleSheetDescriptor> descrs = context.getCSSStyleSheetDescriptors();
+		if(descrs != null) {
+			for (CSSStyleSheetDescriptor descr: descrs) {
+				CSSStyleSheet sheet = descr.getStylesheet();
+				if(sheet != null) {
+					result.add(getIndex(sheet));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Schedules indexing of style sheets of the context in background.
+	 *
+	 * @param context
+	 */
+	public void schedule(ICSSContainerSupport context) {
+		synchronized (scheduled) {
+			scheduled.add(context);
+		}
+		job.schedule(100);
+	}
+
+	private static long getModificationStamp(CSSStyleSheet sheet) {
+		if(sheet instanceof ICSSDocument) {
+			ICSSModel model = ((ICSSDocument)sheet).getModel();
+			IDocument document = model == null ? null : model.getStructuredDocument();
+			if(document instanceof IDocumentExtension4) {
+				return ((IDocumentExtension4)document).getModificationStamp();
+			}
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
+	private static class Entry {
+		long stamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		StyleSheetIndex index;
+	}
+
+	class IndexingJob extends Job {
+		public IndexingJob() {
+			super("Indexing CSS classes"); //$NON-NLS-1$
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			while(true) {
+				ICSSContainerSupport context = null;
+				synchronized (scheduled) {
+					if(scheduled.isEmpty()) {
+						break;
+					}
+					context = scheduled.iterator().next();
+					scheduled.remove(context);
+				}
+				if(monitor.isCanceled()) {
+					synchronized (scheduled) {
+						scheduled.clear();
+					}
+					return Status.CANCEL_STATUS;
+				}
+				try {
+					getIndexes(context);
+				} catch (RuntimeException e) {
+					// The page or a style sheet could be modified while indexing,
+					// the index will be built on request.
+					WebKbPlugin.getDefault().logError(e);
+				}
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Class names and selectors of one style sheet.
+	 */
+	public static class StyleSheetIndex {
+		private final SortedSet<String> classNames = new TreeSet<String>();
+		private final Map<String, List<Selector>> selectorsByClass = new HashMap<String, List<Selector>>();
+		private final List<Selector> unclassifiedSelectors = new ArrayList<Selector>();
+		private int selectorCount = 0;
+
+		StyleSheetIndex(CSSStyleSheet sheet) {
+			CSSRuleList rules = sheet.getCssRules();
+			for (int i = 0; rules != null && i < rules.getLength(); i++) {
+				add(rules.item(i));
+			}
+		}
+
+		private void add(CSSRule rule) {
+			if(rule instanceof CSSMediaRule) {
+				CSSRuleList rules = ((CSSMediaRule)rule).getCssRules();
+				for (int i = 0; rules != null && i < rules.getLength(); i++) {
+					add(rules.item(i));
+				}
+				return;
+			}
+			if(!(rule instanceof CSSStyleRule)) {
+				return;
+			}
+			classNames.addAll(CSSClassProposalType.getClassNamesFromCSSRule(rule));
+			String selectorText = ((CSSStyleRule)rule).getSelectorText();
+			if(selectorText == null) {
+				return;
+			}
+			for (String text: getSelectors(selectorText)) {
+				String[] simpleSelectors = getSimpleSelectors(text);
+				if(simpleSelectors.length == 0) {
+					continue;
+				}
+				Selector selector = new Selector(text, (CSSStyleRule)rule, simpleSelectors, selectorCount++);
+				Set<String> keys = getClassKeys(simpleSelectors[simpleSelectors.length - 1]);
+				if(keys.isEmpty()) {
+					unclassifiedSelectors.add(selector);
+				}
+				for (String key: keys) {
+					List<Selector> list = selectorsByClass.get(key);
+					if(list == null) {
+						list = new ArrayList<Selector>(1);
+						selectorsByClass.put(key, list);
+					}
+					list.add(selector);
+				}
+			}
+		}
+
+		/**
+		 * Returns class names declared in the style sheet, sorted.
+		 *
+		 * @return
+		 */
+		public SortedSet<String> getClassNames() {
+			return Collections.unmodifiableSortedSet(classNames);
+		}
+
+		/**
+		 * Returns selectors which rightmost simple selector has one of the classes
+		 * or pseudo-classes, and selectors which rightmost simple selector
+		 * has no classes and may match any class, in the order of their declaration.
+		 *
+		 * @param classNames
+		 * @return
+		 */
+		public List<Selector> findSelectors(String... classNames) {
+			Set<Selector> result = new TreeSet<Selector>(SELECTOR_ORDER);
+			for (String className: classNames) {
+				List<Selector> list = selectorsByClass.get(className.toLowerCase());
+				if(list != null) {
+					result.addAll(list);
+				}
+			}
+			result.addAll(unclassifiedSelectors);
+			return new ArrayList<Selector>(result);
+		}
+	}
+
+	static final Comparator<Selector> SELECTOR_ORDER = new Comparator<Selector>() {
+		@Override
+		public int compare(Selector o1, Selector o2) {
+			return o1.order - o2.order;
+		}
+	};
+
+	/**
+	 * Selector of a style rule, in lower case, split into simple selectors.
+	 */
+	public static class Selector {
+		private final String text;
+		private final WeakReference<CSSStyleRule> rule;
+		private final String[] simpleSelectors;
+		private final int order;
+
+		Selector(String text, CSSStyleRule rule, String[] simpleSelectors, int order) {
+			this.order = order;
+			this.text = text;
+			this.rule = new WeakReference<CSSStyleRule>(rule);
+			this.simpleSelectors = simpleSelectors;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * Returns the rule, or null if its style sheet is not used any more.
+		 *
+		 * @return
+		 */
+		public CSSStyleRule getRule() {
+			return rule.get();
+		}
+
+		public String[] getSimpleSelectors() {
+			return simpleSelectors;
+		}
+
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+	/*
+	 * Returns lower-cased class names and pseudo-class names of a simple selector.
+	 * Returns an empty set if the simple selector has no class names, or has attributes
+	 * (names before attributes are not taken into account when the selector is matched),
+	 * so that it is looked up with any class.
+	 */
+	static Set<String> getClassKeys(String simpleSelector) {
+		Set<String> result = new TreeSet<String>();
+		String rest = simpleSelector.trim().toLowerCase();
+		if(getIndexOfCharNotQuotted(rest, new char[]{'['}, 0) != -1) {
+			return result;
+		}
+		boolean hasClass = false;
+		for (int i = 0; i < rest.length(); i++) {
+			char c = rest.charAt(i);
+			if(c != '.' && c != ':') {
+				continue;
+			}
+			int j = i + 1;
+			while(j < rest.length() && rest.charAt(j) != '#' && rest.charAt(j) != '.' && rest.charAt(j) != ':') {
+				j++;
+			}
+			String name = rest.substring(i + 1, j).trim();
+			if(name.length() > 0) {
+				result.add(name);
+				hasClass |= c == '.';
+			}
+			i = j - 1;
+		}
+		if(!hasClass) {
+			result.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * Splits selector text to lower-cased selectors separated with commas out of quotes.
+	 *
+	 * @param selectorText
+	 * @return
+	 */
+	public static String[] getSelectors(String selectorText) {
+		List<String> selectors = new ArrayList<String>();
+		String rest = selectorText.trim().toLowerCase();
+		int index = -1;
+		while ((index = getIndexOfCharNotQuotted(rest, new char[]{','}, 0)) != -1) {
+			String selector = rest.substring(0, index).trim();
+			rest = rest.substring(index + 1).trim();
+			if (selector.length() > 0) {
+				selectors.add(selector);
+			}
+		}
+		if (rest.length() > 0) {
+			selectors.add(rest);
+		}
+		return selectors.toArray(new String[0]);
+	}
+
+	/**
+	 * Splits selector to simple selectors separated with white spaces
+	 * out of quotes and brackets.
+	 *
+	 * @param selector
+	 * @return
+	 */
+	public static String[] getSimpleSelectors(String selector) {
+		List<String> simpleSelectors = new ArrayList<String>();
+		String rest = dropWSCharsInBrackets(selector);
+		int index = -1;
+		while ((index = getIndexOfCharNotQuotted(rest, SPACE_CHARS, 0)) != -1) {
+			String simpleSelector = rest.substring(0, index).trim();
+			rest = rest.substring(index + 1).trim();
+			if (simpleSelector.length() > 0) {
+				simpleSelectors.add(simpleSelector);
+			}
+		}
+		if (rest.length() > 0) {
+			simpleSelectors.add(rest);
+		}
+		return simpleSelectors.toArray(new String[0]);
+	}
+
+	private static String dropWSCharsInBrackets(String selector) {
+		char pair = 0;
+		char pairBracket = 0;
+
+		boolean inQuotes = false;
+		boolean inBrackets = false;
+		StringBuilder sb = new StringBuilder();
+		if (selector != null) {
+			for (char character : selector.toCharArray()) {
+	            if (inQuotes) {
+	            	// Append any char
+	            	sb.append(character);
+	            	if (character == pair) {
+	            		inQuotes = false;
+	            	}
+	            } else {
+	            	if (character == '"' || character == '\'') {
+	            		pair = character;
+	            		inQuotes = true;
+	            		sb.append(character);
+	            	} else {
+	            		if (inBrackets) {
+	            			// Append any char excluding WS chars
+	            			boolean wsChar = false;
+	                		for (char ch : SPACE_CHARS) {
+	                    		if (character == ch) {
+	                        		wsChar = true;
+	                        		break;
+	                    		}
+	                		}
+	                		if (!wsChar) {
+	                			sb.append(character);
+	                		}
+	            			if (character == pairBracket) {
+	            				pairBracket = 0;
+	            				inBrackets = false;
+	            			}
+	            		} else {
+	            			// Append any char
+	            			sb.append(character);
+	            			if (character == '[') {
+	            				pairBracket = ']';
+	            				inBrackets = true;
+	            			} else if (character == '(') {
+	            				pairBracket = ')';
+	            				inBrackets = true;
+	            			}
+	            		}
+	            	}
+	            }
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns index of the first char found from 'chars' array out of quotes.
+	 *
+	 * @param text
+	 * @param chars
+	 * @param start
+	 * @return
+	 */
+	public static int getIndexOfCharNotQuotted(String text, char[] chars, int start) {
+		int offset = start;
+		int pair = -1;
+		boolean inQuotes = false;
+
+		while (offset < text.length()) {
+            int character = text.charAt(offset);
+            if (inQuotes) {
+            	if (character == pair) {
+            		inQuotes = false;
+            	}
+            } else {
+            	if (character == '"' || character == '\'') {
+            		pair = character;
+            		inQuotes = true;
+            	} else {
+            		for (char ch : chars) {
+                		if (character == ch)
+                    		return offset;
+            		}
+            	}
+            }
+			offset++;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,593 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.jboss.tools.common.util.FileUtil;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+
+/**
+ * Workspace-wide inverted index of names used in EL expressions: for each project,
+ * maps identifiers found inside #{...} and ${...} to project-relative paths
+ * of files that contain them. The index lets EL search and refactoring open
+ * only files which may reference the searched name.
+ *
+ * The index of a project is built by the KB builder on full build, or on the first
+ * incremental build if there is no stored index yet, and is updated by following
+ * builds. Files added or changed between builds are kept as pending and are read
+ * again when the index is queried. Indexes of projects are stored in the folder
+ * 'elreferences' of the plugin state location, one '[project].properties' file
+ * per project.
+ */
+public class ELReferenceIndex {
+	static final String FOLDER = "elreferences"; //$NON-NLS-1$
+	static final String INDEX_EXTENSION = ".properties"; //$NON-NLS-1$
+	static final String FILE_PREFIX = "file:"; //$NON-NLS-1$
+	static final String PENDING_PREFIX = "pending:"; //$NON-NLS-1$
+
+	/**
+	 * Extensions of files that are searched for EL references.
+	 */
+	static final String[] EXTENSIONS = {"java", "xml", "xhtml", "jsp", "jspx", "properties"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+
+	private static ELReferenceIndex instance = null;
+
+	public static synchronized ELReferenceIndex getInstance() {
+		if(instance == null) {
+			File folder = WebKbPlugin.getDefault().getStateLocation().append(FOLDER).toFile();
+			instance = new ELReferenceIndex(folder);
+		}
+		return instance;
+	}
+
+	private File folder;
+
+	/*
+	 * Project name -> index, or null if there is no stored index for the project.
+	 */
+	private Map<String, ProjectIndex> projects = new HashMap<String, ProjectIndex>();
+
+	public ELReferenceIndex(File folder) {
+		this.folder = folder;
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Reads all relevant files of the project and replaces its index.
+	 *
+	 * @param project
+	 * @param outs output folders of the project which are not indexed
+	 * @param monitor
+	 */
+	public void build(IProject project, final IPath[] outs, final IProgressMonitor monitor) {
+		final ProjectIndex index = new ProjectIndex();
+		index.building = true;
+		synchronized (this) {
+			projects.put(project.getName(), index);
+		}
+		try {
+			project.accept(new IResourceVisitor() {
+				public boolean visit(IResource resource) throws CoreException {
+					KbBuilder.checkCanceled(monitor);
+					if(isExcluded(resource, outs)) {
+						return false;
+					}
+					if(resource instanceof IFile) {
+						if(isRelevant((IFile)resource)) {
+							index.update(getKey(resource), readNames((IFile)resource));
+						}
+						return false;
+					}
+					return true;
+				}
+			});
+			index.setComplete();
+		} catch (CoreException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			index.building = false;
+		}
+	}
+
+	/**
+	 * Updates the index of the project by the build delta. If the project
+	 * has no complete index, builds it.
+	 *
+	 * @param delta
+	 * @param outs output folders of the project which are not indexed
+	 * @param monitor
+	 */
+	public void build(IResourceDelta delta, final IPath[] outs, final IProgressMonitor monitor) {
+		IProject project = delta.getResource().getProject();
+		final ProjectIndex index = getIndex(project);
+		if(index == null || !index.complete) {
+			build(project, outs, monitor);
+			return;
+		}
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+				public boolean visit(IResourceDelta delta) throws CoreException {
+					KbBuilder.checkCanceled(monitor);
+					IResource resource = delta.getResource();
+					if(delta.getKind() == IResourceDelta.REMOVED) {
+						index.remove(getKey(resource), resource instanceof IContainer);
+						return false;
+					}
+					if(isExcluded(resource, outs)) {
+						return false;
+					}
+					if(resource instanceof IFile) {
+						if(isRelevant((IFile)resource)) {
+							index.update(getKey(resource), readNames((IFile)resource));
+						}
+						return false;
+					}
+					return true;
+				}
+			});
+		} catch (CoreException e) {
+			WebKbPlugin.getDefault().logError(e);
+		}
+	}
+
+	/**
+	 * Marks files added or changed since the last build as pending, and drops
+	 * removed files and indexes of removed projects. Files are not read here.
+	 *
+	 * @param delta workspace delta
+	 */
+	public void resourceChanged(IResourceDelta delta) {
+		if(delta == null) {
+			return;
+		}
+		for (IResourceDelta child: delta.getAffectedChildren()) {
+			if(!(child.getResource() instanceof IProject)) {
+				continue;
+			}
+			IProject project = (IProject)child.getResource();
+			if(child.getKind() == IResourceDelta.REMOVED) {
+				synchronized (this) {
+					projects.remove(project.getName());
+				}
+				continue;
+			}
+			if(!project.isAccessible()) {
+				continue;
+			}
+			final ProjectIndex index = getIndex(project);
+			if(index == null || !(index.complete || index.building)) {
+				continue;
+			}
+			try {
+				child.accept(new IResourceDeltaVisitor() {
+					public boolean visit(IResourceDelta delta) throws CoreException {
+						IResource resource = delta.getResource();
+						int kind = delta.getKind();
+						if(kind == IResourceDelta.REMOVED) {
+							index.remove(getKey(resource), resource instanceof IContainer);
+							return false;
+						}
+						if(resource instanceof IFile) {
+							if((kind == IResourceDelta.ADDED
+									|| (delta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) != 0)
+									&& isRelevant((IFile)resource)) {
+								index.markPending(getKey(resource));
+							}
+							return false;
+						}
+						return true;
+					}
+				});
+			} catch (CoreException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+	}
+
+	/**
+	 * Drops the index of the project, so that EL search falls back to reading
+	 * all files of the project until the project is built again.
+	 *
+	 * @param project
+	 */
+	public synchronized void clean(IProject project) {
+		projects.put(project.getName(), null);
+		File file = getFile(project.getName());
+		if(file.isFile()) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Returns files of the project that contain in EL expressions at least one
+	 * of the names, or null if the project is not indexed. Pending files are
+	 * read before the query.
+	 *
+	 * @param project
+	 * @param names
+	 * @return
+	 */
+	public Set<IFile> getFiles(IProject project, Collection<String> names) {
+		ProjectIndex index = getIndex(project);
+		if(index == null || !index.complete) {
+			return null;
+		}
+		for (String key: index.takePending()) {
+			IFile file = project.getFile(key);
+			if(file.isAccessible()) {
+				index.update(key, readNames(file));
+			} else {
+				index.remove(key, false);
+			}
+		}
+		Set<String> keys = new TreeSet<String>();
+		for (String name: names) {
+			index.collectFiles(name, keys);
+		}
+		Set<IFile> result = new LinkedHashSet<IFile>();
+		for (String key: keys) {
+			result.add(project.getFile(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the project has a complete index.
+	 *
+	 * @param project
+	 * @return
+	 */
+	public boolean isIndexed(IProject project) {
+		ProjectIndex index = getIndex(project);
+		return index != null && index.complete;
+	}
+
+	private synchronized ProjectIndex getIndex(IProject project) {
+		String name = project.getName();
+		if(!projects.containsKey(name)) {
+			projects.put(name, load(name));
+		}
+		return projects.get(name);
+	}
+
+	/**
+	 * Removes indexes of projects that are not in the set.
+	 *
+	 * @param projectNames names of existing projects
+	 */
+	public synchronized void retainProjects(Set<String> projectNames) {
+		projects.keySet().retainAll(projectNames);
+		File[] fs = folder.listFiles();
+		if(fs != null) for (File f: fs) {
+			String name = f.getName();
+			if(name.endsWith(INDEX_EXTENSION)
+					&& !projectNames.contains(name.substring(0, name.length() - INDEX_EXTENSION.length()))) {
+				f.delete();
+			}
+		}
+	}
+
+	/**
+	 * Writes modified complete indexes.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void store() throws IOException {
+		for (String name: projects.keySet()) {
+			ProjectIndex index = projects.get(name);
+			if(index == null || !index.complete || !index.modified) {
+				continue;
+			}
+			Properties p = index.toProperties();
+			folder.mkdirs();
+			OutputStream out = null;
+			try {
+				out = new FileOutputStream(getFile(name));
+				p.store(out, null);
+			} finally {
+				IOUtils.closeQuietly(out);
+			}
+		}
+	}
+
+	private ProjectIndex load(String name) {
+		File file = getFile(name);
+		if(!file.isFile()) {
+			return null;
+		}
+		Properties p = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			p.load(in);
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		ProjectIndex index = new ProjectIndex();
+		Iterator<String> it = p.stringPropertyNames().iterator();
+		while(it.hasNext()) {
+			String key = it.next();
+			if(key.startsWith(FILE_PREFIX)) {
+				Set<String> names = new HashSet<String>();
+				for (String n: p.getProperty(key).split(" ")) { //$NON-NLS-1$
+					if(n.length() > 0) {
+						names.add(n);
+					}
+				}
+				index.update(key.substring(FILE_PREFIX.length()), names);
+			} else if(key.startsWith(PENDING_PREFIX)) {
+				index.markPending(key.substring(PENDING_PREFIX.length()));
+			}
+		}
+		index.setComplete();
+		index.modified = false;
+		return index;
+	}
+
+	private File getFile(String projectName) {
+		return new File(folder, projectName + INDEX_EXTENSION);
+	}
+
+	static String getKey(IResource resource) {
+		return resource.getProjectRelativePath().toString();
+	}
+
+	static boolean isExcluded(IResource resource, IPath[] outs) {
+		if(resource instanceof IProject) {
+			return false;
+		}
+		if(resource.isDerived() || resource.getName().startsWith(".")) { //$NON-NLS-1$
+			return true;
+		}
+		for (IPath out: outs) {
+			if(out.isPrefixOf(resource.getFullPath())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static boolean isRelevant(IFile file) {
+		String ext = file.getFileExtension();
+		if(ext != null) {
+			for (String e: EXTENSIONS) {
+				if(e.equalsIgnoreCase(ext)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	static Set<String> readNames(IFile file) {
+		Set<String> names = new HashSet<String>();
+		String content = FileUtil.getContentFromEditorOrFile(file);
+		if(content != null) {
+			collectNames(content, names);
+		}
+		return names;
+	}
+
+	/**
+	 * Adds to the set all identifiers found inside #{...} and ${...} in the text,
+	 * including identifiers in quoted strings, like 'name' in bean['name'].
+	 * Braces of nested set and map literals and braces in quoted strings 
+	 * do not end the expression.
+	 *
+	 * @param text
+	 * @param names
+	 */
+	public static void collectNames(String text, Set<String> names) {
+		int i = text.indexOf('{');
+		while(i >= 0) {
+			if(i > 0 && (text.charAt(i - 1) == '#' || text.charAt(i - 1) == '$')) {
+				int end = findExpressionEnd(text, i);
+				int start = -1;
+				for (int k = i + 1; k <= end; k++) {
+					char c = k < end ? text.charAt(k) : ' ';
+					if(start < 0) {
+						if(Character.isJavaIdentifierStart(c)) {
+							start = k;
+						}
+					} else if(!Character.isJavaIdentifierPart(c)) {
+						names.add(text.substring(start, k));
+						start = -1;
+					}
+				}
+				i = end;
+			}
+			i = text.indexOf('{', i + 1);
+		}
+	}
+
+	/**
+	 * Returns offset of '}' closing the expression that starts with '{' at the offset,
+	 * or length of the text if the expression is not closed.
+	 *
+	 * @param text
+	 * @param start offset of '{'
+	 * @return
+	 */
+	static int findExpressionEnd(String text, int start) {
+		int depth = 0;
+		char quote = 0;
+		for (int k = start; k < text.length(); k++) {
+			char c = text.charAt(k);
+			if(quote != 0) {
+				if(c == '\\') {
+					k++;
+				} else if(c == quote) {
+					quote = 0;
+				}
+			} else if(c == '\'' || c == '"') {
+				quote = c;
+			} else if(c == '{') {
+				depth++;
+			} else if(c == '}') {
+				depth--;
+				if(depth == 0) {
+					return k;
+				}
+			}
+		}
+		return text.length();
+	}
+
+	/**
+	 * Names used in EL by files of one project.
+	 */
+	static class ProjectIndex {
+		/*
+		 * Path -> names used in EL, only files that use EL are kept.
+		 */
+		private Map<String, String[]> files = new HashMap<String, String[]>();
+
+		/*
+		 * Name -> paths of files using the name in EL.
+		 */
+		private Map<String, Set<String>> names = new HashMap<String, Set<String>>();
+
+		/*
+		 * Paths of files added or changed since they were indexed.
+		 */
+		private Set<String> pending = new HashSet<String>();
+
+		volatile boolean complete = false;
+		volatile boolean building = false;
+		boolean modified = false;
+
+		synchronized void setComplete() {
+			complete = true;
+			modified = true;
+		}
+
+		synchronized void update(String path, Set<String> ns) {
+			pending.remove(path);
+			remove(path);
+			if(!ns.isEmpty()) {
+				files.put(path, ns.toArray(new String[ns.size()]));
+				for (String n: ns) {
+					Set<String> paths = names.get(n);
+					if(paths == null) {
+						paths = new HashSet<String>();
+						names.put(n, paths);
+					}
+					paths.add(path);
+				}
+			}
+			modified = true;
+		}
+
+		synchronized void remove(String path, boolean folder) {
+			if(folder) {
+				String prefix = path + "/"; //$NON-NLS-1$
+				for (String p: new ArrayList<String>(files.keySet())) {
+					if(p.startsWith(prefix)) {
+						remove(p);
+					}
+				}
+				Iterator<String> it = pending.iterator();
+				while(it.hasNext()) {
+					if(it.next().startsWith(prefix)) {
+						it.remove();
+					}
+				}
+			} else {
+				pending.remove(path);
+				remove(path);
+			}
+			modified = true;
+		}
+
+		private void remove(String path) {
+			String[] ns = files.remove(path);
+			if(ns != null) for (String n: ns) {
+				Set<String> paths = names.get(n);
+				if(paths != null) {
+					paths.remove(path);
+					if(paths.isEmpty()) {
+						names.remove(n);
+					}
+				}
+			}
+		}
+
+		synchronized void markPending(String path) {
+			if(pending.add(path)) {
+				modified = true;
+			}
+		}
+
+		synchronized List<String> takePending() {
+			return new ArrayList<String>(pending);
+		}
+
+		synchronized void collectFiles(String name, Set<String> result) {
+			Set<String> paths = names.get(name);
+			if(paths != null) {
+				result.addAll(paths);
+			}
+		}
+
+		synchronized Properties toProperties() {
+			Properties p = new Properties();
+			for (String path: files.keySet()) {
+				StringBuilder sb = new StringBuilder();
+				for (String n: files.get(path)) {
+					if(sb.length() > 0) {
+						sb.append(' ');
+					}
+					sb.append(n);
+				}
+				p.setProperty(FILE_PREFIX + path, sb.toString());
+			}
+			for (String path: pending) {
+				p.setProperty(PENDING_PREFIX + path, ""); //$NON-NLS-1$
+			}
+			modified = false;
+			return p;
+		}
+	}
+}
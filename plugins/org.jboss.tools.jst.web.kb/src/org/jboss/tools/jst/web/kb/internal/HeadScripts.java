@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jboss.tools.common.util.FileUtil;
+
+/**
+ * Script elements declared in the head of an HTML page, found by a lightweight
+ * scan of the page text that stops at the end of the head, without building
+ * a DOM model. Versions of JS libraries referenced by the scripts are computed
+ * on the first request and remembered.
+ */
+public class HeadScripts {
+	private static final Pattern LINE_SEPARATOR = Pattern.compile("[\r\n]+"); //$NON-NLS-1$
+	private static final Pattern VERSION = Pattern.compile(".*?(\\d.\\d).*"); //$NON-NLS-1$
+	private static final Map<String, Pattern> LIBRARY_PATTERNS = new ConcurrentHashMap<String, Pattern>();
+
+	/*
+	 * Marks libraries not referenced in the page.
+	 */
+	private static final String NOT_FOUND = new String();
+
+	private String doctype;
+	private List<String> sources = new ArrayList<String>();
+	private List<String> texts = new ArrayList<String>();
+	private Map<String, String> versions = new ConcurrentHashMap<String, String>();
+
+	private HeadScripts() {}
+
+	/**
+	 * Returns doctype of the page.
+	 * @return
+	 */
+	public String getDoctype() {
+		return doctype;
+	}
+
+	/**
+	 * Returns the number of script elements in the head.
+	 * @return
+	 */
+	public int getScriptCount() {
+		return sources.size();
+	}
+
+	/**
+	 * Return the version number of the JS library.
+	 * If the link to the JS file is found but no version defined then return an empty string.
+	 * If no link found then return null.
+	 * @param jsLibName
+	 * @param lookAtSrcAttributeOnly
+	 * @return
+	 */
+	public String getVersion(String jsLibName, boolean lookAtSrcAttributeOnly) {
+		String key = lookAtSrcAttributeOnly ? "src:" + jsLibName : jsLibName; //$NON-NLS-1$
+		String version = versions.get(key);
+		if(version == null) {
+			version = findVersion(jsLibName, lookAtSrcAttributeOnly);
+			if(version == null) {
+				version = NOT_FOUND;
+			}
+			versions.put(key, version);
+		}
+		return version == NOT_FOUND ? null : version;
+	}
+
+	private String findVersion(String jsLibName, boolean lookAtSrcAttributeOnly) {
+		Pattern library = getLibraryPattern(jsLibName);
+		for (int i = 0; i < sources.size(); i++) {
+			String text = sources.get(i);
+			if(!lookAtSrcAttributeOnly) {
+				text = new StringBuilder(text).append("\n").append(texts.get(i)).toString(); //$NON-NLS-1$
+			}
+			for (String line: LINE_SEPARATOR.split(text)) {
+				Matcher m = library.matcher(line);
+				if(m.matches()) {
+					Matcher v = VERSION.matcher(m.group(2));
+					return v.matches() ? v.group(1) : ""; //$NON-NLS-1$
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Pattern getLibraryPattern(String jsLibName) {
+		Pattern p = LIBRARY_PATTERNS.get(jsLibName);
+		if(p == null) {
+			p = Pattern.compile(".*(" + jsLibName + ")(.*)(.js).*"); //$NON-NLS-1$ //$NON-NLS-2$
+			LIBRARY_PATTERNS.put(jsLibName, p);
+		}
+		return p;
+	}
+
+	/**
+	 * Scans text of a page for script elements that are children
+	 * of element 'head' in element 'html'. Comments are skipped.
+	 * The scan ends at the end of the head or at the start of the body.
+	 *
+	 * @param content
+	 * @return
+	 */
+	public static HeadScripts parse(String content) {
+		HeadScripts result = new HeadScripts();
+		if(content == null) {
+			return result;
+		}
+		result.doctype = FileUtil.getDoctype(content);
+		new Scanner(content, result).scan();
+		return result;
+	}
+
+	static class Scanner {
+		static final int BEFORE_HTML = 0;
+		static final int BEFORE_HEAD = 1;
+		static final int IN_HEAD = 2;
+
+		String text;
+		HeadScripts result;
+		int offset = 0;
+		int state = BEFORE_HTML;
+
+		Scanner(String text, HeadScripts result) {
+			this.text = text;
+			this.result = result;
+		}
+
+		void scan() {
+			while(true) {
+				int start = text.indexOf('<', offset);
+				if(start < 0) {
+					return;
+				}
+				offset = start + 1;
+				if(text.startsWith("!--", offset)) { //$NON-NLS-1$
+					if(!skipTo("-->")) return; //$NON-NLS-1$
+				} else if(text.startsWith("!", offset) || text.startsWith("?", offset)) { //$NON-NLS-1$ //$NON-NLS-2$
+					if(!skipTo(">")) return; //$NON-NLS-1$
+				} else if(text.startsWith("/", offset)) { //$NON-NLS-1$
+					offset++;
+					String name = readName();
+					if("head".equalsIgnoreCase(name) || "html".equalsIgnoreCase(name)) { //$NON-NLS-1$ //$NON-NLS-2$
+						if(state != BEFORE_HTML) return;
+					}
+					if(!skipTo(">")) return; //$NON-NLS-1$
+				} else {
+					String name = readName();
+					if(name.length() == 0) {
+						continue;
+					}
+					Map<String, String> attributes = new HashMap<String, String>();
+					boolean empty = readAttributes(attributes);
+					if(state == BEFORE_HTML) {
+						if("html".equalsIgnoreCase(name)) { //$NON-NLS-1$
+							state = BEFORE_HEAD;
+						}
+					} else if("body".equalsIgnoreCase(name)) { //$NON-NLS-1$
+						return;
+					} else if(state == BEFORE_HEAD) {
+						if("head".equalsIgnoreCase(name)) { //$NON-NLS-1$
+							state = IN_HEAD;
+						}
+					} else if("script".equalsIgnoreCase(name)) { //$NON-NLS-1$
+						String src = attributes.get("src"); //$NON-NLS-1$
+						String body = ""; //$NON-NLS-1$
+						if(!empty) {
+							int end = indexOfIgnoreCase("</script", offset); //$NON-NLS-1$
+							if(end < 0) {
+								end = text.length();
+							}
+							body = text.substring(offset, end);
+							offset = end;
+						}
+						result.sources.add(src == null ? "" : src); //$NON-NLS-1$
+						result.texts.add(body);
+					}
+				}
+			}
+		}
+
+		private boolean skipTo(String s) {
+			int i = text.indexOf(s, offset);
+			if(i < 0) {
+				offset = text.length();
+				return false;
+			}
+			offset = i + s.length();
+			return true;
+		}
+
+		private String readName() {
+			int start = offset;
+			while(offset < text.length()) {
+				char c = text.charAt(offset);
+				if(!Character.isLetterOrDigit(c) && c != ':' && c != '_' && c != '-' && c != '.') {
+					break;
+				}
+				offset++;
+			}
+			return text.substring(start, offset);
+		}
+
+		/**
+		 * Reads attributes up to the end of the start tag.
+		 * @return true if the tag is closed with '/>'
+		 */
+		private boolean readAttributes(Map<String, String> attributes) {
+			while(offset < text.length()) {
+				char c = text.charAt(offset);
+				if(c == '>') {
+					offset++;
+					return false;
+				} else if(c == '/' && text.startsWith("/>", offset)) { //$NON-NLS-1$
+					offset += 2;
+					return true;
+				} else if(Character.isWhitespace(c) || c == '/') {
+					offset++;
+					continue;
+				}
+				String name = readName();
+				if(name.length() == 0) {
+					offset++;
+					continue;
+				}
+				String value = ""; //$NON-NLS-1$
+				skipWhitespace();
+				if(offset < text.length() && text.charAt(offset) == '=') {
+					offset++;
+					skipWhitespace();
+					value = readValue();
+				}
+				String key = name.toLowerCase();
+				if(!attributes.containsKey(key)) {
+					attributes.put(key, value);
+				}
+			}
+			return false;
+		}
+
+		private String readValue() {
+			if(offset >= text.length()) {
+				return ""; //$NON-NLS-1$
+			}
+			char q = text.charAt(offset);
+			if(q == '"' || q == '\'') {
+				int end = text.indexOf(q, offset + 1);
+				if(end < 0) {
+					end = text.length();
+				}
+				String value = text.substring(offset + 1, end);
+				offset = Math.min(end + 1, text.length());
+				return value;
+			}
+			int start = offset;
+			while(offset < text.length()) {
+				char c = text.charAt(offset);
+				if(Character.isWhitespace(c) || c == '>') {
+					break;
+				}
+				offset++;
+			}
+			return text.substring(start, offset);
+		}
+
+		private void skipWhitespace() {
+			while(offset < text.length() && Character.isWhitespace(text.charAt(offset))) {
+				offset++;
+			}
+		}
+
+		private int indexOfIgnoreCase(String s, int from) {
+			for (int i = from; i <= text.length() - s.length(); i++) {
+				if(text.regionMatches(true, i, s, 0, s.length())) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/******************************************************************************* 
+ * Copyright (c) 2016 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/ 
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.jboss.tools.jst.web.kb.include.IIncludeModel;
+
+/**
+ * Queries of the include graph, implemented by IncludeModel.
+ */
+public interface IIncludeModelExtension extends IIncludeModel {
+
+	/**
+	 * Returns paths of pages included by the page with the given path
+	 * directly or through other included pages.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public Set<IPath> getIncludedPages(IPath path);
+
+	/**
+	 * Returns paths of pages that include the page with the given path
+	 * directly or through other included pages.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public Set<IPath> getIncludingPages(IPath path);
+
+	/**
+	 * Returns paths of pages which content depends on the page with the given path,
+	 * that is pages including it directly or transitively, so that a change of 
+	 * a fragment affects all pages it is a part of.
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public Set<IPath> getAffectedPages(IPath path);
+
+}
@@ -10,21 +10,19 @@
  ******************************************************************************/ 
 package org.jboss.tools.jst.web.kb.internal;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.wst.sse.core.StructuredModelManager;
-import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
-import org.eclipse.wst.xml.core.internal.provisional.document.IDOMDocument;
-import org.eclipse.wst.xml.core.internal.provisional.document.IDOMModel;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.jboss.tools.common.el.core.resolver.ELContext;
 import org.jboss.tools.common.util.FileUtil;
-import org.jboss.tools.jst.web.kb.WebKbPlugin;
 import org.jboss.tools.jst.web.kb.taglib.IHTMLLibraryVersion;
 import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
 import org.w3c.dom.Element;
@@ -76,8 +74,9 @@ public abstract class JSRecognizer extends HTML5Recognizer {
 	 * @return
 	 */
 	public static String getJSReferenceVersion(IFile file, String jsLibName, boolean lookAtSrcAttributeOnly, boolean html5Only) {
+		HeadScripts scripts = getHeadScripts(file);
 		if(html5Only) {
-			String doctype = FileUtil.getDoctype(FileUtil.getContentFromEditorOrFile(file));
+			String doctype = scripts.getDoctype();
 			if("html".equalsIgnoreCase(doctype) 
 					|| (doctype == null && file.getName().endsWith(".html"))
 						) {
@@ -86,48 +85,67 @@ public abstract class JSRecognizer extends HTML5Recognizer {
 				return null;
 			}
 		}
-		IStructuredModel model = null;
-		try {
-			model = StructuredModelManager.getModelManager().getModelForRead(file);
-			IDOMDocument xmlDocument = (model instanceof IDOMModel) ? ((IDOMModel) model).getDocument() : null;
-			if(xmlDocument != null) {
-				Element htmlNode = findChildElement(xmlDocument, "html");
-				if(htmlNode!=null) {
-					Element headNode = findChildElement(htmlNode, "head");
-					if(headNode!=null) {
-						Element[] scriptNodes = findChildElements(headNode, "script");
-						for (Element script : scriptNodes) {
-							String srcAttributeValue = getAttribute(script, "src");
-							String text = srcAttributeValue;
-							if(!lookAtSrcAttributeOnly) {
-								String textContent = script.getTextContent();
-								text = new StringBuilder(srcAttributeValue).append("\n").append(textContent).toString();
-							}
-							String[] lines = text.split("[\r\n]+");
-							for (String line : lines) {
-								String scriptText = find(line, ".*(" + jsLibName + ")(.*)(.js).*", 2);
-						        if(scriptText!=null) {
-						        	String version = find(scriptText, ".*?(\\d.\\d).*", 1);
-						        	if(version!=null) {
-						        		return version;
-						        	}
-									return "";
-						        }
-							}
-						}
-					}
+		return scripts.getVersion(jsLibName, lookAtSrcAttributeOnly);
+	}
+
+	static final int HEAD_SCRIPTS_CACHE_SIZE = 200;
+
+	/*
+	 * Scripts of recently requested files, shared by all recognizers.
+	 */
+	private static final Map<IFile, CachedHeadScripts> headScripts = new LinkedHashMap<IFile, CachedHeadScripts>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IFile, CachedHeadScripts> eldest) {
+			return size() > HEAD_SCRIPTS_CACHE_SIZE;
+		}
+	};
+
+	static class CachedHeadScripts {
+		long fileStamp;
+		long documentStamp;
+		HeadScripts scripts;
+	}
+
+	/**
+	 * Returns scripts declared in the head of the file. The result is cached until
+	 * the modification stamp of the file or of its unsaved document changes.
+	 * @param file
+	 * @return
+	 */
+	public static HeadScripts getHeadScripts(IFile file) {
+		long fileStamp = file.getModificationStamp();
+		IDocument document = null;
+		ITextFileBuffer buffer = FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE);
+		if(buffer != null && buffer.isDirty()) {
+			document = buffer.getDocument();
+		}
+		long documentStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		if(document instanceof IDocumentExtension4) {
+			documentStamp = ((IDocumentExtension4)document).getModificationStamp();
+		}
+		boolean cacheable = document == null || documentStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		if(cacheable) {
+			synchronized (headScripts) {
+				CachedHeadScripts cached = headScripts.get(file);
+				if(cached != null && cached.fileStamp == fileStamp && cached.documentStamp == documentStamp) {
+					return cached.scripts;
 				}
 			}
-		} catch (IOException e) {
-			WebKbPlugin.getDefault().logError(e);
-		} catch (CoreException e) {
-			WebKbPlugin.getDefault().logError(e);
-		} finally {
-			if (model != null) {
-				model.releaseFromRead();
+		}
+		String content = document != null ? document.get() : FileUtil.getContentFromEditorOrFile(file);
+		HeadScripts scripts = HeadScripts.parse(content);
+		if(cacheable) {
+			CachedHeadScripts cached = new CachedHeadScripts();
+			cached.fileStamp = fileStamp;
+			cached.documentStamp = documentStamp;
+			cached.scripts = scripts;
+			synchronized (headScripts) {
+				headScripts.put(file, cached);
 			}
 		}
-		return null;
+		return scripts;
 	}
 
 	/**
@@ -143,16 +161,6 @@ public abstract class JSRecognizer extends HTML5Recognizer {
 		return getJSReferenceVersion(file, jsLibName, lookAtSrcAttributeOnly, true);
 	}
 
-	private static String find(String text, String pattern, int group) {
-        String result = null;
-		Pattern p = Pattern.compile(pattern);
-        Matcher m = p.matcher(text);
-        if(m.matches()) {
-        	result = m.group(group);
-        }
-        return result;
-	}
-
 	public static String getAttribute(Element element, String attributeName) {
 		NamedNodeMap nodeMap = element.getAttributes();
 		for (int i = 0; i < nodeMap.getLength(); i++) {
@@ -40,6 +40,7 @@ public class JspContextImpl extends XmlContextImpl implements IPageContext, IInc
 	// JBIDE-13864: the CSS StyleSheet descriptors are'n loaded at Context creation stage.
 	// The loading of CSS StyleSheet Descriptors is performed only if they are requested by CA or hyperlinking features.
 	protected List<CSSStyleSheetDescriptor> fCSSStyleSheetDescriptors;
+	private final Object cssLock = new Object();
 
 	public void addIncludedContext(ELContext includedContext) {
 		fIncludedContexts.add(includedContext);
@@ -105,7 +106,7 @@ public class JspContextImpl extends XmlContextImpl implements IPageContext, IInc
 	public ITagLibrary[] getLibraries() {
 		Set<ITagLibrary> libraries = new HashSet<ITagLibrary>();
 
-		collect(root, libraries);
+		collect(getRoot(), libraries);
 
 		for (ELContext includedContext : this.fIncludedContexts) {
 			if (includedContext instanceof IPageContext) { 
@@ -164,13 +165,15 @@ public class JspContextImpl extends XmlContextImpl implements IPageContext, IInc
 	}
 
 	public List<CSSStyleSheetDescriptor> getCSSStyleSheetDescriptors() {
-		if (fCSSStyleSheetDescriptors == null) {
-			fCSSStyleSheetDescriptors = new ArrayList<CSSStyleSheetDescriptor>();
-			PageContextFactory.updateContextWithCSSInfo(this);
-		}
-		
 		List<CSSStyleSheetDescriptor> descrs = new ArrayList<CSSStyleSheetDescriptor>();
-		descrs.addAll(fCSSStyleSheetDescriptors);
+		// Descriptors may be requested by content assist and by background indexing of CSS classes at once
+		synchronized (cssLock) {
+			if (fCSSStyleSheetDescriptors == null) {
+				fCSSStyleSheetDescriptors = new ArrayList<CSSStyleSheetDescriptor>();
+				PageContextFactory.updateContextWithCSSInfo(this);
+			}
+			descrs.addAll(fCSSStyleSheetDescriptors);
+		}
 		
 		for (ELContext includedContext : this.fIncludedContexts) {
 			if (includedContext instanceof ICSSContainerSupport) {
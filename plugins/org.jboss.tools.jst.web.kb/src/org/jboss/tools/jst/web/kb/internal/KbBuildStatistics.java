@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.scanner.ClassPathMonitor.LibraryScanTime;
+import org.jboss.tools.jst.web.kb.preferences.KBScopedPreferences;
+
+/**
+ * Rolling history of KB builds. For each build, the record keeps time and bytes
+ * allocated by the builder thread in each phase of the build (class path,
+ * resources, cobuilders, firing changes), in each file scanner, and in the
+ * slowest files, together with times of libraries scanned in the build.
+ * Bytes allocated by worker threads that digest and read stored declarations
+ * of libraries are added to the class path phase. Other work of the build 
+ * is done by the builder thread.
+ *
+ * Builds are recorded only for projects with preference EXPORT_PREFERENCE set
+ * in project, instance or default scope, then the history is written to file
+ * 'build-statistics.txt' of the plugin state location when workspace is saved.
+ */
+public class KbBuildStatistics {
+	private static final String PREFERENCE_KEY = WebKbPlugin.PLUGIN_ID + ".preferences.kbs."; //$NON-NLS-1$
+
+	/**
+	 * Boolean preference, if true builds of the project are recorded 
+	 * and the history is exported when workspace is saved.
+	 */
+	public static final String EXPORT_PREFERENCE = PREFERENCE_KEY + "export"; //$NON-NLS-1$
+
+	public static final String EXPORT_FILE = "build-statistics.txt"; //$NON-NLS-1$
+
+	static final int HISTORY_SIZE = 50;
+	static final int FILE_COUNT = 20;
+	static final int LIBRARY_COUNT = 20;
+
+	public static final String PHASE_STORAGE = "storage"; //$NON-NLS-1$
+	public static final String PHASE_CLASS_PATH = "class path"; //$NON-NLS-1$
+	public static final String PHASE_RESOURCES = "resources"; //$NON-NLS-1$
+	public static final String PHASE_EL_REFERENCES = "el references"; //$NON-NLS-1$
+	public static final String PHASE_FIRE_CHANGES = "fire changes"; //$NON-NLS-1$
+	public static final String PHASE_COBUILDER = "cobuilder "; //$NON-NLS-1$
+
+	private static final KbBuildStatistics INSTANCE = new KbBuildStatistics();
+
+	public static KbBuildStatistics getInstance() {
+		return INSTANCE;
+	}
+
+	private LinkedList<BuildRecord> history = new LinkedList<BuildRecord>();
+
+	private KbBuildStatistics() {}
+
+	/**
+	 * Returns true if builds of the project should be recorded.
+	 *
+	 * @param project
+	 * @return
+	 */
+	public static boolean isEnabled(IProject project) {
+		return KBScopedPreferences.getBoolean(project, EXPORT_PREFERENCE, false);
+	}
+
+	public BuildRecord startBuild(String project, int kind) {
+		return new BuildRecord(project, kind);
+	}
+
+	/**
+	 * Adds the record to the history, the oldest record is dropped
+	 * if the history is full.
+	 *
+	 * @param record
+	 */
+	public void finishBuild(BuildRecord record) {
+		record.duration = System.currentTimeMillis() - record.start;
+		synchronized (history) {
+			history.add(record);
+			if(history.size() > HISTORY_SIZE) {
+				history.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Returns records of recent builds, the oldest first.
+	 *
+	 * @return
+	 */
+	public List<BuildRecord> getHistory() {
+		synchronized (history) {
+			return new ArrayList<BuildRecord>(history);
+		}
+	}
+
+	public List<BuildRecord> getHistory(String project) {
+		List<BuildRecord> result = new ArrayList<BuildRecord>();
+		for (BuildRecord r: getHistory()) {
+			if(r.getProject().equals(project)) {
+				result.add(r);
+			}
+		}
+		return result;
+	}
+
+	public void clear() {
+		synchronized (history) {
+			history.clear();
+		}
+	}
+
+	/**
+	 * Writes a readable report of the history.
+	 *
+	 * @param writer
+	 */
+	public void export(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		for (BuildRecord r: getHistory()) {
+			r.print(out);
+			out.println();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Exports the history to the state location if builds were recorded.
+	 */
+	public void savingState() {
+		if(getHistory().isEmpty()) {
+			return;
+		}
+		File file = WebKbPlugin.getDefault().getStateLocation().append(EXPORT_FILE).toFile();
+		FileWriter writer = null;
+		try {
+			writer = new FileWriter(file);
+			export(writer);
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			if(writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					WebKbPlugin.getDefault().logError(e);
+				}
+			}
+		}
+	}
+
+	private static volatile Method allocatedBytesMethod = null;
+	private static volatile boolean allocatedBytesChecked = false;
+
+	/**
+	 * Returns bytes allocated by the current thread, or -1 if the JVM does not support it.
+	 * May be called by any thread.
+	 *
+	 * @return
+	 */
+	public static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!allocatedBytesChecked) {
+			try {
+				Class<?> c = ClassLoader.getSystemClassLoader().loadClass("com.sun.management.ThreadMXBean"); //$NON-NLS-1$
+				if(c.isInstance(bean)) {
+					allocatedBytesMethod = c.getMethod("getThreadAllocatedBytes", long.class); //$NON-NLS-1$
+				}
+			} catch (ClassNotFoundException e) {
+				//not supported
+			} catch (NoSuchMethodException e) {
+				//not supported
+			}
+			allocatedBytesChecked = true;
+		}
+		Method m = allocatedBytesMethod;
+		if(m != null) {
+			try {
+				return ((Long)m.invoke(bean, Thread.currentThread().getId())).longValue();
+			} catch (Exception e) {
+				allocatedBytesMethod = null;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Start point of a measured piece of work in the current thread.
+	 */
+	public static class Probe {
+		final long time;
+		final long allocated;
+
+		public Probe() {
+			allocated = getAllocatedBytes();
+			time = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Accumulated number of calls, time and allocated bytes of a named piece of work.
+	 */
+	public static class Counter {
+		private String name;
+		private int count;
+		private long time;
+		private long allocated;
+
+		Counter(String name) {
+			this.name = name;
+		}
+
+		void add(Probe probe) {
+			long t = System.nanoTime() - probe.time;
+			long a = probe.allocated < 0 ? -1 : getAllocatedBytes();
+			count++;
+			time += t;
+			addAllocated(a < 0 ? -1 : a - probe.allocated);
+		}
+
+		void addAllocated(long bytes) {
+			if(bytes < 0 || allocated < 0) {
+				allocated = -1;
+			} else {
+				allocated += bytes;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Time in nanoseconds.
+		 * @return
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Bytes allocated by the builder thread, and by worker threads 
+		 * if they were added, or -1 if not supported.
+		 * @return
+		 */
+		public long getAllocated() {
+			return allocated;
+		}
+
+		@Override
+		public String toString() {
+			return name + ": " + (time / 1000000) + " ms" //$NON-NLS-1$ //$NON-NLS-2$
+					+ (count > 1 ? ", " + count + " calls" : "") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ (allocated >= 0 ? ", " + (allocated / 1024) + " KB" : ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	static final Comparator<Counter> TIME_ORDER = new Comparator<Counter>() {
+		@Override
+		public int compare(Counter o1, Counter o2) {
+			return o1.time < o2.time ? -1 : o1.time == o2.time ? 0 : 1;
+		}
+	};
+
+	/**
+	 * Statistics of one build of a project.
+	 */
+	public static class BuildRecord {
+		private String project;
+		private int kind;
+		private long start = System.currentTimeMillis();
+		private long duration;
+		private Map<String, Counter> phases = new LinkedHashMap<String, Counter>();
+		private Map<String, Counter> scanners = new LinkedHashMap<String, Counter>();
+		private PriorityQueue<Counter> files = new PriorityQueue<Counter>(FILE_COUNT + 1, TIME_ORDER);
+		private List<LibraryScanTime> libraries = new ArrayList<LibraryScanTime>();
+
+		BuildRecord(String project, int kind) {
+			this.project = project;
+			this.kind = kind;
+		}
+
+		public String getProject() {
+			return project;
+		}
+
+		/**
+		 * Build kind as defined by IncrementalProjectBuilder.
+		 * @return
+		 */
+		public int getKind() {
+			return kind;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Duration of the build in milliseconds.
+		 * @return
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		public synchronized void addPhase(String name, Probe probe) {
+			add(phases, name, probe);
+		}
+
+		/**
+		 * Adds bytes allocated by worker threads to the phase, 
+		 * which has to be added by the builder thread first.
+		 *
+		 * @param name
+		 * @param bytes bytes, or -1 if not supported
+		 */
+		public synchronized void addWorkerAllocated(String name, long bytes) {
+			Counter c = phases.get(name);
+			if(c != null) {
+				c.addAllocated(bytes);
+			}
+		}
+
+		public synchronized void addScanner(String name, Probe probe) {
+			add(scanners, name, probe);
+		}
+
+		/**
+		 * Keeps the counter of the file if it is one of the slowest files of the build.
+		 *
+		 * @param path
+		 * @param probe
+		 */
+		public synchronized void addFile(String path, Probe probe) {
+			Counter c = new Counter(path);
+			c.add(probe);
+			files.add(c);
+			if(files.size() > FILE_COUNT) {
+				files.poll();
+			}
+		}
+
+		public synchronized void setLibraries(List<LibraryScanTime> times) {
+			libraries = new ArrayList<LibraryScanTime>(times.subList(0, Math.min(times.size(), LIBRARY_COUNT)));
+		}
+
+		private static void add(Map<String, Counter> counters, String name, Probe probe) {
+			Counter c = counters.get(name);
+			if(c == null) {
+				c = new Counter(name);
+				counters.put(name, c);
+			}
+			c.add(probe);
+		}
+
+		public synchronized Collection<Counter> getPhases() {
+			return new ArrayList<Counter>(phases.values());
+		}
+
+		public synchronized Collection<Counter> getScanners() {
+			return new ArrayList<Counter>(scanners.values());
+		}
+
+		/**
+		 * Returns the slowest files of the build, the slowest first.
+		 * @return
+		 */
+		public synchronized List<Counter> getFiles() {
+			List<Counter> result = new ArrayList<Counter>(files);
+			Collections.sort(result, Collections.reverseOrder(TIME_ORDER));
+			return result;
+		}
+
+		/**
+		 * Returns the slowest libraries scanned in the build, the slowest first.
+		 * @return
+		 */
+		public synchronized List<LibraryScanTime> getLibraries() {
+			return new ArrayList<LibraryScanTime>(libraries);
+		}
+
+		void print(PrintWriter out) {
+			out.println(project + " " + (kind == IncrementalProjectBuilder.FULL_BUILD ? "full" : "incremental") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ " build at " + new Date(start) + ": " + duration + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			for (Counter c: getPhases()) {
+				out.println("  phase " + c); //$NON-NLS-1$
+			}
+			for (Counter c: getScanners()) {
+				out.println("  scanner " + c); //$NON-NLS-1$
+			}
+			for (Counter c: getFiles()) {
+				out.println("  file " + c); //$NON-NLS-1$
+			}
+			for (LibraryScanTime t: getLibraries()) {
+				out.println("  library " + t); //$NON-NLS-1$
+			}
+		}
+	}
+}
@@ -31,7 +31,9 @@ import org.jboss.tools.jst.web.WebModelPlugin;
 import org.jboss.tools.jst.web.kb.KbProjectFactory;
 import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics.Probe;
 import org.jboss.tools.jst.web.kb.internal.scanner.IFileScanner;
+import org.jboss.tools.jst.web.kb.internal.scanner.LibraryDeclarationsCache;
 import org.jboss.tools.jst.web.kb.internal.scanner.LibraryScanner;
 import org.jboss.tools.jst.web.kb.internal.scanner.UsedJavaProjectCheck;
 import org.jboss.tools.jst.web.kb.internal.scanner.XMLScanner;
@@ -45,6 +47,7 @@ public class KbBuilder extends IncrementalProjectBuilder {
 	public static String BUILDER_ID = WebKbPlugin.PLUGIN_ID + ".kbbuilder"; //$NON-NLS-1$
 
 	KbResourceVisitor resourceVisitor = null;
+	KbBuildStatistics.BuildRecord statistics = null;
 
 	protected KbProject getKbProject() {
 		IProject p = getProject();
@@ -56,6 +59,7 @@ public class KbBuilder extends IncrementalProjectBuilder {
 		if(resourceVisitor == null) {
 			KbProject p = getKbProject();
 			resourceVisitor = new KbResourceVisitor(p);
+			resourceVisitor.setStatistics(statistics);
 		}
 		return resourceVisitor;
 	}
@@ -93,6 +97,13 @@ public class KbBuilder extends IncrementalProjectBuilder {
 			return null; 
 		}
 
+		statistics = KbBuildStatistics.isEnabled(getProject())
+				? KbBuildStatistics.getInstance().startBuild(getProject().getName(), kind) : null;
+		if(resourceVisitor != null) {
+			// Visitor is left by a build that failed.
+			resourceVisitor.setStatistics(statistics);
+		}
+
 		try {
 
 		long begin = System.currentTimeMillis();
@@ -101,10 +112,19 @@ public class KbBuilder extends IncrementalProjectBuilder {
 		
 		try {
 		
+			Probe probe = createProbe();
 			sp.resolveStorage(kind != FULL_BUILD);
+			addPhase(KbBuildStatistics.PHASE_STORAGE, probe);
 			
-			sp.getClassPath().build();
+			probe = createProbe();
+			int scanCount = sp.getClassPath().getScanCount();
+			sp.getClassPath().build(monitor);
 			new UsedJavaProjectCheck().check(sp);
+			addPhase(KbBuildStatistics.PHASE_CLASS_PATH, probe);
+			if(statistics != null && scanCount != sp.getClassPath().getScanCount()) {
+				statistics.addWorkerAllocated(KbBuildStatistics.PHASE_CLASS_PATH, sp.getClassPath().getLastWorkerAllocatedBytes());
+				statistics.setLibraries(sp.getClassPath().getLastScanTimes());
+			}
 
 			TypeInfoCollector.cleanCache();
 
@@ -129,7 +149,9 @@ public class KbBuilder extends IncrementalProjectBuilder {
 //			sp.postBuild();
 		
 		} finally {
+			Probe probe = createProbe();
 			sp.fireChanges();
+			addPhase(KbBuildStatistics.PHASE_FIRE_CHANGES, probe);
 		}
 		resourceVisitor = null;
 	
@@ -140,6 +162,11 @@ public class KbBuilder extends IncrementalProjectBuilder {
 			if(sp.exists()) {
 				throw e;
 			}
+		} finally {
+			if(statistics != null) {
+				KbBuildStatistics.getInstance().finishBuild(statistics);
+				statistics = null;
+			}
 		}
 
 		return null;
@@ -147,6 +174,7 @@ public class KbBuilder extends IncrementalProjectBuilder {
 
 	protected void fullBuild(final IProgressMonitor monitor)
 			throws CoreException {
+		Probe probe = createProbe();
 		try {
 			PageContextFactory.getInstance().cleanUp(getProject());
 			getResourceVisitor().setProgressMonitor(monitor);
@@ -154,14 +182,36 @@ public class KbBuilder extends IncrementalProjectBuilder {
 		} catch (CoreException e) {
 			WebModelPlugin.getPluginLog().logError(e);
 		}
+		addPhase(KbBuildStatistics.PHASE_RESOURCES, probe);
+		probe = createProbe();
+		ELReferenceIndex.getInstance().build(getProject(), getResourceVisitor().outs, monitor);
+		addPhase(KbBuildStatistics.PHASE_EL_REFERENCES, probe);
+	}
+
+	/**
+	 * Returns a new probe if the build is recorded, or null.
+	 */
+	private Probe createProbe() {
+		return statistics != null ? new Probe() : null;
+	}
+
+	private void addPhase(String name, Probe probe) {
+		if(statistics != null) {
+			statistics.addPhase(name, probe);
+		}
 	}
 
 	protected void incrementalBuild(IResourceDelta delta,
 			IProgressMonitor monitor) throws CoreException {
+		Probe probe = createProbe();
 		PageContextFactory.getInstance().cleanUp(delta);
 		// the visitor does the work.
 		getResourceVisitor().setProgressMonitor(monitor);
 		delta.accept(new SampleDeltaVisitor());
+		addPhase(KbBuildStatistics.PHASE_RESOURCES, probe);
+		probe = createProbe();
+		ELReferenceIndex.getInstance().build(delta, getResourceVisitor().outs, monitor);
+		addPhase(KbBuildStatistics.PHASE_EL_REFERENCES, probe);
 	}
 	
 	/**
@@ -184,6 +234,8 @@ public class KbBuilder extends IncrementalProjectBuilder {
 		KbProject sp = getKbProject();
 		if(sp != null) sp.clean();
 		PageContextFactory.getInstance().cleanUp(getProject());
+		ELReferenceIndex.getInstance().clean(getProject());
+		LibraryDeclarationsCache.getInstance().clear();
 	}
 
 	static String ATTR_CLASS = "class";
@@ -219,10 +271,12 @@ public class KbBuilder extends IncrementalProjectBuilder {
 	void buildExtensionModels(int kind, Map<String,String> args, IProgressMonitor monitor) throws CoreException {
 		for (Class<?> c: getCobuilders()) {
 			checkCanceled(monitor);
+			Probe probe = createProbe();
 			try {
 				IncrementalProjectBuilder builder = (IncrementalProjectBuilder)c.newInstance();
 				KbProjectFactory.setProjectToBuilder(builder, getProject());
 				((IIncrementalProjectBuilderExtension)builder).build(kind, args, monitor);
+				addPhase(KbBuildStatistics.PHASE_COBUILDER + c.getName(), probe);
 			} catch (CoreException e) {
 				WebKbPlugin.getDefault().logError(e);
 			} catch (InstantiationException e) {
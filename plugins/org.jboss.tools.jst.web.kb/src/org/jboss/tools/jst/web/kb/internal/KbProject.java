@@ -51,15 +51,9 @@ import org.jboss.tools.jst.web.kb.internal.scanner.ClassPathMonitor;
 import org.jboss.tools.jst.web.kb.internal.scanner.LibraryProxy;
 import org.jboss.tools.jst.web.kb.internal.scanner.LoadedDeclarations;
 import org.jboss.tools.jst.web.kb.internal.taglib.AbstractTagLib;
-import org.jboss.tools.jst.web.kb.internal.taglib.FaceletTagLibrary;
-import org.jboss.tools.jst.web.kb.internal.taglib.FacesConfigTagLibrary;
-import org.jboss.tools.jst.web.kb.internal.taglib.TLDLibrary;
 import org.jboss.tools.jst.web.kb.internal.taglib.composite.CompositeTagLibrary;
-import org.jboss.tools.jst.web.kb.internal.taglib.myfaces.MyFacesTagLibrary;
 import org.jboss.tools.jst.web.kb.require.KbRequireBuilder;
 import org.jboss.tools.jst.web.kb.require.KbRequireDefinition;
-import org.jboss.tools.jst.web.kb.taglib.ICompositeTagLibrary;
-import org.jboss.tools.jst.web.kb.taglib.ICustomTagLibrary;
 import org.jboss.tools.jst.web.kb.taglib.INameSpaceStorage;
 import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
 import org.w3c.dom.Element;
@@ -98,6 +92,8 @@ public class KbProject extends KbObject implements IKbProject {
 
 	NameSpaceStorage namespacesStorage = new NameSpaceStorage(this);
 
+	SourcePathStorage sourcePathStorage = null;
+
 	public KbProject() {}
 
 	public void setMock() {
@@ -355,7 +351,11 @@ public class KbProject extends KbObject implements IKbProject {
 				root = XMLUtilities.getElement(file, null);
 				if(root != null) {
 					loadProjectDependencies(root);
-					if(XMLUtilities.getUniqueChild(root, "paths") != null) { //$NON-NLS-1$
+					SourcePathStorage storage = getSourcePathStorage();
+					if(storage != null && storage.exists()) {
+						loadSourcePaths(storage);
+					} else if(XMLUtilities.getUniqueChild(root, "paths") != null) { //$NON-NLS-1$
+						// Storage of previous versions, it will be converted at next store.
 						loadSourcePaths2(root);
 					}
 				}
@@ -397,6 +397,10 @@ public class KbProject extends KbObject implements IKbProject {
 		if(file != null && file.isFile()) {
 			file.delete();
 		}
+		SourcePathStorage storage = getSourcePathStorage();
+		if(storage != null) {
+			storage.clear();
+		}
 		namespacesStorage.clear();
 		classPath.clean();
 		postponeFiring();
@@ -469,21 +473,66 @@ public class KbProject extends KbObject implements IKbProject {
 		if(file != null) {
 			file.getParentFile().mkdirs();
 		
-			Element root = XMLUtilities.createDocumentElement("kb-project"); //$NON-NLS-1$
-			storeProjectDependencies(root);
-
-			storeSourcePaths2(root);
-
-			if(validationContext != null) validationContext.store(root);
-			includeModel.store(root);
-			namespacesStorage.store(root);
-		
+			Element root = createStorageElement(false);
 			XMLUtilities.serialize(root, file.getAbsolutePath());
+
+			storeSourcePaths(getSourcePathStorage());
 		
 			modifications = 0;
 		}
 	}
 
+	/**
+	 * Writes the whole model to one XML file, as it was stored by previous versions.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void exportToXML(File file) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		Element root = createStorageElement(true);
+		XMLUtilities.serialize(root, file.getAbsolutePath());
+	}
+
+	/**
+	 * Loads the model from one XML file written by exportToXML() 
+	 * or stored by previous versions. Loaded source paths will be
+	 * stored at next store.
+	 * 
+	 * @param file
+	 */
+	public void importFromXML(File file) {
+		Element root = XMLUtilities.getElement(file, null);
+		if(root == null) {
+			return;
+		}
+		postponeFiring();
+		try {
+			loadProjectDependencies(root);
+			loadSourcePaths2(root);
+			getValidationContext().load(root);
+			includeModel.load(root);
+			namespacesStorage.load(root);
+		} finally {
+			fireChanges();
+		}
+		modifications++;
+	}
+
+	private Element createStorageElement(boolean withSourcePaths) {
+		Element root = XMLUtilities.createDocumentElement("kb-project"); //$NON-NLS-1$
+		storeProjectDependencies(root);
+
+		if(withSourcePaths) {
+			storeSourcePaths2(root);
+		}
+
+		if(validationContext != null) validationContext.store(root);
+		includeModel.store(root);
+		namespacesStorage.store(root);
+		return root;
+	}
+
 	/*
 	 * 
 	 */
@@ -499,8 +548,32 @@ public class KbProject extends KbObject implements IKbProject {
 		}
 	}
 	
+	/*
+	 * Declarations of source paths are stored in folder projects/<project name>.paths
+	 */
+	public SourcePathStorage getSourcePathStorage() {
+		if(sourcePathStorage == null) {
+			File file = getStorageFile();
+			if(file == null) {
+				return null;
+			}
+			sourcePathStorage = new SourcePathStorage(new File(file.getParentFile(), project.getName() + ".paths")); //$NON-NLS-1$
+		}
+		return sourcePathStorage;
+	}
+
+	private void setSourcePathDirty(IPath path) {
+		if(sourcePathStorage != null || (project != null && getStorageFile() != null)) {
+			getSourcePathStorage().setDirty(path);
+		}
+	}
+
 	public void clearStorage() {
 		getStorageFile().delete();
+		SourcePathStorage storage = getSourcePathStorage();
+		if(storage != null) {
+			storage.clear();
+		}
 	}
 
 	/*
@@ -566,69 +639,60 @@ public class KbProject extends KbObject implements IKbProject {
 			String p = paths[i].getAttribute("value"); //$NON-NLS-1$
 			if(p == null || p.trim().length() == 0) continue;
 			IPath path = new Path(p.trim());
-			if(sourcePaths2.containsKey(path)) continue;
+			if(sourcePaths2.containsKey(path) || !isValidSourcePath(path)) continue;
+			loadSourcePath(paths[i], path, context);
+			setSourcePathDirty(path);
+		}
+	}
 
-			if(!getClassPath().hasPath(path)) {
-				boolean ok = false;
-				IFolder folder = ResourcesPlugin.getWorkspace().getRoot().getFolder(path);
-				if(folder != null && folder.exists() && folder.isSynchronized(IResource.DEPTH_INFINITE)) {
-					ok = true;
-				} else {
-					IFile f = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
-					if(f != null && f.exists() && f.isSynchronized(IResource.DEPTH_ZERO)) {
-						ok = true;
-					}
-				}
-				if(!ok) continue;
+	/**
+	 * Loads declarations of valid source paths from the storage. 
+	 * Stored data of paths which are no more valid are removed at next store.
+	 * 
+	 * @param storage
+	 */
+	private void loadSourcePaths(SourcePathStorage storage) {
+		Properties context = new Properties();
+		context.put("kbProject", this); //$NON-NLS-1$
+		for (IPath path: storage.getPaths()) {
+			if(sourcePaths2.containsKey(path)) continue;
+			Element element = isValidSourcePath(path) ? storage.read(path) : null;
+			if(element == null) {
+				storage.setDirty(path);
+				continue;
 			}
-			
-			context.put(XMLStoreConstants.ATTR_PATH, path);
-
-			long t1 = System.currentTimeMillis();
-			LoadedDeclarations ds = new LoadedDeclarations();
-
-			Element libraries = XMLUtilities.getUniqueChild(paths[i], "libraries"); //$NON-NLS-1$
-			if(libraries != null) {
-				Element[] cs = XMLUtilities.getChildren(libraries, KbXMLStoreConstants.TAG_LIBRARY);
-				for (Element library: cs) {
-					String cls = library.getAttribute(XMLStoreConstants.ATTR_CLASS);
-					AbstractTagLib tagLib = null;
-					if(KbXMLStoreConstants.CLS_TLD_LIBRARY.equals(cls)) {
-						tagLib = new TLDLibrary();
-					} else if(KbXMLStoreConstants.CLS_FACELET_LIBRARY.equals(cls)) {
-						tagLib = new FaceletTagLibrary();
-					} else if(KbXMLStoreConstants.CLS_FACESCONFIG_LIBRARY.equals(cls)) {
-						tagLib = new FacesConfigTagLibrary();
-					} else if(KbXMLStoreConstants.CLS_COMPOSITE_LIBRARY.equals(cls)) {
-						tagLib = new CompositeTagLibrary();
-					} else if(KbXMLStoreConstants.CLS_MYFACES_LIBRARY.equals(cls)) {
-						tagLib = new MyFacesTagLibrary();
-					} else {
-						//consider other cases;
-					}
-					if(tagLib != null && !(tagLib instanceof ICompositeTagLibrary) && !(tagLib instanceof MyFacesTagLibrary)) {
-						LibraryProxy proxy = new LibraryProxy(tagLib);
-						proxy.loadXML(library, context);
-						tagLib = proxy.getLibrary();
-					} else if(tagLib != null) {
-						tagLib.loadXML(library, context);
-					}
-					if(tagLib != null) {
-						ds.getLibraries().add(tagLib);
-					}
-				}
+			loadSourcePath(element, path, context);
+			storage.clearDirty(path);
+		}
+	}
+
+	private boolean isValidSourcePath(IPath path) {
+		if(!getClassPath().hasPath(path)) {
+			IFolder folder = ResourcesPlugin.getWorkspace().getRoot().getFolder(path);
+			if(folder != null && folder.exists() && folder.isSynchronized(IResource.DEPTH_INFINITE)) {
+				return true;
 			}
+			IFile f = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
+			return f != null && f.exists() && f.isSynchronized(IResource.DEPTH_ZERO);
+		}
+		return true;
+	}
 
-			getClassPath().pathLoaded(path);
+	private void loadSourcePath(Element pathElement, IPath path, Properties context) {
+		context.put(XMLStoreConstants.ATTR_PATH, path);
 
-			registerComponents(ds, path);
-			long t2 = System.currentTimeMillis();
-			if(statistics != null) {
-				statistics.add(new Long(t2 - t1));
-				if(t2 - t1 > 30) {
-					System.out.println("--->" + statistics.size() + " " + (t2 - t1)); //$NON-NLS-1$ //$NON-NLS-2$
-					System.out.println("stop"); //$NON-NLS-1$
-				}
+		long t1 = System.currentTimeMillis();
+		LoadedDeclarations ds = LibraryProxy.loadLibraries(pathElement, context);
+
+		getClassPath().pathLoaded(path);
+
+		registerComponents(ds, path);
+		long t2 = System.currentTimeMillis();
+		if(statistics != null) {
+			statistics.add(new Long(t2 - t1));
+			if(t2 - t1 > 30) {
+				System.out.println("--->" + statistics.size() + " " + (t2 - t1)); //$NON-NLS-1$ //$NON-NLS-2$
+				System.out.println("stop"); //$NON-NLS-1$
 			}
 		}
 	}
@@ -638,32 +702,62 @@ public class KbProject extends KbObject implements IKbProject {
 		Element sourcePathsElement = XMLUtilities.createElement(root, "paths"); //$NON-NLS-1$
 		synchronized(sourcePaths2) {
 		for (IPath path : sourcePaths2.keySet()) {
-			IFile f = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
-			if(f != null && f.exists() && f.getProject() != project) {
+			if(!isStoredSourcePath(path)) {
 				continue;
 			}
-
-			context.put(XMLStoreConstants.ATTR_PATH, path);
-			LoadedDeclarations ds = sourcePaths2.get(path);
 			Element pathElement = XMLUtilities.createElement(sourcePathsElement, "path"); //$NON-NLS-1$
-			pathElement.setAttribute("value", path.toString()); //$NON-NLS-1$
-
-			List<ITagLibrary> fs = ds.getLibraries();
-			if(fs != null && !fs.isEmpty()) {
-				Element cse = XMLUtilities.createElement(pathElement, "libraries"); //$NON-NLS-1$
-				for (ITagLibrary d: fs) {
-					if(d instanceof ICustomTagLibrary) continue;
-					AbstractTagLib t = (AbstractTagLib)d;
-					if(!(t instanceof ICompositeTagLibrary) && !(t instanceof MyFacesTagLibrary)) {
-						LibraryProxy proxy = new LibraryProxy(t);
-						proxy.toXML(cse, context);
-					} else {
-						t.toXML(cse, context);
-					}
-				}
+			storeSourcePath(pathElement, path, sourcePaths2.get(path), context);
+		}
+		}
+	}
+
+	/**
+	 * Writes declarations of source paths changed since the last store,
+	 * and removes stored declarations of removed source paths.
+	 * 
+	 * @param storage
+	 * @throws IOException
+	 */
+	private void storeSourcePaths(SourcePathStorage storage) throws IOException {
+		if(storage == null) {
+			return;
+		}
+		boolean converted = !storage.exists();
+		Set<IPath> paths = storage.takeDirty();
+		if(converted) {
+			synchronized(sourcePaths2) {
+				paths = new HashSet<IPath>(sourcePaths2.keySet());
 			}
 		}
+		Properties context = new Properties();
+		for (IPath path: paths) {
+			LoadedDeclarations ds = null;
+			synchronized(sourcePaths2) {
+				ds = sourcePaths2.get(path);
+			}
+			if(ds == null || !isStoredSourcePath(path)) {
+				storage.remove(path);
+				continue;
+			}
+			Element pathElement = XMLUtilities.createDocumentElement("path"); //$NON-NLS-1$
+			synchronized(sourcePaths2) {
+				storeSourcePath(pathElement, path, ds, context);
+			}
+			storage.write(path, pathElement);
 		}
+		storage.storeIndex();
+	}
+
+	private boolean isStoredSourcePath(IPath path) {
+		IFile f = ResourcesPlugin.getWorkspace().getRoot().getFile(path);
+		return f == null || !f.exists() || f.getProject() == project;
+	}
+
+	private void storeSourcePath(Element pathElement, IPath path, LoadedDeclarations ds, Properties context) {
+		context.put(XMLStoreConstants.ATTR_PATH, path);
+		pathElement.setAttribute("value", path.toString()); //$NON-NLS-1$
+
+		LibraryProxy.storeLibraries(pathElement, ds, context);
 	}
 
 	/*
@@ -774,12 +868,14 @@ public class KbProject extends KbObject implements IKbProject {
 				synchronized(sourcePaths2) {
 					sourcePaths2.put(source, ds);
 				}
+				setSourcePathDirty(source);
 			}
 			return;
 		}
 		synchronized(sourcePaths2) {
 			sourcePaths2.put(source, ds);
 		}
+		setSourcePathDirty(source);
 
 		Map<Object,ITagLibrary> currentLibraries = findLibraryDeclarations(source);
 		List<Change> addedLibraries = null;
@@ -875,6 +971,7 @@ public class KbProject extends KbObject implements IKbProject {
 		synchronized (sourcePaths2) {
 			sourcePaths2.remove(source);
 		}
+		setSourcePathDirty(source);
 
 		List<Change> changes = null;
 		
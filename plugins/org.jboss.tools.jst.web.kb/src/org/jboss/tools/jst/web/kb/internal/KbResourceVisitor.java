@@ -23,6 +23,7 @@ import org.jboss.tools.common.model.project.ProjectHome;
 import org.jboss.tools.common.model.util.EclipseResourceUtil;
 import org.jboss.tools.common.web.WebUtils;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics.Probe;
 import org.jboss.tools.jst.web.kb.internal.scanner.IFileScanner;
 import org.jboss.tools.jst.web.kb.internal.scanner.JSF2ResourcesScanner;
 import org.jboss.tools.jst.web.kb.internal.scanner.LoadedDeclarations;
@@ -47,6 +48,7 @@ public class KbResourceVisitor implements IResourceVisitor {
 	Set<IPath> jsf2resourcesProcessed = new HashSet<IPath>();
 	
 	IProgressMonitor monitor = null;
+	KbBuildStatistics.BuildRecord statistics = null;
 
 	public KbResourceVisitor(KbProject p) {
 		this.p = p;
@@ -82,6 +84,16 @@ public class KbResourceVisitor implements IResourceVisitor {
 		this.monitor = monitor;
 	}
 
+	/**
+	 * Sets the record of the current build that receives time spent
+	 * by scanners and on files, may be null.
+	 * 
+	 * @param statistics
+	 */
+	public void setStatistics(KbBuildStatistics.BuildRecord statistics) {
+		this.statistics = statistics;
+	}
+
 	public IResourceVisitor getVisitor() {
 		return this;
 	}
@@ -102,9 +114,11 @@ public class KbResourceVisitor implements IResourceVisitor {
 			for (int i = 0; i < FILE_SCANNERS.length; i++) {
 				IFileScanner scanner = FILE_SCANNERS[i];
 				if(scanner.isRelevant(f)) {
-//					long t = System.currentTimeMillis();
+					Probe probe = statistics != null ? new Probe() : null;
 					if(!scanner.isLikelyComponentSource(f)) {
 						p.pathRemoved(f.getFullPath());
+						addScanner(scanner.getClass().getSimpleName(), probe);
+						addFile(f, probe);
 						return false;
 					}
 					LoadedDeclarations c = null;
@@ -114,9 +128,8 @@ public class KbResourceVisitor implements IResourceVisitor {
 						WebKbPlugin.getDefault().logError(e);
 					}
 					if(c != null) componentsLoaded(c, f);
-//					long dt = System.currentTimeMillis() - t;
-//					timeUsed += dt;
-//					System.out.println("Time=" + timeUsed);
+					addScanner(scanner.getClass().getSimpleName(), probe);
+					addFile(f, probe);
 					break;
 				}
 			}
@@ -168,14 +181,15 @@ public class KbResourceVisitor implements IResourceVisitor {
 	void processJSF2Resources(IPath jsf2resource) {
 		if (jsf2resourcesProcessed.contains(jsf2resource)) return;
 		jsf2resourcesProcessed.add(jsf2resource);
-		IResource jsf2resourcesFolder = ResourcesPlugin.getWorkspace().getRoot().getFolder(jsf2resource);
+		IFolder jsf2resourcesFolder = ResourcesPlugin.getWorkspace().getRoot().getFolder(jsf2resource);
 		if(!jsf2resourcesFolder.exists()) {
 			return;
 		}
 		JSF2ResourcesScanner scanner = new JSF2ResourcesScanner(monitor);
+		Probe probe = statistics != null ? new Probe() : null;
 		Map<IPath,LoadedDeclarations> result = null;
 		try {
-			result = scanner.parse((IFolder) jsf2resourcesFolder, p);
+			result = scanner.parse(jsf2resourcesFolder, p);
 		} catch (ScannerException e) {
 			WebKbPlugin.getDefault().logError(e);
 		}
@@ -186,8 +200,21 @@ public class KbResourceVisitor implements IResourceVisitor {
 			}
 			p.updateChildPaths(jsf2resourcesFolder.getFullPath(), result.keySet());
 		}
+		addScanner(scanner.getClass().getSimpleName(), probe);
 	}
-	
+
+	private void addScanner(String name, Probe probe) {
+		if(probe != null) {
+			statistics.addScanner(name, probe);
+		}
+	}
+
+	private void addFile(IFile file, Probe probe) {
+		if(probe != null) {
+			statistics.addFile(file.getFullPath().toString(), probe);
+		}
+	}
+
 	void componentsLoaded(LoadedDeclarations c, IResource resource) {
 		if(c == null || c.getLibraries().size() == 0) return;
 		p.registerComponents(c, resource.getFullPath());
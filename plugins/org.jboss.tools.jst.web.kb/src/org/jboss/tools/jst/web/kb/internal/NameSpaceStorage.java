@@ -10,6 +10,8 @@
  ******************************************************************************/ 
 package org.jboss.tools.jst.web.kb.internal;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -21,64 +23,63 @@ import org.jboss.tools.jst.web.kb.taglib.INameSpaceStorage;
 import org.w3c.dom.Element;
 
 /**
+ * Prefixes are kept in an immutable prefix tree. Writers publish a new
+ * tree, sharing unchanged nodes with the old one, so that readers
+ * do not lock and a query for prefixes starting with a mask only visits
+ * the subtree of the mask.
  * 
  * @author Viacheslav Kabanovich
  *
  */
 public class NameSpaceStorage implements INameSpaceStorage {
 	KbProject project;
-	private Map<String, Set<String>> urisByPrefix = new HashMap<String, Set<String>>();
+	private volatile Node root = Node.EMPTY;
 
 	public NameSpaceStorage(KbProject project) {
 		this.project = project;
 	}
 
-	public synchronized void add(String prefix, String uri) {
-		Set<String> uris = urisByPrefix.get(prefix);
-		if(uris == null || !uris.contains(uri)) {
-			//new uri, check that it exists
-			if(project.getTagLibraries(uri).length == 0) {
-				return;
-			}
+	public void add(String prefix, String uri) {
+		Node node = root.find(prefix);
+		if(node != null && node.uris.contains(uri)) {
+			return;
+		}
+		//new uri, check that it exists
+		if(project.getTagLibraries(uri).length == 0) {
+			return;
 		}
-		if(uris == null) {
-			uris = new HashSet<String>();
-			urisByPrefix.put(prefix, uris);
+		synchronized (this) {
+			root = root.add(prefix, 0, uri);
 		}
-		uris.add(uri);
 	}
 
-	public synchronized Set<String> getURIs(String prefix) {
+	public Set<String> getURIs(String prefix) {
 		Set<String> result = new HashSet<String>();
-		Set<String> urls = urisByPrefix.get(prefix);
-		if(urls != null) {
-			result.addAll(urls);
+		Node node = root.find(prefix);
+		if(node != null) {
+			result.addAll(node.uris);
 		}
 		return result;
 	}
 
-	public synchronized Set<String> getPrefixes(String prefixMask) {
+	public Set<String> getPrefixes(String prefixMask) {
 		Set<String> result = new HashSet<String>();
-		for (String prefix: urisByPrefix.keySet()) {
-			if(prefix.startsWith(prefixMask)) {
-				Set<String> urls = urisByPrefix.get(prefix);
-				if(!urls.isEmpty()) {
-					result.add(prefix);
-				}
-			}
+		Node node = root.find(prefixMask);
+		if(node != null) {
+			node.collectPrefixes(new StringBuilder(prefixMask), result);
 		}
 		return result;
 	}
 
 	public synchronized void clear() {
-		urisByPrefix.clear();
+		root = Node.EMPTY;
 	}
 
 	static final String ELEMENT_URIS = "uris";
 	static final String ELEMENT_URI = "uri";
 	static final String ELEMENT_PREFIX = "prefix";
 
-	public synchronized void store(Element root) {
+	public void store(Element root) {
 		Element urisElement = XMLUtilities.createElement(root, ELEMENT_URIS);
 		Map<String, Set<String>> uris = revert();
 		for (String uri: uris.keySet()) {
@@ -92,7 +93,7 @@ public class NameSpaceStorage implements INameSpaceStorage {
 		}
 	}
 
-	public synchronized void load(Element root) {
+	public void load(Element root) {
 		Element urisElement = XMLUtilities.getUniqueChild(root, ELEMENT_URIS);
 		if(urisElement != null) {
 			for (Element uriElement: XMLUtilities.getChildren(urisElement, ELEMENT_URI)) {
@@ -109,6 +110,8 @@ public class NameSpaceStorage implements INameSpaceStorage {
 
 	private Map<String, Set<String>> revert() {
 		Map<String, Set<String>> result = new HashMap<String, Set<String>>();
+		Map<String, Set<String>> urisByPrefix = new HashMap<String, Set<String>>();
+		root.collectURIs(new StringBuilder(), urisByPrefix);
 		for (String prefix: urisByPrefix.keySet()) {
 			Set<String> uris = urisByPrefix.get(prefix);
 			for (String uri: uris) {
@@ -123,4 +126,87 @@ public class NameSpaceStorage implements INameSpaceStorage {
 		return result;
 	}
 
+	/**
+	 * Immutable node of the prefix tree. Children are sorted by character.
+	 */
+	static final class Node {
+		static final Node EMPTY = new Node(new char[0], new Node[0], Collections.<String>emptySet());
+
+		final char[] keys;
+		final Node[] children;
+		final Set<String> uris;
+
+		Node(char[] keys, Node[] children, Set<String> uris) {
+			this.keys = keys;
+			this.children = children;
+			this.uris = uris;
+		}
+
+		Node find(String prefix) {
+			Node node = this;
+			for (int i = 0; i < prefix.length() && node != null; i++) {
+				int k = Arrays.binarySearch(node.keys, prefix.charAt(i));
+				node = k < 0 ? null : node.children[k];
+			}
+			return node;
+		}
+
+		/**
+		 * Returns a copy of this node with the uri added to the node of prefix.substring(index).
+		 */
+		Node add(String prefix, int index, String uri) {
+			if(index == prefix.length()) {
+				if(uris.contains(uri)) {
+					return this;
+				}
+				Set<String> us = new HashSet<String>(uris);
+				us.add(uri);
+				return new Node(keys, children, Collections.unmodifiableSet(us));
+			}
+			char c = prefix.charAt(index);
+			int k = Arrays.binarySearch(keys, c);
+			if(k >= 0) {
+				Node child = children[k].add(prefix, index + 1, uri);
+				if(child == children[k]) {
+					return this;
+				}
+				Node[] cs = children.clone();
+				cs[k] = child;
+				return new Node(keys, cs, uris);
+			}
+			k = -k - 1;
+			char[] ks = new char[keys.length + 1];
+			Node[] cs = new Node[children.length + 1];
+			System.arraycopy(keys, 0, ks, 0, k);
+			System.arraycopy(children, 0, cs, 0, k);
+			ks[k] = c;
+			cs[k] = EMPTY.add(prefix, index + 1, uri);
+			System.arraycopy(keys, k, ks, k + 1, keys.length - k);
+			System.arraycopy(children, k, cs, k + 1, children.length - k);
+			return new Node(ks, cs, uris);
+		}
+
+		void collectPrefixes(StringBuilder path, Set<String> result) {
+			if(!uris.isEmpty()) {
+				result.add(path.toString());
+			}
+			for (int i = 0; i < keys.length; i++) {
+				path.append(keys[i]);
+				children[i].collectPrefixes(path, result);
+				path.setLength(path.length() - 1);
+			}
+		}
+
+		void collectURIs(StringBuilder path, Map<String, Set<String>> result) {
+			if(!uris.isEmpty()) {
+				result.put(path.toString(), uris);
+			}
+			for (int i = 0; i < keys.length; i++) {
+				path.append(keys[i]);
+				children[i].collectURIs(path, result);
+				path.setLength(path.length() - 1);
+			}
+		}
+	}
+
 }
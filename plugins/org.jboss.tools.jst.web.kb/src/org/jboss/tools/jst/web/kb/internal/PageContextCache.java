@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.jboss.tools.common.el.core.resolver.ELContext;
+import org.jboss.tools.common.el.core.resolver.SimpleELContext;
+import org.jboss.tools.jst.web.kb.IIncludedContextSupport;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.preferences.KBScopedPreferences;
+
+/**
+ * Bounded LRU cache of page contexts created by PageContextFactory.
+ *
+ * The cache is limited both by the number of entries and by the total weight
+ * of cached contexts, where the weight is the length of the source of the page
+ * and is used as an estimate of the memory retained by its context.
+ *
+ * For each cached context the cache keeps the set of files included into it
+ * (directly or through other included pages) and a reverse index from an included
+ * file to the cached contexts that depend on it, so that a change of a file
+ * invalidates exactly the contexts which include it.
+ *
+ * Lookups do not lock: entries are kept in a concurrent map and the recency of
+ * an entry is a time stamp updated on each hit. Modifications are serialized on
+ * a separate lock. Resources passed to invalidateLater() are hidden from readers
+ * at once and removed from the cache by a background job in one batch.
+ */
+public class PageContextCache {
+
+	private static final String PREFERENCE_KEY = WebKbPlugin.PLUGIN_ID + ".preferences.pcc."; //$NON-NLS-1$
+	public static final String MAX_ENTRIES_PREFERENCE = PREFERENCE_KEY + "maxEntries"; //$NON-NLS-1$
+	public static final String MAX_WEIGHT_PREFERENCE = PREFERENCE_KEY + "maxWeight"; //$NON-NLS-1$
+
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	public static final long DEFAULT_MAX_WEIGHT = 50L * 1024 * 1024;
+
+	private int maxEntries;
+	private long maxWeight;
+
+	private Map<IFile, Entry> entries = new ConcurrentHashMap<IFile, Entry>();
+
+	/*
+	 * Included file -> files of the cached contexts that include it.
+	 * Guarded by lock.
+	 */
+	private Map<IFile, Set<IFile>> dependents = new HashMap<IFile, Set<IFile>>();
+
+	/*
+	 * Resources (files or projects) waiting for the invalidation job -> stamp of the request.
+	 */
+	private ConcurrentHashMap<IResource, Long> pending = new ConcurrentHashMap<IResource, Long>();
+
+	private Object lock = new Object();
+	private volatile long weight;
+
+	private AtomicLong clock = new AtomicLong();
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+	private AtomicLong invalidations = new AtomicLong();
+
+	private InvalidationJob invalidationJob = new InvalidationJob();
+
+	public PageContextCache() {
+		maxEntries = KBScopedPreferences.getInt(null, MAX_ENTRIES_PREFERENCE, DEFAULT_MAX_ENTRIES);
+		maxWeight = KBScopedPreferences.getLong(null, MAX_WEIGHT_PREFERENCE, DEFAULT_MAX_WEIGHT);
+	}
+
+	public PageContextCache(int maxEntries, long maxWeight) {
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Returns the cached context for the file, or null if there is none.
+	 * The method never blocks.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public SimpleELContext get(IFile file) {
+		Entry entry = entries.get(file);
+		if(entry == null || isPending(entry)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		entry.lastAccess = clock.incrementAndGet();
+		hits.incrementAndGet();
+		return entry.context;
+	}
+
+	/**
+	 * Puts the context to the cache. Contexts without resource are not cached.
+	 * If the cache exceeds its bounds, least recently used contexts are evicted.
+	 *
+	 * @param context
+	 * @param weight the estimated size of the context, usually the length of the page source
+	 */
+	public void put(SimpleELContext context, long weight) {
+		IFile file = context.getResource();
+		if(file == null) {
+			return;
+		}
+		Entry entry = new Entry(context, weight < 0 ? 0 : weight);
+		entry.lastAccess = clock.incrementAndGet();
+		synchronized (lock) {
+			removeEntry(file);
+			entries.put(file, entry);
+			this.weight += entry.weight;
+			for (IFile dependency: entry.dependencies) {
+				Set<IFile> set = dependents.get(dependency);
+				if(set == null) {
+					set = new HashSet<IFile>();
+					dependents.put(dependency, set);
+				}
+				set.add(file);
+			}
+			evict();
+		}
+	}
+
+	/**
+	 * Removes the context of the file and all the cached contexts which include the file.
+	 *
+	 * @param file
+	 * @return files which contexts have been removed
+	 */
+	public Set<IFile> remove(IFile file) {
+		Set<IFile> result = new HashSet<IFile>();
+		synchronized (lock) {
+			removeWithDependents(file, result);
+		}
+		invalidations.addAndGet(result.size());
+		return result;
+	}
+
+	/**
+	 * Removes contexts of all files of the project and all the cached contexts which include them.
+	 *
+	 * @param project
+	 * @return files which contexts have been removed
+	 */
+	public Set<IFile> remove(IProject project) {
+		Set<IFile> result = new HashSet<IFile>();
+		synchronized (lock) {
+			removeProject(project, result);
+		}
+		invalidations.addAndGet(result.size());
+		return result;
+	}
+
+	/**
+	 * Hides contexts of the resources (files or projects) and of the contexts which
+	 * include them from readers immediately, and schedules their removal from the cache
+	 * as one batch in a background job.
+	 *
+	 * @param resources
+	 */
+	public void invalidateLater(Collection<? extends IResource> resources) {
+		if(resources.isEmpty()) {
+			return;
+		}
+		Long stamp = Long.valueOf(clock.incrementAndGet());
+		for (IResource resource: resources) {
+			pending.put(resource, stamp);
+		}
+		invalidationJob.schedule();
+	}
+
+	/**
+	 * Removes from the cache all the contexts requested by invalidateLater().
+	 * Is called by the invalidation job, may be called directly to apply
+	 * pending invalidations at once.
+	 */
+	public void applyPendingInvalidations() {
+		if(pending.isEmpty()) {
+			return;
+		}
+		Map<IResource, Long> batch = new HashMap<IResource, Long>(pending);
+		Set<IFile> result = new HashSet<IFile>();
+		synchronized (lock) {
+			for (IResource resource: batch.keySet()) {
+				if(resource instanceof IFile) {
+					removeWithDependents((IFile)resource, result);
+				} else if(resource instanceof IProject) {
+					removeProject((IProject)resource, result);
+				}
+			}
+		}
+		// Requests repeated while the batch was being applied remain pending.
+		for (Map.Entry<IResource, Long> e: batch.entrySet()) {
+			pending.remove(e.getKey(), e.getValue());
+		}
+		invalidations.addAndGet(result.size());
+	}
+
+	public void clear() {
+		synchronized (lock) {
+			entries.clear();
+			dependents.clear();
+			weight = 0;
+		}
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public boolean contains(IFile file) {
+		Entry entry = entries.get(file);
+		return entry != null && !isPending(entry);
+	}
+
+	/**
+	 * Returns files of the cached contexts which include the file, directly or indirectly.
+	 *
+	 * @param file
+	 * @return
+	 */
+	public Set<IFile> getDependents(IFile file) {
+		synchronized (lock) {
+			Set<IFile> ds = dependents.get(file);
+			return ds == null ? Collections.<IFile>emptySet() : new HashSet<IFile>(ds);
+		}
+	}
+
+	public Statistics getStatistics() {
+		return new Statistics(entries.size(), weight, maxEntries, maxWeight, hits.get(), misses.get(), evictions.get(), invalidations.get());
+	}
+
+	public void resetStatistics() {
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+		invalidations.set(0);
+	}
+
+	private boolean isPending(Entry entry) {
+		if(pending.isEmpty()) {
+			return false;
+		}
+		IFile file = entry.context.getResource();
+		if(pending.containsKey(file) || pending.containsKey(file.getProject())) {
+			return true;
+		}
+		for (IFile dependency: entry.dependencies) {
+			if(pending.containsKey(dependency) || pending.containsKey(dependency.getProject())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeWithDependents(IFile file, Set<IFile> result) {
+		if(removeEntry(file)) {
+			result.add(file);
+		}
+		Set<IFile> ds = dependents.remove(file);
+		if(ds != null) {
+			for (IFile d: ds.toArray(new IFile[ds.size()])) {
+				if(removeEntry(d)) {
+					result.add(d);
+				}
+			}
+		}
+	}
+
+	private void removeProject(IProject project, Set<IFile> result) {
+		List<IFile> files = new ArrayList<IFile>();
+		for (IFile file: entries.keySet()) {
+			if(project.equals(file.getProject())) {
+				files.add(file);
+			}
+		}
+		for (IFile file: dependents.keySet()) {
+			if(project.equals(file.getProject())) {
+				files.add(file);
+			}
+		}
+		for (IFile file: files) {
+			removeWithDependents(file, result);
+		}
+	}
+
+	private boolean removeEntry(IFile file) {
+		Entry entry = entries.remove(file);
+		if(entry == null) {
+			return false;
+		}
+		weight -= entry.weight;
+		for (IFile dependency: entry.dependencies) {
+			Set<IFile> set = dependents.get(dependency);
+			if(set != null) {
+				set.remove(file);
+				if(set.isEmpty()) {
+					dependents.remove(dependency);
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Once a bound is exceeded, least recently used entries are evicted down to 90%
+	 * of the bounds, so that sorting by recency is not repeated on each put.
+	 */
+	private void evict() {
+		if(entries.size() <= maxEntries && weight <= maxWeight) {
+			return;
+		}
+		int entriesLimit = maxEntries - maxEntries / 10;
+		long weightLimit = maxWeight - maxWeight / 10;
+		List<Entry> list = new ArrayList<Entry>(entries.values());
+		Collections.sort(list, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return e1.lastAccess < e2.lastAccess ? -1 : e1.lastAccess == e2.lastAccess ? 0 : 1;
+			}
+		});
+		// The most recent entry is never evicted.
+		for (int i = 0; i < list.size() - 1 && (entries.size() > entriesLimit || weight > weightLimit); i++) {
+			if(removeEntry(list.get(i).context.getResource())) {
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	static void collectDependencies(ELContext context, Set<IFile> result) {
+		if(context instanceof IIncludedContextSupport) {
+			for (ELContext included: ((IIncludedContextSupport)context).getIncludedContexts()) {
+				IFile file = included.getResource();
+				if(file != null && result.add(file)) {
+					collectDependencies(included, result);
+				}
+			}
+		}
+	}
+
+	private static class Entry {
+		SimpleELContext context;
+		long weight;
+		Set<IFile> dependencies = new HashSet<IFile>();
+		volatile long lastAccess;
+
+		Entry(SimpleELContext context, long weight) {
+			this.context = context;
+			this.weight = weight;
+			collectDependencies(context, dependencies);
+			dependencies.remove(context.getResource());
+		}
+	}
+
+	private class InvalidationJob extends Job {
+
+		public InvalidationJob() {
+			super("Invalidating page contexts"); //$NON-NLS-1$
+			setSystem(true);
+			setPriority(Job.SHORT);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			applyPendingInvalidations();
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Snapshot of the cache state and counters.
+	 */
+	public static class Statistics {
+		private int size;
+		private long weight;
+		private int maxEntries;
+		private long maxWeight;
+		private long hits;
+		private long misses;
+		private long evictions;
+		private long invalidations;
+
+		public Statistics(int size, long weight, int maxEntries, long maxWeight, long hits, long misses, long evictions, long invalidations) {
+			this.size = size;
+			this.weight = weight;
+			this.maxEntries = maxEntries;
+			this.maxWeight = maxWeight;
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.invalidations = invalidations;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		public long getMaxWeight() {
+			return maxWeight;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		public double getHitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0 : (double)hits / requests;
+		}
+
+		@Override
+		public String toString() {
+			return "PageContextCache[size=" + size + "/" + maxEntries //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", weight=" + weight + "/" + maxWeight //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", hits=" + hits + ", misses=" + misses //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", evictions=" + evictions + ", invalidations=" + invalidations + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+}
@@ -11,18 +11,33 @@
 package org.jboss.tools.jst.web.kb.internal;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
 import org.eclipse.core.resources.ISaveContext;
@@ -33,15 +48,23 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.core.runtime.preferences.DefaultScope;
-import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.jboss.tools.common.util.FileUtil;
 import org.jboss.tools.common.util.HttpUtil;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.preferences.KBScopedPreferences;
 
 /**
  * Downloads remote files to local workspace catalog.
  * 
+ * Files requested by pages are downloaded on demand, the requesting thread waits 
+ * for them not longer than the downloading timeout. Remote style sheets linked from 
+ * a page are prefetched together by a background job in several threads when style 
+ * sheets of the page context are collected.
+ * Outdated local files are returned at once and revalidated by the background job 
+ * in batches, with conditional requests (ETag, Last-Modified) when the downloader 
+ * supports them. The total size of downloaded files is limited, least recently 
+ * used files are evicted.
+ * 
  * @author Alexey Kazakov
  */
 public class RemoteFileManager {
@@ -49,12 +72,28 @@ public class RemoteFileManager {
 	private static final String PREFERENCE_KEY = WebKbPlugin.PLUGIN_ID + ".preferences.rfm."; //$NON-NLS-1$
 	public static final String UNAVAILABLE_MAX_PREFERENCE = PREFERENCE_KEY + "unavailableUrlsMax"; //$NON-NLS-1$
 	public static final String UNAVAILABLE_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "unavailableUrlsTimeout"; //$NON-NLS-1$
-	public static final String FILE_CACHE_MAX_PREFERENCE = PREFERENCE_KEY + "unavailableUrlsMax"; //$NON-NLS-1$
-	public static final String FILE_CACHE_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "unavailableUrlsTimeout"; //$NON-NLS-1$
+	public static final String FILE_CACHE_MAX_PREFERENCE = PREFERENCE_KEY + "fileCacheMax"; //$NON-NLS-1$
+	public static final String FILE_CACHE_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "fileCacheTimeout"; //$NON-NLS-1$
+	/**
+	 * Maximum total size in bytes of downloaded files.
+	 */
+	public static final String FILE_CACHE_MAX_SIZE_PREFERENCE = PREFERENCE_KEY + "fileCacheMaxSize"; //$NON-NLS-1$
 	public static final String FILE_UPDATE_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "fileUpdateTimeout"; //$NON-NLS-1$
 	public static final String DOWNLOADING_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "downloadingTimeout"; //$NON-NLS-1$
 	public static final String DOWNLOADING_IF_MODIFIED_TIMEOUT_PREFERENCE = PREFERENCE_KEY + "downloadingIfModifiedTimeout"; //$NON-NLS-1$
+	/**
+	 * Number of threads downloading prefetched files and revalidating outdated files.
+	 */
+	public static final String DOWNLOADING_THREADS_PREFERENCE = PREFERENCE_KEY + "downloadingThreads"; //$NON-NLS-1$
+	/**
+	 * Delay in milliseconds before outdated files are revalidated, 
+	 * so that files requested at about the same time are revalidated in one batch.
+	 */
+	public static final String REVALIDATION_DELAY_PREFERENCE = PREFERENCE_KEY + "revalidationDelay"; //$NON-NLS-1$
 	private static final String FILE_SAVE = "rfm-save";
+	private static final String TEMP_FILE_SUFFIX = ".part"; //$NON-NLS-1$
+	private static final String ETAG = ".etag"; //$NON-NLS-1$
+	private static final String LAST_MODIFIED = ".modified"; //$NON-NLS-1$
 
 	private static final RemoteFileManager INSTANCE = new RemoteFileManager();
 
@@ -66,6 +105,36 @@ public class RemoteFileManager {
 	private long cssFileUpdateTimeout;
 	private long downloadingTimeout;
 	private int downloadingIfModifiedTimeout;
+	private long fileCacheMaxSize;
+	private int downloadingThreads;
+	private long revalidationDelay;
+
+	/*
+	 * Sizes of downloaded files by file name, their total size and
+	 * ETag and Last-Modified values of their responses. Guarded by cacheLock.
+	 */
+	private final Object cacheLock = new Object();
+	private Map<String, Long> fileSizes;
+	private long totalSize;
+	private Properties validators;
+
+	/*
+	 * Tasks for the background job by URL. Guarded by itself.
+	 */
+	private final Map<String, BackgroundTask> backgroundTasks = new LinkedHashMap<String, BackgroundTask>();
+	/*
+	 * URLs which local files are queued for revalidation or being revalidated.
+	 */
+	private final Set<String> revalidating = Collections.synchronizedSet(new HashSet<String>());
+	private final BackgroundJob backgroundJob = new BackgroundJob();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong downloads = new AtomicLong();
+	private final AtomicLong notModified = new AtomicLong();
+	private final AtomicLong updated = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong evictedBytes = new AtomicLong();
 
 	public static RemoteFileManager getInstance() {
 		return INSTANCE;
@@ -77,19 +146,21 @@ public class RemoteFileManager {
 	private void init() {
 		synchronized (initialized) {
 			if(!initialized) {
-				IEclipsePreferences preferences = DefaultScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID);
-				int max = preferences.getInt(UNAVAILABLE_MAX_PREFERENCE, 500);
-				long timeout = preferences.getLong(UNAVAILABLE_TIMEOUT_PREFERENCE, 180000);
+				int max = KBScopedPreferences.getInt(null, UNAVAILABLE_MAX_PREFERENCE, 500);
+				long timeout = KBScopedPreferences.getLong(null, UNAVAILABLE_TIMEOUT_PREFERENCE, 180000);
 				unavailableUrls = new LimitedStringSet(max, timeout); // By default keeps last 500 unavailable URLs during this Eclipse session for the last 3 minutes
 				downloading = new HashMap<String, Monitor>();
 
-				int cacheMax = preferences.getInt(FILE_CACHE_MAX_PREFERENCE, 100);
-				long cacheTimeout = preferences.getLong(FILE_CACHE_TIMEOUT_PREFERENCE, 86400000L*30);
+				int cacheMax = KBScopedPreferences.getInt(null, FILE_CACHE_MAX_PREFERENCE, 100);
+				long cacheTimeout = KBScopedPreferences.getLong(null, FILE_CACHE_TIMEOUT_PREFERENCE, 86400000L*30);
 				usedFiles = new LimitedStringSet(cacheMax, cacheTimeout); // By default keeps last 100 CSS files used in the last 30 days in the cache
+				fileCacheMaxSize = KBScopedPreferences.getLong(null, FILE_CACHE_MAX_SIZE_PREFERENCE, 20L * 1024 * 1024); // By default downloaded files take not more than 20 MB
 
-				cssFileUpdateTimeout = preferences.getLong(FILE_UPDATE_TIMEOUT_PREFERENCE, 900000); // 15 minutes since the local file has been downloaded is enough to check if the corresponding remote file has been changed to update the file if necessary
-				downloadingTimeout = preferences.getLong(DOWNLOADING_TIMEOUT_PREFERENCE, 200); // If the file has been already scheduled for downloading then wait the file but not more then for 200 milliseconds by default before returning DOWNLOADING status
-				downloadingIfModifiedTimeout = preferences.getInt(DOWNLOADING_IF_MODIFIED_TIMEOUT_PREFERENCE, 200); // The timeout for the connection used for updating modified remote files
+				cssFileUpdateTimeout = KBScopedPreferences.getLong(null, FILE_UPDATE_TIMEOUT_PREFERENCE, 900000); // 15 minutes since the local file has been downloaded is enough to check if the corresponding remote file has been changed to update the file if necessary
+				downloadingTimeout = KBScopedPreferences.getLong(null, DOWNLOADING_TIMEOUT_PREFERENCE, 200); // If the file has been already scheduled for downloading then wait the file but not more then for 200 milliseconds by default before returning DOWNLOADING status
+				downloadingIfModifiedTimeout = KBScopedPreferences.getInt(null, DOWNLOADING_IF_MODIFIED_TIMEOUT_PREFERENCE, 2000); // The timeout for the connection used for updating modified remote files, nobody waits for it
+				downloadingThreads = Math.max(1, KBScopedPreferences.getInt(null, DOWNLOADING_THREADS_PREFERENCE, 4));
+				revalidationDelay = KBScopedPreferences.getLong(null, REVALIDATION_DELAY_PREFERENCE, 1000);
 
 				readState(lastSavedState);
 				initialized = true;
@@ -131,16 +202,20 @@ public class RemoteFileManager {
 	private void saveState(File file) {
 		File folder = getStorageFolder();
 		if(folder!=null) {
-			if(folder.isDirectory()) {
-				// Delete outdated downloaded files
-				File[] files = folder.listFiles();
-				if(files!=null) {
-					for (File f : files) {
-						if(!usedFiles.contains(f.getName())) {
-							f.delete();
+			synchronized (cacheLock) {
+				if(folder.isDirectory()) {
+					// Delete outdated downloaded files
+					File[] files = folder.listFiles();
+					if(files!=null) {
+						for (File f : files) {
+							if(!usedFiles.contains(f.getName())) {
+								f.delete();
+								removeFileInfo(f.getName());
+							}
 						}
 					}
 				}
+				saveValidators();
 			}
 			usedFiles.save(file);
 		}
@@ -173,6 +248,7 @@ public class RemoteFileManager {
 	/**
 	 * Downloads the file from the URL then stores it in the local workspace.
 	 * If the file from the same URL has been already downloaded then returns the absolute path of its local copy.
+	 * If that copy is outdated, it is returned as well, and revalidated in background.
 	 * Otherwise starts a new downloading process is a separate thread.
 	 * @param url
 	 * @return
@@ -181,69 +257,102 @@ public class RemoteFileManager {
 		init();
 		Result result = new Result(true);
 		if(!unavailableUrls.contains(url)) {
-			URL fullUrl = null;
-			try {
-				fullUrl = new URL(url);
-			} catch (MalformedURLException e) {
-				// ignore such URLs
-				return new Result(true);
-			}
-			String protocol = fullUrl.getProtocol();
-			if("http".equalsIgnoreCase(protocol) || "https".equalsIgnoreCase(protocol)) {
-				// work only with http:// or https:// 
-				String file = fullUrl.getFile();
-				if(!file.isEmpty()) {
-					File localFile = getLocalFile(fullUrl);
-					if(localFile!=null) {
-						Monitor monitor = null;
-						Monitor newMonitor = null;
-						synchronized (downloading) {
-							monitor = downloading.get(url);
-							if(monitor==null) {
-								newMonitor = new Monitor();
-								result = getPath(localFile, newMonitor);
-								if(result!=null) {
-									return result;
-								}
-								downloading.put(url, newMonitor);
-							}
-						}
-						if(monitor==null) {
-							DownloadingJob job = new DownloadingJob("Downloading CSS file from " + url, localFile, url, newMonitor);
-							job.setPriority(Job.LONG);
-							job.schedule();
-							result = waitForDownloading(newMonitor, url); // Wait a second or less for the downloading job that we have just scheduled
-						} else {
-							result = waitForDownloading(monitor, url); // Wait a second or less for the downloading job that has been scheduled by another thread
+			File localFile = getLocalFile(url);
+			if(localFile!=null) {
+				Monitor monitor = null;
+				Monitor newMonitor = null;
+				synchronized (downloading) {
+					monitor = downloading.get(url);
+					if(monitor==null) {
+						result = getPath(url, localFile);
+						if(result!=null) {
+							hits.incrementAndGet();
+							return result;
 						}
+						newMonitor = new Monitor();
+						downloading.put(url, newMonitor);
 					}
 				}
+				if(monitor==null) {
+					misses.incrementAndGet();
+					DownloadingJob job = new DownloadingJob("Downloading CSS file from " + url, localFile, url, newMonitor);
+					job.setPriority(Job.LONG);
+					job.schedule();
+					result = waitForDownloading(newMonitor, url); // Wait a second or less for the downloading job that we have just scheduled
+				} else {
+					result = waitForDownloading(monitor, url); // Wait a second or less for the downloading job that has been scheduled by another thread
+				}
 			}
 		}
 		return result;
 	}
 
-	private Result getPath(File file, Monitor monitor) {
+	/**
+	 * Schedules downloading of the files which have not been downloaded yet, 
+	 * and revalidation of outdated files, in background. The files are downloaded 
+	 * in several threads. Requests for files being prefetched wait for them 
+	 * as for files being downloaded on demand.
+	 * 
+	 * @param urls
+	 */
+	public void prefetch(Collection<String> urls) {
+		init();
+		for (String url: urls) {
+			if(unavailableUrls.contains(url)) {
+				continue;
+			}
+			File localFile = getLocalFile(url);
+			if(localFile == null) {
+				continue;
+			}
+			synchronized (downloading) {
+				if(downloading.containsKey(url)) {
+					continue;
+				}
+				if(localFile.exists()) {
+					if(isOutdated(localFile)) {
+						scheduleRevalidation(url, localFile);
+					}
+					continue;
+				}
+				Monitor monitor = new Monitor();
+				downloading.put(url, monitor);
+				schedule(new BackgroundTask(url, localFile, monitor), 0);
+			}
+		}
+	}
+
+	/**
+	 * Waits until the files scheduled for prefetch or revalidation are processed.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void joinBackgroundDownloading() throws InterruptedException {
+		backgroundJob.join();
+	}
+
+	private Result getPath(String url, File file) {
 		Result result = null;
 		if(file.exists()) {
-			long lastModified = file.lastModified();
-			// Check if we should re-download changed file				
-			if(System.currentTimeMillis() - lastModified <= cssFileUpdateTimeout) {
-				usedFiles.add(file.getName());
-				try {
-					String path = file.getCanonicalPath();
-					result = new Result(path);
-				} catch (IOException e) {
-					WebKbPlugin.getDefault().logError(e);
-				}
-			} else {
-				// The corresponding remote file should be checked
-				monitor.update = true;
+			usedFiles.add(file.getName());
+			// Check if we should re-download changed file
+			if(isOutdated(file)) {
+				scheduleRevalidation(url, file);
+			}
+			try {
+				String path = file.getCanonicalPath();
+				result = new Result(path);
+			} catch (IOException e) {
+				WebKbPlugin.getDefault().logError(e);
 			}
 		}
 		return result;
 	}
 
+	private boolean isOutdated(File file) {
+		return System.currentTimeMillis() - file.lastModified() > cssFileUpdateTimeout;
+	}
+
 	private Result waitForDownloading(Monitor monitor, String url) {
 		Result result = null;
 		try {
@@ -264,6 +373,31 @@ public class RemoteFileManager {
 		return result;
 	}
 
+	/**
+	 * Returns the local file for http:// or https:// URL, or null for other URLs.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	private File getLocalFile(String url) {
+		URL fullUrl = null;
+		try {
+			fullUrl = new URL(url);
+		} catch (MalformedURLException e) {
+			// ignore such URLs
+			return null;
+		}
+		String protocol = fullUrl.getProtocol();
+		if(!"http".equalsIgnoreCase(protocol) && !"https".equalsIgnoreCase(protocol)) {
+			// work only with http:// or https://
+			return null;
+		}
+		if(fullUrl.getFile().isEmpty()) {
+			return null;
+		}
+		return getLocalFile(fullUrl);
+	}
+
 	private File getLocalFile(URL url) {
 		File folder = getStorageFolder();
 		if(folder!=null) {
@@ -280,7 +414,7 @@ public class RemoteFileManager {
 		return null;
 	}
 
-	private File getStorageFolder() {
+	protected File getStorageFolder() {
 		WebKbPlugin plugin = WebKbPlugin.getDefault();
 		if( plugin != null) {
 			//The plug-in instance can be null at shutdown, when the plug-in is stopped. 
@@ -296,12 +430,335 @@ public class RemoteFileManager {
 		return new DownloaderImpl(file, url, downloadingIfModifiedTimeout);
 	}
 
+	/**
+	 * Downloads the file and releases the monitor.
+	 */
+	private void download(String url, File file, Monitor monitor) {
+		IDownloader downloader = getDownloader(file, url);
+		InputStreamReader in = null;
+		Response response = null;
+		boolean log = false;
+		try {
+			if(downloader instanceof IConditionalDownloader) {
+				response = ((IConditionalDownloader)downloader).download(null, 0);
+				if(response==null || response.isNotModified()) {
+					unavailableUrls.add(url);
+				} else {
+					log = true;
+					store(file, response.getContent(), response.getETag(), response.getLastModified());
+				}
+			} else {
+				in = downloader.getInputStream(false);
+				if(in==null) {
+					unavailableUrls.add(url);
+				} else {
+					log = true;
+					store(file, in);
+				}
+			}
+		} catch (IOException e) {
+			unavailableUrls.add(url);
+			if(log) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		} catch (Exception e) {
+			unavailableUrls.add(url);
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			IOUtils.closeQuietly(in);
+			if(response != null) {
+				IOUtils.closeQuietly(response.getContent());
+			}
+			release(url, monitor);
+		}
+	}
+
+	private void release(String url, Monitor monitor) {
+		synchronized (downloading) {
+			downloading.remove(url);
+		}
+		synchronized (monitor) {
+			monitor.locked = false;
+			monitor.notifyAll();  // Notify all the waiting threads that the file has been downloaded or marked as unavailable.
+		}
+	}
+
+	private void scheduleRevalidation(String url, File file) {
+		if(revalidating.add(url)) {
+			schedule(new BackgroundTask(url, file, null), revalidationDelay);
+		}
+	}
+
+	/**
+	 * Checks if the remote file has been changed and updates the local file.
+	 * If the remote file is not available now, the local file is kept.
+	 */
+	private void revalidate(String url, File file) {
+		IDownloader downloader = getDownloader(file, url);
+		InputStreamReader in = null;
+		Response response = null;
+		try {
+			if(downloader instanceof IConditionalDownloader) {
+				String etag = null;
+				long lastModified = 0;
+				synchronized (cacheLock) {
+					Properties vs = getValidators();
+					etag = vs.getProperty(file.getName() + ETAG);
+					lastModified = parseLong(vs.getProperty(file.getName() + LAST_MODIFIED));
+				}
+				if(lastModified <= 0) {
+					lastModified = file.lastModified();
+				}
+				response = ((IConditionalDownloader)downloader).download(etag, lastModified);
+				if(response != null && !response.isNotModified()) {
+					store(file, response.getContent(), response.getETag(), response.getLastModified());
+					updated.incrementAndGet();
+					return;
+				}
+			} else {
+				in = downloader.getInputStream(true);
+				if(in != null) {
+					store(file, in);
+					updated.incrementAndGet();
+					return;
+				}
+			}
+			if(response != null) {
+				notModified.incrementAndGet();
+			}
+			file.setLastModified(System.currentTimeMillis());
+		} catch (IOException e) {
+			// Keep the local file, it will be revalidated after the update timeout again. 
+			file.setLastModified(System.currentTimeMillis());
+		} catch (Exception e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			IOUtils.closeQuietly(in);
+			if(response != null) {
+				IOUtils.closeQuietly(response.getContent());
+			}
+		}
+	}
+
+	private static long parseLong(String s) {
+		if(s != null) {
+			try {
+				return Long.parseLong(s);
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+		return 0;
+	}
+
+	private void store(File file, InputStreamReader in) throws IOException {
+		File temp = createTempFile(file);
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			IOUtils.copy(in, out);
+		} finally {
+			out.close();
+		}
+		replace(temp, file, null, 0);
+	}
+
+	private void store(File file, InputStream in, String etag, long lastModified) throws IOException {
+		File temp = createTempFile(file);
+		OutputStream out = new FileOutputStream(temp);
+		try {
+			IOUtils.copy(in, out);
+		} finally {
+			out.close();
+		}
+		replace(temp, file, etag, lastModified);
+	}
+
+	private File createTempFile(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		return File.createTempFile("rfm", TEMP_FILE_SUFFIX, file.getParentFile()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Replaces the local file with the downloaded one and evicts 
+	 * least recently used files if the cache is too large.
+	 */
+	private void replace(File temp, File file, String etag, long lastModified) throws IOException {
+		String name = file.getName();
+		synchronized (cacheLock) {
+			if(file.exists() && !file.delete()) {
+				temp.delete();
+				throw new IOException("Cannot replace " + file); //$NON-NLS-1$
+			}
+			if(!temp.renameTo(file)) {
+				temp.delete();
+				throw new IOException("Cannot create " + file); //$NON-NLS-1$
+			}
+			removeFileInfo(name);
+			long size = file.length();
+			fileSizes.put(name, size);
+			totalSize += size;
+			Properties vs = getValidators();
+			if(etag != null) {
+				vs.setProperty(name + ETAG, etag);
+			}
+			if(lastModified > 0) {
+				vs.setProperty(name + LAST_MODIFIED, Long.toString(lastModified));
+			}
+			usedFiles.add(name);
+			downloads.incrementAndGet();
+			evict(name);
+		}
+	}
+
+	/**
+	 * Deletes least recently used files until the total size fits the limit.
+	 * Files unknown to the list of used files go first. Guarded by cacheLock.
+	 * 
+	 * @param keep the file that should not be deleted
+	 */
+	private void evict(String keep) {
+		if(totalSize <= fileCacheMaxSize) {
+			return;
+		}
+		List<String> order = new ArrayList<String>();
+		List<String> used = usedFiles.getStrings();
+		Set<String> usedSet = new HashSet<String>(used);
+		for (String name: fileSizes.keySet()) {
+			if(!usedSet.contains(name)) {
+				order.add(name);
+			}
+		}
+		order.addAll(used);
+		File folder = getStorageFolder();
+		for (String name: order) {
+			if(totalSize <= fileCacheMaxSize) {
+				break;
+			}
+			if(name.equals(keep) || !fileSizes.containsKey(name)) {
+				continue;
+			}
+			long size = fileSizes.get(name);
+			new File(folder, name).delete();
+			removeFileInfo(name);
+			usedFiles.remove(name);
+			evictions.incrementAndGet();
+			evictedBytes.addAndGet(size);
+		}
+	}
+
+	/*
+	 * Guarded by cacheLock.
+	 */
+	private void removeFileInfo(String name) {
+		Long size = getFileSizes().remove(name);
+		if(size != null) {
+			totalSize -= size;
+		}
+		Properties vs = getValidators();
+		vs.remove(name + ETAG);
+		vs.remove(name + LAST_MODIFIED);
+	}
+
+	/*
+	 * Guarded by cacheLock.
+	 */
+	private Map<String, Long> getFileSizes() {
+		if(fileSizes == null) {
+			fileSizes = new HashMap<String, Long>();
+			totalSize = 0;
+			File folder = getStorageFolder();
+			File[] files = folder == null ? null : folder.listFiles();
+			if(files != null) {
+				for (File f: files) {
+					if(f.isFile() && !f.getName().endsWith(TEMP_FILE_SUFFIX)) {
+						fileSizes.put(f.getName(), f.length());
+						totalSize += f.length();
+					}
+				}
+			}
+		}
+		return fileSizes;
+	}
+
+	private File getValidatorsFile() {
+		File folder = getStorageFolder();
+		return folder == null ? null : new File(folder.getParentFile(), folder.getName() + ".properties"); //$NON-NLS-1$
+	}
+
+	/*
+	 * Guarded by cacheLock.
+	 */
+	private Properties getValidators() {
+		if(validators == null) {
+			validators = new Properties();
+			File file = getValidatorsFile();
+			if(file != null && file.isFile()) {
+				InputStream in = null;
+				try {
+					in = new FileInputStream(file);
+					validators.load(in);
+				} catch (IOException e) {
+					WebKbPlugin.getDefault().logError(e);
+				} finally {
+					IOUtils.closeQuietly(in);
+				}
+			}
+		}
+		return validators;
+	}
+
+	/*
+	 * Guarded by cacheLock.
+	 */
+	private void saveValidators() {
+		File file = getValidatorsFile();
+		if(file == null || validators == null) {
+			return;
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			validators.store(out, null);
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Returns the current state of the local file cache and downloading counters.
+	 * 
+	 * @return
+	 */
+	public Statistics getStatistics() {
+		init();
+		synchronized (cacheLock) {
+			return new Statistics(getFileSizes().size(), totalSize, fileCacheMaxSize, hits.get(), misses.get(), 
+					downloads.get(), notModified.get(), updated.get(), evictions.get(), evictedBytes.get());
+		}
+	}
+
+	/**
+	 * Returns true if the link is an absolute http(s) URL without EL expressions.
+	 * 
+	 * @param url
+	 * @return
+	 */
+	public static boolean isRemoteStyleSheet(String url) {
+		if(url == null) {
+			return false;
+		}
+		String lower = url.trim().toLowerCase();
+		return (lower.startsWith("http://") || lower.startsWith("https://")) //$NON-NLS-1$ //$NON-NLS-2$
+				&& lower.indexOf("#{") < 0 && lower.indexOf("${") < 0; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
 	private class DownloadingJob extends Job {
 
 		private File file;
 		private String url;
 		private Monitor monitor;
-		private IDownloader downloader;
 
 		public DownloadingJob(String name, File file, String url, Monitor monitor) {
 			super(name);
@@ -309,44 +766,149 @@ public class RemoteFileManager {
 			this.url = url;
 			this.setSystem(true);
 			this.monitor = monitor;
-			this.downloader = getDownloader(file, url);
 		}
 
 		@Override
 		protected IStatus run(IProgressMonitor progressMonitor) {
-			InputStreamReader in = null;
-			boolean log = false;
-			try {
-				in = downloader.getInputStream(monitor.update);
-				if(in==null) {
-					unavailableUrls.add(url);
-				} else {
-					log = true;
-					file.getParentFile().mkdirs();
-					FileOutputStream out = new FileOutputStream(file);
-					IOUtils.copy(in, out);
+			download(url, file, monitor);
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Prefetch of a file (with monitor) or revalidation of an outdated file (without monitor).
+	 */
+	private class BackgroundTask implements Runnable {
+		String url;
+		File file;
+		Monitor monitor;
+
+		BackgroundTask(String url, File file, Monitor monitor) {
+			this.url = url;
+			this.file = file;
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void run() {
+			if(monitor != null) {
+				download(url, file, monitor);
+			} else {
+				try {
+					revalidate(url, file);
+				} finally {
+					revalidating.remove(url);
 				}
-			} catch (IOException e) {
-				if(!monitor.update) {
-					unavailableUrls.add(url);
+			}
+		}
+
+		void cancel() {
+			if(monitor != null) {
+				release(url, monitor);
+			} else {
+				revalidating.remove(url);
+			}
+		}
+	}
+
+	/**
+	 * Queues the task unless a task for the same url is already queued. A prefetch 
+	 * replaces a queued revalidation. The task that is not run is canceled,
+	 * so that its url is not left in revalidating and its monitor is released.
+	 * 
+	 * @param task
+	 * @param delay
+	 */
+	private void schedule(BackgroundTask task, long delay) {
+		BackgroundTask dropped = null;
+		synchronized (backgroundTasks) {
+			BackgroundTask queued = backgroundTasks.get(task.url);
+			if(queued == null || (queued.monitor == null && task.monitor != null)) {
+				backgroundTasks.put(task.url, task);
+				dropped = queued;
+			} else {
+				dropped = task;
+			}
+		}
+		if(dropped != null) {
+			dropped.cancel();
+		}
+		if(dropped != task) {
+			backgroundJob.schedule(delay);
+		}
+	}
+
+	private List<BackgroundTask> pollBackgroundTasks() {
+		synchronized (backgroundTasks) {
+			List<BackgroundTask> result = new ArrayList<BackgroundTask>(backgroundTasks.values());
+			backgroundTasks.clear();
+			return result;
+		}
+	}
+
+	/**
+	 * Runs queued prefetch and revalidation tasks in a pool of threads,
+	 * batch after batch, until the queue is empty.
+	 */
+	private class BackgroundJob extends Job {
+
+		public BackgroundJob() {
+			super("Downloading remote CSS files"); //$NON-NLS-1$
+			setSystem(true);
+			setPriority(Job.LONG);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor progressMonitor) {
+			List<BackgroundTask> tasks = pollBackgroundTasks();
+			while(!tasks.isEmpty()) {
+				if(!runTasks(tasks, progressMonitor)) {
+					for (BackgroundTask task: pollBackgroundTasks()) {
+						task.cancel();
+					}
+					return Status.CANCEL_STATUS;
 				}
-				if(log) {
-					WebKbPlugin.getDefault().logError(e);
+				tasks = pollBackgroundTasks();
+			}
+			return Status.OK_STATUS;
+		}
+
+		private boolean runTasks(List<BackgroundTask> tasks, IProgressMonitor progressMonitor) {
+			int threads = Math.min(downloadingThreads, tasks.size());
+			if(threads <= 1) {
+				for (int i = 0; i < tasks.size(); i++) {
+					if(progressMonitor.isCanceled()) {
+						for (BackgroundTask task: tasks.subList(i, tasks.size())) {
+							task.cancel();
+						}
+						return false;
+					}
+					tasks.get(i).run();
 				}
-			} catch (Exception e) {
-				unavailableUrls.add(url);
-				WebKbPlugin.getDefault().logError(e);
-			} finally {
-				IOUtils.closeQuietly(in);
-				synchronized (downloading) {
-					downloading.remove(url);
+				return true;
+			}
+			ExecutorService executor = Executors.newFixedThreadPool(threads, WorkerThreads.createThreadFactory("KB remote file downloader"));
+			for (BackgroundTask task: tasks) {
+				executor.execute(task);
+			}
+			executor.shutdown();
+			try {
+				while(!executor.awaitTermination(500, TimeUnit.MILLISECONDS)) {
+					if(progressMonitor.isCanceled()) {
+						for (Runnable task: executor.shutdownNow()) {
+							((BackgroundTask)task).cancel();
+						}
+						return false;
+					}
 				}
-				synchronized (monitor) {
-					monitor.locked = false;
-					monitor.notifyAll();  // Notify all the waiting threads that the file has been downloaded or marked as unavailable.
+			} catch (InterruptedException e) {
+				for (Runnable task: executor.shutdownNow()) {
+					((BackgroundTask)task).cancel();
 				}
+				Thread.currentThread().interrupt();
+				return false;
 			}
-			return Status.OK_STATUS;
+			return true;
 		}
 	}
 
@@ -354,7 +916,60 @@ public class RemoteFileManager {
 		InputStreamReader getInputStream(boolean ifModified) throws IOException;
 	}
 
-	private static class DownloaderImpl implements IDownloader {
+	/**
+	 * Downloader that supports conditional requests.
+	 */
+	public static interface IConditionalDownloader extends IDownloader {
+		/**
+		 * Requests the remote file. If ETag or last modification time are given, 
+		 * the request is conditional, and the response may tell that the file is not modified.
+		 * Returns null if the file is not available.
+		 * 
+		 * @param etag ETag of the local copy or null
+		 * @param lastModified last modification time of the local copy or 0
+		 * @return
+		 * @throws IOException
+		 */
+		Response download(String etag, long lastModified) throws IOException;
+	}
+
+	/**
+	 * Response to a request of a remote file.
+	 */
+	public static class Response {
+		private InputStream content;
+		private String etag;
+		private long lastModified;
+
+		/**
+		 * @param content content of the file, or null if the file is not modified
+		 * @param etag ETag of the file or null
+		 * @param lastModified last modification time of the file or 0
+		 */
+		public Response(InputStream content, String etag, long lastModified) {
+			this.content = content;
+			this.etag = etag;
+			this.lastModified = lastModified;
+		}
+
+		public InputStream getContent() {
+			return content;
+		}
+
+		public String getETag() {
+			return etag;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		public boolean isNotModified() {
+			return content == null;
+		}
+	}
+
+	private static class DownloaderImpl implements IConditionalDownloader {
 		private File file;
 		private String url;
 		private int timeout;
@@ -371,14 +986,9 @@ public class RemoteFileManager {
 			if(ifModified) {
 				// Check if the file has been updated
 				HttpURLConnection connection = HttpUtil.createHttpURLConnection(url, timeout);
-				connection.setIfModifiedSince(file.lastModified());
 				if(connection!=null) {
+					connection.setIfModifiedSince(file.lastModified());
 					in = HttpUtil.getInputStreamReader(connection);
-					if(in!=null) {
-						file.delete();
-					} else {
-						file.setLastModified(System.currentTimeMillis());
-					}
 				}
 			} else {
 				// Download the file
@@ -386,11 +996,129 @@ public class RemoteFileManager {
 			}
 			return in;
 		}
+
+		@Override
+		public Response download(String etag, long lastModified) throws IOException {
+			boolean conditional = etag != null || lastModified > 0;
+			HttpURLConnection connection = HttpUtil.createHttpURLConnection(url, conditional ? timeout : 2000);
+			if(connection == null) {
+				return null;
+			}
+			if(etag != null) {
+				connection.setRequestProperty("If-None-Match", etag); //$NON-NLS-1$
+			}
+			if(lastModified > 0) {
+				connection.setIfModifiedSince(lastModified);
+			}
+			int code = connection.getResponseCode();
+			if(code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				return new Response(null, etag, lastModified);
+			} else if(code != HttpURLConnection.HTTP_OK) {
+				return null;
+			}
+			return new Response(connection.getInputStream(), connection.getHeaderField("ETag"), connection.getLastModified()); //$NON-NLS-1$
+		}
 	}
 
 	private static class Monitor {
 		boolean locked = true;
-		boolean update; // If true then the file has been already downloaded but we need to update it if the corresponding remote file has been changed  
+	}
+
+	/**
+	 * Snapshot of the local file cache state and counters.
+	 */
+	public static class Statistics {
+		private int files;
+		private long size;
+		private long maxSize;
+		private long hits;
+		private long misses;
+		private long downloads;
+		private long notModified;
+		private long updated;
+		private long evictions;
+		private long evictedBytes;
+
+		public Statistics(int files, long size, long maxSize, long hits, long misses, long downloads, long notModified, long updated, long evictions, long evictedBytes) {
+			this.files = files;
+			this.size = size;
+			this.maxSize = maxSize;
+			this.hits = hits;
+			this.misses = misses;
+			this.downloads = downloads;
+			this.notModified = notModified;
+			this.updated = updated;
+			this.evictions = evictions;
+			this.evictedBytes = evictedBytes;
+		}
+
+		/**
+		 * Number of downloaded files.
+		 */
+		public int getFiles() {
+			return files;
+		}
+
+		/**
+		 * Total size of downloaded files in bytes.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		public long getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * Number of requests answered with a local file.
+		 */
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * Number of requests that started downloading.
+		 */
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * Number of files stored, including updated ones.
+		 */
+		public long getDownloads() {
+			return downloads;
+		}
+
+		/**
+		 * Number of revalidated files that were not modified.
+		 */
+		public long getNotModified() {
+			return notModified;
+		}
+
+		/**
+		 * Number of revalidated files that were modified and downloaded again.
+		 */
+		public long getUpdated() {
+			return updated;
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		public long getEvictedBytes() {
+			return evictedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return "files=" + files + " size=" + size + "/" + maxSize + " hits=" + hits + " misses=" + misses //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+					+ " downloads=" + downloads + " notModified=" + notModified + " updated=" + updated //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					+ " evictions=" + evictions + " evictedBytes=" + evictedBytes; //$NON-NLS-1$ //$NON-NLS-2$
+		}
 	}
 
 	public static class Result {
@@ -467,6 +1195,24 @@ public class RemoteFileManager {
 	    	}
 	    }
 
+	    synchronized public void remove(String string) {
+	    	TimestampedString ts = map.remove(string);
+	    	if(ts!=null) {
+	    		set.remove(ts);
+	    	}
+	    }
+
+	    /**
+	     * Returns strings, least recently added first.
+	     */
+	    synchronized public List<String> getStrings() {
+	    	List<String> result = new ArrayList<String>(set.size());
+	    	for (TimestampedString ts : set) {
+				result.add(ts.string);
+			}
+	    	return result;
+	    }
+
 	    synchronized public boolean contains(String string) {
 	    	TimestampedString oldTs = map.get(string);
 	    	if(oldTs!=null) {
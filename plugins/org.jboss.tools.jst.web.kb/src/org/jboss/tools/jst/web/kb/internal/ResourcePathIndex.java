@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+
+/**
+ * In-memory index of members of web content folders used for completion
+ * of resource paths. Members of a folder are read once, when the folder
+ * is queried for the first time, and are kept grouped by extension and
+ * sorted by name, so that members which names start with a prefix are found
+ * by binary search.
+ *
+ * The index is maintained by resource deltas: the folder entry is dropped
+ * when members are added to or removed from the folder, and is read again
+ * on the next query.
+ */
+public class ResourcePathIndex {
+	private static final ResourcePathIndex INSTANCE = new ResourcePathIndex();
+
+	private static final String[] EXCLUDED_FOLDERS = {"WEB-INF", "META-INF"}; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private final Map<IPath, FolderEntry> folders = new ConcurrentHashMap<IPath, FolderEntry>();
+
+	/*
+	 * Incremented on each change, so that an entry read concurrently 
+	 * with a change is not kept.
+	 */
+	private final AtomicLong modifications = new AtomicLong();
+
+	public static ResourcePathIndex getInstance() {
+		return INSTANCE;
+	}
+
+	private ResourcePathIndex() {}
+
+	/**
+	 * Returns members of the container which names start with the prefix:
+	 * files which extension is in the set of extensions, or all files if the set
+	 * is null or empty, and folders except WEB-INF and META-INF. Members are sorted by name.
+	 *
+	 * @param container
+	 * @param prefix
+	 * @param extensions lower-cased extensions
+	 * @return
+	 */
+	public List<IResource> find(IContainer container, String prefix, Set<String> extensions) {
+		FolderEntry entry = getEntry(container);
+		if(entry == null) {
+			return Collections.emptyList();
+		}
+		List<String> names = new ArrayList<String>();
+		find(entry.folders, prefix, names);
+		int folderCount = names.size();
+		if(extensions == null || extensions.isEmpty()) {
+			find(entry.files, prefix, names);
+		} else {
+			for (String extension: extensions) {
+				String[] files = entry.filesByExtension.get(extension);
+				if(files != null) {
+					find(files, prefix, names);
+				}
+			}
+		}
+		List<IResource> result = new ArrayList<IResource>(names.size());
+		for (int i = 0; i < names.size(); i++) {
+			String name = names.get(i);
+			result.add(i < folderCount ? container.getFolder(new Path(name))
+					: container.getFile(new Path(name)));
+		}
+		Collections.sort(result, NAME_ORDER);
+		return result;
+	}
+
+	private static void find(String[] names, String prefix, Collection<String> result) {
+		int start = Arrays.binarySearch(names, prefix);
+		if(start < 0) {
+			start = -start - 1;
+		}
+		for (int i = start; i < names.length && names[i].startsWith(prefix); i++) {
+			result.add(names[i]);
+		}
+	}
+
+	private FolderEntry getEntry(IContainer container) {
+		if(!container.isAccessible()) {
+			return null;
+		}
+		FolderEntry entry = folders.get(container.getFullPath());
+		if(entry == null) {
+			long modification = modifications.get();
+			try {
+				entry = new FolderEntry(container.members());
+			} catch (CoreException e) {
+				WebKbPlugin.getDefault().logError(e);
+				return null;
+			}
+			synchronized (folders) {
+				if(modification == modifications.get()) {
+					folders.put(container.getFullPath(), entry);
+				}
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Drops entries of folders which members have been added or removed,
+	 * and of removed folders.
+	 *
+	 * @param delta
+	 */
+	public void resourceChanged(IResourceDelta delta) {
+		if(delta == null) {
+			return;
+		}
+		// Counted even if nothing is cached, so that a folder listed 
+		// before this change is not cached after it.
+		synchronized (folders) {
+			modifications.incrementAndGet();
+		}
+		if(folders.isEmpty()) {
+			return;
+		}
+		try {
+			delta.accept(new IResourceDeltaVisitor() {
+				@Override
+				public boolean visit(IResourceDelta delta) throws CoreException {
+					IResource resource = delta.getResource();
+					int kind = delta.getKind();
+					if(kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED) {
+						IContainer parent = resource.getParent();
+						if(parent != null) {
+							folders.remove(parent.getFullPath());
+						}
+						if(kind == IResourceDelta.REMOVED && resource instanceof IContainer) {
+							removeFolders(resource.getFullPath());
+						}
+						return false;
+					}
+					if((delta.getFlags() & IResourceDelta.OPEN) != 0) {
+						removeFolders(resource.getFullPath());
+						return false;
+					}
+					return resource instanceof IContainer;
+				}
+			});
+		} catch (CoreException e) {
+			WebKbPlugin.getDefault().logError(e);
+		}
+	}
+
+	private void removeFolders(IPath path) {
+		for (IPath p: new ArrayList<IPath>(folders.keySet())) {
+			if(path.isPrefixOf(p)) {
+				folders.remove(p);
+			}
+		}
+	}
+
+	static boolean isExcludedFolder(String name) {
+		for (String excluded: EXCLUDED_FOLDERS) {
+			if(excluded.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static final Comparator<IResource> NAME_ORDER = new Comparator<IResource>() {
+		@Override
+		public int compare(IResource o1, IResource o2) {
+			return o1.getName().compareTo(o2.getName());
+		}
+	};
+
+	/**
+	 * Sorted names of member folders and files of a folder,
+	 * files are also grouped by lower-cased extension.
+	 */
+	static class FolderEntry {
+		final String[] folders;
+		final String[] files;
+		final Map<String, String[]> filesByExtension = new HashMap<String, String[]>();
+
+		FolderEntry(IResource[] members) {
+			List<String> folderNames = new ArrayList<String>();
+			List<String> fileNames = new ArrayList<String>();
+			Map<String, List<String>> byExtension = new HashMap<String, List<String>>();
+			for (IResource member: members) {
+				String name = member.getName();
+				if(member instanceof IFolder) {
+					if(!isExcludedFolder(name)) {
+						folderNames.add(name);
+					}
+				} else if(member instanceof IFile) {
+					fileNames.add(name);
+					String extension = member.getFileExtension();
+					extension = extension == null ? null : extension.toLowerCase();
+					List<String> list = byExtension.get(extension);
+					if(list == null) {
+						list = new ArrayList<String>();
+						byExtension.put(extension, list);
+					}
+					list.add(name);
+				}
+			}
+			folders = toSortedArray(folderNames);
+			files = toSortedArray(fileNames);
+			for (Map.Entry<String, List<String>> e: byExtension.entrySet()) {
+				filesByExtension.put(e.getKey(), toSortedArray(e.getValue()));
+			}
+		}
+
+		private static String[] toSortedArray(List<String> names) {
+			String[] result = names.toArray(new String[names.size()]);
+			Arrays.sort(result);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.common.util.FileUtil;
+import org.jboss.tools.common.xml.XMLUtilities;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.w3c.dom.Element;
+
+/**
+ * Keeps declarations loaded from each source path of a KB project in a separate
+ * file of the storage folder, so that storing the project rewrites only the files
+ * of source paths changed since the last store, and loading the project reads
+ * only the files of source paths that are still valid.
+ *
+ * The folder contains file 'index' that maps file names to source paths.
+ */
+public class SourcePathStorage {
+	static final String INDEX_FILE = "index"; //$NON-NLS-1$
+	static final String CHUNK_EXTENSION = ".xml"; //$NON-NLS-1$
+
+	private File folder;
+
+	/*
+	 * Source path -> name of the file storing its declarations.
+	 */
+	private Map<IPath, String> files = null;
+
+	/*
+	 * Source paths changed since the last store.
+	 */
+	private Set<IPath> dirty = new HashSet<IPath>();
+
+	public SourcePathStorage(File folder) {
+		this.folder = folder;
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Returns true if the storage has been stored at least once.
+	 * @return
+	 */
+	public boolean exists() {
+		return new File(folder, INDEX_FILE).isFile();
+	}
+
+	/**
+	 * Returns source paths which declarations are stored.
+	 * @return
+	 */
+	public synchronized Set<IPath> getPaths() {
+		return new HashSet<IPath>(getFiles().keySet());
+	}
+
+	/**
+	 * Reads the stored element for the source path.
+	 * @param path
+	 * @return the element or null if there is no valid stored element for the path
+	 */
+	public synchronized Element read(IPath path) {
+		String name = getFiles().get(path);
+		if(name == null) {
+			return null;
+		}
+		File file = new File(folder, name);
+		return file.isFile() ? XMLUtilities.getElement(file, null) : null;
+	}
+
+	public synchronized void setDirty(IPath path) {
+		dirty.add(path);
+	}
+
+	public synchronized void clearDirty(IPath path) {
+		dirty.remove(path);
+	}
+
+	public synchronized boolean isDirty() {
+		return !dirty.isEmpty();
+	}
+
+	/**
+	 * Returns source paths changed since the last store and clears the set.
+	 * @return
+	 */
+	public synchronized Set<IPath> takeDirty() {
+		Set<IPath> result = dirty;
+		dirty = new HashSet<IPath>();
+		return result;
+	}
+
+	/**
+	 * Writes the element for the source path.
+	 *
+	 * @param path
+	 * @param element
+	 * @throws IOException
+	 */
+	public synchronized void write(IPath path, Element element) throws IOException {
+		String name = getFiles().get(path);
+		if(name == null) {
+			name = createFileName(path);
+			files.put(path, name);
+		}
+		folder.mkdirs();
+		XMLUtilities.serialize(element, new File(folder, name).getAbsolutePath());
+	}
+
+	/**
+	 * Removes the stored element for the source path.
+	 * @param path
+	 */
+	public synchronized void remove(IPath path) {
+		String name = getFiles().remove(path);
+		if(name != null) {
+			new File(folder, name).delete();
+		}
+	}
+
+	/**
+	 * Writes the index of stored source paths.
+	 * Should be called after all changed source paths are written or removed.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void storeIndex() throws IOException {
+		folder.mkdirs();
+		Properties p = new Properties();
+		for (IPath path: getFiles().keySet()) {
+			p.setProperty(files.get(path), path.toString());
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(new File(folder, INDEX_FILE));
+			p.store(out, null);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Deletes all stored data.
+	 */
+	public synchronized void clear() {
+		if(folder.exists()) {
+			FileUtil.remove(folder);
+		}
+		files = new HashMap<IPath, String>();
+		dirty.clear();
+	}
+
+	private Map<IPath, String> getFiles() {
+		if(files == null) {
+			files = new HashMap<IPath, String>();
+			File index = new File(folder, INDEX_FILE);
+			if(index.isFile()) {
+				Properties p = new Properties();
+				InputStream in = null;
+				try {
+					in = new FileInputStream(index);
+					p.load(in);
+				} catch (IOException e) {
+					WebKbPlugin.getDefault().logError(e);
+				} finally {
+					IOUtils.closeQuietly(in);
+				}
+				for (String name: p.stringPropertyNames()) {
+					files.put(new Path(p.getProperty(name)), name);
+				}
+			}
+		}
+		return files;
+	}
+
+	private String createFileName(IPath path) {
+		Set<String> used = new HashSet<String>(files.values());
+		String base = Integer.toHexString(path.toString().hashCode());
+		String name = base + CHUNK_EXTENSION;
+		for (int i = 1; used.contains(name); i++) {
+			name = base + "_" + i + CHUNK_EXTENSION; //$NON-NLS-1$
+		}
+		return name;
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.resources.IProject;
+import org.jboss.tools.jst.web.DaemonThreadFactory;
+import org.jboss.tools.jst.web.kb.preferences.KBScopedPreferences;
+
+/**
+ * Sizes and threads of the worker pools used by the kb builder, 
+ * EL validation and downloading of remote files.
+ */
+public class WorkerThreads {
+
+	/**
+	 * Returns the number of threads set by the preference for the project, in the workspace
+	 * or by default. If it is not set, or is not positive, the number of processors, 
+	 * but not more than defaultMax is returned.
+	 * 
+	 * @param project may be null
+	 * @param preference
+	 * @param defaultMax
+	 * @return
+	 */
+	public static int getThreadCount(IProject project, String preference, int defaultMax) {
+		int threads = KBScopedPreferences.getInt(project, preference, 0);
+		if(threads <= 0) {
+			threads = Math.min(Runtime.getRuntime().availableProcessors(), defaultMax);
+		}
+		return threads;
+	}
+
+	/**
+	 * Returns a factory of daemon threads named by the prefix and a number.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static ThreadFactory createThreadFactory(String name) {
+		return new DaemonThreadFactory(name);
+	}
+}
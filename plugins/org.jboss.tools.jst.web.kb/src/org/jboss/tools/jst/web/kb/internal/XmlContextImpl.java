@@ -20,12 +20,17 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.part.FileEditorInput;
 import org.eclipse.ui.texteditor.DocumentProviderRegistry;
 import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.jboss.tools.common.el.core.ELReference;
 import org.jboss.tools.common.el.core.resolver.ELContextImpl;
+import org.jboss.tools.common.el.core.resolver.Var;
+import org.jboss.tools.common.validation.ValidationELReference;
 import org.jboss.tools.jst.web.kb.IXmlContext;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
 import org.jboss.tools.jst.web.kb.taglib.INameSpace;
@@ -137,6 +142,200 @@ public class XmlContextImpl extends ELContextImpl implements IXmlContext {
 
 	RegionNameSpaces root = new RegionNameSpaces();
 
+	/**
+	 * Maximum number of text edits applied to the context before it has to be rebuilt.
+	 */
+	static final int MAX_TEXT_EDITS = 500;
+
+	/*
+	 * EL references, name space regions and text edits of the context after
+	 * text edits were applied, or null if the context is as it was built.
+	 * Text edits are triples {offset, old length, new length}, in the order of application.
+	 * Regions of vars are not accessible, so they stay as they were when 
+	 * the context was built, and offsets are translated back by text edits.
+	 * A text edit builds a shifted copy of the state and publishes it at once, 
+	 * because the context is shared by readers in other threads.
+	 */
+	private volatile EditedState edited = null;
+
+	class EditedState {
+		final ELReference[] references;
+		final RegionNameSpaces root;
+		final List<int[]> textEdits;
+
+		EditedState(ELReference[] references, RegionNameSpaces root, List<int[]> textEdits) {
+			this.references = references;
+			this.root = root;
+			this.textEdits = textEdits;
+		}
+	}
+
+	/*
+	 * Modification stamp of the document for which the context is up to date,
+	 * if the context is kept up to date by document changes.
+	 */
+	private volatile long documentStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+	public long getDocumentStamp() {
+		return documentStamp;
+	}
+
+	public void setDocumentStamp(long documentStamp) {
+		this.documentStamp = documentStamp;
+	}
+
+	/**
+	 * Updates the context for a change of text inside element content that 
+	 * contains no markup and no EL, so that the structure of the page stays the same.
+	 * EL references and name space regions after the change are shifted, regions
+	 * containing the change are resized. References and regions are not modified,
+	 * shifted copies of them replace them in the context at once. 
+	 * Returns false, without modifying the context, if the change touches an EL reference
+	 * or crosses a name space region, or if too many changes are applied; 
+	 * then the context has to be rebuilt.
+	 * 
+	 * @param offset offset of the change
+	 * @param oldLength length of the replaced text
+	 * @param newLength length of the new text
+	 * @param lineDelta the number of added lines minus the number of removed lines
+	 * @return
+	 */
+	public synchronized boolean applyTextEdit(int offset, int oldLength, int newLength, int lineDelta) {
+		EditedState state = edited;
+		if(state != null && state.textEdits.size() >= MAX_TEXT_EDITS) {
+			return false;
+		}
+		int end = offset + oldLength;
+		ELReference[] references = getELReferences();
+		for (ELReference r: references) {
+			int start = r.getStartPosition();
+			if(start <= end && offset <= start + r.getLength()) {
+				return false;
+			}
+		}
+		RegionNameSpaces currentRoot = getRoot();
+		if(!canShift(currentRoot, offset, end)) {
+			return false;
+		}
+		int delta = newLength - oldLength;
+		ELReference[] shifted = new ELReference[references.length];
+		for (int i = 0; i < references.length; i++) {
+			ELReference r = references[i];
+			shifted[i] = r.getStartPosition() > end ? copy(r, r.getStartPosition() + delta, r.getLineNumber() + lineDelta) : r;
+		}
+		List<int[]> textEdits = new ArrayList<int[]>();
+		if(state != null) {
+			textEdits.addAll(state.textEdits);
+		}
+		textEdits.add(new int[]{offset, oldLength, newLength});
+		edited = new EditedState(shifted, copy(currentRoot, null, end, delta), Collections.unmodifiableList(textEdits));
+		return true;
+	}
+
+	private ELReference copy(ELReference r, int startPosition, int lineNumber) {
+		ELReference result = new ValidationELReference();
+		result.setResource(r.getResource());
+		result.setStartPosition(startPosition);
+		result.setLength(r.getLength());
+		result.setLineNumber(lineNumber);
+		return result;
+	}
+
+	/**
+	 * Returns EL references shifted by text edits.
+	 */
+	@Override
+	public ELReference[] getELReferences() {
+		EditedState state = edited;
+		return state != null ? state.references : super.getELReferences();
+	}
+
+	/**
+	 * Returns the tree of name space regions shifted by text edits.
+	 * 
+	 * @return
+	 */
+	RegionNameSpaces getRoot() {
+		EditedState state = edited;
+		return state != null ? state.root : root;
+	}
+
+	private boolean canShift(RegionNameSpaces s, int offset, int end) {
+		if(s.region != null) {
+			int start = s.region.getOffset();
+			int regionEnd = start + s.region.getLength();
+			boolean before = regionEnd < offset;
+			boolean after = start > end;
+			boolean contains = start < offset && end < regionEnd;
+			if(!before && !after && !contains) {
+				return false;
+			}
+		}
+		if(s.children != null) {
+			for (RegionNameSpaces c: s.children) {
+				if(!canShift(c, offset, end)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a copy of the tree of name space regions, regions after the end of 
+	 * the change being shifted and regions containing the change being resized.
+	 * Name spaces are not modified after the context is built, so they are shared.
+	 */
+	private RegionNameSpaces copy(RegionNameSpaces s, RegionNameSpaces parent, int end, int delta) {
+		RegionNameSpaces result = new RegionNameSpaces();
+		result.parent = parent;
+		result.region = s.region;
+		result.nameSpacesByPrefix = s.nameSpacesByPrefix;
+		if(s.region != null) {
+			int start = s.region.getOffset();
+			if(start > end) {
+				result.region = new Region(start + delta, s.region.getLength());
+			} else if(start + s.region.getLength() > end) {
+				result.region = new Region(start, s.region.getLength() + delta);
+			}
+		}
+		if(s.children != null) {
+			result.children = new ArrayList<RegionNameSpaces>();
+			for (RegionNameSpaces c: s.children) {
+				result.children.add(copy(c, result, end, delta));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Translates offset in the current text to offset in the text 
+	 * for which the context was built.
+	 * 
+	 * @param offset
+	 * @return
+	 */
+	int getOriginalOffset(int offset) {
+		EditedState state = edited;
+		if(state != null) {
+			List<int[]> textEdits = state.textEdits;
+			for (int i = textEdits.size() - 1; i >= 0; i--) {
+				int[] edit = textEdits.get(i);
+				if(offset >= edit[0] + edit[2]) {
+					offset += edit[1] - edit[2];
+				} else if(offset > edit[0]) {
+					offset = edit[0];
+				}
+			}
+		}
+		return offset;
+	}
+
+	@Override
+	public Var[] getVars(int offset) {
+		return super.getVars(getOriginalOffset(offset));
+	}
+
 	public IDocument getDocument() {
 		IDocument document = null;
 		if (resource != null) {
@@ -160,13 +359,13 @@ public class XmlContextImpl extends ELContextImpl implements IXmlContext {
 	 * @see org.jboss.tools.jst.web.kb.IPageContext#getNameSpaces(int)
 	 */
 	public Map<String, List<INameSpace>> getNameSpaces(int offset) {
-		RegionNameSpaces n = root.find(offset);
+		RegionNameSpaces n = getRoot().find(offset);
 		return (n != null) ? n.getNameSpacesByUri() : EMPTY_NAME_SPACES;
 	}
 
 	@Override
 	public Map<String, List<INameSpace>> getRootNameSpaces() {
-		return root.getNameSpacesByUri();
+		return getRoot().getNameSpacesByUri();
 	}
 
 
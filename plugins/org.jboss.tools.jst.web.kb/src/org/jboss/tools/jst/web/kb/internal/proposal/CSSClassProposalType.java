@@ -13,6 +13,7 @@ package org.jboss.tools.jst.web.kb.internal.proposal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -20,13 +21,13 @@ import org.jboss.tools.common.text.TextProposal;
 import org.jboss.tools.jst.web.kb.ICSSContainerSupport;
 import org.jboss.tools.jst.web.kb.IPageContext;
 import org.jboss.tools.jst.web.kb.KbQuery;
-import org.jboss.tools.jst.web.kb.PageContextFactory.CSSStyleSheetDescriptor;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex.StyleSheetIndex;
 import org.w3c.dom.css.CSSMediaRule;
 import org.w3c.dom.css.CSSRule;
 import org.w3c.dom.css.CSSRuleList;
 import org.w3c.dom.css.CSSStyleRule;
-import org.w3c.dom.css.CSSStyleSheet;
 
 /**
  * The CSS Class proposal type. Is used to collect and return the proposals on
@@ -41,26 +42,14 @@ public class CSSClassProposalType extends CustomProposalType {
 	static String ID = "cssclass"; //$NON-NLS-1$
 	static String QUOTE_1 = "'"; //$NON-NLS-1$
 	static String QUOTE_2 = "\""; //$NON-NLS-1$
-	Set<String> idList = new TreeSet<String>();
+	SortedSet<String> idList = new TreeSet<String>();
 
 	@Override
 	protected void init(IPageContext context) {
 		idList.clear();
 		if (context instanceof ICSSContainerSupport) {
-			ICSSContainerSupport cssSource = (ICSSContainerSupport)context;
-			
-			List<CSSStyleSheetDescriptor> descrs = cssSource.getCSSStyleSheetDescriptors();
-			if (descrs != null) {
-				for (CSSStyleSheetDescriptor descr : descrs) {
-					CSSStyleSheet sheet = descr.getStylesheet();
-					if (sheet != null) {
-						CSSRuleList rules = sheet.getCssRules();
-						for (int i = 0; rules != null && i < rules.getLength(); i++) {
-							CSSRule rule = rules.item(i);
-							idList.addAll(getClassNamesFromCSSRule(rule));
-						}
-					}
-				}
+			for (StyleSheetIndex index : CSSClassIndex.getInstance().getIndexes((ICSSContainerSupport)context)) {
+				idList.addAll(index.getClassNames());
 			}
 		}
 	}
@@ -160,17 +149,18 @@ public class CSSClassProposalType extends CustomProposalType {
 		String prefix = v.substring(b);
 
 		List<TextProposal> proposals = new ArrayList<TextProposal>();
-		for (String text: idList) {
-			if(text.startsWith(prefix)) {
-				TextProposal proposal = new TextProposal();
-				proposal.setLabel(text);
-				proposal.setReplacementString(text);
-				proposal.setStart(b - predicateLength);
-				proposal.setEnd(e - predicateLength);
-				proposal.setImageDescriptor(IMAGE);
-				
-				proposals.add(proposal);
+		for (String text: idList.tailSet(prefix)) {
+			if(!text.startsWith(prefix)) {
+				break;
 			}
+			TextProposal proposal = new TextProposal();
+			proposal.setLabel(text);
+			proposal.setReplacementString(text);
+			proposal.setStart(b - predicateLength);
+			proposal.setEnd(e - predicateLength);
+			proposal.setImageDescriptor(IMAGE);
+			
+			proposals.add(proposal);
 		}
 
 		return proposals.toArray(new TextProposal[0]);
@@ -20,8 +20,6 @@ import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.jboss.tools.common.model.XModelObject;
 import org.jboss.tools.common.model.filesystems.FileSystemsHelper;
@@ -30,6 +28,7 @@ import org.jboss.tools.common.text.TextProposal;
 import org.jboss.tools.jst.web.kb.IPageContext;
 import org.jboss.tools.jst.web.kb.KbQuery;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.ResourcePathIndex;
 
 /**
  * @author Alexey Kazakov
@@ -255,10 +254,14 @@ public class ResourcePathProposalType extends ModelProposalType {
 		}
 
 		List<IResource> resources = new ArrayList<IResource>();
-		try {
-			if(resource != null) resource.accept(new ResourceFinder(resources, name, extensions));
-		} catch (CoreException e) {
-			WebKbPlugin.getDefault().logError(e);
+		if(resource instanceof IContainer) {
+			resources = ResourcePathIndex.getInstance().find((IContainer)resource, name, extensions);
+		} else if(resource instanceof IFile) {
+			String extension = resource.getFileExtension();
+			if(resource.getName().startsWith(name) && (extensions.isEmpty() 
+					|| extensions.contains(extension == null ? null : extension.toLowerCase()))) {
+				resources.add(resource);
+			}
 		}
 		ResourcePathDescriptor[] filesPathes = new ResourcePathDescriptor[resources.size()];
 		for(int i=0; i<filesPathes.length; i++) {
@@ -289,47 +292,4 @@ public class ResourcePathProposalType extends ModelProposalType {
 			return resource;
 		}
 	}
-
-	private static class ResourceFinder implements IResourceVisitor {
-		private List<IResource> resources;
-		private int count = 0;
-		private String name;
-		Set<String> extensions;
-
-		/**
-		 * @param resources
-		 * @param name
-		 * @param extensions
-		 */
-		public ResourceFinder(List<IResource> resources, String name, Set<String> extensions) {
-			this.resources = resources;
-			this.name = name;
-			this.extensions = extensions;
-		}
-
-		boolean acceptExtension(String ext) {
-			if(ext != null) {
-		        ext = ext.toLowerCase();
-			}
-			return extensions == null || extensions.isEmpty() || extensions.contains(ext);
-		}
-
-		@Override
-		public boolean visit(IResource resource) throws CoreException {
-			if(resource instanceof IFile) {
-				IFile file = (IFile)resource;
-				if(resource.getName().startsWith(name) && acceptExtension(file.getFileExtension())) {
-					resources.add(resource);
-				}
-			} else if(resource instanceof IFolder) {
-				if(count==0) {
-					count++;
-					return true;
-				} else if(resource.getName().startsWith(name) && (!resource.getName().equals("WEB-INF")) && (!resource.getName().equals("META-INF"))) { //$NON-NLS-1$ //$NON-NLS-2$
-					resources.add(resource);
-				}
-			}
-			return false;
-		}
-	}
 }
\ No newline at end of file
@@ -12,14 +12,22 @@ package org.jboss.tools.jst.web.kb.internal.scanner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
@@ -35,8 +43,11 @@ import org.jboss.tools.jst.web.WebModelPlugin;
 import org.jboss.tools.jst.web.kb.IKbProject;
 import org.jboss.tools.jst.web.kb.KbProjectFactory;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics;
 import org.jboss.tools.jst.web.kb.internal.KbProject;
+import org.jboss.tools.jst.web.kb.internal.WorkerThreads;
 import org.jboss.tools.jst.web.model.helpers.InnerModelHelper;
+import org.w3c.dom.Element;
 
 /**
  * Monitors class path of project and loads kb components of it.
@@ -67,6 +78,21 @@ public class ClassPathMonitor extends AbstractClassPathMonitor<KbProject> {
 
 	boolean isProcessed = false;
 
+	private static final String PREFERENCE_KEY = WebKbPlugin.PLUGIN_ID + ".preferences.cpm."; //$NON-NLS-1$
+	/**
+	 * Number of threads scanning class path libraries. 
+	 * If not set, the number of processors, but not more than DEFAULT_MAX_SCAN_THREADS is used.
+	 * Value 1 means that libraries are scanned in the builder thread.
+	 */
+	public static final String SCAN_THREADS_PREFERENCE = PREFERENCE_KEY + "scanThreads"; //$NON-NLS-1$
+	static final int DEFAULT_MAX_SCAN_THREADS = 4;
+
+	private volatile IProgressMonitor progressMonitor;
+	private List<LibraryScanTime> lastScanTimes = new ArrayList<LibraryScanTime>();
+	private volatile long lastWorkerAllocated = 0;
+	private volatile boolean measureAllocated = false;
+	private volatile int scanCount = 0;
+
 	/**
 	 * Loads kb components from items recently added to class path. 
 	 */
@@ -84,36 +110,256 @@ public class ClassPathMonitor extends AbstractClassPathMonitor<KbProject> {
 			ModelPlugin.getDefault().logError("Failed to process class path in kb builder for project " + project);
 			return;
 		}
+		LibraryDeclarationsCache cache = LibraryDeclarationsCache.getInstance();
 		for (String p: syncProcessedPaths()) {
 			project.pathRemoved(new Path(p));
+			cache.removeReference(project.getProject().getName(), p);
 		}
+		List<LibraryScan> scans = new ArrayList<LibraryScan>();
 		for (int i = 0; i < paths.size(); i++) {
 			String p = paths.get(i);
 			if(!requestForLoad(p)) continue;
 
-			LibraryScanner scanner = new LibraryScanner();
-
 			String fileName = new File(p).getName();
 			if(EclipseResourceUtil.SYSTEM_JAR_SET.contains(fileName)) continue;
 
 			XModelObject o = FileSystemsHelper.getLibs(model).getLibrary(p);
 			if(o == null) continue;
-			
-			LoadedDeclarations c = null;
-			try {
-				if(scanner.isLikelyComponentSource(o)) {
-					c = scanner.parse(o, new Path(p), project);
+
+			scans.add(new LibraryScan(p, o));
+		}
+
+		scanLibraries(scans);
+		
+		validateProjectDependencies();
+	}
+
+	/**
+	 * Jar files are digested, stored declarations are read, and entries of jars not
+	 * in the cache are listed by a pool of worker threads. Declarations are loaded 
+	 * into the XModel or scanned from it, and registered, in this thread in class path 
+	 * order, as soon as the next library in that order is prepared. Scanners build 
+	 * declarations from XModel objects, and the XModel is not thread safe, 
+	 * so parsing is not done by worker threads; they only let this thread skip
+	 * jars that have nothing to parse.
+	 * 
+	 * @param scans
+	 */
+	private void scanLibraries(List<LibraryScan> scans) {
+		List<LibraryScanTime> times = new ArrayList<LibraryScanTime>();
+		long workerAllocated = 0;
+		measureAllocated = KbBuildStatistics.isEnabled(getProjectResource());
+		int threads = Math.min(getScanThreadCount(getProjectResource()), scans.size());
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, WorkerThreads.createThreadFactory("KB library scanner")) : null;
+		try {
+			List<Future<LibraryScan>> results = new ArrayList<Future<LibraryScan>>();
+			for (LibraryScan scan: scans) {
+				if(executor != null) {
+					results.add(executor.submit(scan));
 				}
-			} catch (ScannerException e) {
-				WebModelPlugin.getDefault().logError(e);
 			}
-			if(c == null) {
-				c = new LoadedDeclarations();
+			for (int i = 0; i < scans.size(); i++) {
+				checkCanceled();
+				LibraryScan scan = scans.get(i);
+				try {
+					if(executor != null) {
+						results.get(i).get();
+						workerAllocated = (workerAllocated < 0 || scan.allocated < 0) ? -1 : workerAllocated + scan.allocated;
+					} else {
+						scan.call();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				} catch (ExecutionException e) {
+					WebModelPlugin.getDefault().logError(e);
+				}
+				LoadedDeclarations c = scan.load();
+				if(c == null) {
+					c = new LoadedDeclarations();
+				}
+				componentsLoaded(c, new Path(scan.path));
+				times.add(new LibraryScanTime(scan.path, scan.time, c.getLibraries().size()));
+			}
+		} catch (OperationCanceledException e) {
+			// Libraries that were requested for load but not registered have to be processed again. 
+			clean();
+			throw e;
+		} finally {
+			if(executor != null) {
+				executor.shutdownNow();
 			}
-			componentsLoaded(c, new Path(p));
+			lastScanTimes = times;
+			lastWorkerAllocated = workerAllocated;
+			scanCount++;
+		}
+	}
+
+	private void checkCanceled() {
+		IProgressMonitor monitor = progressMonitor;
+		if(monitor != null && monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+	}
+
+	/**
+	 * Returns the number of scanning threads set by SCAN_THREADS_PREFERENCE
+	 * for the project, in the workspace or by default.
+	 * 
+	 * @param project
+	 * @return
+	 */
+	public static int getScanThreadCount(IProject project) {
+		return WorkerThreads.getThreadCount(project, SCAN_THREADS_PREFERENCE, DEFAULT_MAX_SCAN_THREADS);
+	}
+
+	/**
+	 * Returns time spent on scanning each library of the last processed
+	 * class path items, the slowest libraries first.
+	 * 
+	 * @return
+	 */
+	public List<LibraryScanTime> getLastScanTimes() {
+		List<LibraryScanTime> result = new ArrayList<LibraryScanTime>(lastScanTimes);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns bytes allocated by worker threads in the last processing of class path 
+	 * items, 0 if libraries were scanned by the builder thread, or -1 if not supported
+	 * or if builds of the project are not recorded by KbBuildStatistics.
+	 * 
+	 * @return
+	 */
+	public long getLastWorkerAllocatedBytes() {
+		return lastWorkerAllocated;
+	}
+
+	/**
+	 * Returns the number of times libraries were scanned, so that callers
+	 * can tell if the last scan times are new.
+	 * 
+	 * @return
+	 */
+	public int getScanCount() {
+		return scanCount;
+	}
+
+	/**
+	 * Scan of one class path item. Method call() computes the digest, reads 
+	 * stored declarations, or if there are none, lists entries of the jar; 
+	 * it does not access the XModel and may be run by a worker thread.
+	 * Method load() is run by the builder thread.
+	 */
+	class LibraryScan implements Callable<LibraryScan> {
+		String path;
+		XModelObject object;
+		long time;
+		long allocated;
+
+		String digest;
+		Element stored;
+		boolean mayContainDeclarations = true;
+
+		LibraryScan(String path, XModelObject object) {
+			this.path = path;
+			this.object = object;
+		}
+
+		@Override
+		public LibraryScan call() {
+			if(progressMonitor != null && progressMonitor.isCanceled()) {
+				return this;
+			}
+			long t = System.currentTimeMillis();
+			long a = measureAllocated ? KbBuildStatistics.getAllocatedBytes() : -1;
+			LibraryDeclarationsCache cache = LibraryDeclarationsCache.getInstance();
+			digest = cache.getDigest(new File(path));
+			if(digest != null) {
+				cache.addReference(project.getProject().getName(), path, digest);
+				stored = cache.read(digest, new Path(path));
+			}
+			if(stored == null) {
+				mayContainDeclarations = LibraryScanner.mayContainDeclarations(new File(path));
+			}
+			allocated = a < 0 ? -1 : KbBuildStatistics.getAllocatedBytes() - a;
+			time = System.currentTimeMillis() - t;
+			return this;
+		}
+
+		LoadedDeclarations load() {
+			long t = System.currentTimeMillis();
+			IPath source = new Path(path);
+			LibraryDeclarationsCache cache = LibraryDeclarationsCache.getInstance();
+			LoadedDeclarations c = null;
+			if(digest != null) {
+				c = cache.get(digest, stored, object, source, project);
+				stored = null;
+			}
+			if(c == null && mayContainDeclarations) {
+				LibraryScanner scanner = new LibraryScanner();
+				try {
+					if(scanner.isLikelyComponentSource(object)) {
+						c = scanner.parse(object, source, project);
+						// Only results of a completed scan are cached. A library skipped 
+						// by the heuristic or failed to scan is looked at again next time.
+						if(c != null && digest != null) {
+							cache.put(digest, c, object, source);
+						}
+					}
+				} catch (ScannerException e) {
+					WebModelPlugin.getDefault().logError(e);
+				}
+			}
+			time += System.currentTimeMillis() - t;
+			return c;
+		}
+	}
+
+	/**
+	 * Time spent on scanning one class path item.
+	 */
+	public static class LibraryScanTime implements Comparable<LibraryScanTime> {
+		private String path;
+		private long time;
+		private int libraries;
+
+		public LibraryScanTime(String path, long time, int libraries) {
+			this.path = path;
+			this.time = time;
+			this.libraries = libraries;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Time in milliseconds.
+		 * @return
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Number of tag libraries loaded from the class path item.
+		 * @return
+		 */
+		public int getLibraryCount() {
+			return libraries;
+		}
+
+		@Override
+		public int compareTo(LibraryScanTime o) {
+			return time > o.time ? -1 : time == o.time ? path.compareTo(o.path) : 1;
+		}
+
+		@Override
+		public String toString() {
+			return path + " " + time + " ms, " + libraries + " libraries"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 		}
-		
-		validateProjectDependencies();
 	}
 	
 	public void waitProcess() {
@@ -200,6 +446,25 @@ public class ClassPathMonitor extends AbstractClassPathMonitor<KbProject> {
 	}
 
 	public void build() {
+		build(null);
+	}
+
+	/**
+	 * Updates class path and loads kb components from new items.
+	 * Scanning of libraries stops when the monitor is canceled.
+	 * 
+	 * @param monitor
+	 */
+	public void build(IProgressMonitor monitor) {
+		progressMonitor = monitor;
+		try {
+			doBuild();
+		} finally {
+			progressMonitor = null;
+		}
+	}
+
+	private void doBuild() {
 		waitProcess();
 		if(update()) {
 			process();
@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal.scanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.runtime.IPath;
+import org.jboss.tools.common.model.XModelObject;
+import org.jboss.tools.common.model.project.ext.store.XMLStoreConstants;
+import org.jboss.tools.common.util.FileUtil;
+import org.jboss.tools.common.xml.XMLUtilities;
+import org.jboss.tools.jst.web.kb.IKbProject;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
+import org.w3c.dom.Element;
+
+/**
+ * Workspace-wide cache of declarations loaded from jar files. A jar is identified
+ * by the digest of its content, so that all projects referencing identical jars
+ * share one scan result, wherever the jars are located.
+ *
+ * Declarations of each jar are stored in file '[digest].xml' of the cache folder.
+ * Links to XModel objects are stored relative to the jar, so that the declarations
+ * can be loaded into the XModel of any project. File 'index' keeps digests of known
+ * jar files by their location, size and modification time, and the class path entries
+ * of projects referencing each digest. Declarations not referenced by any project are
+ * evicted when the cache is stored.
+ *
+ * The index also keeps the version of the cache, made of FORMAT_VERSION and the version 
+ * of the plug-in. If it does not match the version of the running cache, or there is 
+ * no index, all stored declarations are discarded, so that declarations scanned 
+ * or stored by another version of scanners are never loaded.
+ */
+public class LibraryDeclarationsCache {
+	static final String FOLDER = "libraries"; //$NON-NLS-1$
+	static final String INDEX_FILE = "index"; //$NON-NLS-1$
+	static final String ENTRY_EXTENSION = ".xml"; //$NON-NLS-1$
+	static final String DIGEST_PREFIX = "digest:"; //$NON-NLS-1$
+	static final String REFERENCE_PREFIX = "ref:"; //$NON-NLS-1$
+	static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+	static final String VERSION_KEY = "version"; //$NON-NLS-1$
+
+	/**
+	 * Should be changed when the format of stored declarations changes.
+	 */
+	public static final String FORMAT_VERSION = "1"; //$NON-NLS-1$
+
+	private static LibraryDeclarationsCache instance = null;
+
+	public static synchronized LibraryDeclarationsCache getInstance() {
+		if(instance == null) {
+			File folder = WebKbPlugin.getDefault().getStateLocation().append(FOLDER).toFile();
+			String version = FORMAT_VERSION + "-" + WebKbPlugin.getDefault().getBundle().getVersion(); //$NON-NLS-1$
+			instance = new LibraryDeclarationsCache(folder, version);
+		}
+		return instance;
+	}
+
+	private File folder;
+	private String version;
+	private boolean loaded = false;
+	private boolean modified = false;
+
+	/*
+	 * Location, size and modification time of jar file -> digest.
+	 */
+	private Map<String, String> digests = new HashMap<String, String>();
+
+	/*
+	 * Project name -> class path entry -> digest.
+	 */
+	private Map<String, Map<String, String>> references = new HashMap<String, Map<String, String>>();
+
+	/*
+	 * Digest -> declarations scanned in this session.
+	 */
+	private Map<String, SoftReference<Template>> templates = new HashMap<String, SoftReference<Template>>();
+
+	private AtomicInteger hits = new AtomicInteger();
+	private AtomicInteger misses = new AtomicInteger();
+
+	public LibraryDeclarationsCache(File folder) {
+		this(folder, FORMAT_VERSION);
+	}
+
+	/**
+	 * @param folder
+	 * @param version data stored with another version is discarded
+	 */
+	public LibraryDeclarationsCache(File folder, String version) {
+		this.folder = folder;
+		this.version = version;
+	}
+
+	public File getFolder() {
+		return folder;
+	}
+
+	/**
+	 * Returns digest of jar content. The digest is computed only if the jar
+	 * is not known yet or its size or modification time changed.
+	 *
+	 * @param file
+	 * @return digest or null if the file cannot be read
+	 */
+	public String getDigest(File file) {
+		if(!file.isFile()) {
+			return null;
+		}
+		String key = file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified(); //$NON-NLS-1$ //$NON-NLS-2$
+		synchronized (this) {
+			load();
+			String digest = digests.get(key);
+			if(digest != null) {
+				return digest;
+			}
+		}
+		String digest = computeDigest(file);
+		if(digest != null) {
+			synchronized (this) {
+				digests.put(key, digest);
+				modified = true;
+			}
+		}
+		return digest;
+	}
+
+	static String computeDigest(File file) {
+		InputStream in = null;
+		try {
+			MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			in = new FileInputStream(file);
+			byte[] buffer = new byte[8192];
+			int n = 0;
+			while((n = in.read(buffer)) > 0) {
+				md.update(buffer, 0, n);
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(Long.toHexString(file.length())).append('-');
+			for (byte b: md.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} catch (NoSuchAlgorithmException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads declarations stored for the digest, unless declarations scanned 
+	 * in this session from the same path can be cloned. Does not access the XModel,
+	 * so that it may be called by a worker thread before get(). 
+	 *
+	 * @param digest
+	 * @param path class path entry
+	 * @return stored element or null
+	 */
+	public Element read(String digest, IPath path) {
+		Template template = null;
+		File file = null;
+		synchronized (this) {
+			load();
+			SoftReference<Template> ref = templates.get(digest);
+			template = ref == null ? null : ref.get();
+			file = getFile(digest);
+		}
+		if(template != null && template.path.equals(path)) {
+			return null;
+		}
+		return file.isFile() ? XMLUtilities.getElement(file, null) : null;
+	}
+
+	/**
+	 * Returns a copy of declarations cached for the digest, or null if there are none.
+	 * Declarations scanned in this session from the same path are cloned, otherwise
+	 * stored declarations are loaded into the XModel of the jar object.
+	 *
+	 * @param digest
+	 * @param jar XModel object of the jar in the model of the requesting project
+	 * @param path class path entry
+	 * @param project requesting project
+	 * @return
+	 */
+	public LoadedDeclarations get(String digest, XModelObject jar, IPath path, IKbProject project) {
+		return get(digest, null, jar, path, project);
+	}
+
+	/**
+	 * Same as get(digest, jar, path, project), with stored declarations 
+	 * already read by read(digest, path). Should be called by the thread
+	 * that owns the XModel of the jar object.
+	 *
+	 * @param digest
+	 * @param stored element returned by read(digest, path), or null to read it here
+	 * @param jar
+	 * @param path
+	 * @param project
+	 * @return
+	 */
+	public LoadedDeclarations get(String digest, Element stored, XModelObject jar, IPath path, IKbProject project) {
+		Template template = null;
+		File file = null;
+		synchronized (this) {
+			load();
+			SoftReference<Template> ref = templates.get(digest);
+			template = ref == null ? null : ref.get();
+			file = getFile(digest);
+		}
+		if(template != null && template.path.equals(path)) {
+			try {
+				LoadedDeclarations ds = template.copy();
+				hits.incrementAndGet();
+				return ds;
+			} catch (CloneNotSupportedException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+		Element element = stored != null ? stored : file.isFile() ? XMLUtilities.getElement(file, null) : null;
+		if(element == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		Properties context = createContext(jar, path);
+		if(project != null) {
+			context.put("kbProject", project); //$NON-NLS-1$
+		}
+		LoadedDeclarations ds = LibraryProxy.loadLibraries(element, context);
+		hits.incrementAndGet();
+		return ds;
+	}
+
+	/**
+	 * Caches declarations scanned from the jar. Should be called before the declarations
+	 * are registered in a project.
+	 *
+	 * @param digest
+	 * @param ds
+	 * @param jar
+	 * @param path
+	 */
+	public void put(String digest, LoadedDeclarations ds, XModelObject jar, IPath path) {
+		Template template = null;
+		try {
+			template = new Template(path, ds);
+		} catch (CloneNotSupportedException e) {
+			WebKbPlugin.getDefault().logError(e);
+			return;
+		}
+		Element element = XMLUtilities.createDocumentElement("path"); //$NON-NLS-1$
+		element.setAttribute("value", path.toString()); //$NON-NLS-1$
+		LibraryProxy.storeLibraries(element, ds, createContext(jar, path));
+		synchronized (this) {
+			load();
+			templates.put(digest, new SoftReference<Template>(template));
+			folder.mkdirs();
+			try {
+				XMLUtilities.serialize(element, getFile(digest).getAbsolutePath());
+			} catch (IOException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+	}
+
+	private Properties createContext(XModelObject jar, IPath path) {
+		Properties context = new Properties();
+		context.put(XMLStoreConstants.ATTR_PATH, path);
+		if(jar != null) {
+			context.put(XMLStoreConstants.KEY_MODEL_OBJECT, jar);
+		}
+		return context;
+	}
+
+	private File getFile(String digest) {
+		return new File(folder, digest + ENTRY_EXTENSION);
+	}
+
+	/**
+	 * Registers the class path entry of the project as a reference to the digest.
+	 *
+	 * @param project
+	 * @param path
+	 * @param digest
+	 */
+	public synchronized void addReference(String project, String path, String digest) {
+		load();
+		Map<String, String> paths = references.get(project);
+		if(paths == null) {
+			paths = new HashMap<String, String>();
+			references.put(project, paths);
+		}
+		if(!digest.equals(paths.put(path, digest))) {
+			modified = true;
+		}
+	}
+
+	public synchronized void removeReference(String project, String path) {
+		load();
+		Map<String, String> paths = references.get(project);
+		if(paths != null && paths.remove(path) != null) {
+			if(paths.isEmpty()) {
+				references.remove(project);
+			}
+			modified = true;
+		}
+	}
+
+	/**
+	 * Removes references of projects that are not in the set.
+	 *
+	 * @param projects names of existing projects
+	 */
+	public synchronized void retainProjects(Set<String> projects) {
+		load();
+		if(references.keySet().retainAll(projects)) {
+			modified = true;
+		}
+	}
+
+	public synchronized boolean isReferenced(String digest) {
+		load();
+		return getReferencedDigests().contains(digest);
+	}
+
+	public synchronized boolean contains(String digest) {
+		return getFile(digest).isFile();
+	}
+
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Evicts declarations not referenced by any project and writes the index.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void store() throws IOException {
+		load();
+		evict();
+		if(!modified) {
+			return;
+		}
+		folder.mkdirs();
+		Properties p = new Properties();
+		p.setProperty(VERSION_KEY, version);
+		for (String key: digests.keySet()) {
+			p.setProperty(DIGEST_PREFIX + key, digests.get(key));
+		}
+		for (String project: references.keySet()) {
+			Map<String, String> paths = references.get(project);
+			for (String path: paths.keySet()) {
+				p.setProperty(REFERENCE_PREFIX + project + "/" + path, paths.get(path)); //$NON-NLS-1$
+			}
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(new File(folder, INDEX_FILE));
+			p.store(out, null);
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+		modified = false;
+	}
+
+	/**
+	 * Deletes all cached data.
+	 */
+	public synchronized void clear() {
+		if(folder.exists()) {
+			FileUtil.remove(folder);
+		}
+		digests.clear();
+		references.clear();
+		templates.clear();
+		loaded = true;
+		modified = false;
+	}
+
+	/**
+	 * Deletes stored data that cannot be trusted, so that the index is written anew.
+	 */
+	private void discard() {
+		if(folder.exists()) {
+			FileUtil.remove(folder);
+		}
+		modified = true;
+	}
+
+	private void evict() {
+		Set<String> used = getReferencedDigests();
+		if(templates.keySet().retainAll(used) | digests.values().retainAll(used)) {
+			modified = true;
+		}
+		File[] fs = folder.listFiles();
+		if(fs != null) for (File f: fs) {
+			String name = f.getName();
+			if(name.endsWith(ENTRY_EXTENSION) && !used.contains(name.substring(0, name.length() - ENTRY_EXTENSION.length()))) {
+				f.delete();
+			}
+		}
+	}
+
+	private Set<String> getReferencedDigests() {
+		Set<String> result = new HashSet<String>();
+		for (Map<String, String> paths: references.values()) {
+			result.addAll(paths.values());
+		}
+		return result;
+	}
+
+	private void load() {
+		if(loaded) {
+			return;
+		}
+		loaded = true;
+		File index = new File(folder, INDEX_FILE);
+		if(!index.isFile()) {
+			discard();
+			return;
+		}
+		Properties p = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(index);
+			p.load(in);
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		if(!version.equals(p.getProperty(VERSION_KEY))) {
+			discard();
+			return;
+		}
+		Iterator<String> it = p.stringPropertyNames().iterator();
+		while(it.hasNext()) {
+			String key = it.next();
+			String digest = p.getProperty(key);
+			if(key.startsWith(DIGEST_PREFIX)) {
+				digests.put(key.substring(DIGEST_PREFIX.length()), digest);
+			} else if(key.startsWith(REFERENCE_PREFIX)) {
+				String s = key.substring(REFERENCE_PREFIX.length());
+				int i = s.indexOf('/');
+				if(i > 0) {
+					addReference(s.substring(0, i), s.substring(i + 1), digest);
+				}
+			}
+		}
+		modified = false;
+	}
+
+	/**
+	 * Declarations scanned from a jar, kept unregistered to be cloned for other projects.
+	 */
+	static class Template {
+		IPath path;
+		LoadedDeclarations declarations;
+
+		Template(IPath path, LoadedDeclarations ds) throws CloneNotSupportedException {
+			this.path = path;
+			declarations = clone(ds);
+		}
+
+		LoadedDeclarations copy() throws CloneNotSupportedException {
+			return clone(declarations);
+		}
+
+		static LoadedDeclarations clone(LoadedDeclarations ds) throws CloneNotSupportedException {
+			LoadedDeclarations result = new LoadedDeclarations();
+			for (ITagLibrary f: ds.getLibraries()) {
+				result.getLibraries().add(f.clone());
+			}
+			return result;
+		}
+	}
+}
@@ -10,11 +10,23 @@
  ******************************************************************************/ 
 package org.jboss.tools.jst.web.kb.internal.scanner;
 
+import java.util.List;
 import java.util.Properties;
 
 import org.jboss.tools.common.model.XModelObject;
+import org.jboss.tools.common.model.project.ext.store.XMLStoreConstants;
+import org.jboss.tools.common.xml.XMLUtilities;
 import org.jboss.tools.jst.web.kb.internal.KbObject;
+import org.jboss.tools.jst.web.kb.internal.KbXMLStoreConstants;
 import org.jboss.tools.jst.web.kb.internal.taglib.AbstractTagLib;
+import org.jboss.tools.jst.web.kb.internal.taglib.FaceletTagLibrary;
+import org.jboss.tools.jst.web.kb.internal.taglib.FacesConfigTagLibrary;
+import org.jboss.tools.jst.web.kb.internal.taglib.TLDLibrary;
+import org.jboss.tools.jst.web.kb.internal.taglib.composite.CompositeTagLibrary;
+import org.jboss.tools.jst.web.kb.internal.taglib.myfaces.MyFacesTagLibrary;
+import org.jboss.tools.jst.web.kb.taglib.ICompositeTagLibrary;
+import org.jboss.tools.jst.web.kb.taglib.ICustomTagLibrary;
+import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
 import org.w3c.dom.Element;
 
 /**
@@ -58,4 +70,73 @@ public class LibraryProxy extends KbObject {
 			library.loadXML(element, context);
 		}
 	}
+
+	/**
+	 * Stores libraries loaded from one source path into child element 'libraries'.
+	 * Libraries backed by XModel objects are stored as links to these objects.
+	 * 
+	 * @param pathElement
+	 * @param ds
+	 * @param context
+	 */
+	public static void storeLibraries(Element pathElement, LoadedDeclarations ds, Properties context) {
+		List<ITagLibrary> fs = ds.getLibraries();
+		if(fs != null && !fs.isEmpty()) {
+			Element cse = XMLUtilities.createElement(pathElement, "libraries"); //$NON-NLS-1$
+			for (ITagLibrary d: fs) {
+				if(d instanceof ICustomTagLibrary) continue;
+				AbstractTagLib t = (AbstractTagLib)d;
+				if(!(t instanceof ICompositeTagLibrary) && !(t instanceof MyFacesTagLibrary)) {
+					LibraryProxy proxy = new LibraryProxy(t);
+					proxy.toXML(cse, context);
+				} else {
+					t.toXML(cse, context);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Loads libraries stored by storeLibraries().
+	 * 
+	 * @param pathElement
+	 * @param context
+	 * @return
+	 */
+	public static LoadedDeclarations loadLibraries(Element pathElement, Properties context) {
+		LoadedDeclarations ds = new LoadedDeclarations();
+
+		Element libraries = XMLUtilities.getUniqueChild(pathElement, "libraries"); //$NON-NLS-1$
+		if(libraries != null) {
+			Element[] cs = XMLUtilities.getChildren(libraries, KbXMLStoreConstants.TAG_LIBRARY);
+			for (Element library: cs) {
+				String cls = library.getAttribute(XMLStoreConstants.ATTR_CLASS);
+				AbstractTagLib tagLib = null;
+				if(KbXMLStoreConstants.CLS_TLD_LIBRARY.equals(cls)) {
+					tagLib = new TLDLibrary();
+				} else if(KbXMLStoreConstants.CLS_FACELET_LIBRARY.equals(cls)) {
+					tagLib = new FaceletTagLibrary();
+				} else if(KbXMLStoreConstants.CLS_FACESCONFIG_LIBRARY.equals(cls)) {
+					tagLib = new FacesConfigTagLibrary();
+				} else if(KbXMLStoreConstants.CLS_COMPOSITE_LIBRARY.equals(cls)) {
+					tagLib = new CompositeTagLibrary();
+				} else if(KbXMLStoreConstants.CLS_MYFACES_LIBRARY.equals(cls)) {
+					tagLib = new MyFacesTagLibrary();
+				} else {
+					//consider other cases;
+				}
+				if(tagLib != null && !(tagLib instanceof ICompositeTagLibrary) && !(tagLib instanceof MyFacesTagLibrary)) {
+					LibraryProxy proxy = new LibraryProxy(tagLib);
+					proxy.loadXML(library, context);
+					tagLib = proxy.getLibrary();
+				} else if(tagLib != null) {
+					tagLib.loadXML(library, context);
+				}
+				if(tagLib != null) {
+					ds.getLibraries().add(tagLib);
+				}
+			}
+		}
+		return ds;
+	}
 }
@@ -10,7 +10,12 @@
  ******************************************************************************/ 
 package org.jboss.tools.jst.web.kb.internal.scanner;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
 import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
@@ -74,6 +79,47 @@ public class LibraryScanner implements IFileScanner {
 		return parse(o, f.getFullPath(), sp);
 	}
 
+	/**
+	 * Lists entries of a jar file without the XModel, so that it may be called
+	 * by worker threads. Returns false only if the file is a readable archive
+	 * without any entry that parse() looks at, that is, without tld and xml files
+	 * and resources folder in META-INF; returns true if it cannot tell.
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public static boolean mayContainDeclarations(File file) {
+		String name = file.getName().toLowerCase();
+		if(!file.isFile() || !(name.endsWith(JAR_SUFFIX) || name.endsWith(ZIP_SUFFIX))) return true;
+		if(name.indexOf("jsf-impl") >= 0) return true; //$NON-NLS-1$
+		ZipFile zip = null;
+		try {
+			zip = new ZipFile(file);
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			String prefix = META_INF_PATH + "/"; //$NON-NLS-1$
+			while(entries.hasMoreElements()) {
+				String entry = entries.nextElement().getName();
+				if(!entry.startsWith(prefix)) continue;
+				entry = entry.substring(prefix.length());
+				if(entry.startsWith("resources/")) return true; //$NON-NLS-1$
+				if(entry.indexOf('/') >= 0) continue;
+				entry = entry.toLowerCase();
+				if(entry.endsWith(".tld") || entry.endsWith(".xml")) return true; //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return false;
+		} catch (IOException e) {
+			return true;
+		} finally {
+			if(zip != null) {
+				try {
+					zip.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
 	public boolean isLikelyComponentSource(XModelObject o) {
 		if(o == null) return false;
 		if(o.getChildByPath(META_INF_PATH) != null) return true;
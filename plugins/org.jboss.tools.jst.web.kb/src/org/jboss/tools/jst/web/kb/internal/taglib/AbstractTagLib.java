@@ -53,6 +53,7 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 	protected boolean hasExtendedComponents = false;
 	private Map<String, IComponent> components = new HashMap<String, IComponent>();
 	private IComponent[] componentsArray;
+	private volatile ComponentIndex componentIndex;
 	protected Set<CustomComponentExtension> componentExtensions;
 	protected boolean ignoreCase;
 
@@ -90,13 +91,22 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 	 */
 	@Override
 	public IComponent getComponentByType(String type) {
-		IComponent[] comps = getComponents();
-		for (int i = 0; i < comps.length; i++) {
-			if(type.equals(comps[i].getComponentType())) {
-				return comps[i];
-			}
+		return getComponentIndex().getComponentByType(type);
+	}
+
+	/**
+	 * Returns index of components returned by getComponents(). The index is built 
+	 * on the first request after components change. Subclasses that return components
+	 * not declared in this library should override this method.
+	 * @return
+	 */
+	ComponentIndex getComponentIndex() {
+		ComponentIndex index = componentIndex;
+		if(index == null) {
+			index = new ComponentIndex(getComponents(), ignoreCase);
+			componentIndex = index;
 		}
-		return null;
+		return index;
 	}
 
 	/* (non-Javadoc)
@@ -108,17 +118,13 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 	}
 
 	public IComponent[] getComponents(String nameTemplate, IPageContext context) {
+		IComponent[] comps = getComponentIndex().getComponents(ignoreCase ? nameTemplate.toLowerCase() : nameTemplate);
+		if(context == null || !hasExtendedComponents) {
+			return comps;
+		}
 		List<IComponent> list = new ArrayList<IComponent>();
-		IComponent[] comps = getComponents();
 		for (int i = 0; i < comps.length; i++) {
-			if(comps[i].getName()==null) {
-				continue;
-			}
-			if(ignoreCase) {
-				if(!(comps[i] instanceof CustomComponentExtension) && comps[i].getName().toLowerCase().startsWith(nameTemplate.toLowerCase()) && (context==null || checkExtended(comps[i], context))) {
-					list.add(comps[i]);
-				}
-			} else if(!(comps[i] instanceof CustomComponentExtension) && comps[i].getName().startsWith(nameTemplate) && (context==null || checkExtended(comps[i], context))) {
+			if(checkExtended(comps[i], context)) {
 				list.add(comps[i]);
 			}
 		}
@@ -307,6 +313,14 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 		return false;
 	}
 
+	/**
+	 * Returns true if component names of this library are case insensitive.
+	 * @return
+	 */
+	public boolean isIgnoreCase() {
+		return ignoreCase;
+	}
+
 	/**
 	 * Adds component to tag lib.
 	 * @param component
@@ -314,7 +328,7 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 	public void addComponent(IComponent component) {
 		adopt((KbObject)component);
 		components.put(component.getName(), component);
-		componentsArray=null;
+		clearComponentArrays();
 		if(component.isExtended()) {
 			hasExtendedComponents = true;
 		}
@@ -331,7 +345,7 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 				break;
 			}
 		}
-		componentsArray=null;
+		clearComponentArrays();
 	}
 
 	/*
@@ -488,6 +502,7 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 	public AbstractTagLib clone() throws CloneNotSupportedException {
 		AbstractTagLib t = (AbstractTagLib)super.clone();
 		t.components = new HashMap<String, IComponent>();
+		t.clearComponentArrays();
 		for (IComponent c: components.values()) {
 			if(c.isExtended()) {
 				t.hasExtendedComponents = true;
@@ -546,13 +561,14 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 				components.remove(removed.getName());
 				Change change = new Change(this, null, removed, null);
 				children.addChildren(Change.addChange(null, change));
-				clearComponentArrays();
 			}
 		}
+		clearComponentArrays();
 	}
 
 	private void clearComponentArrays() {
 		componentsArray = null;
+		componentIndex = null;
 	}
 
 	/*
@@ -636,7 +652,7 @@ public abstract class AbstractTagLib extends KbObject implements ITagLibrary {
 			((KbObject)c).dispose();
 		}
 		components.clear();
-		componentsArray = null;
+		clearComponentArrays();
 		super.dispose();
 	}
 }
\ No newline at end of file
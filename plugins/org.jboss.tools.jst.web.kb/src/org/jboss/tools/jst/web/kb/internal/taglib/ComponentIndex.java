@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal.taglib;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.tools.jst.web.kb.taglib.IComponent;
+
+/**
+ * Immutable index of components of a tag library. Components are sorted by name,
+ * lower-cased for libraries that ignore case, so that components which names start
+ * with a prefix are found by binary search. Components are also mapped by type.
+ *
+ * The index is built for a snapshot of components and should be rebuilt
+ * when components of the library change.
+ */
+class ComponentIndex {
+	private final String[] keys;
+	private final IComponent[] components;
+	private final Map<String, IComponent> byType = new HashMap<String, IComponent>();
+
+	/**
+	 * Creates index for the components. Components without name and
+	 * custom component extensions are not included into the name index.
+	 *
+	 * @param cs
+	 * @param ignoreCase
+	 */
+	ComponentIndex(IComponent[] cs, boolean ignoreCase) {
+		Entry[] entries = new Entry[cs.length];
+		int size = 0;
+		for (IComponent c: cs) {
+			String type = c.getComponentType();
+			if(type != null && !byType.containsKey(type)) {
+				byType.put(type, c);
+			}
+			String name = c.getName();
+			if(name == null || c instanceof CustomComponentExtension) {
+				continue;
+			}
+			entries[size++] = new Entry(ignoreCase ? name.toLowerCase() : name, c);
+		}
+		Arrays.sort(entries, 0, size, ENTRY_COMPARATOR);
+		keys = new String[size];
+		components = new IComponent[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = entries[i].key;
+			components[i] = entries[i].component;
+		}
+	}
+
+	/**
+	 * Returns components which keys start with the prefix,
+	 * sorted by name. The prefix should be lower-cased
+	 * if the index is built to ignore case.
+	 *
+	 * @param prefix
+	 * @return
+	 */
+	IComponent[] getComponents(String prefix) {
+		int start = Arrays.binarySearch(keys, prefix);
+		if(start < 0) {
+			start = -start - 1;
+		} else {
+			// Equal keys are possible for libraries ignoring case.
+			while(start > 0 && keys[start - 1].equals(prefix)) {
+				start--;
+			}
+		}
+		int end = start;
+		while(end < keys.length && keys[end].startsWith(prefix)) {
+			end++;
+		}
+		IComponent[] result = new IComponent[end - start];
+		System.arraycopy(components, start, result, 0, result.length);
+		return result;
+	}
+
+	IComponent getComponentByType(String type) {
+		return byType.get(type);
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	private static class Entry {
+		String key;
+		IComponent component;
+
+		Entry(String key, IComponent component) {
+			this.key = key;
+			this.component = component;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry o1, Entry o2) {
+			return o1.key.compareTo(o2.key);
+		}
+	};
+}
@@ -11,6 +11,7 @@
 package org.jboss.tools.jst.web.kb.internal.taglib;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,7 @@ public class FaceletTagLibrary extends FunctionTagLib implements
 
 	protected String compositeLibraryName = null;
 	protected Map<Object, Cloned> copies = new Hashtable<Object, Cloned>();
+	private volatile CompositeIndex compositeIndex;
 	
 	class Cloned {
 		IComponent origin;
@@ -58,6 +60,19 @@ public class FaceletTagLibrary extends FunctionTagLib implements
 		}
 	}
 
+	/**
+	 * Index of own and composite library components, with the components it was built for.
+	 */
+	static class CompositeIndex {
+		IComponent[] components;
+		ComponentIndex index;
+
+		CompositeIndex(IComponent[] components, boolean ignoreCase) {
+			this.components = components;
+			index = new ComponentIndex(components, ignoreCase);
+		}
+	}
+
 	public FaceletTagLibrary() {		
 	}
 
@@ -65,6 +80,7 @@ public class FaceletTagLibrary extends FunctionTagLib implements
 	public FaceletTagLibrary clone() throws CloneNotSupportedException {
 		FaceletTagLibrary copy = (FaceletTagLibrary)super.clone();
 		copy.compositeLibraryName = compositeLibraryName;
+		copy.compositeIndex = null;
 		return copy;
 	}
 
@@ -119,6 +135,27 @@ public class FaceletTagLibrary extends FunctionTagLib implements
 			}
 		}
 		copies.clear();
+		compositeIndex = null;
+	}
+
+	/**
+	 * Components of composite libraries may change without notice to this library,
+	 * so the index is reused only while getComponents() returns the same components.
+	 * Copies of unchanged components are kept, so that is checked by identity.
+	 */
+	@Override
+	ComponentIndex getComponentIndex() {
+		if(getCompositeLibraries().length == 0) {
+			compositeIndex = null;
+			return super.getComponentIndex();
+		}
+		IComponent[] cs = getComponents();
+		CompositeIndex index = compositeIndex;
+		if(index == null || !Arrays.equals(index.components, cs)) {
+			index = new CompositeIndex(cs, ignoreCase);
+			compositeIndex = index;
+		}
+		return index.index;
 	}
 
 	@Override
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.internal.validation;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IResource;
+import org.jboss.tools.common.el.core.model.ELInvocationExpression;
+import org.jboss.tools.common.el.core.resolver.ELContext;
+import org.jboss.tools.common.el.core.resolver.ELContextImpl;
+import org.jboss.tools.common.el.core.resolver.Var;
+import org.jboss.tools.jst.web.kb.IPageContext;
+import org.jboss.tools.jst.web.kb.IResourceBundle;
+
+/**
+ * Resolutions of EL operands in pages, shared by operands with the same text 
+ * and the same scope during one validation run. The scope of an operand is 
+ * the project of the page, variables visible at the operand and resource bundles
+ * loaded by the page. Operands starting with 'cc' depend on the composite component 
+ * defined by the page, so the page is a part of their scope.
+ * 
+ * A memo is created for one run of the validator and dropped after it, so 
+ * resolutions never outlive changes of Java sources and properties files.
+ * Counts of hits and misses show how many resolutions were saved.
+ */
+public class ELResolutionMemo {
+	static final int MAX_SIZE = 20000;
+
+	private Map<String, ELValidator.ResolvedOperand> resolutions = new ConcurrentHashMap<String, ELValidator.ResolvedOperand>();
+	private AtomicInteger hits = new AtomicInteger();
+	private AtomicInteger misses = new AtomicInteger();
+
+	public ELResolutionMemo() {}
+
+	/**
+	 * Returns the key of the operand in the context, or null 
+	 * if resolution of the operand should not be shared.
+	 * 
+	 * @param context
+	 * @param operand
+	 * @param documentOffset
+	 * @return
+	 */
+	public String getKey(ELContext context, ELInvocationExpression operand, int documentOffset) {
+		IResource resource = context.getResource();
+		if(!(context instanceof IPageContext) || !(context instanceof ELContextImpl) || resource == null) {
+			return null;
+		}
+		String text = operand.getText();
+		StringBuilder key = new StringBuilder(text).append('\n').append(resource.getProject().getName());
+		if(text.equals("cc") || text.startsWith("cc.") || text.startsWith("cc[")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			key.append('\n').append(resource.getFullPath());
+		}
+		Var[] vars = ((ELContextImpl)context).getVars(documentOffset + operand.getFirstToken().getStart());
+		if(vars != null) {
+			for (Var var: vars) {
+				key.append('\n').append(var.getName()).append('=').append(var.getValue());
+			}
+		}
+		IResourceBundle[] bundles = ((IPageContext)context).getResourceBundles();
+		if(bundles.length > 0) {
+			String[] names = new String[bundles.length];
+			for (int i = 0; i < bundles.length; i++) {
+				names[i] = bundles[i].getVar() + '=' + bundles[i].getBasename();
+			}
+			Arrays.sort(names);
+			for (String name: names) {
+				key.append("\nbundle:").append(name); //$NON-NLS-1$
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the shared resolution for the key, or null.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public ELValidator.ResolvedOperand get(String key) {
+		ELValidator.ResolvedOperand result = resolutions.get(key);
+		if(result != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return result;
+	}
+
+	public void put(String key, ELValidator.ResolvedOperand resolved) {
+		if(resolutions.size() < MAX_SIZE) {
+			resolutions.put(key, resolved);
+		}
+	}
+
+	/**
+	 * Returns the number of operands which resolutions were taken from the memo.
+	 * @return
+	 */
+	public int getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of operands resolved by resolvers.
+	 * @return
+	 */
+	public int getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the ratio of hits to all lookups, or 0 if there were no lookups.
+	 * @return
+	 */
+	public double getHitRate() {
+		int h = hits.get();
+		int all = h + misses.get();
+		return all == 0 ? 0 : (double)h / all;
+	}
+
+	public int size() {
+		return resolutions.size();
+	}
+}
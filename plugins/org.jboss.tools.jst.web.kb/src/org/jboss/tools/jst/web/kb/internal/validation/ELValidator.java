@@ -12,9 +12,16 @@ package org.jboss.tools.jst.web.kb.internal.validation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
@@ -72,9 +79,14 @@ import org.jboss.tools.common.validation.IValidatingProjectTree;
 import org.jboss.tools.common.validation.PreferenceInfoManager;
 import org.jboss.tools.common.validation.SkipValidation;
 import org.jboss.tools.common.validation.ValidatorManager;
+import org.jboss.tools.jst.web.kb.IKbProject;
+import org.jboss.tools.jst.web.kb.KbProjectFactory;
 import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.include.IIncludeModel;
+import org.jboss.tools.jst.web.kb.internal.IIncludeModelExtension;
 import org.jboss.tools.jst.web.kb.internal.KbBuilder;
+import org.jboss.tools.jst.web.kb.internal.WorkerThreads;
 import org.jboss.tools.jst.web.kb.preferences.ELSeverityPreferences;
 
 /**
@@ -119,6 +131,22 @@ public class ELValidator extends WebValidator implements IStringValidator {
 	private boolean revalidateUnresolvedELs = false;
 	private boolean validateVars = true;
 
+	private static final String PREFERENCE_KEY = WebKbPlugin.PLUGIN_ID + ".preferences.el."; //$NON-NLS-1$
+	/**
+	 * Number of threads building page contexts of validated files.
+	 * If not set, the number of processors, but not more than DEFAULT_MAX_VALIDATION_THREADS is used.
+	 * Value 1 means that files are validated in the validation thread only.
+	 */
+	public static final String VALIDATION_THREADS_PREFERENCE = PREFERENCE_KEY + "validationThreads"; //$NON-NLS-1$
+	static final int DEFAULT_MAX_VALIDATION_THREADS = 8;
+	/**
+	 * Number of files per worker thread which contexts may be built ahead of the file being validated.
+	 */
+	static final int FILES_AHEAD_PER_THREAD = 4;
+
+	private ELResolutionMemo resolutionMemo;
+	private ELResolutionMemo lastResolutionMemo;
+
 	public ELValidator() {
 	}
 
@@ -159,6 +187,7 @@ public class ELValidator extends WebValidator implements IStringValidator {
 	public IStatus validate(Set<IFile> changedFiles, IProject project, ContextValidationHelper validationHelper, IProjectValidationContext context, ValidatorManager manager, IReporter reporter) throws ValidationException {
 		init(project, validationHelper, context, manager, reporter);
 		initRevalidationFlag();
+		resolutionMemo = new ELResolutionMemo();
 		IWorkspaceRoot wsRoot = ResourcesPlugin.getWorkspace().getRoot();
 
 		Set<IFile> filesToValidate = new HashSet<IFile>();
@@ -185,6 +214,9 @@ public class ELValidator extends WebValidator implements IStringValidator {
 			}
 		}
 
+		Set<IPath> affectedPages = new HashSet<IPath>();
+		collectAffectedPages(filesToValidate, affectedPages);
+
 		Set<ELReference> els = validationContext.getElsForValidation(changedFiles, false);
 		validationContext.removeLinkedEls(filesToValidate);
 		Set<ELReference> elsToValidate = new HashSet<ELReference>();
@@ -202,18 +234,71 @@ public class ELValidator extends WebValidator implements IStringValidator {
 				}
 			}
 		}
-		for (IFile file : filesToValidate) {
-			validateFile(file);
-		}
+		validateFiles(filesToValidate);
+		// Includes of changed pages are updated when they are validated,
+		// so pages affected by both old and new includes are revalidated.
+		collectAffectedPages(filesToValidate, affectedPages);
+		validateAffectedPages(affectedPages, filesToValidate);
 		for (ELReference el : elsToValidate) {
 			validateEL(el, false, null);
 			coreHelper.getValidationContextManager().addValidatedProject(this, el.getResource().getProject());
 		}
 
 		validationContext.clearOldVariableNameForElValidation();
+		finishResolutionMemo();
 		return OK_STATUS;
 	}
 
+	/**
+	 * Collects pages which parameters are defined by <ui:param> in the given files,
+	 * and pages which include the given files.
+	 * @param files
+	 * @param result
+	 */
+	private void collectAffectedPages(Set<IFile> files, Set<IPath> result) {
+		for (IFile file : files) {
+			IKbProject kbProject = KbProjectFactory.getKbProject(file.getProject(), true);
+			if(kbProject != null) {
+				IIncludeModel includeModel = kbProject.getIncludeModel();
+				if(includeModel instanceof IIncludeModelExtension) {
+					IIncludeModelExtension model = (IIncludeModelExtension)includeModel;
+					result.addAll(model.getIncludedPages(file.getFullPath()));
+					result.addAll(model.getAffectedPages(file.getFullPath()));
+				}
+			}
+		}
+	}
+
+	private void validateAffectedPages(Set<IPath> affectedPages, Set<IFile> validatedFiles) {
+		IWorkspaceRoot wsRoot = ResourcesPlugin.getWorkspace().getRoot();
+		Set<IFile> files = new HashSet<IFile>();
+		for (IPath path : affectedPages) {
+			IFile file = wsRoot.getFile(path);
+			if(file.exists() && !validatedFiles.contains(file) && shouldBeValidated(file) && notValidatedYet(file)) {
+				files.add(file);
+			}
+		}
+		if(!files.isEmpty()) {
+			validationContext.removeLinkedEls(files);
+			validateFiles(files);
+		}
+	}
+
+	private void finishResolutionMemo() {
+		lastResolutionMemo = resolutionMemo;
+		resolutionMemo = null;
+	}
+
+	/**
+	 * Returns the memo of EL resolutions of the last validation run, 
+	 * which shows how many operands were resolved and how many were shared.
+	 * 
+	 * @return
+	 */
+	public ELResolutionMemo getLastResolutionMemo() {
+		return lastResolutionMemo;
+	}
+
 	private void initRevalidationFlag() {
 		String revalidateUnresolvedELsString = ELSeverityPreferences.getInstance().getProjectPreference(validatingProject, ELSeverityPreferences.RE_VALIDATE_UNRESOLVED_EL);
 		revalidateUnresolvedELs = ELSeverityPreferences.ENABLE.equals(revalidateUnresolvedELsString);
@@ -226,6 +311,7 @@ public class ELValidator extends WebValidator implements IStringValidator {
 	public IStatus validateAll(IProject project, ContextValidationHelper validationHelper, IProjectValidationContext context, ValidatorManager manager, IReporter reporter) throws ValidationException {
 		init(project, validationHelper, context, manager, reporter);
 		initRevalidationFlag();
+		resolutionMemo = new ELResolutionMemo();
 		Set<IFile> files = validationHelper.getProjectSetRegisteredFiles();
 		Set<IFile> filesToValidate = new HashSet<IFile>();
 		for (IFile file : files) {
@@ -237,9 +323,8 @@ public class ELValidator extends WebValidator implements IStringValidator {
 				validationContext.removeUnnamedElResource(file.getFullPath());
 			}
 		}
-		for (IFile file : filesToValidate) {
-			validateFile(file);
-		}
+		validateFiles(filesToValidate);
+		finishResolutionMemo();
 		return OK_STATUS;
 	}
 
@@ -251,6 +336,7 @@ public class ELValidator extends WebValidator implements IStringValidator {
 	public void validate(IValidator validatorManager, IProject rootProject, Collection<IRegion> dirtyRegions, IValidationContext helper, IReporter reporter, EditorValidationContext validationContext, IProjectValidationContext projectContext, IFile file) {
 		init(rootProject, null, projectContext, validatorManager, reporter);
 		setAsYouTypeValidation(true);
+		resolutionMemo = null;
 		asYouTypeTimestamp++;
 		this.document = validationContext.getDocument();
 		if(dirtyRegions.size() == 1) {
@@ -288,6 +374,65 @@ public class ELValidator extends WebValidator implements IStringValidator {
 
 	private int markers;
 
+	private static final Comparator<IFile> FILE_ORDER = new Comparator<IFile>() {
+		@Override
+		public int compare(IFile f1, IFile f2) {
+			return f1.getFullPath().toString().compareTo(f2.getFullPath().toString());
+		}
+	};
+
+	/**
+	 * Validates files in the order of their paths, so that problems are reported
+	 * in the same order on each run. Page contexts of the files are built by a pool 
+	 * of worker threads ahead of this thread. ELs are resolved, and markers and 
+	 * linked ELs are added, by this thread only: resolvers modify variables 
+	 * of the shared page context and keep caches that are not thread safe.
+	 * 
+	 * @param files
+	 */
+	private void validateFiles(Set<IFile> files) {
+		List<IFile> sorted = new ArrayList<IFile>(files);
+		Collections.sort(sorted, FILE_ORDER);
+		int threads = sorted.isEmpty() ? 0 : Math.min(WorkerThreads.getThreadCount(sorted.get(0).getProject(), VALIDATION_THREADS_PREFERENCE, DEFAULT_MAX_VALIDATION_THREADS), sorted.size());
+		if(threads <= 1) {
+			for (IFile file : sorted) {
+				validateFile(file);
+			}
+			return;
+		}
+		int ahead = threads * FILES_AHEAD_PER_THREAD;
+		ExecutorService executor = Executors.newFixedThreadPool(threads, WorkerThreads.createThreadFactory("EL validator"));
+		try {
+			List<Future<ELContext>> results = new ArrayList<Future<ELContext>>();
+			for (int i = 0; i < sorted.size(); i++) {
+				while(results.size() < sorted.size() && results.size() <= i + ahead) {
+					results.add(executor.submit(new ContextBuilder(sorted.get(results.size()))));
+				}
+				if(reporter.isCancelled()) {
+					return;
+				}
+				try {
+					results.get(i).get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e) {
+					// The context will be built while validating.
+					WebKbPlugin.getDefault().logError(e);
+				}
+				results.set(i, null);
+				validateFile(sorted.get(i));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Validates the file and reports problems.
+	 * 
+	 * @param file
+	 */
 	private void validateFile(IFile file) {
 		if(reporter.isCancelled() || !shouldFileBeValidated(file)) {
 			return;
@@ -299,14 +444,117 @@ public class ELValidator extends WebValidator implements IStringValidator {
 		ELContext context = PageContextFactory.createPageContext(file);
 		if(context!=null) {
 			ELReference[] references = context.getELReferences();
+			int max = getMaxNumberOfMarkersPerFile(file.getProject());
 			for (int i = 0; i < references.length; i++) {
-				if(markers<getMaxNumberOfMarkersPerFile(file.getProject())) {
+				if(markers<max) {
 					validateEL(references[i], false, context);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Builds the page context of a file in a worker thread, so that it is 
+	 * taken from the cache of PageContextFactory when the file is validated.
+	 */
+	class ContextBuilder implements Callable<ELContext> {
+		IFile file;
+
+		ContextBuilder(IFile file) {
+			this.file = file;
+		}
+
+		@Override
+		public ELContext call() {
+			if(reporter.isCancelled() || !file.exists()) {
+				return null;
+			}
+			return PageContextFactory.createPageContext(file);
+		}
+	}
+
+	/**
+	 * Resolutions of an operand by resolvers. Resolutions may be shared by
+	 * operands with the same text, so positions of their tokens are relative 
+	 * to the operand for which they were computed.
+	 */
+	public static class ResolvedOperand {
+		List<ELResolution> resolutions;
+		int start;
+
+		public ResolvedOperand(List<ELResolution> resolutions, int start) {
+			this.resolutions = resolutions;
+			this.start = start;
+		}
+
+		/**
+		 * Returns the distance from tokens of resolutions to the same tokens of the operand.
+		 * @param operand
+		 * @return
+		 */
+		int getShift(ELInvocationExpression operand) {
+			return operand.getFirstToken().getStart() - start;
+		}
+	}
+
+	/**
+	 * Returns resolutions of the operand in the order of resolvers,
+	 * up to the first resolver that resolves it completely.
+	 * During a validation run, resolutions are shared by operands with the same scope.
+	 * 
+	 * @param context
+	 * @param operandToken
+	 * @param documentOffset
+	 * @param resolvers
+	 * @return
+	 */
+	private ResolvedOperand resolve(ELContext context, ELInvocationExpression operandToken, int documentOffset, ELResolver[] resolvers) {
+		ELResolutionMemo memo = resolutionMemo;
+		String key = memo != null ? memo.getKey(context, operandToken, documentOffset) : null;
+		if(key != null) {
+			ResolvedOperand shared = memo.get(key);
+			if(shared != null) {
+				return shared;
+			}
+		}
+		ResolvedOperand resolved = new ResolvedOperand(runResolvers(context, operandToken, documentOffset, resolvers), operandToken.getFirstToken().getStart());
+		if(key != null) {
+			memo.put(key, resolved);
+		}
+		return resolved;
+	}
+
+	private List<ELResolution> runResolvers(ELContext context, ELInvocationExpression operandToken, int documentOffset, ELResolver[] resolvers) {
+		List<ELResolution> result = new ArrayList<ELResolution>();
+		List<Var> vars = null;
+		ELContextImpl c = null;
+		if(!validateVars && context instanceof ELContextImpl) {
+			c = (ELContextImpl)context;
+			vars = c.getAllVars();
+			c.setAllVars(new ArrayList<Var>());
+		}
+		try {
+			for (int i = 0; i < resolvers.length; i++) {
+				if(resolvers[i].getClass().getAnnotation(SkipValidation.class) != null) {
+					continue;
+				}
+				ELResolution elResolution = resolvers[i].resolve(context, operandToken, documentOffset);
+				if(elResolution==null) {
+					continue;
+				}
+				result.add(elResolution);
+				if(elResolution.isResolved()) {
+					break;
+				}
+			}
+		} finally {
+			if(c!=null) {
+				c.setAllVars(vars);
+			}
+		}
+		return result;
+	}
+
 	private void validateEL(ELReference el, boolean asYouType, ELContext context) {
 		if(asYouType || (!reporter.isCancelled() && shouldBeValidated(el.getResource()))) {
 			displaySubtask(ELValidationMessages.VALIDATING_EL_FILE, new String[]{el.getResource().getProject().getName(), el.getResource().getName()});
@@ -382,22 +630,9 @@ public class ELValidator extends WebValidator implements IStringValidator {
 		}
 		int maxNumberOfResolvedSegments = -1;
 		int maxNumberOfDetectedSegments = -1;
-		List<Var> vars = null;
-		ELContextImpl c = null;
-		if(!validateVars && context instanceof ELContextImpl) {
-			c = (ELContextImpl)context;
-			vars = c.getAllVars();
-			c.setAllVars(new ArrayList<Var>());
-		}
+		ResolvedOperand resolved = resolve(context, operandToken, documnetOffset, resolvers);
 
-		for (int i = 0; i < resolvers.length; i++) {
-			if(resolvers[i].getClass().getAnnotation(SkipValidation.class) != null) {
-				continue;
-			}
-			ELResolution elResolution = resolvers[i].resolve(context, operandToken, documnetOffset);
-			if(elResolution==null) {
-				continue;
-			}
+		for (ELResolution elResolution : resolved.resolutions) {
 			if(!asYouType) {
 				for (ELSegment segment : elResolution.getSegments()) {
 					IResource resource = segment.getResource();
@@ -424,10 +659,6 @@ public class ELValidator extends WebValidator implements IStringValidator {
 			}
 		}
 
-		if(c!=null) {
-			c.setAllVars(vars);
-		}
-
 		if(resolution==null) {
 			return;
 		}
@@ -517,7 +748,7 @@ public class ELValidator extends WebValidator implements IStringValidator {
 			//This is syntax error case. Reported by parser.
 			return;						
 		}
-		offsetOfVarName = documnetOffset + token.getStart();
+		offsetOfVarName = documnetOffset + token.getStart() + resolved.getShift(operandToken);
 		lengthOfVarName = varName == null ? 0 : varName.length();
 		if(usedVariables.isEmpty()) {
 			unresolvedTokenIsVariable = true;
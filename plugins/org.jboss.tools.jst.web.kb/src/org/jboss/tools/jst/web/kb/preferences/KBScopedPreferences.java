@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.preferences;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+
+/**
+ * Preferences of the plug-in looked up in project, instance and default scopes,
+ * in that order, as ELSearchPreferences does.
+ */
+public class KBScopedPreferences {
+
+	/**
+	 * Returns value of the preference, or null if it is not set in any scope.
+	 *
+	 * @param project may be null for preferences that are not set per project
+	 * @param key
+	 * @return
+	 */
+	public static String get(IProject project, String key) {
+		String result = null;
+		IEclipsePreferences p = null;
+		if(project != null) {
+			p = new ProjectScope(project).getNode(WebKbPlugin.PLUGIN_ID);
+			result = (p == null) ? null : p.get(key, null);
+		}
+		if(result == null) {
+			p = InstanceScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID);
+			result = (p == null) ? null : p.get(key, null);
+		}
+		if(result == null) {
+			result = DefaultScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID).get(key, null);
+		}
+		return result;
+	}
+
+	public static int getInt(IProject project, String key, int defaultValue) {
+		String value = get(project, key);
+		if(value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+		return defaultValue;
+	}
+
+	public static long getLong(IProject project, String key, long defaultValue) {
+		String value = get(project, key);
+		if(value != null) {
+			try {
+				return Long.parseLong(value.trim());
+			} catch (NumberFormatException e) {
+				WebKbPlugin.getDefault().logError(e);
+			}
+		}
+		return defaultValue;
+	}
+
+	public static boolean getBoolean(IProject project, String key, boolean defaultValue) {
+		String value = get(project, key);
+		return value == null ? defaultValue : Boolean.valueOf(value.trim()).booleanValue();
+	}
+}
@@ -13,6 +13,7 @@ package org.jboss.tools.jst.web.kb.refactoring;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.eclipse.core.resources.IContainer;
@@ -23,6 +24,8 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IField;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IMethod;
@@ -51,6 +54,7 @@ import org.jboss.tools.common.web.WebUtils;
 import org.jboss.tools.jst.web.kb.IKbProject;
 import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.ELReferenceIndex;
 import org.jboss.tools.jst.web.kb.internal.KbBuilder;
 import org.jboss.tools.jst.web.kb.preferences.ELSearchPreferences;
 
@@ -122,22 +126,27 @@ public abstract class RefactorSearcher {
 
 		IJavaProject javaProject = EclipseUtil.getJavaProject(project);
 		
-		// searching java, xml and property files in source folders
-		if(javaProject != null) {
-			for(IResource resource : EclipseUtil.getJavaSourceRoots(project)){
-				if(resource instanceof IFolder)
-					scan(monitor, (IFolder) resource, true, outOfSync);
-				else if(resource instanceof IFile)
-					scan(monitor, (IFile) resource, true, outOfSync);
+		Set<IFile> candidates = getCandidateFiles(project);
+		if(candidates != null) {
+			scanCandidates(monitor, project, javaProject != null, candidates, outOfSync);
+		} else {
+			// searching java, xml and property files in source folders
+			if(javaProject != null) {
+				for(IResource resource : EclipseUtil.getJavaSourceRoots(project)){
+					if(resource instanceof IFolder)
+						scan(monitor, (IFolder) resource, true, outOfSync);
+					else if(resource instanceof IFile)
+						scan(monitor, (IFile) resource, true, outOfSync);
+				}
 			}
-		}
 		
-		// searching jsp, xhtml and xml files in WebContent folders
+			// searching jsp, xhtml and xml files in WebContent folders
 		
-		if(getViewFolder(project) != null){
-			scan(monitor, getViewFolder(project), false, outOfSync);
-		} else {
-			scan(monitor, project, false, outOfSync);
+			if(getViewFolder(project) != null){
+				scan(monitor, getViewFolder(project), false, outOfSync);
+			} else {
+				scan(monitor, project, false, outOfSync);
+			}
 		}
 		if(!outOfSync.isEmpty()) {
 			if(outOfSync.size() < 5) {
@@ -169,6 +178,92 @@ public abstract class RefactorSearcher {
 		
 	}
 	
+	/**
+	 * Returns names which should be used in EL of a file for the file
+	 * to be searched. Returns null if all files should be searched,
+	 * that is the case of types, which may be referenced by any name.
+	 * Subclasses that match text other than names in EL should return null.
+	 * 
+	 * @return
+	 */
+	protected Set<String> getIndexedNames(){
+		if(propertyName == null || propertyName.length() == 0)
+			return null;
+		Set<String> names = new HashSet<String>();
+		if(javaElement == null){
+			// component names may be qualified, the last segment is used in EL anyway
+			names.add(propertyName.substring(propertyName.lastIndexOf('.') + 1));
+		} else if(javaElement instanceof IMethod){
+			names.add(propertyName);
+			names.add(getPropertyName((IMethod)javaElement, propertyName));
+		} else if(javaElement instanceof IField){
+			names.add(propertyName);
+		} else {
+			return null;
+		}
+		return names;
+	}
+	
+	/**
+	 * Returns files of the project that may contain references to the searched
+	 * names, or null if the project is not indexed and all files should be scanned.
+	 * 
+	 * @param project
+	 * @return
+	 */
+	private Set<IFile> getCandidateFiles(IProject project){
+		Set<String> names = getIndexedNames();
+		if(names == null)
+			return null;
+		return ELReferenceIndex.getInstance().getFiles(project, names);
+	}
+	
+	private void scanCandidates(IProgressMonitor monitor, IProject project, boolean addJava, Set<IFile> candidates, List<IFile> outOfSync){
+		IResource[] roots = addJava ? EclipseUtil.getJavaSourceRoots(project) : new IResource[0];
+		for(IResource root : roots){
+			// seam.properties is searched by keys rather than by EL, it is not indexed
+			if(root instanceof IFolder){
+				IFile file = ((IFolder)root).getFile(SEAM_PROPERTIES_FILE);
+				if(file.exists())
+					scan(monitor, file, true, outOfSync);
+				file = ((IFolder)root).getFile(new Path("META-INF").append(SEAM_PROPERTIES_FILE)); //$NON-NLS-1$
+				if(file.exists())
+					scan(monitor, file, true, outOfSync);
+			}
+		}
+		IContainer viewFolder = getViewFolder(project);
+		if(viewFolder == null)
+			viewFolder = project;
+		for(IFile file : candidates){
+			if(SEAM_PROPERTIES_FILE.equals(file.getName()) || !file.exists())
+				continue;
+			for(IResource root : roots){
+				if((root instanceof IFolder || root instanceof IFile) && isVisible(root, file))
+					scan(monitor, file, true, outOfSync);
+			}
+			if(isVisible(viewFolder, file))
+				scan(monitor, file, false, outOfSync);
+		}
+	}
+	
+	/*
+	 * Checks that the file would be reached by scanning the root, which
+	 * skips derived folders and folders which names start with '.'
+	 */
+	private boolean isVisible(IResource root, IFile file){
+		if(root.equals(file))
+			return true;
+		if(!root.getFullPath().isPrefixOf(file.getFullPath()))
+			return false;
+		for(IContainer c = file.getParent(); c != null; c = c.getParent()){
+			if(c.isDerived() || c.getName().startsWith(".")) //$NON-NLS-1$
+				return false;
+			if(c.equals(root))
+				break;
+		}
+		return true;
+	}
+	
 	protected abstract IProject[] getProjects();
 	
 	protected IContainer getViewFolder(IProject project) {
@@ -42,6 +42,7 @@ import org.jboss.tools.common.util.EclipseUIUtil;
 import org.jboss.tools.jst.web.ui.editor.pref.template.TemplateContextTypeIdsXHTML;
 import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.JSPMultiPageEditor;
 import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.JSPTextEditor;
+import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.PageContextSnapshots;
 import org.jboss.tools.jst.web.ui.internal.editor.preferences.JSPOccurrencePreferenceConstants;
 import org.jboss.tools.jst.web.ui.palette.html.wizard.HTMLWizardVisualPreviewInitializationException;
 import org.osgi.framework.BundleContext;
@@ -83,6 +84,11 @@ public class WebUiPlugin extends BaseUIPlugin {
 	public void start(BundleContext context) throws Exception {
 	    super.start(context);
 	}
+
+	public void stop(BundleContext context) throws Exception {
+		PageContextSnapshots.dispose();
+		super.stop(context);
+	}
 	
 	public static boolean isDebugEnabled() {
 		return INSTANCE != null && INSTANCE.isDebugging();
@@ -14,6 +14,7 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jface.dialogs.IDialogConstants;
 import org.eclipse.jface.viewers.DoubleClickEvent;
@@ -31,18 +32,17 @@ import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.jface.viewers.ViewerSorter;
 
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.SWTException;
 import org.eclipse.swt.custom.BusyIndicator;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.Cursor;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
@@ -63,13 +63,11 @@ import org.eclipse.ui.dialogs.SelectionStatusDialog;
 import org.eclipse.ui.internal.WorkbenchMessages;
 
 import org.jboss.tools.jst.web.ui.internal.css.dialog.common.FileExtensionFilter;
+import org.jboss.tools.jst.web.ui.internal.css.dialog.common.ImagePreviewCache;
+import org.jboss.tools.jst.web.ui.internal.css.dialog.common.ImagePreviewCache.Preview;
 import org.jboss.tools.jst.web.ui.internal.editor.messages.JstUIMessages;
 import org.jboss.tools.jst.web.ui.internal.editor.util.Constants;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -97,6 +95,10 @@ public class ImageSelectionDialog extends SelectionStatusDialog {
     private IFile file;
     private Text resolution;
     private Color emptyColor;
+    private Image previewImage;
+    private Preview preview;
+    private Job previewJob;
+    private String previewJobKey;
     private TreeViewer fViewer;
     private ILabelProvider fLabelProvider;
     private ITreeContentProvider fContentProvider;
@@ -606,80 +608,102 @@ public class ImageSelectionDialog extends SelectionStatusDialog {
         }
         canvas.addPaintListener(new PaintListener() {
                 public void paintControl(PaintEvent e) {
-                    GC gc = new GC(canvas);
-                    try {
-                    	gc.setForeground(emptyColor);
-                    	gc.fillRectangle(1, 1, canvas.getSize().x - 2, canvas.getSize().y - 2);
-                    	//resolution.setText("");
-                    	resolution.setVisible(false);
-
-                    	if (file != null) {
-                    		Cursor parentCursor = getShell().getCursor();
-                    		Point previewPoint = new Point(0, 0);
-                    		Point labelPoint = canvas.getSize();
-                    		InputStream stream = null;
-
-                    		try {
-                    			getShell().setCursor(Display.getCurrent().getSystemCursor(SWT.CURSOR_WAIT));
-                    			stream = new FileInputStream(file.getLocation().toOSString());
-
-                    			ImageData imageData = new ImageData(stream);
-                    			stream.close();
-
-                    			if (imageData != null) {
-                    				Image image = new Image(getShell().getDisplay(), imageData);
-
-                    				// set image in center
-                    				Point imagePoint = new Point(image.getBounds().width,
-                                        image.getBounds().height);
-
-                    				String imageInfo = imagePoint.x + " x " + imagePoint.y + " px"; //$NON-NLS-1$ //$NON-NLS-2$
-
-                    				// change resolution if image anymore image label
-                    				if ((imagePoint.x > labelPoint.x) || (imagePoint.y > labelPoint.y)) {
-                    					float ratioImage = (float) imagePoint.x / (float) imagePoint.y;
-
-                    					if (((imagePoint.y > labelPoint.y) &&
-                                            ((labelPoint.y * ratioImage) > labelPoint.x)) ||
-                                            ((imagePoint.x > labelPoint.x) &&
-                                            ((labelPoint.x / ratioImage) < labelPoint.y))) {
-                    						imageData = imageData.scaledTo(labelPoint.x - 10,
-                                                (int) (labelPoint.x / ratioImage));
-                    					} else {
-                    						imageData = imageData.scaledTo((int) (labelPoint.y * ratioImage) -
-                                                10, labelPoint.y);
-                    					}
-
-                    					image.dispose();
-                    					image = new Image(getShell().getDisplay(), imageData);
-                    					imagePoint.x = image.getBounds().width;
-                    					imagePoint.y = image.getBounds().height;
-                    				}
-
-                    				previewPoint.x = (labelPoint.x / 2) - (imagePoint.x / 2);
-                    				previewPoint.y = (labelPoint.y / 2) - (imagePoint.y / 2);
-                    				gc.drawImage(image, previewPoint.x, previewPoint.y);
-                    				resolution.setVisible(true);
-                    				resolution.setText(imageInfo);
-                    				image.dispose();
-                    			}
-                    		} catch (IOException ev) {
-                    			//ignore
-                    		} catch (SWTException ex) {
-                    			//ignore (if select not image file) 
-                    		} finally {
-                    			getShell().setCursor(parentCursor);
-                    		}
-                    	}
-                	} finally {
-                        gc.dispose();
-                	}
+                    GC gc = e.gc;
+                    gc.setForeground(emptyColor);
+                    gc.fillRectangle(1, 1, canvas.getSize().x - 2, canvas.getSize().y - 2);
+                    resolution.setVisible(false);
+
+                    if (file != null) {
+                        Point labelPoint = canvas.getSize();
+                        Preview p = ImagePreviewCache.getInstance().get(file, labelPoint);
+
+                        if (p == null) {
+                            // decoded and scaled in background, canvas is redrawn when ready
+                            schedulePreview(file, labelPoint);
+                        } else if (p.getData() != null) {
+                            if (p != preview) {
+                                disposePreviewImage();
+                                previewImage = new Image(canvas.getDisplay(), p.getData());
+                                preview = p;
+                            }
+
+                            // set image in center
+                            Point imagePoint = new Point(previewImage.getBounds().width,
+                                    previewImage.getBounds().height);
+                            gc.drawImage(previewImage, (labelPoint.x / 2) - (imagePoint.x / 2),
+                                (labelPoint.y / 2) - (imagePoint.y / 2));
+
+                            String imageInfo = p.getWidth() + " x " + p.getHeight() + " px"; //$NON-NLS-1$ //$NON-NLS-2$
+                            resolution.setVisible(true);
+                            resolution.setText(imageInfo);
+                        }
+                    }
+                }
+            });
+        canvas.addDisposeListener(new DisposeListener() {
+                public void widgetDisposed(DisposeEvent e) {
+                    if (previewJob != null) {
+                        previewJob.cancel();
+                        previewJob = null;
+                    }
+
+                    disposePreviewImage();
                 }
             });
 
         return composite;
     }
 
+    /**
+     * Starts loading preview of the image for the canvas size, unless
+     * it is being loaded already. Loading of previous image is canceled.
+     *
+     * @param f
+     * @param size
+     */
+    private void schedulePreview(IFile f, Point size) {
+        String key = ImagePreviewCache.getKey(f, size);
+
+        if (key.equals(previewJobKey)) {
+            return;
+        }
+
+        if (previewJob != null) {
+            previewJob.cancel();
+        }
+
+        final Display display = canvas.getDisplay();
+        final String jobKey = key;
+        previewJobKey = key;
+        previewJob = ImagePreviewCache.getInstance().load(f, size,
+                new Runnable() {
+                    public void run() {
+                        if (!display.isDisposed()) {
+                            display.asyncExec(new Runnable() {
+                                    public void run() {
+                                        if (jobKey.equals(previewJobKey)) {
+                                            previewJobKey = null;
+                                        }
+
+                                        if (!canvas.isDisposed()) {
+                                            canvas.redraw();
+                                        }
+                                    }
+                                });
+                        }
+                    }
+                });
+    }
+
+    private void disposePreviewImage() {
+        if (previewImage != null) {
+            previewImage.dispose();
+            previewImage = null;
+        }
+
+        preview = null;
+    }
+
     private boolean evaluateIfTreeEmpty(Object input) {
         Object[] elements = fContentProvider.getElements(input);
 
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.ui.internal.css.dialog.common;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.Point;
+import org.jboss.tools.jst.web.ui.internal.editor.messages.JstUIMessages;
+
+/**
+ * Bounded cache of image previews scaled to fit a preview area. Images are
+ * decoded and scaled by a background job; a preview is identified by the file,
+ * its modification stamp and the size of the area, so that changed files and
+ * resized areas get new previews. Previews are kept as device independent
+ * image data, it is up to the caller to create and dispose SWT images.
+ */
+public class ImagePreviewCache {
+	static final int MAX_ENTRIES = 32;
+
+	/**
+	 * Margin left by scaled images to the preview area.
+	 */
+	static final int MARGIN = 10;
+
+	private static final ImagePreviewCache INSTANCE = new ImagePreviewCache();
+
+	public static ImagePreviewCache getInstance() {
+		return INSTANCE;
+	}
+
+	@SuppressWarnings("serial")
+	private final Map<String, Preview> previews = new LinkedHashMap<String, Preview>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Preview> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private ImagePreviewCache() {}
+
+	public static String getKey(IFile file, Point size) {
+		return file.getFullPath() + "|" + file.getModificationStamp() + "|" + size.x + "x" + size.y; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Returns the cached preview of the file for the area size,
+	 * or null if it has not been loaded yet.
+	 *
+	 * @param file
+	 * @param size
+	 * @return
+	 */
+	public synchronized Preview get(IFile file, Point size) {
+		return previews.get(getKey(file, size));
+	}
+
+	/**
+	 * Schedules a job that decodes and scales the image and caches the preview.
+	 * The callback is run by the job thread when the preview is cached, unless
+	 * the job is canceled.
+	 *
+	 * @param file
+	 * @param size
+	 * @param callback
+	 * @return scheduled job
+	 */
+	public Job load(final IFile file, Point size, final Runnable callback) {
+		final Point area = new Point(size.x, size.y);
+		final String key = getKey(file, area);
+		Job job = new Job(JstUIMessages.IMAGE_PREVIEW) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				if(monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				Preview preview = decode(file, area);
+				synchronized (ImagePreviewCache.this) {
+					previews.put(key, preview);
+				}
+				if(monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				callback.run();
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.SHORT);
+		job.schedule();
+		return job;
+	}
+
+	static Preview decode(IFile file, Point size) {
+		IPath location = file.getLocation();
+		if(location == null) {
+			return new Preview(null, 0, 0);
+		}
+		InputStream stream = null;
+		try {
+			stream = new FileInputStream(location.toFile());
+			ImageData imageData = new ImageData(stream);
+			return new Preview(scale(imageData, size), imageData.width, imageData.height);
+		} catch (IOException e) {
+			//ignore
+		} catch (SWTException e) {
+			//ignore (if select not image file)
+		} finally {
+			if(stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+		return new Preview(null, 0, 0);
+	}
+
+	/**
+	 * Scales the image down, keeping its proportions, if it does not fit the area.
+	 *
+	 * @param imageData
+	 * @param labelPoint size of the area
+	 * @return
+	 */
+	public static ImageData scale(ImageData imageData, Point labelPoint) {
+		if((imageData.width <= labelPoint.x) && (imageData.height <= labelPoint.y)) {
+			return imageData;
+		}
+		float ratioImage = (float) imageData.width / (float) imageData.height;
+		int width;
+		int height;
+		if(((imageData.height > labelPoint.y) && ((labelPoint.y * ratioImage) > labelPoint.x))
+				|| ((imageData.width > labelPoint.x) && ((labelPoint.x / ratioImage) < labelPoint.y))) {
+			width = labelPoint.x - MARGIN;
+			height = (int) (labelPoint.x / ratioImage);
+		} else {
+			width = (int) (labelPoint.y * ratioImage) - MARGIN;
+			height = labelPoint.y;
+		}
+		return imageData.scaledTo(Math.max(width, 1), Math.max(height, 1));
+	}
+
+	/**
+	 * Scaled image data and the original size of the image.
+	 */
+	public static class Preview {
+		private ImageData data;
+		private int width;
+		private int height;
+
+		Preview(ImageData data, int width, int height) {
+			this.data = data;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Returns scaled image data, or null if the file is not an image.
+		 *
+		 * @return
+		 */
+		public ImageData getData() {
+			return data;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+	}
+}
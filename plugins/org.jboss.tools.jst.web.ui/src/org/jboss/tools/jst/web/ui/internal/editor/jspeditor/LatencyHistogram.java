@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.ui.internal.editor.jspeditor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with buckets of powers of two microseconds.
+ * Bucket i counts latencies from 2^i to 2^(i+1) microseconds, the last
+ * bucket counts all longer latencies. Recording does not lock.
+ */
+public class LatencyHistogram {
+	static final int BUCKETS = 24;
+
+	private String name;
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private AtomicLong total = new AtomicLong();
+	private AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Records time elapsed since start.
+	 *
+	 * @param start value of System.nanoTime() at the start of the measured work
+	 */
+	public void record(long start) {
+		add(System.nanoTime() - start);
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 */
+	public void add(long nanos) {
+		long micros = Math.max(nanos / 1000, 1);
+		int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+		counts.incrementAndGet(bucket);
+		total.incrementAndGet();
+		long m = max.get();
+		while(nanos > m && !max.compareAndSet(m, nanos)) {
+			m = max.get();
+		}
+	}
+
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * Maximal latency in nanoseconds.
+	 * @return
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the upper bound, in microseconds, of the bucket that contains
+	 * the given percentile of recorded latencies, or 0 if nothing was recorded.
+	 *
+	 * @param percentile from 0 to 100
+	 * @return
+	 */
+	public long getPercentile(double percentile) {
+		long count = total.get();
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(count * percentile / 100);
+		long sum = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			sum += counts.get(i);
+			if(sum >= rank) {
+				return 1L << (i + 1);
+			}
+		}
+		return 1L << BUCKETS;
+	}
+
+	public void clear() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + getCount() + " calls, p50 < " + getPercentile(50) + " us, p90 < " + getPercentile(90) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				+ " us, p99 < " + getPercentile(99) + " us, max " + (getMax() / 1000) + " us"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -0,0 +1,393 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.ui.internal.editor.jspeditor;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.IFileBufferListener;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.jboss.tools.common.el.core.resolver.ELContext;
+import org.jboss.tools.jst.web.kb.PageContextFactory;
+import org.jboss.tools.jst.web.ui.WebUiPlugin;
+
+/**
+ * Keeps the latest page context of each open document, so that hover, hyperlink
+ * and outline code run in the UI thread does not build page contexts.
+ *
+ * A document gets its service at the first request. Then every change of the
+ * document increments its version and reschedules a background job, which builds
+ * a new snapshot when edits settle for DELAY milliseconds. A snapshot is current
+ * if no edits were made since it has been built. Snapshots older than MAX_AGE are
+ * rebuilt on request, to pick up changes of the project model.
+ * When the text file buffer of the document is disposed, that is when the last
+ * editor of the file is closed, the service stops listening to the document and 
+ * is dropped together with its snapshot. Documents without a file buffer, like 
+ * those of compare viewers, get no such event, and the page context references
+ * the document, so their snapshots are held weakly and the document may be 
+ * collected with its service.
+ *
+ * Time spent by consumers is recorded in latency histograms, which are written
+ * to the log of the plugin when it is stopped in debug mode.
+ */
+public class PageContextSnapshots {
+	/**
+	 * Delay of rebuilding after the last edit, in milliseconds.
+	 */
+	static final int DELAY = 300;
+
+	/**
+	 * Age in milliseconds after which a current snapshot is refreshed.
+	 */
+	static final long MAX_AGE = 5000;
+
+	public static final String HYPERLINK = "hyperlink"; //$NON-NLS-1$
+	public static final String HOVER = "hover"; //$NON-NLS-1$
+	public static final String SNAPSHOT = "snapshot"; //$NON-NLS-1$
+
+	private static PageContextSnapshots instance = null;
+
+	public static synchronized PageContextSnapshots getInstance() {
+		if(instance == null) {
+			instance = new PageContextSnapshots();
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops services of all documents and reports latencies if debugging is enabled.
+	 * Called when the plugin is stopped.
+	 */
+	public static synchronized void dispose() {
+		if(instance == null) {
+			return;
+		}
+		PageContextSnapshots snapshots = instance;
+		instance = null;
+		FileBuffers.getTextFileBufferManager().removeFileBufferListener(snapshots.bufferListener);
+		for (IDocument document: snapshots.getDocuments()) {
+			snapshots.dispose(document);
+		}
+		if(WebUiPlugin.isDebugEnabled()) {
+			for (LatencyHistogram histogram: snapshots.getHistograms()) {
+				WebUiPlugin.getDefault().logInfo(histogram.toString());
+			}
+		}
+	}
+
+	private Map<IDocument, DocumentService> services = new WeakHashMap<IDocument, DocumentService>();
+	private Map<String, LatencyHistogram> histograms = new LinkedHashMap<String, LatencyHistogram>();
+	private BufferListener bufferListener = new BufferListener();
+
+	private PageContextSnapshots() {
+		FileBuffers.getTextFileBufferManager().addFileBufferListener(bufferListener);
+	}
+
+	synchronized DocumentService getService(IDocument document) {
+		DocumentService service = services.get(document);
+		if(service == null) {
+			service = new DocumentService(document);
+			services.put(document, service);
+		}
+		return service;
+	}
+
+	synchronized Collection<IDocument> getDocuments() {
+		return new ArrayList<IDocument>(services.keySet());
+	}
+
+	/**
+	 * Stops listening to the document and drops its snapshot.
+	 *
+	 * @param document
+	 */
+	public void dispose(IDocument document) {
+		DocumentService service = null;
+		synchronized (this) {
+			service = services.remove(document);
+		}
+		if(service != null) {
+			service.dispose();
+		}
+	}
+
+	/**
+	 * Returns the latest snapshot of the document, which may be outdated, or null
+	 * if it has not been built yet. If the snapshot is not current, it is rebuilt
+	 * in background.
+	 *
+	 * @param document
+	 * @return
+	 */
+	public Snapshot getSnapshot(IDocument document) {
+		return getService(document).getSnapshot();
+	}
+
+	/**
+	 * Returns the page context of the latest snapshot of the document. If the snapshot 
+	 * is not current, the context is built by this call if wait is true, otherwise 
+	 * the outdated snapshot is returned while it is rebuilt in background.
+	 * If there is no snapshot yet, the context is built by this call in any case.
+	 * Offsets of an outdated context may not match the text of the document.
+	 *
+	 * @param document
+	 * @param wait
+	 * @return
+	 */
+	public ELContext getContext(IDocument document, boolean wait) {
+		DocumentService service = getService(document);
+		Snapshot snapshot = service.getSnapshot();
+		if(snapshot != null && (!wait || service.isCurrent(snapshot))) {
+			return snapshot.getContext();
+		}
+		return service.build().getContext();
+	}
+
+	/**
+	 * Returns the page context of the latest snapshot of the document only if it was 
+	 * built for the current text, so that offsets of the context can be used with the 
+	 * document. If the document was modified since, returns null while the snapshot 
+	 * is rebuilt in background. If there is no snapshot yet, the context is built by this call.
+	 * Callers in the UI thread run on each mouse move should use this method.
+	 *
+	 * @param document
+	 * @return
+	 */
+	public ELContext getCurrentContext(IDocument document) {
+		DocumentService service = getService(document);
+		Snapshot snapshot = service.getSnapshot();
+		if(snapshot == null) {
+			snapshot = service.build();
+		}
+		return service.isCurrent(snapshot) ? snapshot.getContext() : null;
+	}
+
+	/**
+	 * Returns the histogram with the given name, which is created at first request.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public synchronized LatencyHistogram getHistogram(String name) {
+		LatencyHistogram histogram = histograms.get(name);
+		if(histogram == null) {
+			histogram = new LatencyHistogram(name);
+			histograms.put(name, histogram);
+		}
+		return histogram;
+	}
+
+	public synchronized Collection<LatencyHistogram> getHistograms() {
+		return new ArrayList<LatencyHistogram>(histograms.values());
+	}
+
+	/**
+	 * Immutable result of building the page context of a document version.
+	 */
+	public static class Snapshot {
+		private final long version;
+		private final long time;
+		private final ELContext context;
+
+		Snapshot(long version, ELContext context) {
+			this.version = version;
+			this.context = context;
+			time = System.currentTimeMillis();
+		}
+
+		/**
+		 * Version of the document the snapshot was built for.
+		 * @return
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Returns the page context, which is shared by all consumers and should not be modified.
+		 * @return
+		 */
+		public ELContext getContext() {
+			return context;
+		}
+	}
+
+	/**
+	 * Service of one document. The document is referenced weakly,
+	 * it keeps the service alive by its listener until the service is disposed.
+	 * The snapshot is referenced strongly only if the document belongs to a file 
+	 * buffer, which disposes the service.
+	 */
+	class DocumentService implements IDocumentListener {
+		WeakReference<IDocument> document;
+		volatile long version = 0;
+		volatile Snapshot snapshot = null;
+		volatile WeakReference<Snapshot> weakSnapshot = null;
+		final boolean buffered;
+		volatile boolean disposed = false;
+		SnapshotJob job = new SnapshotJob();
+
+		DocumentService(IDocument document) {
+			this.document = new WeakReference<IDocument>(document);
+			buffered = FileBuffers.getTextFileBufferManager().getTextFileBuffer(document) != null;
+			document.addDocumentListener(this);
+			job.schedule();
+		}
+
+		/**
+		 * Returns true if the document was not modified since the snapshot was built.
+		 *
+		 * @param s
+		 * @return
+		 */
+		boolean isCurrent(Snapshot s) {
+			return s.getVersion() == version;
+		}
+
+		Snapshot getSnapshot() {
+			Snapshot s = buffered ? snapshot : weakSnapshot == null ? null : weakSnapshot.get();
+			if(!disposed && (s == null || s.getVersion() != version || System.currentTimeMillis() - s.getTime() > MAX_AGE)
+					&& job.getState() == Job.NONE) {
+				// Readers do not postpone a scheduled job, only edits do.
+				job.schedule(s == null ? 0 : DELAY);
+			}
+			return s;
+		}
+
+		/**
+		 * Builds the snapshot of the current version, and publishes it if the
+		 * document has not been modified meanwhile.
+		 *
+		 * @return
+		 */
+		Snapshot build() {
+			long v = version;
+			long start = System.nanoTime();
+			IDocument d = document.get();
+			ELContext context = d == null ? null : PageContextFactory.createPageContext(d);
+			Snapshot s = new Snapshot(v, context);
+			synchronized (this) {
+				Snapshot old = buffered ? snapshot : weakSnapshot == null ? null : weakSnapshot.get();
+				if(!disposed && v == version && (old == null || old.getVersion() <= v)) {
+					if(buffered) {
+						snapshot = s;
+					} else {
+						weakSnapshot = new WeakReference<Snapshot>(s);
+					}
+				}
+			}
+			getHistogram(SNAPSHOT).record(start);
+			return s;
+		}
+
+		void dispose() {
+			synchronized (this) {
+				disposed = true;
+				snapshot = null;
+				weakSnapshot = null;
+			}
+			job.cancel();
+			IDocument d = document.get();
+			if(d != null) {
+				d.removeDocumentListener(this);
+			}
+		}
+
+		public void documentAboutToBeChanged(DocumentEvent event) {
+		}
+
+		public void documentChanged(DocumentEvent event) {
+			synchronized (this) {
+				version++;
+			}
+			job.schedule(DELAY);
+		}
+
+		class SnapshotJob extends Job {
+			public SnapshotJob() {
+				super("Updating page context"); //$NON-NLS-1$
+				setSystem(true);
+				setPriority(Job.DECORATE);
+			}
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				if(monitor.isCanceled() || disposed || document.get() == null) {
+					return Status.CANCEL_STATUS;
+				}
+				try {
+					build();
+				} catch (RuntimeException e) {
+					// The document could be modified while building,
+					// the snapshot will be rebuilt after the edit.
+					WebUiPlugin.getPluginLog().logError(e);
+				}
+				return Status.OK_STATUS;
+			}
+		}
+	}
+
+	/**
+	 * Disposes services of documents of disposed text file buffers.
+	 */
+	class BufferListener implements IFileBufferListener {
+		public void bufferDisposed(IFileBuffer buffer) {
+			if(buffer instanceof ITextFileBuffer) {
+				dispose(((ITextFileBuffer)buffer).getDocument());
+			}
+		}
+
+		public void bufferCreated(IFileBuffer buffer) {
+		}
+
+		public void bufferContentAboutToBeReplaced(IFileBuffer buffer) {
+		}
+
+		public void bufferContentReplaced(IFileBuffer buffer) {
+		}
+
+		public void stateChanging(IFileBuffer buffer) {
+		}
+
+		public void dirtyStateChanged(IFileBuffer buffer, boolean isDirty) {
+		}
+
+		public void stateValidationChanged(IFileBuffer buffer, boolean isStateValidated) {
+		}
+
+		public void underlyingFileMoved(IFileBuffer buffer, IPath path) {
+		}
+
+		public void underlyingFileDeleted(IFileBuffer buffer) {
+		}
+
+		public void stateChangeFailed(IFileBuffer buffer) {
+		}
+	}
+}
@@ -63,12 +63,12 @@ import org.jboss.tools.common.util.StringUtil;
 import org.jboss.tools.jst.web.kb.IPageContext;
 import org.jboss.tools.jst.web.kb.KbQuery;
 import org.jboss.tools.jst.web.kb.KbQuery.Type;
-import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.PageProcessor;
 import org.jboss.tools.jst.web.kb.el.MessagePropertyELSegmentImpl;
 import org.jboss.tools.jst.web.kb.taglib.INameSpace;
 import org.jboss.tools.jst.web.ui.internal.editor.contentassist.ELPrefixUtils.ELTextRegion;
 import org.jboss.tools.jst.web.ui.internal.editor.contentassist.Utils;
+import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.PageContextSnapshots;
 import org.w3c.dom.Node;
 
 /**
@@ -91,7 +91,9 @@ public class FaceletTagInfoHoverProcessor extends ELInfoHover {
 		this.fDocumentPosition = documentPosition;
 		this.fContext = null;
 		
-		fContext = PageContextFactory.createPageContext(textViewer.getDocument());
+		long start = System.nanoTime();
+		fContext = PageContextSnapshots.getInstance().getContext(textViewer.getDocument(), true);
+		PageContextSnapshots.getInstance().getHistogram(PageContextSnapshots.HOVER).record(start);
 		if (fContext == null)
 			return null;
 		
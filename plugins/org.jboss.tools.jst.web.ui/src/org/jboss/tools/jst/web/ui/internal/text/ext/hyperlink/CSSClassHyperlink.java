@@ -46,14 +46,15 @@ import org.jboss.tools.jst.web.ui.WebUiPlugin;
 import org.jboss.tools.jst.web.kb.ICSSContainerSupport;
 import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.PageContextFactory.CSSStyleSheetDescriptor;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex.Selector;
+import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.PageContextSnapshots;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.css.CSSMediaRule;
 import org.w3c.dom.css.CSSRule;
-import org.w3c.dom.css.CSSRuleList;
 import org.w3c.dom.css.CSSStyleRule;
 import org.w3c.dom.css.CSSStyleSheet;
 
@@ -63,7 +64,6 @@ import org.w3c.dom.css.CSSStyleSheet;
 @SuppressWarnings("restriction")
 public class CSSClassHyperlink extends AbstractHyperlink {
 	CSSRuleDescriptorSorter SORTER = new CSSRuleDescriptorSorter();
-	private static final char[] SPACE_CHARS = {' ', '\t', '\r', '\n', '\f'};
 
 	public static final String[] STYLE_TAGS = new String[] { "style", "link" }; //$NON-NLS-1$//$NON-NLS-2$
 	public static final String LINK_TAG = "link"; //$NON-NLS-1$
@@ -73,7 +73,7 @@ public class CSSClassHyperlink extends AbstractHyperlink {
 	@Override
 	protected void doHyperlink(IRegion region) {
 		ICSSContainerSupport cssContainerSupport = null;
-		ELContext context = PageContextFactory.createPageContext(getDocument());
+		ELContext context = PageContextSnapshots.getInstance().getContext(getDocument(), true);
 		if (!(context instanceof ICSSContainerSupport)) {
 			openFileFailed();
 			return;
@@ -82,15 +82,17 @@ public class CSSClassHyperlink extends AbstractHyperlink {
 		List<CSSStyleSheetDescriptor> descrs = cssContainerSupport.getCSSStyleSheetDescriptors();
 
 		List<CSSRuleDescriptor> bestMatchDescriptors = new ArrayList<CSSRuleDescriptor>();
+		String styleName = getStyleName(region);
+		String[] classNames = CSSClassIndex.getSimpleSelectors(styleName == null ? "" : styleName.toLowerCase()); //$NON-NLS-1$
 		
 		for (int i = (descrs == null) ? -1 : descrs.size() - 1; descrs != null && i >= 0; i--) {
 			CSSStyleSheetDescriptor descr = descrs.get(i);
 			CSSStyleSheet sheet = descr.getStylesheet();
 			if (sheet != null) {
-				CSSRuleList rules = sheet.getCssRules();
-				for (int r = 0; rules != null && r < rules.getLength(); r++) {
-					Set<CSSRuleDescriptor> matches = getMatchedRuleDescriptors(rules.item(r), getStyleName(region));
-					for (CSSRuleDescriptor match : matches) {
+				// Only selectors that may match the class are checked
+				for (Selector selector : CSSClassIndex.getInstance().getIndex(sheet).findSelectors(classNames)) {
+					CSSRuleDescriptor match = getMatchedRuleDescriptor(selector);
+					if (match != null) {
 						match.stylesheetDescriptor = descr;
 						bestMatchDescriptors.add(match);
 					}
@@ -203,147 +205,26 @@ public class CSSClassHyperlink extends AbstractHyperlink {
 	}
 	
 	/**
+	 * Returns descriptor of the selector if it matches the element of the hyperlink.
 	 * 
-	 * @param cssRule
-	 * @param styleName
+	 * @param selector
 	 * @return
 	 */
-	protected Set<CSSRuleDescriptor> getMatchedRuleDescriptors(CSSRule cssRule, String styleName) {
-		Set<CSSRuleDescriptor> matches = new HashSet<CSSRuleDescriptor>();
-		if (cssRule instanceof CSSMediaRule) {
-			CSSMediaRule cssMediaRule = (CSSMediaRule)cssRule;
-			CSSRuleList rules = cssMediaRule.getCssRules();
-			for (int i = 0; rules != null && i < rules.getLength(); i++) {
-				CSSRule rule = rules.item(i);
-				Set<CSSRuleDescriptor> descrs = getMatchedRuleDescriptors(rule, styleName);
-				if (descrs != null) {
-					matches.addAll(descrs);
-				}
-			}
-			return matches;
-		}
-
-		if (!(cssRule instanceof CSSStyleRule))
-			return matches;
-		
-		// get selector text
-		String selectorText = ((CSSStyleRule) cssRule).getSelectorText();
-
-		if (selectorText == null) 
-			return null;
-		
-		String[] selectors = getSelectors(selectorText);
-		if (selectors.length == 0)
-			return null;
-		
-		for (String selector : selectors) {
-			String[] simpleSelectors = getSimpleSelectors(selector);
-			if (simpleSelectors.length == 0)
-				continue;
-			
-			List<CSSAxis> axisList = new ArrayList<CSSAxis>();
-			for (String simpleSelector : simpleSelectors) {
-				if (simpleSelector.length() > 0) {
-					axisList.add(new CSSAxis(simpleSelector));
-				}
-			}
-			if (axisList.size() > 0) {
-				CSSAxis[] axis = axisList.toArray(new CSSAxis[0]);
-				if (matchesRule(getHyperlinkRegion(), axis)) {
-					matches.add(new CSSRuleDescriptor(selector, cssRule, axis));
-				}
-			}				
-		}
-		return matches;
-	}
-	
-	private String[] getSelectors(String selectorText) {
-		List<String> selectors = new ArrayList<String>();
-		String rest = selectorText.trim().toLowerCase();
-		int index = -1;
-		while ((index = getIndexOfCharNotQuotted(rest, ',')) != -1) {
-			String selector = rest.substring(0, index).trim();
-			rest = rest.substring(index + 1).trim();
-			if (selector.length() > 0) {
-				selectors.add(selector);
-			}
-		}
-		if (rest.length() > 0) {
-			selectors.add(rest);
-		}
-		return selectors.toArray(new String[0]);
-	}
-	
-	private String[] getSimpleSelectors(String selector) {
-		List<String> simpleSelectors = new ArrayList<String>();
-		String rest = dropWSCharsInBrackets(selector);
-		int index = -1;
-		while ((index = getIndexOfCharNotQuotted(rest, SPACE_CHARS)) != -1) {
-			String simpleSelector = rest.substring(0, index).trim();
-			rest = rest.substring(index + 1).trim();
+	protected CSSRuleDescriptor getMatchedRuleDescriptor(Selector selector) {
+		List<CSSAxis> axisList = new ArrayList<CSSAxis>();
+		for (String simpleSelector : selector.getSimpleSelectors()) {
 			if (simpleSelector.length() > 0) {
-				simpleSelectors.add(simpleSelector);
+				axisList.add(new CSSAxis(simpleSelector));
 			}
 		}
-		if (rest.length() > 0) {
-			simpleSelectors.add(rest);
-		}
-		return simpleSelectors.toArray(new String[0]);
-	}
-
-	private String dropWSCharsInBrackets(String selector) {
-		char pair = 0;
-		char pairBracket = 0;
-		
-		boolean inQuotes = false;
-		boolean inBrackets = false;
-		StringBuilder sb = new StringBuilder();
-		if (selector != null) {
-			for (char character : selector.toCharArray()) {
-	            if (inQuotes) {
-	            	// Append any char
-	            	sb.append(character);
-	            	if (character == pair) {
-	            		inQuotes = false;
-	            	} 
-	            } else {
-	            	if (character == '"' || character == '\'') {
-	            		pair = character;
-	            		inQuotes = true;
-	            		sb.append(character);
-	            	} else {
-	            		if (inBrackets) {
-	            			// Append any char excluding WS chars
-	            			boolean wsChar = false; 
-	                		for (char ch : SPACE_CHARS) {
-	                    		if (character == ch) {
-	                        		wsChar = true;
-	                        		break;
-	                    		}
-	                		}
-	                		if (!wsChar) {
-	                			sb.append(character);
-	                		}
-	            			if (character == pairBracket) {
-	            				pairBracket = 0;
-	            				inBrackets = false;
-	            			}
-	            		} else {
-	            			// Append any char
-	            			sb.append(character);
-	            			if (character == '[') {
-	            				pairBracket = ']';
-	            				inBrackets = true;
-	            			} else if (character == '(') {
-	            				pairBracket = ')';
-	            				inBrackets = true;
-	            			}
-	            		}
-	            	}
-	            }
+		CSSStyleRule rule = selector.getRule();
+		if (axisList.size() > 0 && rule != null) {
+			CSSAxis[] axis = axisList.toArray(new CSSAxis[0]);
+			if (matchesRule(getHyperlinkRegion(), axis)) {
+				return new CSSRuleDescriptor(selector.getText(), rule, axis);
 			}
 		}
-		return sb.toString();
+		return null;
 	}
 	
 	private boolean matchesRule(IRegion styleNameRegion, CSSAxis[] cssAxis) {
@@ -377,7 +258,7 @@ public class CSSClassHyperlink extends AbstractHyperlink {
 						String nodeClasses = (i == cssAxis.length - 1) ? classNameFromTheRegion : getNodeAttributeValue(node, "class"); //$NON-NLS-1$
 						
 						// Use getSimpleSelectors() method here since it takes in account all the possible WhiteSpace characters
-						String[] classes = getSimpleSelectors(nodeClasses == null ? "" : nodeClasses.toLowerCase()); //$NON-NLS-1$ 
+						String[] classes = CSSClassIndex.getSimpleSelectors(nodeClasses == null ? "" : nodeClasses.toLowerCase()); //$NON-NLS-1$ 
 						if (classes != null) {
 							for (String cssClass : classes) {
 								if (currentAxis.classNames.contains(cssClass) || currentAxis.pseudoClasses.contains(cssClass)) {
@@ -699,39 +580,7 @@ public class CSSClassHyperlink extends AbstractHyperlink {
 	}
 	
 	private int getIndexOfCharNotQuotted(String text, char ch) {
-		return getIndexOfCharNotQuotted(text, new char[] {ch});
-	}
-
-	private int getIndexOfCharNotQuotted(String text, char[] chars) {
-		return getIndexOfCharNotQuotted(text, chars, 0);
-	}
-	
-	/* Returns index of the first char found from 'chars' array */
-	private int getIndexOfCharNotQuotted(String text, char[] chars, int start) {
-		int offset = start;
-		int pair = -1;
-		boolean inQuotes = false;
-		
-		while (offset < text.length()) {
-            int character = text.charAt(offset);
-            if (inQuotes) {
-            	if (character == pair) {
-            		inQuotes = false;
-            	} 
-            } else {
-            	if (character == '"' || character == '\'') {
-            		pair = character;
-            		inQuotes = true;
-            	} else {
-            		for (char ch : chars) {
-                		if (character == ch)
-                    		return offset;
-            		}
-            	}
-            }
-			offset++;
-		}
-		return -1;
+		return CSSClassIndex.getIndexOfCharNotQuotted(text, new char[] {ch}, 0);
 	}
 
 	
@@ -34,7 +34,7 @@ import org.jboss.tools.common.el.core.resolver.ELSegment;
 import org.jboss.tools.common.el.core.resolver.ELSegmentImpl;
 import org.jboss.tools.common.el.core.resolver.IOpenableReference;
 import org.jboss.tools.common.el.core.resolver.ELSegmentImpl.VarOpenable;
-import org.jboss.tools.jst.web.kb.PageContextFactory;
+import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.PageContextSnapshots;
 
 public class ELHyperlinkDetector extends AbstractHyperlinkDetector{
 
@@ -45,9 +45,20 @@ public class ELHyperlinkDetector extends AbstractHyperlinkDetector{
 		if(file == null)
 			return null;
 		
-		ELContext context = PageContextFactory.createPageContext(file);
-		if(context == null)
-			return null;
+		long start = System.nanoTime();
+		try {
+			// Detection runs in UI thread on mouse moves, it does not build a context after an edit,
+			// and does not use an outdated one, as its offsets may not match the text.
+			ELContext context = PageContextSnapshots.getInstance().getCurrentContext(textViewer.getDocument());
+			if(context == null)
+				return null;
+			return detectHyperlinks(textViewer, region, context);
+		} finally {
+			PageContextSnapshots.getInstance().getHistogram(PageContextSnapshots.HYPERLINK).record(start);
+		}
+	}
+
+	private IHyperlink[] detectHyperlinks(ITextViewer textViewer, IRegion region, ELContext context) {
 		List<IHyperlink> links = new ArrayList<IHyperlink>();
 		ELReference reference = context.getELReference(region.getOffset());
 		if(reference != null){
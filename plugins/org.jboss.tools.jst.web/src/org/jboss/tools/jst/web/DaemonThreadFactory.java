@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads for worker pools of builders and validators,
+ * so that a pool left behind does not prevent shutdown.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+	private String name;
+	private AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * @param name prefix of thread names
+	 */
+	public DaemonThreadFactory(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, name + " " + count.incrementAndGet()); //$NON-NLS-1$
+		t.setDaemon(true);
+		return t;
+	}
+}
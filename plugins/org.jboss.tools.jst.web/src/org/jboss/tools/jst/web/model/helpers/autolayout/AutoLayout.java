@@ -11,6 +11,8 @@
 package org.jboss.tools.jst.web.model.helpers.autolayout;
 
 import org.jboss.tools.common.model.*;
+import org.jboss.tools.common.model.impl.XModelImpl;
+import org.jboss.tools.jst.web.model.helpers.WebProcessStructureHelper;
 
 public class AutoLayout {
 	LayuotConstants constants;
@@ -29,15 +31,36 @@ public class AutoLayout {
         items.setOverride(b);
     }
 
+    /**
+     * Computes the layout, then writes changed shapes with node change listener
+     * of the process locked, and fires one structure change event if anything
+     * has been changed. If the caller has locked the listener, firing is left to it.
+     */
     public void setProcess(XModelObject process) {
 		constants.update();
         items.setProcess(process);
-        apply();
-        if(items.override) {
-			TransitionArranger a = items.createTransitionArranger();
-			a.setItems(items.items);
-			a.execute();
-        }
+		WebProcessStructureHelper h = new WebProcessStructureHelper();
+		boolean locked = h.isNodeChangeListenerLocked(process);
+		long ts = process.getTimeStamp();
+		if(!locked) h.setNodeChangeListenerLock(process, true);
+		try {
+			apply();
+			if(items.override) {
+				TransitionArranger a = items.createTransitionArranger();
+				a.setItems(items.items);
+				a.execute();
+			}
+		} finally {
+			if(!locked) {
+				h.setNodeChangeListenerLock(process, false);
+				if(process.getTimeStamp() != ts) {
+					process.setModified(true);
+					if(process.getModel() instanceof XModelImpl) {
+						((XModelImpl)process.getModel()).fireStructureChanged(process);
+					}
+				}
+			}
+		}
     }
 
     private void apply() {
@@ -55,9 +78,18 @@ public class AutoLayout {
             }
             x += is[i].group.xDeltas[is[i].ix] * constants.incX;
             y += yDeltas[is[i].iy] * constants.incY + is[i].yIndent;
-            o.setAttributeValue("shape", "" + x + "," + y + ",0,0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            setAttributeValue(o, "shape", "" + x + "," + y + ",0,0"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
         }
     }
+
+    /**
+     * Sets value only if it is changed, so that unchanged objects do not fire events.
+     */
+    static void setAttributeValue(XModelObject o, String name, String value) {
+    	if(!value.equals(o.getAttributeValue(name))) {
+    		o.setAttributeValue(name, value);
+    	}
+    }
     
     private void resetTransitions() {
     	if(!items.override) return;
@@ -65,11 +97,11 @@ public class AutoLayout {
 		for (int i = 0; i < is.length; i++) {
 			XModelObject o = is[i].object;
 			if(o.getModelEntity().getAttribute("link shape") != null) //$NON-NLS-1$
-			  o.setAttributeValue("link shape", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			  setAttributeValue(o, "link shape", ""); //$NON-NLS-1$ //$NON-NLS-2$
 			XModelObject[] os = items.getOutput(o);
 			for (int j = 0; j < os.length; j++) {
 //				String attr = (os[j].getModelEntity().getAttribute("link shape") != null) ? "link shape" : "shape";
-				os[j].setAttributeValue("shape", ""); //$NON-NLS-1$ //$NON-NLS-2$
+				setAttributeValue(os[j], "shape", ""); //$NON-NLS-1$ //$NON-NLS-2$
 			}
 		}
     	
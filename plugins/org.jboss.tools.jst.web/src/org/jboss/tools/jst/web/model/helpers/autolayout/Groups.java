@@ -23,9 +23,16 @@ public class Groups {
 
     public void load(Item[] items) {
         this.items = items;
-        init();
-        initField();
-        buildY();
+        if(isSomethingSet()) {
+            init();
+            initField();
+            buildY();
+        } else {
+            LayeredLayout layout = new LayeredLayout(items);
+            layout.execute();
+            groups.clear();
+            groups.addAll(layout.getGroups());
+        }
         buildDeltas();
     }
 
@@ -42,6 +42,14 @@ public class Item {
         return isSet;
     }
 
+    public int getIX() {
+        return ix;
+    }
+
+    public int getIY() {
+        return iy;
+    }
+
     public void addInput(int i, XModelObject link) {
         int[] k = new int[inputs.length + 1];
         System.arraycopy(inputs, 0, k, 0, inputs.length);
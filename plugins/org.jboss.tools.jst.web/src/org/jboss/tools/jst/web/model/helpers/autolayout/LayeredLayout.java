@@ -0,0 +1,388 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.model.helpers.autolayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Layered layout of items none of which is set.
+ * 1) Cycles are broken by reversing back links of a depth first search started at sources.
+ * 2) Items get columns by the longest path from sources, then are moved right
+ *    to the column before their nearest output, as GroupArranger did.
+ * 3) Items in each column are ordered by a few barycenter sweeps to reduce crossings.
+ * 4) Rows are assigned in that order, each item as close as possible to the mean row of its inputs.
+ *
+ * Each connected set of items becomes a group. Comments owned by an item take rows
+ * right below it. Groups are placed one below another, free comments above them and
+ * single items below them, as Groups did. All steps take time linear in the number
+ * of items and links, except for sorting columns. Columns and rows are not limited
+ * by the field of Groups.
+ */
+public class LayeredLayout {
+	static int SWEEPS = 4;
+
+	Item[] items;
+	List<Group> groups = new ArrayList<Group>();
+
+	int[] component;
+	int[] layer;
+	int[] row;
+	double[] weight;
+	boolean[] placed;
+
+	/**
+	 * Outputs reversed by breaking cycles, by index in item.outputs.
+	 */
+	boolean[][] reversed;
+
+	/**
+	 * Successors and predecessors of items in the acyclic graph.
+	 */
+	int[][] successors;
+	int[][] predecessors;
+
+	public LayeredLayout(Item[] items) {
+		this.items = items;
+	}
+
+	public List<Group> getGroups() {
+		return groups;
+	}
+
+	public void execute() {
+		int n = items.length;
+		component = new int[n];
+		layer = new int[n];
+		row = new int[n];
+		weight = new double[n];
+		placed = new boolean[n];
+		List<int[]> components = findComponents();
+		breakCycles();
+		buildAcyclicGraph();
+		assignLayers();
+		int miny = placeSingles(components, true, 0);
+		for (int[] c: components) {
+			if(c.length < 2) continue;
+			List<int[]> columns = orderColumns(c);
+			miny = assignRows(c, columns, miny) + 1;
+		}
+		placeSingles(components, false, miny);
+	}
+
+	private boolean isNode(int i) {
+		return !items[i].isOwned;
+	}
+
+	/**
+	 * Returns connected sets of items, each set sorted by index.
+	 */
+	private List<int[]> findComponents() {
+		List<int[]> result = new ArrayList<int[]>();
+		Arrays.fill(component, -1);
+		int[] queue = new int[items.length];
+		for (int s = 0; s < items.length; s++) {
+			if(component[s] >= 0 || !isNode(s)) continue;
+			int c = result.size();
+			int size = 0;
+			queue[size++] = s;
+			component[s] = c;
+			for (int q = 0; q < size; q++) {
+				Item item = items[queue[q]];
+				size = visit(item.comments, c, queue, size);
+				size = visit(item.inputs, c, queue, size);
+				size = visit(item.outputs, c, queue, size);
+			}
+			int[] is = new int[size];
+			System.arraycopy(queue, 0, is, 0, size);
+			Arrays.sort(is);
+			result.add(is);
+		}
+		return result;
+	}
+
+	private int visit(int[] is, int c, int[] queue, int size) {
+		for (int i = 0; i < is.length; i++) {
+			if(component[is[i]] >= 0) continue;
+			component[is[i]] = c;
+			queue[size++] = is[i];
+		}
+		return size;
+	}
+
+	/**
+	 * Iterative depth first search along outputs, started at items without inputs,
+	 * then at items not visited yet. An output leading to an item on the stack is reversed.
+	 */
+	private void breakCycles() {
+		int n = items.length;
+		reversed = new boolean[n][];
+		for (int i = 0; i < n; i++) {
+			reversed[i] = new boolean[items[i].outputs.length];
+		}
+		// 0 - not visited, 1 - on stack, 2 - done
+		int[] state = new int[n];
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		for (int pass = 0; pass < 2; pass++) {
+			for (int s = 0; s < n; s++) {
+				if(state[s] != 0 || !isNode(s)) continue;
+				if(pass == 0 && hasInputs(s)) continue;
+				int top = 0;
+				stack[0] = s;
+				next[0] = 0;
+				state[s] = 1;
+				while(top >= 0) {
+					int i = stack[top];
+					int[] os = items[i].outputs;
+					if(next[top] == os.length) {
+						state[i] = 2;
+						--top;
+						continue;
+					}
+					int k = next[top]++;
+					int t = os[k];
+					if(t == i || !isNode(t)) continue;
+					if(state[t] == 1) {
+						reversed[i][k] = true;
+					} else if(state[t] == 0) {
+						state[t] = 1;
+						++top;
+						stack[top] = t;
+						next[top] = 0;
+					}
+				}
+			}
+		}
+	}
+
+	private boolean hasInputs(int i) {
+		int[] is = items[i].inputs;
+		for (int k = 0; k < is.length; k++) {
+			if(is[k] != i) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Builds successors and predecessors, with reversed outputs turned back to front
+	 * and without loops.
+	 */
+	private void buildAcyclicGraph() {
+		int n = items.length;
+		int[] scount = new int[n];
+		int[] pcount = new int[n];
+		for (int i = 0; i < n; i++) {
+			if(!isNode(i)) continue;
+			int[] os = items[i].outputs;
+			for (int k = 0; k < os.length; k++) {
+				int t = os[k];
+				if(t == i || !isNode(t)) continue;
+				if(reversed[i][k]) {
+					scount[t]++;
+					pcount[i]++;
+				} else {
+					scount[i]++;
+					pcount[t]++;
+				}
+			}
+		}
+		successors = new int[n][];
+		predecessors = new int[n][];
+		for (int i = 0; i < n; i++) {
+			successors[i] = new int[scount[i]];
+			predecessors[i] = new int[pcount[i]];
+		}
+		Arrays.fill(scount, 0);
+		Arrays.fill(pcount, 0);
+		for (int i = 0; i < n; i++) {
+			if(!isNode(i)) continue;
+			int[] os = items[i].outputs;
+			for (int k = 0; k < os.length; k++) {
+				int t = os[k];
+				if(t == i || !isNode(t)) continue;
+				int from = reversed[i][k] ? t : i;
+				int to = reversed[i][k] ? i : t;
+				successors[from][scount[from]++] = to;
+				predecessors[to][pcount[to]++] = from;
+			}
+		}
+	}
+
+	/**
+	 * Columns by the longest path from sources in topological order, then moved
+	 * right in reverse order. Owned comments take the column of their owner.
+	 */
+	private void assignLayers() {
+		int n = items.length;
+		int[] indegree = new int[n];
+		int[] order = new int[n];
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			if(!isNode(i)) continue;
+			indegree[i] = predecessors[i].length;
+			if(indegree[i] == 0) order[size++] = i;
+		}
+		for (int q = 0; q < size; q++) {
+			int i = order[q];
+			for (int t: successors[i]) {
+				if(layer[i] + 1 > layer[t]) layer[t] = layer[i] + 1;
+				if(--indegree[t] == 0) order[size++] = t;
+			}
+		}
+		for (int q = size - 1; q >= 0; q--) {
+			int i = order[q];
+			int[] s = successors[i];
+			if(s.length == 0) continue;
+			int min = Integer.MAX_VALUE;
+			for (int t: s) if(layer[t] < min) min = layer[t];
+			if(min - 1 > layer[i]) layer[i] = min - 1;
+		}
+		for (int i = 0; i < n; i++) {
+			if(!isNode(i)) continue;
+			int[] cs = items[i].comments;
+			for (int k = 0; k < cs.length; k++) layer[cs[k]] = layer[i];
+		}
+	}
+
+	/**
+	 * Returns items of each column of the group, in the order of rows.
+	 */
+	private List<int[]> orderColumns(int[] c) {
+		int max = 0;
+		for (int i: c) {
+			if(isNode(i) && layer[i] > max) max = layer[i];
+		}
+		int[] sizes = new int[max + 1];
+		for (int i: c) {
+			if(isNode(i)) sizes[layer[i]]++;
+		}
+		List<int[]> columns = new ArrayList<int[]>();
+		for (int l = 0; l <= max; l++) columns.add(new int[sizes[l]]);
+		Arrays.fill(sizes, 0);
+		for (int i: c) {
+			if(isNode(i)) columns.get(layer[i])[sizes[layer[i]]++] = i;
+		}
+		for (int[] column: columns) setPositions(column);
+		for (int sweep = 0; sweep < SWEEPS; sweep++) {
+			for (int l = 1; l <= max; l++) {
+				sortByBarycenter(columns.get(l), predecessors);
+			}
+			for (int l = max - 1; l >= 0; l--) {
+				sortByBarycenter(columns.get(l), successors);
+			}
+		}
+		return columns;
+	}
+
+	private void setPositions(int[] column) {
+		for (int p = 0; p < column.length; p++) row[column[p]] = p;
+	}
+
+	private final Comparator<Integer> byWeight = new Comparator<Integer>() {
+		public int compare(Integer o1, Integer o2) {
+			return Double.compare(weight[o1.intValue()], weight[o2.intValue()]);
+		}
+	};
+
+	/**
+	 * Orders column by mean positions of neighbours in their columns.
+	 * An item without neighbours keeps its position.
+	 */
+	private void sortByBarycenter(int[] column, int[][] neighbours) {
+		Integer[] sorted = new Integer[column.length];
+		for (int p = 0; p < column.length; p++) {
+			int i = column[p];
+			int[] ns = neighbours[i];
+			double sum = 0;
+			for (int t: ns) sum += row[t];
+			weight[i] = ns.length == 0 ? p : sum / ns.length;
+			sorted[p] = Integer.valueOf(i);
+		}
+		Arrays.sort(sorted, byWeight);
+		for (int p = 0; p < column.length; p++) column[p] = sorted[p].intValue();
+		setPositions(column);
+	}
+
+	/**
+	 * Assigns rows in columns from left to right. Each item is placed at the mean row
+	 * of its predecessors, if that is below the previous item of the column,
+	 * and is followed by its comments. Returns the maximum row of the group.
+	 */
+	private int assignRows(int[] c, List<int[]> columns, int miny) {
+		Group group = createGroup(miny);
+		int maxy = miny;
+		for (int[] column: columns) {
+			int free = miny;
+			for (int i: column) {
+				int y = free;
+				int[] ps = predecessors[i];
+				if(ps.length > 0) {
+					long sum = 0;
+					for (int t: ps) sum += row[t];
+					int mean = (int)((sum + ps.length / 2) / ps.length);
+					if(mean > y) y = mean;
+				}
+				setItem(i, layer[i], y, group);
+				free = y + 1;
+				int[] cs = items[i].comments;
+				for (int k = 0; k < cs.length; k++) {
+					if(!placed[cs[k]]) setItem(cs[k], layer[i], free++, group);
+				}
+				if(free - 1 > maxy) maxy = free - 1;
+			}
+		}
+		group.items();
+		return maxy;
+	}
+
+	private Group createGroup(int miny) {
+		Group group = new Group();
+		group.number = groups.size() + 1;
+		group.miny = miny;
+		group.setItems(items);
+		groups.add(group);
+		return group;
+	}
+
+	private void setItem(int i, int ix, int iy, Group group) {
+		Item item = items[i];
+		item.ix = ix;
+		item.iy = iy;
+		item.group = group;
+		group.itemList.add(Integer.valueOf(i));
+		row[i] = iy;
+		placed[i] = true;
+	}
+
+	/**
+	 * Places free comments in rows of two above groups, or other single
+	 * items in rows of Groups.MAX_SINGLES_PER_ROW + 1 below groups.
+	 * Returns the first free row.
+	 */
+	private int placeSingles(List<int[]> components, boolean comments, int miny) {
+		int step = comments ? 2 : 1;
+		int perRow = comments ? 2 : Groups.MAX_SINGLES_PER_ROW + 1;
+		int k = 0;
+		for (int[] c: components) {
+			if(c.length != 1 || items[c[0]].isComment() != comments) continue;
+			int iy = miny + k / perRow;
+			Group group = createGroup(iy);
+			setItem(c[0], (k % perRow) * step, iy, group);
+			group.items();
+			++k;
+		}
+		return miny + (k + perRow - 1) / perRow;
+	}
+
+}
@@ -11,6 +11,10 @@
 package org.jboss.tools.jst.web.model.helpers.autolayout;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 import org.jboss.tools.common.model.XModelObject;
 
 public class TransitionArranger {
@@ -20,55 +24,105 @@ public class TransitionArranger {
 		this.items = items;
 	}
 	
+	/**
+	 * Transition lines are chosen for items of each column, top to bottom.
+	 * Occupation of lines by rows is kept in Fenwick trees, so that
+	 * the cost of a transition does not depend on the number of rows
+	 * it spans, and only rows occupied in a column are cleared.
+	 */
 	public void execute() {
 		int maxX = getMaxX();
 		int maxY = getMaxY();
-		int[][] occ = new int[occ0.length][maxY + 1];
-		Item[] v = new Item[maxY + 1];
+		int[][] occ = new int[occ0.length][maxY + 2];
+		List<List<Item>> columns = getColumns(maxX);
+		List<Integer> occupied = new ArrayList<Integer>();
 		for (int ix = 0; ix <= maxX; ix++) {
-			clean(occ);
-			fill(v, ix);
-			execute(ix, occ, v);
+			execute(columns.get(ix), occ, occupied);
+			clean(occ, occupied);
 		} 
 	}
-	
-	private void clean(int[][] occ) {
-		for (int i = 0; i < occ.length; i++) for (int j = 0; j < occ[0].length; j++) occ[i][j] = 0;
-	}
-	
-	private void fill(Item[] v, int ix) {
-		for (int i = 0; i < v.length; i++) v[i] = null;
+
+	/**
+	 * Returns items with inputs of each column ordered by rows. If several items
+	 * share a cell, only the last of them is kept.
+	 */
+	private List<List<Item>> getColumns(int maxX) {
+		List<List<Item>> columns = new ArrayList<List<Item>>();
+		for (int ix = 0; ix <= maxX; ix++) columns.add(new ArrayList<Item>());
 		for (int i = 0; i < items.length; i++) {
-			if(items[i].inputs.length == 0 || items[i].isOwned) continue;
-			if(items[i].ix == ix) v[items[i].iy] = items[i];
-		}		
+			if(items[i].inputs.length == 0 || items[i].isOwned || items[i].ix < 0 || items[i].iy < 0) continue;
+			columns.get(items[i].ix).add(items[i]);
+		}
+		for (List<Item> column: columns) {
+			Collections.sort(column, ROW_ORDER);
+			for (int i = column.size() - 2; i >= 0; i--) {
+				if(column.get(i).iy == column.get(i + 1).iy) column.remove(i);
+			}
+		}
+		return columns;
+	}
+
+	static final Comparator<Item> ROW_ORDER = new Comparator<Item>() {
+		public int compare(Item o1, Item o2) {
+			return o1.iy < o2.iy ? -1 : o1.iy == o2.iy ? 0 : 1;
+		}
+	};
+
+	private void clean(int[][] occ, List<Integer> occupied) {
+		for (Integer iy: occupied) {
+			for (int m = 0; m < occ.length; m++) {
+				int v = sum(occ[m], iy, iy);
+				if(v != 0) add(occ[m], iy, -v);
+			}
+		}
+		occupied.clear();
 	}
 	
 	private int[] occ0 = new int[10];
 			
-	private void execute(int ix, int[][] occ, Item[] v) {
+	private void execute(List<Item> column, int[][] occ, List<Integer> occupied) {
 		int delta = 0;
-		for (int iy = 0; iy < v.length; iy++) {
-			if(v[iy] == null) continue;
+		for (Item item: column) {
+			int iy = item.iy;
 			for (int i = 0; i < occ0.length; i++) occ0[i] = 0;
-			int[] is = v[iy].inputs;
+			int[] is = item.inputs;
 			delta = 0;
 			for (int k = 0; k < is.length; k++) {
 				int iy2 = items[is[k]].iy;
 				int miny = Math.min(iy, iy2);
 				int maxy = Math.max(iy, iy2);
 				if(maxy - miny > delta) delta = maxy - miny;
-				for (int m = 0; m < occ0.length; m++) for (int y = miny; y <= maxy; y++)
-				  if(occ[m][y] > 0) occ0[m] += occ[m][y];
+				for (int m = 0; m < occ0.length; m++) occ0[m] += sum(occ[m], miny, maxy);
 			}
 			int tg = findTransitionLine(delta, occ0);
 			for (int k = 0; k < is.length; k++) {
 				int iy2 = items[is[k]].iy;
-				occ[tg][iy2]++;
+				add(occ[tg], iy2, 1);
+				occupied.add(Integer.valueOf(iy2));
 			}
-			apply(v[iy], tg);
+			apply(item, tg);
 		}
 	}
+
+	/**
+	 * Adds value at row of Fenwick tree.
+	 */
+	private static void add(int[] tree, int iy, int value) {
+		for (int i = iy + 1; i < tree.length; i += i & (-i)) tree[i] += value;
+	}
+
+	/**
+	 * Returns sum of values at rows from miny to maxy inclusive.
+	 */
+	private static int sum(int[] tree, int miny, int maxy) {
+		return prefix(tree, maxy + 1) - prefix(tree, miny);
+	}
+
+	private static int prefix(int[] tree, int count) {
+		int s = 0;
+		for (int i = count; i > 0; i -= i & (-i)) s += tree[i];
+		return s;
+	}
 	
 	private int getMaxX() {
 		int ix = 0;
@@ -88,7 +142,7 @@ public class TransitionArranger {
 	
 	private int findTransitionLine(int pref, int[] occ0) {
 		if(pref >= occ0.length) pref = occ0.length - 1;
-		int h = 1000;
+		int h = Integer.MAX_VALUE;
 		int p = -1;
 		for (int i = 0; i < occ0.length; i++) {
 			int h1 = occ0[i] * 3 + Math.abs(i - pref);
@@ -105,7 +159,7 @@ public class TransitionArranger {
 		for (int k = 0; k < links.size(); k++) {
 			XModelObject io = (XModelObject)links.get(k);
 			String attr = (io.getModelEntity().getAttribute("link shape") != null) ? "link shape" : "shape"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			io.setAttributeValue(attr, "-1," + (8 * (tg + 2))); //$NON-NLS-1$
+			AutoLayout.setAttributeValue(io, attr, "-1," + (8 * (tg + 2))); //$NON-NLS-1$
 		}
 	}
 
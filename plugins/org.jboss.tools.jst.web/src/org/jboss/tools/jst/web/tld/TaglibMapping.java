@@ -12,9 +12,13 @@ package org.jboss.tools.jst.web.tld;
 
 import java.io.File;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.eclipse.core.resources.IResource;
@@ -33,15 +37,21 @@ import org.jboss.tools.jst.web.WebModelPlugin;
 import org.jboss.tools.jst.web.model.helpers.WebAppHelper;
 import org.jboss.tools.jst.web.project.WebProject;
 
+/**
+ * Tag libraries of a web project, from web.xml, WEB-INF and META-INF folders
+ * of libraries. Each library contributes its own maps, which are kept while the
+ * time stamp of the library is not changed, so that revalidation rescans only
+ * web.xml and WEB-INF, and added or modified libraries. Maps of all sources are
+ * merged into an immutable snapshot, which readers use without locking.
+ * Snapshots are published under the lock of the mapping, as in addLocation.
+ */
 public class TaglibMapping implements ITaglibMapping {    
-    private Map<String,String> taglibs = new HashMap<String,String>();
-	private Map<String,XModelObject> taglibObjects = new HashMap<String,XModelObject>();
-	private Map<String,XModelObject> taglibObjectsCopy = null;
-	private Properties resolvedURIs = new Properties();
-	private Properties declaredURIs = new Properties();
+    private volatile Snapshot snapshot = new Snapshot();
+    private Contribution base = new Contribution();
+    private Map<String,JarContribution> jars = new HashMap<String,JarContribution>();
     private XModel model;
     private long timeStamp = -1;
-    private long jarsTimeStamp = -1;
+    private int scannedJarCount = 0;
 	TaglibModelTreeListener listener = null;
 	boolean isLoading = false;
     
@@ -52,17 +62,27 @@ public class TaglibMapping implements ITaglibMapping {
     
     public void revalidate(XModelObject webxml) {
         if (webxml == null || isLoading) return;
-        model = webxml.getModel();
-        long jts = getJarsTimeStamp();
-        if (timeStamp == webxml.getTimeStamp() && jts == jarsTimeStamp) return;
-        isLoading = true;
-        timeStamp = webxml.getTimeStamp();
-        jarsTimeStamp = jts;
         if (model == null) model = webxml.getModel();
-        taglibs.clear();
-        taglibObjects.clear();
-        resolvedURIs.clear();
-        declaredURIs.clear();
+        boolean webxmlChanged = timeStamp != webxml.getTimeStamp();
+        if (!webxmlChanged && !areJarsChanged()) return;
+        isLoading = true;
+        try {
+        	if (webxmlChanged) {
+        		timeStamp = webxml.getTimeStamp();
+        		base = loadBase(webxml);
+        	}
+        	findTldsInJars();
+        	publish();
+        } finally {
+        	isLoading = false;
+        }
+    }
+
+    /**
+     * Loads tag libraries declared in web.xml and found in WEB-INF.
+     */
+    private Contribution loadBase(XModelObject webxml) {
+        Contribution c = new Contribution();
         WebProject webprj = WebProject.getInstance(model);
         String base = webprj.getWebInfLocation() + "/web.xml"; //$NON-NLS-1$
         if (webxml.getChildren().length > 0) {
@@ -70,25 +90,39 @@ public class TaglibMapping implements ITaglibMapping {
             for (int i = 0; i < sz.length; i++) {
                 String uri = sz[i].getAttributeValue("taglib-uri"); //$NON-NLS-1$
                 String location = sz[i].getAttributeValue("taglib-location"); //$NON-NLS-1$
-                taglibs.put(uri, webprj.getAbsoluteLocation(location, base));
+                c.taglibs.put(uri, webprj.getAbsoluteLocation(location, base));
                 XModelObject taglibObject = XModelImpl.getByRelativePath(model, location);
                 if(taglibObject != null) {
                 	String resolvedURI = taglibObject.getAttributeValue("uri"); //$NON-NLS-1$
                 	if(resolvedURI != null) {
-                		resolvedURIs.setProperty(uri, resolvedURI);
-                		declaredURIs.setProperty(resolvedURI, uri);
+                		c.resolvedURIs.put(uri, resolvedURI);
+                		c.declaredURIs.put(resolvedURI, uri);
                 	}
                 }
             }
         }
-        getFaceletTaglibs(webxml);
-		loadTldsInWebInf();
-		findTldsInJars();
-		taglibObjectsCopy = null;
-		isLoading = false;
+        getFaceletTaglibs(webxml, c);
+		loadTldsInWebInf(c);
+		return c;
     }
 
-	private void getFaceletTaglibs(XModelObject webxml) {
+    /**
+     * Merges contributions of web.xml, WEB-INF and libraries, in that order, into a new snapshot.
+     * A location of uri is taken from the first source that has it, a tag library object
+     * and a resolved uri from the last one.
+     */
+    private synchronized void publish() {
+    	Snapshot s = new Snapshot();
+    	s.add(base);
+    	for (XModelObject jar: getJars()) {
+    		JarContribution c = jars.get(jar.getAttributeValue("name")); //$NON-NLS-1$
+    		if(c != null) s.add(c.contribution);
+    	}
+    	s.declaredValues.addAll(s.declaredURIs.values());
+    	snapshot = s;
+    }
+
+	private void getFaceletTaglibs(XModelObject webxml, Contribution c) {
 		XModelObject webRoot = FileSystemsHelper.getWebRoot(model);
 		if(webxml == null || webRoot == null) return;
 		XModelObject cp = WebAppHelper.findWebAppContextParam(webxml, "facelets.LIBRARIES"); //$NON-NLS-1$
@@ -107,43 +141,41 @@ public class TaglibMapping implements ITaglibMapping {
 				continue;
 			String uri = facelet.getAttributeValue("uri"); //$NON-NLS-1$
 			if (uri != null) {
-				resolvedURIs.put(path, uri);
-				taglibObjects.put(uri, facelet);
+				c.resolvedURIs.put(path, uri);
+				c.taglibObjects.put(uri, facelet);
 			}
 		}
 	}
 
 
+    /**
+     * Returns an unmodifiable map of tag library objects by uri.
+     */
     public Map<String,XModelObject> getTaglibObjects() {
-    	Map<String,XModelObject> result = taglibObjectsCopy;
-    	if(result == null) {
-    		synchronized (this) {
-    			taglibObjectsCopy = new HashMap<String,XModelObject>();
-    			taglibObjectsCopy.putAll(taglibObjects);
-    			result = taglibObjectsCopy;
-    		}
-    	}
-    	return result;
+    	return snapshot.unmodifiableTaglibObjects;
     }
     
     /**
      * Return uri declared in web.xml by uri of tag library 
      */    
     public String getDeclaredURI(String uri) {
-    	if(declaredURIs.containsValue(uri)) return uri;
-    	return declaredURIs.getProperty(uri);
+    	Snapshot s = snapshot;
+    	if(s.declaredValues.contains(uri)) return uri;
+    	return s.declaredURIs.get(uri);
     }
 
     public String resolveURI(String uri) {
-    	String resolvedURI = resolvedURIs.getProperty(uri);
+    	String resolvedURI = snapshot.resolvedURIs.get(uri);
     	return resolvedURI == null ? uri : resolvedURI;
     }
 
     public XModelObject getTaglibObject(String uri) {
-    	uri = resolveURI(uri);
-    	XModelObject taglib = taglibObjects.get(uri);
+    	Snapshot s = snapshot;
+    	String resolvedURI = s.resolvedURIs.get(uri);
+    	if(resolvedURI != null) uri = resolvedURI;
+    	XModelObject taglib = s.taglibObjects.get(uri);
     	if(taglib != null) return taglib;
-        String location = (String)taglibs.get(uri);
+        String location = s.taglibs.get(uri);
         return (model == null || location == null) ? null
             : XModelImpl.getByRelativePath(model, location);
     }
@@ -176,7 +208,7 @@ public class TaglibMapping implements ITaglibMapping {
         } else if (uri.startsWith("urn:jsptagdir:")) { //$NON-NLS-1$
             uri = uri.substring(14);
         }
-        String location = (String)taglibs.get(uri);
+        String location = snapshot.taglibs.get(uri);
         if (location == null) {
             // fallback to direct path to tld
             location = webprj.getAbsoluteLocation(uri, base);
@@ -186,7 +218,7 @@ public class TaglibMapping implements ITaglibMapping {
         return location;
     }
 
-	private void loadTldsInWebInf() {
+	private void loadTldsInWebInf(Contribution c) {
 		XModelObject webinf = (model == null) ? null : FileSystemsHelper.getWebInf(model);
 		if(webinf == null) return;
 		IResource r = (IResource)webinf.getAdapter(IResource.class);				
@@ -198,31 +230,60 @@ public class TaglibMapping implements ITaglibMapping {
 		} catch (MalformedURLException e) {
 			WebModelPlugin.getPluginLog().logError(e);
 		}
-		if(url != null) findTldsInFolder(webinf, url);
+		if(url != null) findTldsInFolder(webinf, url, c);
 	}
-	
-	private void findTldsInJars() {
+
+	/**
+	 * Returns libraries of the project in class path order.
+	 */
+	private List<XModelObject> getJars() {
+		List<XModelObject> result = new ArrayList<XModelObject>();
     	XModelObject fss = FileSystemsHelper.getFileSystems(model);
-    	if(fss == null) return;
+    	if(fss == null) return result;
 		XModelObject[] fs = fss.getChildren("FileSystemJar"); //$NON-NLS-1$
 		for (int i = 0; i < fs.length; i++) {
 			String n = fs[i].getAttributeValue("name"); //$NON-NLS-1$
-			if(n.startsWith(Libs.LIB_PREFIX)) findTldsInJar(fs[i]);
+			if(n.startsWith(Libs.LIB_PREFIX)) result.add(fs[i]);
 		}
+		return result;
 	}
-	
-	private long getJarsTimeStamp() {
-    	XModelObject fss = FileSystemsHelper.getFileSystems(model);
-    	if(fss == null) return -1;
-    	long n = 0;
-		XModelObject[] fs = fss.getChildren("FileSystemJar"); //$NON-NLS-1$
-		for (int i = 0; i < fs.length; i++) {
-			n += fs[i].getTimeStamp();
+
+	private boolean areJarsChanged() {
+		List<XModelObject> fs = getJars();
+		if(fs.size() != jars.size()) return true;
+		for (XModelObject jar: fs) {
+			JarContribution c = jars.get(jar.getAttributeValue("name")); //$NON-NLS-1$
+			if(c == null || !c.isValid(jar)) return true;
 		}
-		return n;
+		return false;
 	}
 
-	private void findTldsInJar(XModelObject jar) {
+	/**
+	 * Rescans added and modified libraries, and forgets removed ones.
+	 */
+	private void findTldsInJars() {
+		Map<String,JarContribution> result = new HashMap<String,JarContribution>();
+		for (XModelObject jar: getJars()) {
+			String n = jar.getAttributeValue("name"); //$NON-NLS-1$
+			JarContribution c = jars.get(n);
+			if(c == null || !c.isValid(jar)) {
+				c = new JarContribution(jar);
+				findTldsInJar(jar, c.contribution);
+				scannedJarCount++;
+			}
+			result.put(n, c);
+		}
+		jars = result;
+	}
+
+	/**
+	 * Returns the number of library scans done since the mapping was created.
+	 */
+	public int getScannedJarCount() {
+		return scannedJarCount;
+	}
+
+	private void findTldsInJar(XModelObject jar, Contribution c) {
 		XModelObject metainf = jar.getChildByPath("META-INF"); //$NON-NLS-1$
 		if(metainf == null) return;
 		String location = null;
@@ -237,15 +298,15 @@ public class TaglibMapping implements ITaglibMapping {
 			WebModelPlugin.getPluginLog().logError("TaglibMapping:findTldsInJar:" + e.getMessage(), e); //$NON-NLS-1$
 			return;
 		}		
-		if(metainf != null) findTldsInFolder(metainf, url);
+		if(metainf != null) findTldsInFolder(metainf, url, c);
 	}
 
-	private void findTldsInFolder(XModelObject folder, String base) {
+	private void findTldsInFolder(XModelObject folder, String base, Contribution c) {
 		XModelObject[] cs = folder.getChildren();
 		if(cs==null) return;
 		for (int i = 0; i < cs.length; i++) {
 			if(cs[i].getFileType() == XModelObject.FOLDER) {
-				findTldsInFolder(cs[i], base + cs[i].getAttributeValue("name") + "/"); //$NON-NLS-1$ //$NON-NLS-2$
+				findTldsInFolder(cs[i], base + cs[i].getAttributeValue("name") + "/", c); //$NON-NLS-1$ //$NON-NLS-2$
 			} else if(cs[i].getFileType() == XModelObject.FILE) {
 				String entity = cs[i].getModelEntity().getName();
 				boolean ok = entity.startsWith("FileTLD"); //$NON-NLS-1$
@@ -260,19 +321,23 @@ public class TaglibMapping implements ITaglibMapping {
 					if(uri == null) {
 						WebModelPlugin.getDefault().logWarning("TaglibMapping: null 'uri' from object " + cs[i].getModelEntity().getName()); //$NON-NLS-1$
 					} else {
-						if(path != null) resolvedURIs.put(path, uri);
+						if(path != null) c.resolvedURIs.put(path, uri);
 					}
 				}
-				addLocation(uri, location);
-				taglibObjects.put(uri, cs[i]);
+				c.addLocation(uri, location);
+				c.taglibObjects.put(uri, cs[i]);
 			}
 		}		
 	}
 
-    public void addLocation(String uri, String location) {
-        if (taglibs.get(uri) != null) {
-        } else {
-            taglibs.put(uri, location);
+    public synchronized void addLocation(String uri, String location) {
+        Snapshot s = snapshot;
+        if (s.taglibs.get(uri) == null) {
+            Snapshot copy = new Snapshot();
+            copy.add(s);
+            copy.declaredValues.addAll(s.declaredValues);
+            copy.taglibs.put(uri, location);
+            snapshot = copy;
         }
     }
     
@@ -281,6 +346,57 @@ public class TaglibMapping implements ITaglibMapping {
     	timeStamp = -1;
     	revalidate(WebAppHelper.getWebApp(model));
     }
+
+    /**
+     * Maps loaded from one source.
+     */
+    static class Contribution {
+    	Map<String,String> taglibs = new HashMap<String,String>();
+    	Map<String,XModelObject> taglibObjects = new HashMap<String,XModelObject>();
+    	Map<String,String> resolvedURIs = new HashMap<String,String>();
+    	Map<String,String> declaredURIs = new HashMap<String,String>();
+
+    	void addLocation(String uri, String location) {
+    		if (taglibs.get(uri) == null) {
+    			taglibs.put(uri, location);
+    		}
+    	}
+    }
+
+    /**
+     * Contribution of a library, valid while the library object and its time stamp are the same.
+     */
+    static class JarContribution {
+    	XModelObject jar;
+    	long timeStamp;
+    	Contribution contribution = new Contribution();
+
+    	JarContribution(XModelObject jar) {
+    		this.jar = jar;
+    		timeStamp = jar.getTimeStamp();
+    	}
+
+    	boolean isValid(XModelObject jar) {
+    		return this.jar == jar && timeStamp == jar.getTimeStamp();
+    	}
+    }
+
+    /**
+     * Merged maps of all sources. Snapshot is not modified after it is published.
+     */
+    static class Snapshot extends Contribution {
+    	Set<String> declaredValues = new HashSet<String>();
+    	Map<String,XModelObject> unmodifiableTaglibObjects = Collections.unmodifiableMap(taglibObjects);
+
+    	void add(Contribution c) {
+    		for (Map.Entry<String,String> e: c.taglibs.entrySet()) {
+    			addLocation(e.getKey(), e.getValue());
+    		}
+    		taglibObjects.putAll(c.taglibObjects);
+    		resolvedURIs.putAll(c.resolvedURIs);
+    		declaredURIs.putAll(c.declaredURIs);
+    	}
+    }
     
     class TaglibModelTreeListener implements XModelTreeListener {
 
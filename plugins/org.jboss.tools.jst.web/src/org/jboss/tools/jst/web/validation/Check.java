@@ -37,6 +37,14 @@ public class Check {
 	public void check(XModelObject object) {			
 	}
 
+	/**
+	 * Returns cache of the current validation run, or null if
+	 * the check is not run by WebXMLCoreValidator.
+	 */
+	protected WebXMLValidationCache getCache() {
+		return manager instanceof WebXMLCoreValidator ? ((WebXMLCoreValidator)manager).getCache() : null;
+	}
+
 	@Deprecated
 	protected void fireMessage(XModelObject object, String message) {
 		ITextSourceReference ref = getSourceReference(object, attr);
@@ -72,7 +72,7 @@ public class CheckClass extends Check {
 			fireInvalid(object, attr, value);
 			return;
 		}
-		IType type = getValidType(value, object);
+		IType type = findType(value, object);
 
 		IFile f = (IFile)object.getAdapter(IFile.class);
 		if(f != null) {
@@ -111,6 +111,17 @@ public class CheckClass extends Check {
 		return constraint.accepts(value);
 	}
 
+	/**
+	 * Returns class name set to the object if the check looks for that type, otherwise null.
+	 */
+	String getTypeName(XModelObject object) {
+		String value = attr == null ? null : object.getAttributeValue(attr);
+		if(value == null || value.length() == 0 || isJavaLang(value) || isPrimitive(value) || !checkQualifiedName(value)) {
+			return null;
+		}
+		return value;
+	}
+
 	/**
 	 * Returns name of interface that should be implemented by type but is not.
 	 * Returns null if no restriction on type is set.
@@ -134,7 +145,7 @@ public class CheckClass extends Check {
 		if(f == null || f.length() == 0 || "java.lang.Object".equals(f)) return impl; //$NON-NLS-1$
 		f = EclipseJavaUtil.resolveType(type, f);
 		if(f == null || f.length() == 0 || "java.lang.Object".equals(f)) return impl; //$NON-NLS-1$
-		type = getValidType(f, object);
+		type = findType(f, object);
 		if(type == null) return impl;
 		return checkImplements(object, type);
 	}
@@ -159,7 +170,7 @@ public class CheckClass extends Check {
 		f = EclipseJavaUtil.resolveType(type, f);
 		if(f == null || f.length() == 0 || "java.lang.Object".equals(f)) return ext; //$NON-NLS-1$
 		if(f.equals(ext)) return null;
-		type = getValidType(f, object);
+		type = findType(f, object);
 		if(type == null) return ext;
 		return checkExtends(object, type);
 	}
@@ -192,9 +203,20 @@ public class CheckClass extends Check {
 		fireMessage(object, WebXMLValidatorMessages.CLASS_NOT_EXISTS, visualAttr, value);
 	}
 
+	/**
+	 * Looks for type in the cache of the validation run, if it is available.
+	 */
+	protected IType findType(String className, XModelObject o) {
+		WebXMLValidationCache cache = getCache();
+		return cache != null ? cache.getValidType(className, o) : getValidType(className, o);
+	}
+
 	public static IType getValidType(String className, XModelObject o) {
 		IProject project = EclipseResourceUtil.getProject(o);
-		if(project == null) return null;
+		return project == null ? null : getValidType(className, project);
+	}
+
+	public static IType getValidType(String className, IProject project) {
 		IType type = EclipseResourceUtil.getValidType(project, className);
 		if(type != null) return type;
 		IJavaProject javaProject = EclipseResourceUtil.getJavaProject(project);
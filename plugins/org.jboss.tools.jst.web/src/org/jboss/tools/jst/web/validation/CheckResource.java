@@ -63,7 +63,9 @@ public class CheckResource extends Check {
 			}
 		}
 		
-		List<Object> list = WebPromptingProvider.getInstance().getList(model, IWebPromptingProvider.JSF_CONVERT_URL_TO_PATH, value, null);
+		WebXMLValidationCache cache = getCache();
+		List<Object> list = cache != null ? cache.getPaths(model, value)
+				: WebPromptingProvider.getInstance().getList(model, IWebPromptingProvider.JSF_CONVERT_URL_TO_PATH, value, null);
 		if(list != null && !list.isEmpty()) {
 			value = list.get(0).toString();
 		}
@@ -119,6 +121,10 @@ public class CheckResource extends Check {
 	boolean isMappedToServlet(XModelObject o, String value) {
 		XModelObject webxml = FileSystemsHelper.getFile(o);
 		if(webxml == null) return false;
+		WebXMLValidationCache cache = getCache();
+		if(cache != null) {
+			return value != null && cache.getServletMappings(webxml).contains(value);
+		}
 		XModelObject[] ms = WebAppHelper.getServletMappings(webxml);
 		if(ms != null) for (XModelObject m: ms) {
 			String url = m.getAttributeValue("url-pattern"); //$NON-NLS-1$
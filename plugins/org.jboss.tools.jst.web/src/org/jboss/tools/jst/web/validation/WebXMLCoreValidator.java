@@ -11,10 +11,19 @@
 package org.jboss.tools.jst.web.validation;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -24,11 +33,14 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.wst.common.project.facet.core.IFacetedProject;
 import org.eclipse.wst.common.project.facet.core.IProjectFacet;
 import org.eclipse.wst.common.project.facet.core.ProjectFacetsManager;
 import org.eclipse.wst.validation.internal.core.ValidationException;
 import org.eclipse.wst.validation.internal.provisional.core.IReporter;
+import org.jboss.tools.common.meta.XChild;
+import org.jboss.tools.common.meta.XModelEntity;
 import org.jboss.tools.common.model.XModelObject;
 import org.jboss.tools.common.model.util.EclipseResourceUtil;
 import org.jboss.tools.common.validation.ContextValidationHelper;
@@ -44,6 +56,7 @@ import org.jboss.tools.common.validation.internal.ProjectValidationContext;
 import org.jboss.tools.common.validation.internal.SimpleValidatingProjectTree;
 import org.jboss.tools.common.validation.internal.ValidatingProjectSet;
 import org.jboss.tools.common.web.WebUtils;
+import org.jboss.tools.jst.web.DaemonThreadFactory;
 import org.jboss.tools.jst.web.WebModelPlugin;
 import org.jboss.tools.jst.web.model.helpers.WebAppHelper;
 
@@ -59,11 +72,23 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 
 	static String XML_EXT = ".xml"; //$NON-NLS-1$
 
+	/**
+	 * Maximum number of threads resolving Java types referenced in web.xml files.
+	 */
+	static final int MAX_THREADS = 4;
+
 	String projectName;
 	Map<IProject, IProjectValidationContext> contexts = new HashMap<IProject, IProjectValidationContext>();
 
 	Map<String, Set<Check>> checks = new HashMap<String, Set<Check>>();
 
+	/**
+	 * Entities by name, true if objects of the entity or of its descendants have checks.
+	 */
+	Map<String, Boolean> checkedEntities = new HashMap<String, Boolean>();
+
+	WebXMLValidationCache cache = null;
+
 	public WebXMLCoreValidator() {
 		createChecks();
 	}
@@ -144,6 +169,13 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 		return ID;
 	}
 
+	/**
+	 * Returns cache of the current validation run, or null if validation is not running.
+	 */
+	public WebXMLValidationCache getCache() {
+		return cache;
+	}
+
 	public String getBuilderId() {
 		return null;
 	}
@@ -198,17 +230,36 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 			IReporter reporter) throws ValidationException {
 		init(project, validationHelper, context, manager, reporter);
 
+		Map<IFile, XModelObject> files = new LinkedHashMap<IFile, XModelObject>();
 		for (IFile file: changedFiles) {
 			if(file.getName().endsWith(XML_EXT)) {
 				XModelObject o = EclipseResourceUtil.createObjectForResource(file);
 				if(o != null && o.getModelEntity().getName().startsWith("FileWebApp")) {
-					validateWebXMLFile(o, file);
+					files.put(file, o);
 				}
 			}
 		}
+		validateWebXMLFiles(files);
 		return OK_STATUS;
 	}
 
+	/**
+	 * Resolves Java types referenced by all files in parallel, then runs checks
+	 * file by file in this thread, as markers are not reported concurrently.
+	 */
+	private void validateWebXMLFiles(Map<IFile, XModelObject> files) {
+		if(files.isEmpty()) return;
+		cache = new WebXMLValidationCache();
+		try {
+			resolveTypes(files.values());
+			for (IFile file: files.keySet()) {
+				validateWebXMLFile(files.get(file), file);
+			}
+		} finally {
+			cache = null;
+		}
+	}
+
 	private void validateWebXMLFile(XModelObject object, IFile file) {
 		validateObject(object);
 	}
@@ -223,7 +274,98 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 		}
 		XModelObject[] cs = object.getChildren();
 		for (XModelObject c: cs) {
-			validateObject(c);
+			if(isChecked(c)) validateObject(c);
+		}
+	}
+
+	/**
+	 * Returns false if neither the object nor its descendants can have checks
+	 * according to the meta model, so that the subtree is not walked.
+	 */
+	boolean isChecked(XModelObject object) {
+		XModelEntity entity = object.getModelEntity();
+		Boolean b = checkedEntities.get(entity.getName());
+		if(b == null) {
+			b = Boolean.valueOf(isChecked(object, entity, new HashSet<String>()));
+			checkedEntities.put(entity.getName(), b);
+		}
+		return b.booleanValue();
+	}
+
+	private boolean isChecked(XModelObject object, XModelEntity entity, Set<String> visited) {
+		if(checks.containsKey(entity.getName())) return true;
+		visited.add(entity.getName());
+		for (XChild c: entity.getChildren()) {
+			if(visited.contains(c.getName())) continue;
+			XModelEntity ce = object.getModel().getMetaData().getEntity(c.getName());
+			if(ce != null && isChecked(object, ce, visited)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Fills the cache with types referenced by the objects, distinct class names
+	 * are looked for in parallel. Names, projects and Java projects are collected
+	 * in this thread, workers only query the Java model.
+	 */
+	private void resolveTypes(Iterable<XModelObject> objects) {
+		Map<IProject, Set<String>> names = new LinkedHashMap<IProject, Set<String>>();
+		int size = 0;
+		for (XModelObject o: objects) {
+			IProject project = EclipseResourceUtil.getProject(o);
+			if(project == null) continue;
+			Set<String> set = names.get(project);
+			if(set == null) {
+				set = new LinkedHashSet<String>();
+				names.put(project, set);
+			}
+			int s = set.size();
+			collectTypeNames(o, set);
+			size += set.size() - s;
+		}
+		int threads = Math.min(Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS), size);
+		if(threads < 2) return;
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("web.xml validator"));
+		try {
+			List<Future<Object>> results = new ArrayList<Future<Object>>();
+			final WebXMLValidationCache c = cache;
+			for (final IProject project: names.keySet()) {
+				final IJavaProject javaProject = EclipseResourceUtil.getJavaProject(project);
+				if(javaProject == null) continue;
+				for (final String name: names.get(project)) {
+					results.add(executor.submit(new Callable<Object>() {
+						public Object call() throws Exception {
+							c.findType(name, project, javaProject);
+							return null;
+						}
+					}));
+				}
+			}
+			for (Future<Object> f: results) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// Types not resolved here will be resolved by checks.
+			WebModelPlugin.getDefault().logError(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void collectTypeNames(XModelObject object, Set<String> names) {
+		Set<Check> ch = checks.get(object.getModelEntity().getName());
+		if(ch != null) {
+			for (Check c: ch) {
+				String name = c instanceof CheckClass ? ((CheckClass)c).getTypeName(object) : null;
+				if(name != null) {
+					names.add(name);
+				}
+			}
+		}
+		for (XModelObject c: object.getChildren()) {
+			if(isChecked(c)) collectTypeNames(c, names);
 		}
 	}
 
@@ -251,6 +393,7 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 				IResource[] rs = webInf.members();
 				// exception is not required here because if esbContent is not exist control
 				// never gets here
+				Map<IFile, XModelObject> files = new LinkedHashMap<IFile, XModelObject>();
 				for (IResource r: rs) {
 					if(r instanceof IFile) {
 						IFile file = (IFile)r;
@@ -258,11 +401,12 @@ public class WebXMLCoreValidator extends ValidationErrorManager implements IVali
 						if(name.endsWith(XML_EXT)) {
 							XModelObject o = EclipseResourceUtil.createObjectForResource(file);
 							if(o != null && o.getModelEntity().getName().startsWith("FileWebApp")) {
-								validateWebXMLFile(o, file);
+								files.put(file, o);
 							}
 						}
 					}
 				}
+				validateWebXMLFiles(files);
 			}
 		} catch (CoreException e) {
 			// hiding exceptions is the evil so lets return EROOR Status with exception
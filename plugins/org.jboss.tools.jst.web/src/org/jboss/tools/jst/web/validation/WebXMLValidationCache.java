@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.validation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaModelException;
+import org.jboss.tools.common.model.XModel;
+import org.jboss.tools.common.model.XModelObject;
+import org.jboss.tools.common.model.util.EclipseJavaUtil;
+import org.jboss.tools.common.model.util.EclipseResourceUtil;
+import org.jboss.tools.jst.web.WebModelPlugin;
+import org.jboss.tools.jst.web.model.helpers.WebAppHelper;
+import org.jboss.tools.jst.web.project.list.IWebPromptingProvider;
+import org.jboss.tools.jst.web.project.list.WebPromptingProvider;
+
+/**
+ * Results of lookups done by checks in one validation run, so that a class
+ * or a path referenced by many elements of web.xml is resolved once.
+ * Java types may be looked for concurrently with findType(), the rest of
+ * lookups access the model and are done in the validating thread.
+ */
+public class WebXMLValidationCache {
+	private static final Object NOT_FOUND = new Object();
+
+	private Map<String, Object> types = new ConcurrentHashMap<String, Object>();
+	private Map<XModel, Map<String, List<Object>>> paths = new HashMap<XModel, Map<String, List<Object>>>();
+	private Map<XModelObject, Set<String>> servletMappings = new HashMap<XModelObject, Set<String>>();
+
+	/**
+	 * Cached result of CheckClass.getValidType(className, o).
+	 *
+	 * @param className
+	 * @param o
+	 * @return
+	 */
+	public IType getValidType(String className, XModelObject o) {
+		IProject project = EclipseResourceUtil.getProject(o);
+		return project == null ? null : getValidType(className, project);
+	}
+
+	/**
+	 * Cached result of CheckClass.getValidType(className, project).
+	 *
+	 * @param className
+	 * @param project
+	 * @return
+	 */
+	public IType getValidType(String className, IProject project) {
+		String key = getKey(className, project);
+		Object type = types.get(key);
+		if(type == null) {
+			type = CheckClass.getValidType(className, project);
+			types.put(key, type == null ? NOT_FOUND : type);
+		}
+		return type == NOT_FOUND ? null : (IType)type;
+	}
+
+	/**
+	 * Looks for the type in the Java model only and caches it if found.
+	 * It does not access the XModel, so that it may be called concurrently
+	 * for names and projects collected in the validating thread. Types not
+	 * found here are looked for by getValidType().
+	 *
+	 * @param className
+	 * @param project
+	 * @param javaProject
+	 */
+	public void findType(String className, IProject project, IJavaProject javaProject) {
+		String key = getKey(className, project);
+		if(types.containsKey(key)) return;
+		IType type = null;
+		try {
+			type = EclipseJavaUtil.findType(javaProject, className);
+		} catch (JavaModelException e) {
+			WebModelPlugin.getDefault().logError(e);
+		}
+		if(type != null) {
+			types.put(key, type);
+		}
+	}
+
+	private static String getKey(String className, IProject project) {
+		return project.getName() + ":" + className; //$NON-NLS-1$
+	}
+
+	/**
+	 * Cached list of paths in web root for url, never null.
+	 *
+	 * @param model
+	 * @param url
+	 * @return
+	 */
+	public List<Object> getPaths(XModel model, String url) {
+		Map<String, List<Object>> map = paths.get(model);
+		if(map == null) {
+			map = new HashMap<String, List<Object>>();
+			paths.put(model, map);
+		}
+		List<Object> list = map.get(url);
+		if(list == null) {
+			list = WebPromptingProvider.getInstance().getList(model, IWebPromptingProvider.JSF_CONVERT_URL_TO_PATH, url, null);
+			if(list == null) list = Collections.emptyList();
+			map.put(url, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns url patterns of servlet mappings in web.xml.
+	 *
+	 * @param webxml
+	 * @return
+	 */
+	public Set<String> getServletMappings(XModelObject webxml) {
+		Set<String> result = servletMappings.get(webxml);
+		if(result == null) {
+			result = new HashSet<String>();
+			XModelObject[] ms = WebAppHelper.getServletMappings(webxml);
+			if(ms != null) for (XModelObject m: ms) {
+				String url = m.getAttributeValue("url-pattern"); //$NON-NLS-1$
+				if(url != null) result.add(url);
+			}
+			servletMappings.put(webxml, result);
+		}
+		return result;
+	}
+
+}
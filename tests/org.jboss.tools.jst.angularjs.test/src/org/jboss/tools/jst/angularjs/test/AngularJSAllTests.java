@@ -38,6 +38,7 @@ public class AngularJSAllTests {
 		s.addTestSuite(IonicRecognizerTest.class);
 		s.addTestSuite(IonicTagLibTest.class);
 		s.addTestSuite(AngularJSTest.class);
+		s.addTestSuite(ExpressionsProposalCacheTest.class);
 		suite.addTest(
 				new ProjectImportTestSetup(s,
 				"org.jboss.tools.jst.angularjs.test",
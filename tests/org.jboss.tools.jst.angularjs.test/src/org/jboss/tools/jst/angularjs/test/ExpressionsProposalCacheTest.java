@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.angularjs.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.text.IDocument;
+import org.jboss.tools.jst.angularjs.internal.ExpressionsProposalProcessor;
+import org.jboss.tools.jst.angularjs.internal.ExpressionsProposalProcessor.Members;
+import org.jboss.tools.jst.web.kb.IBrowserDataProvider;
+import org.jboss.tools.jst.web.kb.IPageContext;
+import org.jboss.tools.jst.web.kb.internal.BrowserDataProviderManager;
+import org.jboss.tools.jst.web.kb.internal.FaceletPageContextImpl;
+
+/**
+ * Members of scope objects are reused until the page is saved.
+ */
+public class ExpressionsProposalCacheTest extends TestCase {
+
+	static class Provider implements IBrowserDataProvider {
+		int count = 0;
+
+		@Override
+		public Object evaluate(String js, IPageContext context) {
+			count++;
+			return "name;value";
+		}
+	}
+
+	private IFile file;
+	private Provider provider;
+	private ExpressionsProposalProcessor processor;
+
+	@Override
+	protected void setUp() throws Exception {
+		IProject project = ResourcesPlugin.getWorkspace().getRoot().getProject("TestKbModel");
+		file = project.getFile(new Path("WebContent/pages/angular/angularJS.html"));
+		assertTrue(file.exists());
+		provider = new Provider();
+		List<IBrowserDataProvider> providers = new ArrayList<IBrowserDataProvider>();
+		providers.add(provider);
+		processor = new ExpressionsProposalProcessor(new BrowserDataProviderManager(providers));
+		ExpressionsProposalProcessor.clearCache();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ExpressionsProposalProcessor.clearCache();
+	}
+
+	private IPageContext createContext() {
+		FaceletPageContextImpl context = new FaceletPageContextImpl();
+		context.setResource(file);
+		return context;
+	}
+
+	public void testCache() throws Exception {
+		Members members = processor.getMembers("", 10, createContext());
+		assertFalse(members.isLoading());
+		assertTrue(members.getNames().contains("name"));
+		assertTrue(members.getNames().contains("value"));
+		assertEquals(1, provider.count);
+
+		assertSame(members, processor.getMembers("", 10, createContext()));
+		assertEquals(1, provider.count);
+
+		processor.getMembers("item.", 10, createContext());
+		assertEquals(2, provider.count);
+	}
+
+	/**
+	 * Unsaved changes of the document, like typing the expression, keep cached members,
+	 * saving the page invalidates them.
+	 */
+	public void testDocumentChange() throws Exception {
+		processor.getMembers("", 10, createContext());
+		assertEquals(1, provider.count);
+
+		ITextFileBufferManager manager = FileBuffers.getTextFileBufferManager();
+		IPath path = file.getFullPath();
+		manager.connect(path, LocationKind.IFILE, null);
+		ITextFileBuffer buffer = manager.getTextFileBuffer(path, LocationKind.IFILE);
+		String content = buffer.getDocument().get();
+		try {
+			IDocument document = buffer.getDocument();
+			document.replace(document.getLength(), 0, " ");
+			processor.getMembers("", 10, createContext());
+			assertEquals(1, provider.count);
+
+			buffer.commit(null, true);
+			processor.getMembers("", 10, createContext());
+			assertEquals(2, provider.count);
+			processor.getMembers("", 10, createContext());
+			assertEquals(2, provider.count);
+		} finally {
+			buffer.getDocument().set(content);
+			buffer.commit(null, true);
+			manager.disconnect(path, LocationKind.IFILE, null);
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.jst.web.kb.IBrowserDataProvider;
+import org.jboss.tools.jst.web.kb.IPageContext;
+import org.jboss.tools.jst.web.kb.internal.BrowserDataProviderManager;
+import org.jboss.tools.jst.web.kb.internal.FaceletPageContextImpl;
+
+/**
+ * Evaluation of scripts by browser data providers within a time budget.
+ */
+public class BrowserDataProviderManagerTest extends TestCase {
+
+	static class Provider implements IBrowserDataProvider {
+		String result;
+		long delay;
+		int count = 0;
+
+		Provider(String result, long delay) {
+			this.result = result;
+			this.delay = delay;
+		}
+
+		@Override
+		public Object evaluate(String js, IPageContext context) {
+			count++;
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return result;
+		}
+	}
+
+	private static IPageContext createContext() {
+		FaceletPageContextImpl context = new FaceletPageContextImpl();
+		context.setResource(ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/p/a.html")));
+		return context;
+	}
+
+	private static BrowserDataProviderManager createManager(Provider... providers) {
+		List<IBrowserDataProvider> list = new ArrayList<IBrowserDataProvider>();
+		for (Provider provider: providers) {
+			list.add(provider);
+		}
+		return new BrowserDataProviderManager(list);
+	}
+
+	public void testFastProviders() {
+		Provider a = new Provider("a", 0);
+		Provider b = new Provider("b", 0);
+		BrowserDataProviderManager manager = createManager(a, b);
+		Collection<Object> results = manager.evaluate("js", createContext(), BrowserDataProviderManager.DEFAULT_BUDGET);
+		assertEquals(2, results.size());
+		assertTrue(results.contains("a"));
+		assertTrue(results.contains("b"));
+		assertFalse(results.contains(BrowserDataProviderManager.DATA_LOADING));
+	}
+
+	/**
+	 * A provider that does not fit in the budget contributes DATA_LOADING,
+	 * next calls get its result, and no provider is evaluated twice.
+	 */
+	public void testBudget() {
+		Provider fast = new Provider("fast", 0);
+		Provider slow = new Provider("slow", 1000);
+		Provider late = new Provider("late", 0);
+		BrowserDataProviderManager manager = createManager(fast, slow, late);
+		IPageContext context = createContext();
+
+		Collection<Object> results = manager.evaluate("js", context, 100);
+		assertTrue(results.contains("fast"));
+		assertTrue(results.contains(BrowserDataProviderManager.DATA_LOADING));
+		assertFalse(results.contains("late"));
+
+		for (int i = 0; i < 50 && results.contains(BrowserDataProviderManager.DATA_LOADING); i++) {
+			results = manager.evaluate("js", context, 100);
+		}
+		assertTrue(results.contains("fast"));
+		assertTrue(results.contains("slow"));
+		assertTrue(results.contains("late"));
+		assertFalse(results.contains(BrowserDataProviderManager.DATA_LOADING));
+		assertEquals(1, fast.count);
+		assertEquals(1, slow.count);
+		assertEquals(1, late.count);
+
+		// The finished evaluation is not reused.
+		manager.evaluate("js", context, 100);
+		assertEquals(2, fast.count);
+	}
+
+}
@@ -10,6 +10,8 @@
  ******************************************************************************/ 
 package org.jboss.tools.jst.web.kb.test;
 
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.eclipse.core.resources.IFile;
@@ -17,11 +19,14 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.jboss.tools.common.el.core.resolver.ELContext;
 import org.jboss.tools.common.text.TextProposal;
+import org.jboss.tools.jst.web.kb.ICSSContainerSupport;
 import org.jboss.tools.jst.web.kb.IPageContext;
 import org.jboss.tools.jst.web.kb.KbQuery;
 import org.jboss.tools.jst.web.kb.KbQuery.Type;
 import org.jboss.tools.jst.web.kb.PageContextFactory;
 import org.jboss.tools.jst.web.kb.PageProcessor;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex;
+import org.jboss.tools.jst.web.kb.internal.CSSClassIndex.StyleSheetIndex;
 
 /**
  * The JUnit test case for issue JBIDE-17676
@@ -75,4 +80,33 @@ public class CSSClassNamesTest extends TestCase {
 			assertEquals("CSS Class Name contains unexpected character: ')'", -1, value.indexOf(')'));
 		}
 	}
+
+	public void testCSSClassIndex() {
+		assertNotNull("Can't load TestKbModel", testProject); //$NON-NLS-1$
+
+		IFile file = testProject.getFile("WebContent/pages/cssClassNamesTest.html");
+		ELContext context = PageContextFactory.createPageContext(file);
+		assertTrue("Not an instance of ICSSContainerSupport!", context instanceof ICSSContainerSupport);
+
+		List<StyleSheetIndex> indexes = CSSClassIndex.getInstance().getIndexes((ICSSContainerSupport)context);
+		assertFalse("Style sheets not found!", indexes.isEmpty());
+		boolean found = false;
+		for (StyleSheetIndex index : indexes) {
+			for (String name : index.getClassNames()) {
+				if (name.startsWith(CSS_CLASS_NAME_TEMPLATE)) {
+					found = true;
+					assertFalse("Selectors not found for " + name, index.findSelectors(name).isEmpty());
+					assertNotNull("Rule of selector is collected while its style sheet is used", index.findSelectors(name).get(0).getRule());
+				}
+			}
+		}
+		assertTrue("CSS Class Names not found in the index!", found);
+
+		// Unmodified style sheets are not indexed again
+		List<StyleSheetIndex> indexes2 = CSSClassIndex.getInstance().getIndexes((ICSSContainerSupport)context);
+		assertEquals(indexes.size(), indexes2.size());
+		for (int i = 0; i < indexes.size(); i++) {
+			assertSame(indexes.get(i), indexes2.get(i));
+		}
+	}
 }
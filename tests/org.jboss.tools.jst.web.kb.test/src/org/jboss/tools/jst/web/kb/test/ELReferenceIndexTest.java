@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.jboss.tools.jst.web.kb.internal.ELReferenceIndex;
+
+public class ELReferenceIndexTest extends TestCase {
+	private IProject project;
+
+	@Override
+	protected void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("ELReferenceIndexTest");
+		project.create(null);
+		project.open(null);
+		project.getFolder("web").create(true, true, null);
+		project.getFolder(".settings").create(true, true, null);
+		createFile("web/a.xhtml", "<h:outputText value=\"#{user.name}\"/>");
+		createFile("web/b.jsp", "<c:out value=\"${order.total}\"/> user");
+		createFile("web/c.html", "#{user.name}");
+		createFile(".settings/d.xml", "#{user.name}");
+		ELReferenceIndex.getInstance().build(project, new IPath[0], null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		ELReferenceIndex.getInstance().clean(project);
+		project.delete(true, true, null);
+	}
+
+	private IFile createFile(String path, String content) throws CoreException {
+		IFile file = project.getFile(path);
+		file.create(new ByteArrayInputStream(content.getBytes()), true, null);
+		return file;
+	}
+
+	private List<String> find(ELReferenceIndex index, String... names) {
+		List<String> result = new ArrayList<String>();
+		for (IFile f: index.getFiles(project, Arrays.asList(names))) {
+			result.add(f.getName());
+		}
+		return result;
+	}
+
+	public void testCollectNames() {
+		Set<String> names = new HashSet<String>();
+		ELReferenceIndex.collectNames("a.b #{bean.get(x)} { $ ${map['key'].size()} #{", names);
+		assertEquals(new HashSet<String>(Arrays.asList("bean", "get", "x", "map", "key", "size")), names);
+	}
+
+	/**
+	 * Braces of a set literal and a quoted brace do not end the expression.
+	 */
+	public void testCollectNamesAfterBraces() {
+		Set<String> names = new HashSet<String>();
+		ELReferenceIndex.collectNames("#{{a, b}.contains(c)} text", names);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "contains", "c")), names);
+
+		names.clear();
+		ELReferenceIndex.collectNames("#{x == '}' ? y : z} text", names);
+		assertEquals(new HashSet<String>(Arrays.asList("x", "y", "z")), names);
+	}
+
+	public void testFind() {
+		ELReferenceIndex index = ELReferenceIndex.getInstance();
+		assertTrue(index.isIndexed(project));
+		assertEquals(Arrays.asList("a.xhtml"), find(index, "user"));
+		assertEquals(Arrays.asList("a.xhtml", "b.jsp"), find(index, "name", "total"));
+		assertTrue(find(index, "unknown").isEmpty());
+	}
+
+	public void testChanges() throws Exception {
+		ELReferenceIndex index = ELReferenceIndex.getInstance();
+		project.getFile("web/b.jsp").setContents(new ByteArrayInputStream("#{user.id}".getBytes()), true, false, null);
+		createFile("web/e.xml", "<a b=\"#{user}\"/>");
+		project.getFile("web/a.xhtml").delete(true, null);
+		assertEquals(Arrays.asList("b.jsp", "e.xml"), find(index, "user"));
+		assertTrue(find(index, "total").isEmpty());
+
+		index.store();
+		ELReferenceIndex loaded = new ELReferenceIndex(index.getFolder());
+		assertEquals(Arrays.asList("b.jsp", "e.xml"), find(loaded, "user"));
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jface.text.Region;
+import org.jboss.tools.common.el.core.model.ELInvocationExpression;
+import org.jboss.tools.common.el.core.parser.ELParserUtil;
+import org.jboss.tools.common.el.core.resolver.ELResolution;
+import org.jboss.tools.common.el.core.resolver.Var;
+import org.jboss.tools.jst.web.kb.internal.FaceletPageContextImpl;
+import org.jboss.tools.jst.web.kb.internal.ResourceBundle;
+import org.jboss.tools.jst.web.kb.internal.XmlContextImpl;
+import org.jboss.tools.jst.web.kb.internal.validation.ELResolutionMemo;
+import org.jboss.tools.jst.web.kb.internal.validation.ELValidator;
+
+public class ELResolutionMemoTest extends TestCase {
+
+	private static FaceletPageContextImpl createContext(String path) {
+		FaceletPageContextImpl context = new FaceletPageContextImpl();
+		context.setResource(ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(path)));
+		return context;
+	}
+
+	private static ELInvocationExpression parse(String el) {
+		return (ELInvocationExpression)ELParserUtil.getJbossFactory().createParser().parse(el).getInstances().get(0).getExpression();
+	}
+
+	private static Var createVar(String name, String value) {
+		return new Var(ELParserUtil.getJbossFactory(), name, value, 0, 0);
+	}
+
+	private static ELValidator.ResolvedOperand createResolution() {
+		return new ELValidator.ResolvedOperand(new ArrayList<ELResolution>(), 0);
+	}
+
+	public void testHit() {
+		ELResolutionMemo memo = new ELResolutionMemo();
+		FaceletPageContextImpl a = createContext("/p/a.xhtml");
+		FaceletPageContextImpl b = createContext("/p/b.xhtml");
+		ELInvocationExpression operand = parse("#{bean.items}");
+
+		String key = memo.getKey(a, operand, 0);
+		assertNotNull(key);
+		assertNull(memo.get(key));
+		ELValidator.ResolvedOperand resolved = createResolution();
+		memo.put(key, resolved);
+
+		// The same operand in another page of the project shares the resolution.
+		String other = memo.getKey(b, parse("#{bean.items}"), 100);
+		assertEquals(key, other);
+		assertSame(resolved, memo.get(other));
+		assertEquals(1, memo.getHitCount());
+		assertEquals(1, memo.getMissCount());
+		assertEquals(0.5, memo.getHitRate(), 0.001);
+	}
+
+	public void testVariableChange() {
+		ELResolutionMemo memo = new ELResolutionMemo();
+		FaceletPageContextImpl context = createContext("/p/a.xhtml");
+		context.addVar(new Region(0, 50), createVar("item", "#{bean.items}"));
+		context.addVar(new Region(50, 50), createVar("item", "#{otherBean.items}"));
+		ELInvocationExpression operand = parse("#{item.name}");
+
+		String key = memo.getKey(context, operand, 10);
+		memo.put(key, createResolution());
+		assertEquals(key, memo.getKey(context, operand, 20));
+
+		// Variable of the same name bound to another bean.
+		String changed = memo.getKey(context, operand, 60);
+		assertFalse(key.equals(changed));
+		assertNull(memo.get(changed));
+
+		// Operands outside of the variable are not affected by it.
+		assertFalse(key.equals(memo.getKey(context, operand, 120)));
+	}
+
+	public void testNewRunDoesNotSeeOldResolutions() {
+		// Changed beans are validated in a new run, which has its own memo.
+		ELResolutionMemo memo = new ELResolutionMemo();
+		FaceletPageContextImpl context = createContext("/p/a.xhtml");
+		String key = memo.getKey(context, parse("#{bean.items}"), 0);
+		memo.put(key, createResolution());
+		assertEquals(1, memo.size());
+
+		ELResolutionMemo next = new ELResolutionMemo();
+		assertNull(next.get(key));
+		assertEquals(0, next.size());
+	}
+
+	public void testKeysOfDifferentContexts() {
+		ELResolutionMemo memo = new ELResolutionMemo();
+		ELInvocationExpression operand = parse("#{bean.items}");
+		String key = memo.getKey(createContext("/p/a.xhtml"), operand, 0);
+
+		// Another project
+		assertFalse(key.equals(memo.getKey(createContext("/q/a.xhtml"), operand, 0)));
+
+		// Another resource bundle
+		FaceletPageContextImpl withBundle = createContext("/p/b.xhtml");
+		withBundle.addResourceBundle(new ResourceBundle("messages", "bean"));
+		String bundleKey = memo.getKey(withBundle, operand, 0);
+		assertFalse(key.equals(bundleKey));
+		FaceletPageContextImpl withOtherBundle = createContext("/p/c.xhtml");
+		withOtherBundle.addResourceBundle(new ResourceBundle("labels", "bean"));
+		assertFalse(bundleKey.equals(memo.getKey(withOtherBundle, operand, 0)));
+
+		// Composite component of the page
+		ELInvocationExpression cc = parse("#{cc.attrs.value}");
+		assertFalse(memo.getKey(createContext("/p/a.xhtml"), cc, 0).equals(memo.getKey(createContext("/p/b.xhtml"), cc, 0)));
+
+		// A context which is not a page context is not shared.
+		assertNull(memo.getKey(new XmlContextImpl(), operand, 0));
+	}
+}
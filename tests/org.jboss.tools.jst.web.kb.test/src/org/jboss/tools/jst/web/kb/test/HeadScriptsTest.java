@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import junit.framework.TestCase;
+
+import org.jboss.tools.jst.web.kb.internal.HeadScripts;
+
+public class HeadScriptsTest extends TestCase {
+
+	public void testVersion() {
+		HeadScripts scripts = HeadScripts.parse("<!DOCTYPE html>\n<html>\n<HEAD>\n"
+				+ "<!-- <script src=\"angular-1.0.js\"></script> -->\n"
+				+ "<script type='text/javascript' src='js/jquery-1.9.1.min.js'></script>\n"
+				+ "<script src=\"js/jquery.mobile-1.4.2.js\"/>\n"
+				+ "<script>\nvar s = 'ionic.bundle.js';\n</script>\n"
+				+ "</head>\n<body><script src=\"late-2.0.js\"></script></body></html>");
+		assertEquals("html", scripts.getDoctype());
+		assertEquals(3, scripts.getScriptCount());
+		assertEquals("1.9", scripts.getVersion("jquery-", false));
+		assertEquals("1.4", scripts.getVersion("jquery.mobile-", true));
+		assertEquals("", scripts.getVersion("ionic", false));
+		assertNull(scripts.getVersion("ionic", true));
+		assertNull(scripts.getVersion("angular", false));
+		assertNull(scripts.getVersion("late", false));
+	}
+
+	public void testNoHead() {
+		HeadScripts scripts = HeadScripts.parse("<html><body><script src=\"jquery-1.9.1.js\"></script></body></html>");
+		assertEquals(0, scripts.getScriptCount());
+		assertNull(scripts.getVersion("jquery-", false));
+	}
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.common.el.core.resolver.Var;
+import org.jboss.tools.jst.web.kb.include.IncludeModel;
+import org.jboss.tools.jst.web.kb.include.PageInclude;
+
+public class IncludeGraphTest extends TestCase {
+	static final IPath A = new Path("/p/a.xhtml");
+	static final IPath B = new Path("/p/b.xhtml");
+	static final IPath C = new Path("/p/c.xhtml");
+	static final IPath D = new Path("/p/d.xhtml");
+
+	private static void include(IncludeModel model, IPath parent, IPath child) {
+		model.addInclude(parent, new PageInclude(parent, child, new ArrayList<Var>()));
+	}
+
+	public void testTransitiveClosures() {
+		IncludeModel model = new IncludeModel();
+		include(model, A, B);
+		include(model, B, C);
+		include(model, D, C);
+
+		Set<IPath> included = model.getIncludedPages(A);
+		assertEquals(2, included.size());
+		assertTrue(included.contains(B));
+		assertTrue(included.contains(C));
+		assertTrue(model.getAffectedPages(A).isEmpty());
+
+		Set<IPath> including = model.getIncludingPages(C);
+		assertEquals(3, including.size());
+		assertTrue(including.contains(A));
+		assertTrue(including.contains(B));
+		assertTrue(including.contains(D));
+		assertTrue(model.getIncludedPages(C).isEmpty());
+	}
+
+	/**
+	 * A change of a leaf fragment affects the pages including it, not the pages it includes.
+	 */
+	public void testAffectedPages() {
+		IncludeModel model = new IncludeModel();
+		include(model, A, B);
+		include(model, B, C);
+		include(model, C, D);
+
+		Set<IPath> affected = model.getAffectedPages(D);
+		assertEquals(3, affected.size());
+		assertTrue(affected.contains(C));
+		assertTrue(affected.contains(B));
+		assertTrue(affected.contains(A));
+
+		affected = model.getAffectedPages(B);
+		assertEquals(1, affected.size());
+		assertTrue(affected.contains(A));
+		assertFalse(affected.contains(C));
+	}
+
+	public void testInvalidation() {
+		IncludeModel model = new IncludeModel();
+		include(model, A, B);
+		include(model, B, C);
+		assertEquals(2, model.getIncludedPages(A).size());
+		assertEquals(2, model.getIncludingPages(C).size());
+
+		model.clean(B);
+		assertEquals(1, model.getIncludedPages(A).size());
+		assertTrue(model.getIncludingPages(C).isEmpty());
+		assertTrue(model.getVars(C).isEmpty());
+
+		include(model, B, D);
+		assertTrue(model.getIncludedPages(A).contains(D));
+		assertTrue(model.getIncludingPages(D).contains(A));
+	}
+
+	public void testCachedVarsAreUnmodifiable() {
+		IncludeModel model = new IncludeModel();
+		include(model, A, C);
+		List<Var> vars = model.getVars(C);
+		try {
+			vars.add(null);
+			fail("Cached vars are modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertTrue(model.getVars(C).isEmpty());
+	}
+
+	public void testCycle() {
+		IncludeModel model = new IncludeModel();
+		include(model, A, B);
+		include(model, B, A);
+		Set<IPath> included = model.getIncludedPages(A);
+		assertEquals(2, included.size());
+		assertTrue(included.contains(A));
+	}
+}
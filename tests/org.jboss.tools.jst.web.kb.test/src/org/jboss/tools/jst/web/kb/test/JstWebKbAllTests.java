@@ -20,6 +20,7 @@ import org.jboss.tools.jst.web.kb.test.validation.BuilderOrderMarkerResolutionTe
 import org.jboss.tools.jst.web.kb.test.validation.BuilderOrderValidationTest;
 import org.jboss.tools.jst.web.kb.test.validation.KBValidationTest;
 import org.jboss.tools.jst.web.kb.test.validation.KbCapabilitiesTest;
+import org.jboss.tools.jst.web.kb.test.validation.ParallelELValidationTest;
 import org.jboss.tools.test.util.ProjectImportTestSetup;
 
 /**
@@ -50,6 +51,8 @@ public class JstWebKbAllTests {
 		suite.addTestSuite(CSSMediaRuleTest.class);
 		suite.addTestSuite(CSSClassNamesTest.class);
 		suite.addTestSuite(RemoteFileManagerTest.class);
+		suite.addTestSuite(TagLibComponentIndexTest.class);
+		suite.addTestSuite(ParallelELValidationTest.class);
 		testSetup = new XProjectImportTestSetUp(suite,
 				"org.jboss.tools.jst.web.kb.test",
 				new String[]{"projects/TestKbModel", "projects/MyFaces", "projects/MyFaces2", "projects/TestKbModel3", "projects/TestKbModel4"},
@@ -72,6 +75,17 @@ public class JstWebKbAllTests {
 		suiteAll.addTest(testSetup);
 
 		suiteAll.addTestSuite(KbCapabilitiesTest.class);
+		suiteAll.addTestSuite(PageContextCacheTest.class);
+		suiteAll.addTestSuite(LibraryDeclarationsCacheTest.class);
+		suiteAll.addTestSuite(HeadScriptsTest.class);
+		suiteAll.addTestSuite(IncludeGraphTest.class);
+		suiteAll.addTestSuite(XmlContextTextEditTest.class);
+		suiteAll.addTestSuite(RemoteFileManagerHttpTest.class);
+		suiteAll.addTestSuite(ResourcePathIndexTest.class);
+		suiteAll.addTestSuite(ELReferenceIndexTest.class);
+		suiteAll.addTestSuite(ELResolutionMemoTest.class);
+		suiteAll.addTestSuite(BrowserDataProviderManagerTest.class);
+		suiteAll.addTestSuite(KbBuildStatisticsTest.class);
 
 		return suiteAll;
 	}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics.BuildRecord;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics.Counter;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics.Probe;
+
+public class KbBuildStatisticsTest extends TestCase {
+	static final String PROJECT = "KbBuildStatisticsTest";
+
+	@Override
+	protected void tearDown() throws Exception {
+		KbBuildStatistics.getInstance().clear();
+	}
+
+	private void work(long nanos) {
+		long start = System.nanoTime();
+		while(System.nanoTime() - start < nanos) {
+			Thread.yield();
+		}
+	}
+
+	public void testSlowestFiles() {
+		KbBuildStatistics statistics = KbBuildStatistics.getInstance();
+		BuildRecord record = statistics.startBuild(PROJECT, IncrementalProjectBuilder.FULL_BUILD);
+		for (int i = 0; i < 30; i++) {
+			Probe probe = new Probe();
+			work(i * 100000L);
+			record.addFile("/" + PROJECT + "/file" + i, probe);
+			record.addScanner("XMLScanner", probe);
+		}
+		statistics.finishBuild(record);
+
+		List<Counter> files = record.getFiles();
+		assertEquals(20, files.size());
+		assertEquals("/" + PROJECT + "/file29", files.get(0).getName());
+		for (int i = 1; i < files.size(); i++) {
+			assertTrue(files.get(i - 1).getTime() >= files.get(i).getTime());
+		}
+		assertEquals(1, record.getScanners().size());
+		assertEquals(30, record.getScanners().iterator().next().getCount());
+	}
+
+	public void testWorkerAllocation() throws InterruptedException {
+		BuildRecord record = KbBuildStatistics.getInstance().startBuild(PROJECT, IncrementalProjectBuilder.FULL_BUILD);
+		record.addPhase(KbBuildStatistics.PHASE_CLASS_PATH, new Probe());
+		long builder = record.getPhases().iterator().next().getAllocated();
+		final long[] worker = new long[1];
+		Thread t = new Thread() {
+			public void run() {
+				long a = KbBuildStatistics.getAllocatedBytes();
+				byte[][] bytes = new byte[100][];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = new byte[10000];
+				}
+				worker[0] = a < 0 ? -1 : KbBuildStatistics.getAllocatedBytes() - a;
+			}
+		};
+		t.start();
+		t.join();
+		record.addWorkerAllocated(KbBuildStatistics.PHASE_CLASS_PATH, worker[0]);
+		long allocated = record.getPhases().iterator().next().getAllocated();
+		if(builder < 0 || worker[0] < 0) {
+			assertEquals(-1, allocated);
+		} else {
+			assertTrue(worker[0] >= 1000000);
+			assertEquals(builder + worker[0], allocated);
+		}
+	}
+
+	public void testHistory() {
+		KbBuildStatistics statistics = KbBuildStatistics.getInstance();
+		for (int i = 0; i < 60; i++) {
+			BuildRecord record = statistics.startBuild(PROJECT + i % 2, IncrementalProjectBuilder.INCREMENTAL_BUILD);
+			record.addPhase(KbBuildStatistics.PHASE_RESOURCES, new Probe());
+			statistics.finishBuild(record);
+		}
+		assertEquals(50, statistics.getHistory().size());
+		assertEquals(25, statistics.getHistory(PROJECT + "0").size());
+
+		StringWriter writer = new StringWriter();
+		statistics.export(writer);
+		assertTrue(writer.toString().contains(PROJECT + "1 incremental build"));
+		assertTrue(writer.toString().contains("phase " + KbBuildStatistics.PHASE_RESOURCES));
+	}
+
+	/**
+	 * Builds are recorded if the preference is set in the workspace.
+	 */
+	public void testEnabledByInstancePreference() throws Exception {
+		IEclipsePreferences node = InstanceScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID);
+		assertFalse(KbBuildStatistics.isEnabled(null));
+		node.putBoolean(KbBuildStatistics.EXPORT_PREFERENCE, true);
+		try {
+			assertTrue(KbBuildStatistics.isEnabled(null));
+		} finally {
+			node.remove(KbBuildStatistics.EXPORT_PREFERENCE);
+		}
+		assertFalse(KbBuildStatistics.isEnabled(null));
+	}
+}
@@ -37,6 +37,9 @@ public class KbModelStorageTest extends TestCase {
 		mod = kb.getModificationsSinceLastStore();
 		System.out.println("-->" + mod);
 		assertEquals("Modification index after store must be cleared", 0, mod);
+		assertTrue("Source paths must be stored separately", kb.getSourcePathStorage().exists());
+		assertFalse(kb.getSourcePathStorage().getPaths().isEmpty());
+		assertFalse("No source paths must be changed after store", kb.getSourcePathStorage().isDirty());
 		
 		IFile fromFile = project.getFile(new Path("WebContent/WEB-INF/lib/jsf-impl.1"));
 		IFile toFile = project.getFile(new Path("WebContent/WEB-INF/lib/jsf-impl.jar"));
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.common.util.FileUtil;
+import org.jboss.tools.jst.web.kb.internal.scanner.LibraryDeclarationsCache;
+import org.jboss.tools.jst.web.kb.internal.scanner.LoadedDeclarations;
+
+public class LibraryDeclarationsCacheTest extends TestCase {
+	private File folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("kb", "cache");
+		folder.delete();
+		folder.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtil.remove(folder);
+	}
+
+	private File createJar(String name, String content) throws IOException {
+		File file = new File(folder, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes());
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	public void testIdenticalJarsShareDigest() throws IOException {
+		LibraryDeclarationsCache cache = new LibraryDeclarationsCache(new File(folder, "cache"));
+		String d1 = cache.getDigest(createJar("a.jar", "content"));
+		String d2 = cache.getDigest(createJar("b.jar", "content"));
+		String d3 = cache.getDigest(createJar("c.jar", "other content"));
+		assertNotNull(d1);
+		assertEquals(d1, d2);
+		assertFalse(d1.equals(d3));
+	}
+
+	public void testReferencesSurviveRestartAndEviction() throws IOException {
+		File cacheFolder = new File(folder, "cache");
+		LibraryDeclarationsCache cache = new LibraryDeclarationsCache(cacheFolder);
+		File jar = createJar("a.jar", "content");
+		String digest = cache.getDigest(jar);
+		cache.addReference("p1", jar.getAbsolutePath(), digest);
+		cache.addReference("p2", jar.getAbsolutePath(), digest);
+		cache.put(digest, new LoadedDeclarations(), null, new Path(jar.getAbsolutePath()));
+		cache.store();
+
+		cache = new LibraryDeclarationsCache(cacheFolder);
+		assertTrue(cache.isReferenced(digest));
+		assertTrue(cache.contains(digest));
+		assertNotNull(cache.get(digest, null, new Path(jar.getAbsolutePath()), null));
+		assertEquals(1, cache.getHitCount());
+
+		cache.removeReference("p1", jar.getAbsolutePath());
+		cache.store();
+		assertTrue(cache.contains(digest));
+
+		cache.retainProjects(Collections.singleton("p1"));
+		cache.store();
+		assertFalse(cache.isReferenced(digest));
+		assertFalse(cache.contains(digest));
+		assertNull(cache.get(digest, null, new Path(jar.getAbsolutePath()), null));
+		assertEquals(1, cache.getMissCount());
+	}
+
+	/**
+	 * Declarations stored by another version of the cache are not loaded.
+	 */
+	public void testVersionMismatch() throws IOException {
+		File cacheFolder = new File(folder, "cache");
+		LibraryDeclarationsCache cache = new LibraryDeclarationsCache(cacheFolder, "1");
+		File jar = createJar("a.jar", "content");
+		String digest = cache.getDigest(jar);
+		cache.addReference("p1", jar.getAbsolutePath(), digest);
+		cache.put(digest, new LoadedDeclarations(), null, new Path(jar.getAbsolutePath()));
+		cache.store();
+
+		cache = new LibraryDeclarationsCache(cacheFolder, "1");
+		assertTrue(cache.isReferenced(digest));
+		assertTrue(cache.contains(digest));
+
+		cache = new LibraryDeclarationsCache(cacheFolder, "2");
+		assertFalse(cache.isReferenced(digest));
+		assertFalse(cache.contains(digest));
+		assertNull(cache.get(digest, null, new Path(jar.getAbsolutePath()), null));
+		cache.store();
+
+		cache = new LibraryDeclarationsCache(cacheFolder, "1");
+		assertFalse(cache.contains(digest));
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.jst.web.kb.internal.FaceletPageContextImpl;
+import org.jboss.tools.jst.web.kb.internal.PageContextCache;
+
+public class PageContextCacheTest extends TestCase {
+
+	private IFile getFile(String path) {
+		return ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(path));
+	}
+
+	private FaceletPageContextImpl createContext(IFile file) {
+		FaceletPageContextImpl context = new FaceletPageContextImpl();
+		context.setResource(file);
+		return context;
+	}
+
+	public void testLRUEviction() {
+		PageContextCache cache = new PageContextCache(2, Long.MAX_VALUE);
+		IFile a = getFile("/p/a.xhtml");
+		IFile b = getFile("/p/b.xhtml");
+		IFile c = getFile("/p/c.xhtml");
+		cache.put(createContext(a), 10);
+		cache.put(createContext(b), 10);
+		assertNotNull(cache.get(a));
+		cache.put(createContext(c), 10);
+
+		assertTrue(cache.contains(a));
+		assertFalse(cache.contains(b));
+		assertTrue(cache.contains(c));
+		assertEquals(1, cache.getStatistics().getEvictions());
+	}
+
+	public void testWeightBound() {
+		PageContextCache cache = new PageContextCache(100, 25);
+		IFile a = getFile("/p/a.xhtml");
+		IFile b = getFile("/p/b.xhtml");
+		IFile c = getFile("/p/c.xhtml");
+		cache.put(createContext(a), 10);
+		cache.put(createContext(b), 10);
+		cache.put(createContext(c), 10);
+
+		assertEquals(2, cache.size());
+		assertFalse(cache.contains(a));
+		assertEquals(20, cache.getStatistics().getWeight());
+	}
+
+	public void testDependentsInvalidation() {
+		PageContextCache cache = new PageContextCache(100, Long.MAX_VALUE);
+		IFile template = getFile("/p/template.xhtml");
+		IFile header = getFile("/p/header.xhtml");
+		IFile page = getFile("/p/page.xhtml");
+		IFile other = getFile("/p/other.xhtml");
+
+		FaceletPageContextImpl headerContext = createContext(header);
+		FaceletPageContextImpl templateContext = createContext(template);
+		templateContext.addIncludedContext(headerContext);
+		FaceletPageContextImpl pageContext = createContext(page);
+		pageContext.addIncludedContext(templateContext);
+
+		cache.put(headerContext, 1);
+		cache.put(templateContext, 1);
+		cache.put(pageContext, 1);
+		cache.put(createContext(other), 1);
+
+		Set<IFile> dependents = cache.getDependents(header);
+		assertEquals(2, dependents.size());
+		assertTrue(dependents.contains(template));
+		assertTrue(dependents.contains(page));
+
+		Set<IFile> removed = cache.remove(header);
+		assertEquals(3, removed.size());
+		assertFalse(cache.contains(page));
+		assertTrue(cache.contains(other));
+		assertTrue(cache.getDependents(header).isEmpty());
+	}
+
+	public void testStatistics() {
+		PageContextCache cache = new PageContextCache(100, Long.MAX_VALUE);
+		IFile a = getFile("/p/a.xhtml");
+		assertNull(cache.get(a));
+		cache.put(createContext(a), 10);
+		assertNotNull(cache.get(a));
+		assertNotNull(cache.get(a));
+
+		PageContextCache.Statistics statistics = cache.getStatistics();
+		assertEquals(2, statistics.getHits());
+		assertEquals(1, statistics.getMisses());
+		assertEquals(1, statistics.getSize());
+	}
+
+	public void testInvalidateLater() {
+		PageContextCache cache = new PageContextCache(100, Long.MAX_VALUE);
+		IFile header = getFile("/p/header.xhtml");
+		IFile page = getFile("/p/page.xhtml");
+		FaceletPageContextImpl headerContext = createContext(header);
+		FaceletPageContextImpl pageContext = createContext(page);
+		pageContext.addIncludedContext(headerContext);
+		cache.put(headerContext, 1);
+		cache.put(pageContext, 1);
+
+		cache.invalidateLater(Collections.singletonList(header));
+		// Invalidated contexts are hidden from readers before the job removes them.
+		assertNull(cache.get(header));
+		assertNull(cache.get(page));
+
+		cache.applyPendingInvalidations();
+		assertTrue(cache.isEmpty());
+	}
+
+	/**
+	 * Context which blocks the thread that asks for its resource once armed.
+	 */
+	static class BlockingContext extends FaceletPageContextImpl {
+		volatile boolean armed = false;
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+
+		@Override
+		public IFile getResource() {
+			if(armed) {
+				armed = false;
+				entered.countDown();
+				try {
+					released.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.getResource();
+		}
+	}
+
+	/**
+	 * A writer is stopped inside the cache lock while evicting,
+	 * lookups made meanwhile by another thread must complete.
+	 */
+	public void testReadersDoNotBlockOnWriter() throws InterruptedException {
+		final PageContextCache cache = new PageContextCache(2, Long.MAX_VALUE);
+		final IFile a = getFile("/p/a.xhtml");
+		final IFile b = getFile("/p/b.xhtml");
+		final IFile c = getFile("/p/c.xhtml");
+		final BlockingContext blocking = new BlockingContext();
+		blocking.setResource(a);
+		cache.put(blocking, 1);
+		cache.put(createContext(b), 1);
+		assertNotNull(cache.get(b));
+
+		blocking.armed = true;
+		Thread writer = new Thread() {
+			public void run() {
+				// Evicts the least recently used context a, which blocks.
+				cache.put(createContext(c), 1);
+			}
+		};
+		writer.start();
+		try {
+			assertTrue("Writer has not reached eviction", blocking.entered.await(10, TimeUnit.SECONDS));
+
+			final CountDownLatch read = new CountDownLatch(1);
+			final Object[] result = new Object[1];
+			Thread reader = new Thread() {
+				public void run() {
+					result[0] = cache.get(b);
+					read.countDown();
+				}
+			};
+			reader.start();
+			assertTrue("Reader is blocked by writer", read.await(5, TimeUnit.SECONDS));
+			assertNotNull(result[0]);
+			assertTrue(writer.isAlive());
+		} finally {
+			blocking.released.countDown();
+			writer.join(10000);
+		}
+		assertFalse(cache.contains(a));
+		assertTrue(cache.contains(c));
+	}
+}
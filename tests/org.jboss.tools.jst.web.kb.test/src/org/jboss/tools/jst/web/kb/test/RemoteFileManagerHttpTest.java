@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.jboss.tools.common.util.FileUtil;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.RemoteFileManager;
+
+/**
+ * Checks prefetch, conditional revalidation and eviction of downloaded files
+ * against a minimal local HTTP server that supports ETag.
+ */
+public class RemoteFileManagerHttpTest extends TestCase {
+	private File folder;
+	private StubServer server;
+	private IEclipsePreferences preferences;
+
+	@Override
+	protected void setUp() throws Exception {
+		folder = File.createTempFile("rfm", "test");
+		folder.delete();
+		folder.mkdirs();
+		server = new StubServer();
+		server.start();
+		preferences = DefaultScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID);
+		preferences.putInt(RemoteFileManager.DOWNLOADING_TIMEOUT_PREFERENCE, 10000);
+		preferences.putLong(RemoteFileManager.REVALIDATION_DELAY_PREFERENCE, 0);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		server.close();
+		preferences.remove(RemoteFileManager.FILE_UPDATE_TIMEOUT_PREFERENCE);
+		preferences.remove(RemoteFileManager.FILE_CACHE_MAX_SIZE_PREFERENCE);
+		preferences.remove(RemoteFileManager.REVALIDATION_DELAY_PREFERENCE);
+		FileUtil.remove(folder);
+	}
+
+	private RemoteFileManager createManager() {
+		return new RemoteFileManager() {
+			@Override
+			protected File getStorageFolder() {
+				return new File(folder, "files");
+			}
+		};
+	}
+
+	private String url(String name) {
+		return "http://localhost:" + server.getPort() + "/" + name;
+	}
+
+	public void testConditionalRevalidation() throws Exception {
+		preferences.putLong(RemoteFileManager.FILE_UPDATE_TIMEOUT_PREFERENCE, 0);
+		server.put("a.css", ".a {}", "\"v1\"");
+		RemoteFileManager manager = createManager();
+
+		RemoteFileManager.Result result = manager.getFile(url("a.css"));
+		assertTrue(result.isReady());
+		assertEquals(".a {}", FileUtil.readFile(new File(result.getLocalPath())));
+		assertEquals(1, server.getRequests(200));
+
+		// Outdated file is returned at once and revalidated in background
+		Thread.sleep(1100);
+		result = manager.getFile(url("a.css"));
+		assertNotNull(result.getLocalPath());
+		manager.joinBackgroundDownloading();
+		assertEquals(1, server.getRequests(304));
+		assertEquals(1, manager.getStatistics().getNotModified());
+
+		server.put("a.css", ".b {}", "\"v2\"");
+		Thread.sleep(1100);
+		manager.getFile(url("a.css"));
+		manager.joinBackgroundDownloading();
+		assertEquals(2, server.getRequests(200));
+		assertEquals(1, manager.getStatistics().getUpdated());
+		assertEquals(".b {}", FileUtil.readFile(new File(manager.getFile(url("a.css")).getLocalPath())));
+	}
+
+	public void testPrefetch() throws Exception {
+		List<String> urls = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			server.put("p" + i + ".css", ".p" + i + " {}", "\"p" + i + "\"");
+			urls.add(url("p" + i + ".css"));
+		}
+		RemoteFileManager manager = createManager();
+		manager.prefetch(urls);
+		manager.joinBackgroundDownloading();
+		assertEquals(10, server.getRequests(200));
+		for (String url: urls) {
+			assertTrue(manager.getFile(url).isReady());
+		}
+		RemoteFileManager.Statistics statistics = manager.getStatistics();
+		assertEquals(10, statistics.getFiles());
+		assertEquals(10, statistics.getHits());
+		assertEquals(0, statistics.getMisses());
+		assertEquals(10, server.getRequests(200));
+	}
+
+	public void testEviction() throws Exception {
+		preferences.putLong(RemoteFileManager.FILE_CACHE_MAX_SIZE_PREFERENCE, 2500);
+		char[] chars = new char[1000];
+		Arrays.fill(chars, 'x');
+		String content = new String(chars);
+		RemoteFileManager manager = createManager();
+		for (int i = 0; i < 5; i++) {
+			server.put("e" + i + ".css", content, null);
+			assertTrue(manager.getFile(url("e" + i + ".css")).isReady());
+			Thread.sleep(5);
+		}
+		RemoteFileManager.Statistics statistics = manager.getStatistics();
+		assertEquals(2, statistics.getFiles());
+		assertEquals(3, statistics.getEvictions());
+		assertTrue(statistics.getSize() <= 2500);
+		assertFalse(new File(new File(folder, "files"), URLEncoder.encode(url("e0.css"), "UTF-8")).exists());
+		assertTrue(new File(new File(folder, "files"), URLEncoder.encode(url("e4.css"), "UTF-8")).exists());
+	}
+
+	public void testIsRemoteStyleSheet() {
+		assertTrue(RemoteFileManager.isRemoteStyleSheet("http://a.com/a.css"));
+		assertTrue(RemoteFileManager.isRemoteStyleSheet(" HTTPS://b.com/b?v=1"));
+		assertFalse(RemoteFileManager.isRemoteStyleSheet("css/local.css"));
+		assertFalse(RemoteFileManager.isRemoteStyleSheet("http://a.com/#{bean.css}"));
+		assertFalse(RemoteFileManager.isRemoteStyleSheet(null));
+	}
+
+	/**
+	 * Serves files put to it, answers conditional requests with 304 if ETag matches.
+	 */
+	static class StubServer extends Thread {
+		private ServerSocket socket;
+		private Map<String, String[]> files = new ConcurrentHashMap<String, String[]>();
+		private Map<Integer, AtomicInteger> requests = new ConcurrentHashMap<Integer, AtomicInteger>();
+
+		StubServer() throws IOException {
+			socket = new ServerSocket(0);
+			setDaemon(true);
+		}
+
+		int getPort() {
+			return socket.getLocalPort();
+		}
+
+		void put(String name, String content, String etag) {
+			files.put("/" + name, new String[]{content, etag});
+		}
+
+		int getRequests(int code) {
+			AtomicInteger count = requests.get(code);
+			return count == null ? 0 : count.get();
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		@Override
+		public void run() {
+			while(!socket.isClosed()) {
+				try {
+					final Socket s = socket.accept();
+					new Thread() {
+						public void run() {
+							handle(s);
+						}
+					}.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		private void handle(Socket s) {
+			try {
+				try {
+					BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), "ISO-8859-1"));
+					String line = in.readLine();
+					if(line == null) {
+						return;
+					}
+					String path = line.split(" ")[1];
+					String ifNoneMatch = null;
+					while((line = in.readLine()) != null && line.length() > 0) {
+						int i = line.indexOf(':');
+						if(i > 0 && "If-None-Match".equalsIgnoreCase(line.substring(0, i).trim())) {
+							ifNoneMatch = line.substring(i + 1).trim();
+						}
+					}
+					String[] file = files.get(path);
+					StringBuilder response = new StringBuilder();
+					byte[] body = new byte[0];
+					int code;
+					if(file == null) {
+						code = 404;
+						response.append("HTTP/1.1 404 Not Found\r\n");
+					} else if(file[1] != null && file[1].equals(ifNoneMatch)) {
+						code = 304;
+						response.append("HTTP/1.1 304 Not Modified\r\n");
+					} else {
+						code = 200;
+						body = file[0].getBytes("UTF-8");
+						response.append("HTTP/1.1 200 OK\r\nContent-Type: text/css\r\n");
+					}
+					if(file != null && file[1] != null) {
+						response.append("ETag: ").append(file[1]).append("\r\n");
+					}
+					response.append("Content-Length: ").append(body.length).append("\r\nConnection: close\r\n\r\n");
+					synchronized (requests) {
+						if(!requests.containsKey(code)) {
+							requests.put(code, new AtomicInteger());
+						}
+					}
+					requests.get(code).incrementAndGet();
+					OutputStream out = s.getOutputStream();
+					out.write(response.toString().getBytes("ISO-8859-1"));
+					out.write(body);
+					out.flush();
+				} finally {
+					s.close();
+				}
+			} catch (IOException e) {
+				// The client has gone
+			}
+		}
+	}
+}
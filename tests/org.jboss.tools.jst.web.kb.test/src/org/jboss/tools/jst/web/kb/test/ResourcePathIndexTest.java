@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.jboss.tools.jst.web.kb.internal.ResourcePathIndex;
+
+public class ResourcePathIndexTest extends TestCase {
+	private IProject project;
+	private IFolder folder;
+
+	@Override
+	protected void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("ResourcePathIndexTest");
+		project.create(null);
+		project.open(null);
+		folder = project.getFolder("images");
+		folder.create(true, true, null);
+		folder.getFolder("icons").create(true, true, null);
+		folder.getFolder("WEB-INF").create(true, true, null);
+		createFile("image1.png");
+		createFile("image2.GIF");
+		createFile("index.html");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		project.delete(true, true, null);
+	}
+
+	private IFile createFile(String name) throws CoreException {
+		IFile file = folder.getFile(name);
+		file.create(new ByteArrayInputStream(new byte[0]), true, null);
+		return file;
+	}
+
+	private List<String> find(String prefix, String... extensions) {
+		Set<String> set = new HashSet<String>(Arrays.asList(extensions));
+		List<String> result = new ArrayList<String>();
+		for (IResource r: ResourcePathIndex.getInstance().find(folder, prefix, set)) {
+			result.add(r.getName());
+		}
+		return result;
+	}
+
+	public void testFind() {
+		assertEquals(Arrays.asList("icons", "image1.png", "image2.GIF", "index.html"), find(""));
+		assertEquals(Arrays.asList("image1.png", "image2.GIF"), find("im"));
+		assertEquals(Arrays.asList("icons", "image2.GIF"), find("i", "gif", "jpg"));
+		assertEquals(Collections.emptyList(), find("x"));
+	}
+
+	public void testDelta() throws CoreException {
+		assertEquals(Arrays.asList("image1.png"), find("", "png"));
+		createFile("image3.png");
+		assertEquals(Arrays.asList("image1.png", "image3.png"), find("", "png"));
+		folder.getFile("image1.png").delete(true, null);
+		assertEquals(Arrays.asList("image3.png"), find("", "png"));
+		folder.getFolder("icons").delete(true, null);
+		assertEquals(Arrays.asList("image2.GIF", "image3.png", "index.html"), find(""));
+	}
+}
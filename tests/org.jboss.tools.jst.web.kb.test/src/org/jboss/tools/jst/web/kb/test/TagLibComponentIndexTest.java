@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.jboss.tools.jst.web.kb.IKbProject;
+import org.jboss.tools.jst.web.kb.KbProjectFactory;
+import org.jboss.tools.jst.web.kb.internal.taglib.AbstractTagLib;
+import org.jboss.tools.jst.web.kb.internal.taglib.CustomComponentExtension;
+import org.jboss.tools.jst.web.kb.internal.taglib.FaceletTag;
+import org.jboss.tools.jst.web.kb.internal.taglib.FaceletTagLibrary;
+import org.jboss.tools.jst.web.kb.taglib.IComponent;
+import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
+
+/**
+ * Checks name and type lookups of tag libraries loaded from the test project
+ * against a linear scan of components.
+ */
+public class TagLibComponentIndexTest extends TestCase {
+	IProject project = null;
+
+	public void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("TestKbModel");
+		assertNotNull("Can't load TestKbModel", project); //$NON-NLS-1$
+	}
+
+	private List<ITagLibrary> getLibraries() {
+		IKbProject kbProject = KbProjectFactory.getKbProject(project, true);
+		assertNotNull(kbProject);
+		List<ITagLibrary> libraries = kbProject.getAllTagLibraries();
+		assertFalse(libraries.isEmpty());
+		return libraries;
+	}
+
+	private List<String> getPrefixes(List<ITagLibrary> libraries) {
+		Set<String> prefixes = new HashSet<String>();
+		prefixes.add("");
+		prefixes.add("zz");
+		for (ITagLibrary l: libraries) {
+			for (IComponent c: l.getComponents()) {
+				String name = c.getName();
+				if(name == null) continue;
+				for (int i = 1; i <= name.length() && i <= 3; i++) {
+					prefixes.add(name.substring(0, i));
+				}
+				prefixes.add(name.toUpperCase());
+			}
+		}
+		return new ArrayList<String>(prefixes);
+	}
+
+	private static Set<IComponent> scan(ITagLibrary library, String prefix, boolean ignoreCase) {
+		Set<IComponent> result = new HashSet<IComponent>();
+		for (IComponent c: library.getComponents()) {
+			String name = c.getName();
+			if(name == null || c instanceof CustomComponentExtension) continue;
+			if(ignoreCase ? name.toLowerCase().startsWith(prefix.toLowerCase()) : name.startsWith(prefix)) {
+				result.add(c);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isIgnoreCase(ITagLibrary library) {
+		return library instanceof AbstractTagLib && ((AbstractTagLib)library).isIgnoreCase();
+	}
+
+	public void testPrefixSearch() {
+		List<ITagLibrary> libraries = getLibraries();
+		List<String> prefixes = getPrefixes(libraries);
+		for (ITagLibrary l: libraries) {
+			boolean ignoreCase = isIgnoreCase(l);
+			for (String prefix: prefixes) {
+				Set<IComponent> expected = scan(l, prefix, ignoreCase);
+				IComponent[] actual = l.getComponents(prefix);
+				assertEquals(l.getURI() + " " + prefix, expected.size(), actual.length);
+				for (IComponent c: actual) {
+					assertTrue(expected.contains(c));
+				}
+			}
+		}
+	}
+
+	public void testSearchByType() {
+		for (ITagLibrary l: getLibraries()) {
+			for (IComponent c: l.getComponents()) {
+				String type = c.getComponentType();
+				if(type == null) continue;
+				IComponent found = l.getComponentByType(type);
+				assertNotNull(found);
+				assertEquals(type, found.getComponentType());
+			}
+		}
+	}
+
+	private static FaceletTag createTag(String name, String type) {
+		FaceletTag tag = new FaceletTag();
+		tag.setName(name);
+		tag.setComponentType(type);
+		return tag;
+	}
+
+	/**
+	 * Components of the composite library are found by prefix and type,
+	 * also after they are added to the composite library.
+	 */
+	public void testCompositeLibraryComponents() {
+		final FaceletTagLibrary composite = new FaceletTagLibrary();
+		composite.addComponent(createTag("comp1", "type1"));
+		FaceletTagLibrary library = new FaceletTagLibrary() {
+			@Override
+			public ITagLibrary[] getCompositeLibraries() {
+				return new ITagLibrary[]{composite};
+			}
+		};
+		library.addComponent(createTag("tag1", null));
+
+		assertEquals(2, library.getComponents("").length);
+		assertEquals(1, library.getComponents("comp").length);
+		assertEquals("comp1", library.getComponents("comp")[0].getName());
+		assertNotNull(library.getComponentByType("type1"));
+
+		composite.addComponent(createTag("comp2", "type2"));
+		assertEquals(3, library.getComponents("").length);
+		assertEquals(2, library.getComponents("comp").length);
+		assertNotNull(library.getComponentByType("type2"));
+	}
+}
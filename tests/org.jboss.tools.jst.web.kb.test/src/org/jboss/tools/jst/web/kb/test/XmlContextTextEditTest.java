@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Region;
+import org.jboss.tools.common.el.core.ELReference;
+import org.jboss.tools.common.el.core.parser.ELParserUtil;
+import org.jboss.tools.common.el.core.resolver.Var;
+import org.jboss.tools.common.validation.ValidationELReference;
+import org.jboss.tools.jst.web.kb.internal.XmlContextImpl;
+import org.jboss.tools.jst.web.kb.internal.taglib.NameSpace;
+
+public class XmlContextTextEditTest extends TestCase {
+	XmlContextImpl context;
+	ELReference reference;
+
+	@Override
+	protected void setUp() throws Exception {
+		context = new XmlContextImpl();
+		context.addNameSpace(new Region(0, 100), new NameSpace("http://a", "a"));
+		context.addNameSpace(new Region(10, 30), new NameSpace("http://b", "b"));
+		reference = new ValidationELReference();
+		reference.setStartPosition(50);
+		reference.setLength(10);
+		reference.setLineNumber(3);
+		context.addELReference(reference);
+		context.addVar(new Region(60, 20), new Var(ELParserUtil.getJbossFactory(), "item", "#{bean.items}", 0, 0));
+	}
+
+	public void testShift() {
+		assertTrue(context.applyTextEdit(45, 0, 5, 1));
+		ELReference shifted = context.getELReferences()[0];
+		assertEquals(55, shifted.getStartPosition());
+		assertEquals(4, shifted.getLineNumber());
+		// The shared reference is replaced by a copy, not modified.
+		assertNotSame(reference, shifted);
+		assertEquals(50, reference.getStartPosition());
+		assertEquals(3, reference.getLineNumber());
+		assertTrue(context.getNameSpaces(104).containsKey("http://a"));
+		assertTrue(context.getNameSpaces(20).containsKey("http://b"));
+		assertEquals(1, context.getVars(84).length);
+		assertEquals(0, context.getVars(62).length);
+	}
+
+	public void testChangeTouchingELIsRejected() {
+		assertFalse(context.applyTextEdit(55, 1, 1, 0));
+		assertFalse(context.applyTextEdit(45, 5, 0, 0));
+		assertEquals(50, reference.getStartPosition());
+	}
+
+	public void testChangeCrossingNameSpaceRegionIsRejected() {
+		assertFalse(context.applyTextEdit(38, 4, 0, 0));
+		assertTrue(context.getNameSpaces(20).containsKey("http://b"));
+	}
+}
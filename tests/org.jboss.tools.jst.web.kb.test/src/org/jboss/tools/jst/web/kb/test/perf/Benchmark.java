@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test.perf;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.KbBuildStatistics;
+
+/**
+ * Minimal benchmark harness in the manner of JMH, runnable inside the OSGi test runtime.
+ * An operation is first run for a number of warm-up iterations, then for measured
+ * iterations of fixed duration. The result is the mean throughput with its relative
+ * error, and the mean number of bytes allocated by the running thread per operation
+ * (if the JVM supports allocation counting).
+ *
+ * Iterations are set by system properties 'kb.benchmark.warmup' (default 3),
+ * 'kb.benchmark.iterations' (default 5) and 'kb.benchmark.time' (milliseconds
+ * per iteration, default 1000). Results are written to the log of the KB plugin.
+ * If property 'kb.benchmark.results' is set, results are also appended to that file
+ * as comma separated values, so that runs of different builds can be compared.
+ */
+public abstract class Benchmark {
+	public static final String WARMUP_PROPERTY = "kb.benchmark.warmup";
+	public static final String ITERATIONS_PROPERTY = "kb.benchmark.iterations";
+	public static final String TIME_PROPERTY = "kb.benchmark.time";
+	public static final String RESULTS_PROPERTY = "kb.benchmark.results";
+
+	private static volatile int sink;
+
+	private String name;
+
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Runs one operation. The returned object is consumed, so that
+	 * computation of it cannot be eliminated.
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	protected abstract Object run() throws Exception;
+
+	public Result measure() throws Exception {
+		return measure(Integer.getInteger(WARMUP_PROPERTY, 3), Integer.getInteger(ITERATIONS_PROPERTY, 5),
+				Long.getLong(TIME_PROPERTY, 1000));
+	}
+
+	public Result measure(int warmup, int iterations, long time) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			iterate(time, null);
+		}
+		double[] throughput = new double[iterations];
+		long operations = 0;
+		long allocated = 0;
+		for (int i = 0; i < iterations; i++) {
+			long[] a = new long[1];
+			long[] counts = iterate(time, a);
+			throughput[i] = counts[0] * 1000000000d / counts[1];
+			operations += counts[0];
+			allocated = (allocated < 0 || a[0] < 0) ? -1 : allocated + a[0];
+		}
+		Result result = new Result(name, throughput, allocated < 0 ? -1 : allocated / Math.max(operations, 1));
+		report(result);
+		return result;
+	}
+
+	/**
+	 * Runs operations for the given time.
+	 *
+	 * @param time milliseconds
+	 * @param allocated if not null, receives bytes allocated by this thread
+	 * @return number of operations and elapsed nanoseconds
+	 * @throws Exception
+	 */
+	private long[] iterate(long time, long[] allocated) throws Exception {
+		long allocatedStart = KbBuildStatistics.getAllocatedBytes();
+		long start = System.nanoTime();
+		long deadline = start + time * 1000000L;
+		long operations = 0;
+		long now = start;
+		do {
+			Object o = run();
+			sink += (o == null) ? 0 : System.identityHashCode(o);
+			operations++;
+			now = System.nanoTime();
+		} while(now < deadline);
+		if(allocated != null) {
+			long allocatedEnd = KbBuildStatistics.getAllocatedBytes();
+			allocated[0] = (allocatedStart < 0 || allocatedEnd < 0) ? -1 : allocatedEnd - allocatedStart;
+		}
+		return new long[]{operations, now - start};
+	}
+
+	static void report(Result result) {
+		WebKbPlugin.getDefault().logInfo(result.toString());
+		String fileName = System.getProperty(RESULTS_PROPERTY);
+		if(fileName == null || fileName.length() == 0) {
+			return;
+		}
+		PrintWriter out = null;
+		try {
+			File file = new File(fileName);
+			boolean header = !file.exists();
+			out = new PrintWriter(new FileWriter(file, true));
+			if(header) {
+				out.println("date,benchmark,ops/s,error %,B/op"); //$NON-NLS-1$
+			}
+			out.println(new Date() + "," + result.getName() + "," + (long)result.getThroughput() //$NON-NLS-1$ //$NON-NLS-2$
+					+ "," + String.format("%.1f", result.getError()) + "," + result.getAllocatedPerOperation()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} catch (IOException e) {
+			WebKbPlugin.getDefault().logError(e);
+		} finally {
+			if(out != null) {
+				out.close();
+			}
+		}
+	}
+
+	public static class Result {
+		private String name;
+		private double throughput;
+		private double error;
+		private long allocatedPerOperation;
+
+		Result(String name, double[] throughput, long allocatedPerOperation) {
+			this.name = name;
+			this.allocatedPerOperation = allocatedPerOperation;
+			double sum = 0;
+			for (double t: throughput) {
+				sum += t;
+			}
+			this.throughput = sum / throughput.length;
+			double variance = 0;
+			for (double t: throughput) {
+				variance += (t - this.throughput) * (t - this.throughput);
+			}
+			if(throughput.length > 1 && this.throughput > 0) {
+				error = 100 * Math.sqrt(variance / (throughput.length - 1)) / this.throughput;
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Mean number of operations per second.
+		 */
+		public double getThroughput() {
+			return throughput;
+		}
+
+		/**
+		 * Standard deviation of throughput in percents of the mean.
+		 */
+		public double getError() {
+			return error;
+		}
+
+		/**
+		 * Bytes allocated per operation, or -1 if not supported.
+		 */
+		public long getAllocatedPerOperation() {
+			return allocatedPerOperation;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-50s %12.1f ops/s +- %5.1f%% %12d B/op", name, throughput, error, allocatedPerOperation); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test.perf;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.jboss.tools.common.el.core.resolver.ELContext;
+import org.jboss.tools.jst.web.kb.ICSSContainerSupport;
+import org.jboss.tools.jst.web.kb.IPageContext;
+import org.jboss.tools.jst.web.kb.KbProjectFactory;
+import org.jboss.tools.jst.web.kb.KbQuery;
+import org.jboss.tools.jst.web.kb.KbQuery.Type;
+import org.jboss.tools.jst.web.kb.PageContextFactory;
+import org.jboss.tools.jst.web.kb.PageContextFactory.CSSStyleSheetDescriptor;
+import org.jboss.tools.jst.web.kb.PageProcessor;
+import org.jboss.tools.jst.web.kb.internal.JSRecognizer;
+import org.jboss.tools.jst.web.kb.internal.KbProject;
+import org.jboss.tools.jst.web.kb.internal.proposal.CSSClassProposalType;
+import org.jboss.tools.jst.web.kb.taglib.ITagLibrary;
+import org.jboss.tools.test.util.JobUtils;
+import org.w3c.dom.css.CSSRule;
+import org.w3c.dom.css.CSSRuleList;
+import org.w3c.dom.css.CSSStyleSheet;
+
+/**
+ * Benchmarks of KB code run per keystroke and per build, over synthetic
+ * XHTML, HTML, TLD and CSS files generated in project TestKbModel for each
+ * test and deleted after it. Benchmarks only report results, they do not fail on slow runs.
+ *
+ * @see Benchmark
+ */
+public class KbBenchmarkTest extends TestCase {
+	static final String PERF_URI = "http://jboss.org/tools/perf";
+	static final int TAG_COUNT = 200;
+	static final int ATTRIBUTE_COUNT = 10;
+	static final int ELEMENT_COUNT = 300;
+	static final int CLASS_COUNT = 500;
+
+	private IProject project;
+	private IFolder folder;
+	private IFile tld;
+	private IFile page;
+	private IFile html;
+
+	@Override
+	protected void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("TestKbModel");
+		assertTrue("Can't load TestKbModel", project.isAccessible());
+		folder = project.getFolder("WebContent/perf");
+		tld = project.getFile("WebContent/WEB-INF/perf.tld");
+		page = folder.getFile("perf.xhtml");
+		html = folder.getFile("perf.html");
+		folder.create(true, true, null);
+		create(tld, createTLD());
+		create(folder.getFile("perf.css"), createCSS());
+		create(page, createPage());
+		create(html, createHTML());
+		build();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		PageContextFactory.getInstance().cleanUp(page);
+		PageContextFactory.getInstance().cleanUp(html);
+		if(folder.exists()) {
+			folder.delete(true, null);
+		}
+		if(tld.exists()) {
+			tld.delete(true, null);
+		}
+		build();
+	}
+
+	private void build() throws CoreException {
+		JobUtils.waitForIdle();
+		project.build(IncrementalProjectBuilder.INCREMENTAL_BUILD, new NullProgressMonitor());
+		JobUtils.waitForIdle();
+	}
+
+	private void create(IFile file, String content) throws CoreException {
+		file.create(new ByteArrayInputStream(content.getBytes()), true, null);
+	}
+
+	static String createTLD() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+			.append("<taglib xmlns=\"http://java.sun.com/xml/ns/javaee\" version=\"2.1\">\n")
+			.append("<tlib-version>1.0</tlib-version>\n<short-name>p</short-name>\n")
+			.append("<uri>").append(PERF_URI).append("</uri>\n");
+		for (int i = 0; i < TAG_COUNT; i++) {
+			sb.append("<tag><name>component").append(i).append("</name>")
+				.append("<tag-class>org.jboss.Component").append(i).append("</tag-class>")
+				.append("<body-content>JSP</body-content>\n");
+			for (int j = 0; j < ATTRIBUTE_COUNT; j++) {
+				sb.append("<attribute><name>attribute").append(j).append("</name></attribute>");
+			}
+			sb.append("</tag>\n");
+		}
+		return sb.append("</taglib>\n").toString();
+	}
+
+	static String createCSS() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			sb.append("div.block").append(i).append(" .item").append(i % 50).append(", .block").append(i)
+				.append(":hover { color: #").append(100 + i % 900).append("; }\n");
+		}
+		sb.append("@media print {\n");
+		for (int i = 0; i < CLASS_COUNT / 10; i++) {
+			sb.append(".print").append(i).append(" { display: none; }\n");
+		}
+		return sb.append("}\n").toString();
+	}
+
+	static String createPage() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<!DOCTYPE html>\n<html xmlns=\"http://www.w3.org/1999/xhtml\"\n")
+			.append("  xmlns:h=\"http://java.sun.com/jsf/html\"\n")
+			.append("  xmlns:f=\"http://java.sun.com/jsf/core\"\n")
+			.append("  xmlns:p=\"").append(PERF_URI).append("\">\n")
+			.append("<h:head><link rel=\"stylesheet\" href=\"perf.css\"/></h:head>\n<h:body>\n<h:form>\n");
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			sb.append("<p:component").append(i % TAG_COUNT).append(" attribute0=\"#{bean").append(i % 20)
+				.append(".property").append(i).append("}\">\n")
+				.append("  <h:outputText value=\"#{bean").append(i % 20).append(".list[").append(i)
+				.append("].name}\" styleClass=\"block").append(i % CLASS_COUNT).append("\"/>\n")
+				.append("  <f:param name=\"p").append(i).append("\" value=\"${param.p").append(i).append("}\"/>\n")
+				.append("</p:component").append(i % TAG_COUNT).append(">\n");
+		}
+		return sb.append("</h:form>\n</h:body>\n</html>\n").toString();
+	}
+
+	static String createHTML() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<!DOCTYPE html>\n<html>\n<head>\n")
+			.append("<link rel=\"stylesheet\" href=\"perf.css\"/>\n")
+			.append("<script src=\"js/jquery-1.9.1.min.js\"></script>\n")
+			.append("<script src=\"js/jquery.mobile-1.4.2.js\"></script>\n")
+			.append("</head>\n<body>\n");
+		for (int i = 0; i < ELEMENT_COUNT; i++) {
+			sb.append("<div class=\"block").append(i % CLASS_COUNT).append("\" data-role=\"page\" id=\"page")
+				.append(i).append("\"><a href=\"#page").append(i + 1).append("\">next</a></div>\n");
+		}
+		return sb.append("</body>\n</html>\n").toString();
+	}
+
+	private int getBodyOffset(IPageContext context) {
+		String text = context.getDocument().get();
+		return text.indexOf("<h:form>") + "<h:form>".length();
+	}
+
+	public void testCreatePageContext() throws Exception {
+		new Benchmark("PageContextFactory.createPageContext(xhtml)") {
+			protected Object run() {
+				PageContextFactory.getInstance().cleanUp(page);
+				return PageContextFactory.createPageContext(page);
+			}
+		}.measure();
+	}
+
+	public void testGetProposals() throws Exception {
+		final ELContext context = PageContextFactory.createPageContext(page);
+		assertTrue(context instanceof IPageContext);
+		final KbQuery query = new KbQuery();
+		query.setMask(true);
+		query.setType(Type.TAG_NAME);
+		query.setValue("p:component1");
+		query.setStringQuery("p:component1");
+		query.setParentTags(new String[] {"html", "h:body", "h:form"});
+		query.setParent("h:form");
+		query.setOffset(getBodyOffset((IPageContext)context));
+		assertTrue(PageProcessor.getInstance().getProposals(query, context).length > 0);
+		new Benchmark("PageProcessor.getProposals(tag name)") {
+			protected Object run() {
+				return PageProcessor.getInstance().getProposals(query, context);
+			}
+		}.measure();
+	}
+
+	public void testGetComponents() throws Exception {
+		final ELContext context = PageContextFactory.createPageContext(page);
+		KbProject kb = (KbProject)KbProjectFactory.getKbProject(project, true);
+		ITagLibrary[] libs = kb.getTagLibraries(PERF_URI);
+		assertTrue("Library " + PERF_URI + " is not loaded", libs.length > 0);
+		final ITagLibrary lib = libs[0];
+		final KbQuery query = new KbQuery();
+		query.setMask(true);
+		query.setType(Type.TAG_NAME);
+		query.setValue("p:component1");
+		query.setStringQuery("p:component1");
+		query.setOffset(getBodyOffset((IPageContext)context));
+		assertTrue(lib.getComponents(query, (IPageContext)context).length > 0);
+		new Benchmark("AbstractTagLib.getComponents(KbQuery, IPageContext)") {
+			protected Object run() {
+				return lib.getComponents(query, (IPageContext)context);
+			}
+		}.measure();
+	}
+
+	public void testGetClassNamesFromCSSRule() throws Exception {
+		ELContext context = PageContextFactory.createPageContext(html);
+		assertTrue(context instanceof ICSSContainerSupport);
+		final List<CSSRule> rules = new ArrayList<CSSRule>();
+		for (CSSStyleSheetDescriptor d: ((ICSSContainerSupport)context).getCSSStyleSheetDescriptors()) {
+			CSSStyleSheet sheet = d.getStylesheet();
+			CSSRuleList list = sheet == null ? null : sheet.getCssRules();
+			if(list != null) {
+				for (int i = 0; i < list.getLength(); i++) {
+					rules.add(list.item(i));
+				}
+			}
+		}
+		assertTrue("Rules of perf.css are not loaded", rules.size() > CLASS_COUNT);
+		new Benchmark("CSSClassProposalType.getClassNamesFromCSSRule(x" + rules.size() + ")") {
+			protected Object run() {
+				int count = 0;
+				for (CSSRule rule: rules) {
+					count += CSSClassProposalType.getClassNamesFromCSSRule(rule).size();
+				}
+				return Integer.valueOf(count);
+			}
+		}.measure();
+	}
+
+	public void testGetJSReferenceVersion() throws Exception {
+		assertEquals("1.4", JSRecognizer.getJSReferenceVersion(html, "jquery.mobile-", true, true));
+		new Benchmark("JSRecognizer.getJSReferenceVersion") {
+			protected Object run() {
+				return JSRecognizer.getJSReferenceVersion(html, "jquery.mobile-");
+			}
+		}.measure();
+	}
+
+	public void testKbProjectStoreAndLoad() throws Exception {
+		final KbProject kb = (KbProject)KbProjectFactory.getKbProject(project, true);
+		new Benchmark("KbProject.store") {
+			protected Object run() throws Exception {
+				kb.store();
+				return kb;
+			}
+		}.measure();
+		new Benchmark("KbProject.load") {
+			protected Object run() {
+				return Long.valueOf(kb.reload());
+			}
+		}.measure();
+	}
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.kb.test.perf;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.jboss.tools.common.base.test.model.XProjectImportTestSetUp;
+
+/**
+ * Benchmarks are not included into JstWebKbAllTests, they are run separately with
+ * mvn verify -Dtest=org.jboss.tools.jst.web.kb.test.perf.KbBenchmarks -Dkb.benchmark.results=[file]
+ */
+public class KbBenchmarks {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite("KB Benchmarks");
+		suite.addTestSuite(KbBenchmarkTest.class);
+		return new XProjectImportTestSetUp(suite,
+				"org.jboss.tools.jst.web.kb.test",
+				new String[]{"projects/TestKbModel"},
+				new String[]{"TestKbModel"});
+	}
+}
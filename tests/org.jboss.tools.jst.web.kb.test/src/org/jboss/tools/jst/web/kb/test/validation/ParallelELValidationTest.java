@@ -0,0 +1,73 @@
+/******************************************************************************* 
+ * Copyright (c) 2016 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/ 
+package org.jboss.tools.jst.web.kb.test.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.jboss.tools.common.base.test.validation.TestUtil;
+import org.jboss.tools.jst.web.kb.PageContextFactory;
+import org.jboss.tools.jst.web.kb.WebKbPlugin;
+import org.jboss.tools.jst.web.kb.internal.validation.ELValidator;
+
+/**
+ * Validates all pages of TestKbModel with one thread and with several threads
+ * building page contexts, and checks that EL problem markers are the same.
+ */
+public class ParallelELValidationTest extends TestCase {
+	static final String EL_PROBLEM_MARKER_TYPE = "org.jboss.tools.jst.web.kb.elproblem";
+
+	IProject project = null;
+
+	@Override
+	public void setUp() throws Exception {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("TestKbModel");
+		assertTrue("Can't load TestKbModel", project.exists()); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		DefaultScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID).remove(ELValidator.VALIDATION_THREADS_PREFERENCE);
+	}
+
+	public void testMarkersMatchSequentialValidation() throws CoreException {
+		List<String> sequential = validate(1);
+		assertFalse("No EL problems found in TestKbModel", sequential.isEmpty());
+		List<String> parallel = validate(4);
+		assertEquals(sequential, parallel);
+	}
+
+	private List<String> validate(int threads) throws CoreException {
+		DefaultScope.INSTANCE.getNode(WebKbPlugin.PLUGIN_ID).putInt(ELValidator.VALIDATION_THREADS_PREFERENCE, threads);
+		PageContextFactory.getInstance().cleanUp(project);
+		project.build(IncrementalProjectBuilder.FULL_BUILD, new NullProgressMonitor());
+		TestUtil._waitForValidation(project);
+		List<String> result = new ArrayList<String>();
+		IMarker[] markers = project.findMarkers(EL_PROBLEM_MARKER_TYPE, true, IResource.DEPTH_INFINITE);
+		for (IMarker marker: markers) {
+			result.add(marker.getResource().getFullPath() + ":" + marker.getAttribute(IMarker.LINE_NUMBER, -1) 
+					+ ":" + marker.getAttribute(IMarker.CHAR_START, -1) + ":" + marker.getAttribute(IMarker.MESSAGE, ""));
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
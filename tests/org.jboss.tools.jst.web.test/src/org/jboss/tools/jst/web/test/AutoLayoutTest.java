@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.jboss.tools.jst.web.model.helpers.autolayout.Groups;
+import org.jboss.tools.jst.web.model.helpers.autolayout.Item;
+
+/**
+ * Layered layout of synthetic process graphs. Layout of 100, 1000 and 10000
+ * items must take less than LAYOUT_TIME_LIMIT.
+ */
+public class AutoLayoutTest extends TestCase {
+
+	/**
+	 * Generous bound in milliseconds for layout of one graph,
+	 * the layout of 10000 items is expected to take much less.
+	 */
+	static final long LAYOUT_TIME_LIMIT = 10000;
+
+	/**
+	 * Creates a graph in which most links go forward to near items, some links
+	 * go to random items, and item 0 is linked to every 7-th item.
+	 * Links are added to the list as pairs of indexes.
+	 */
+	static Item[] createGraph(int size, boolean acyclic, List<int[]> links) {
+		Random random = new Random(size);
+		Item[] items = new Item[size];
+		for (int i = 0; i < size; i++) {
+			items[i] = new Item();
+		}
+		for (int i = 0; i < size; i++) {
+			int outputs = random.nextInt(4);
+			for (int k = 0; k < outputs; k++) {
+				int t = random.nextInt(10) < 8 ? i + 1 + random.nextInt(20) : random.nextInt(size);
+				if(t >= size || (acyclic && t <= i)) continue;
+				link(items, i, t, links);
+			}
+		}
+		for (int i = 1; i < size; i += 7) {
+			link(items, 0, i, links);
+		}
+		return items;
+	}
+
+	static void link(Item[] items, int from, int to, List<int[]> links) {
+		items[from].addOutput(to);
+		items[to].addInput(from, null);
+		links.add(new int[]{from, to});
+	}
+
+	static long layout(Item[] items) {
+		long time = System.currentTimeMillis();
+		new Groups().load(items);
+		return System.currentTimeMillis() - time;
+	}
+
+	static void assertCellsUnique(Item[] items) {
+		Set<String> cells = new HashSet<String>();
+		for (int i = 0; i < items.length; i++) {
+			assertTrue(items[i].getIX() >= 0 && items[i].getIY() >= 0);
+			assertTrue("Cell is occupied twice", cells.add(items[i].getIX() + "," + items[i].getIY()));
+		}
+	}
+
+	public void testAcyclicGraph() {
+		List<int[]> links = new ArrayList<int[]>();
+		Item[] items = createGraph(500, true, links);
+		layout(items);
+		assertCellsUnique(items);
+		for (int[] link: links) {
+			assertTrue("Link goes back", items[link[0]].getIX() < items[link[1]].getIX());
+		}
+	}
+
+	public void testChain() {
+		Item[] items = new Item[1000];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = new Item();
+		}
+		List<int[]> links = new ArrayList<int[]>();
+		for (int i = 1; i < items.length; i++) {
+			link(items, i - 1, i, links);
+		}
+		link(items, items.length - 1, 0, links);
+		layout(items);
+		assertCellsUnique(items);
+		for (int i = 0; i < items.length; i++) {
+			assertEquals(i, items[i].getIX());
+			assertEquals(0, items[i].getIY());
+		}
+	}
+
+	public void testLayoutTime() {
+		for (int size: new int[]{100, 1000, 10000}) {
+			Item[] items = createGraph(size, false, new ArrayList<int[]>());
+			long time = layout(items);
+			assertCellsUnique(items);
+			assertTrue("Layout of " + size + " items took " + time + " ms", time < LAYOUT_TIME_LIMIT);
+		}
+	}
+
+}
@@ -24,11 +24,13 @@ public class JstWebAllTests {
 		TestSuite suite = new TestSuite(JstWebAllTests.class.getName());
 		suite.addTestSuite(WebMetaModelTest.class);
 		suite.addTestSuite(WebContentAssistProviderTest.class);
+		suite.addTestSuite(AutoLayoutTest.class);
 //		suite.addTestSuite(BuilderTest.class);
 		suite.addTest(new WebValidationTestSetup(new TestSuite(
 				WebUtilTest.class,
 				WebAppHelperTest.class,
-				WebXMLValidationTest.class)));
+				WebXMLValidationTest.class,
+				TaglibMappingTest.class)));
 		suite.addTest(new WebUtil2TestSetup(new TestSuite(
 				WebUtil2Test.class)));
 		return suite;
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.jboss.tools.common.model.XModel;
+import org.jboss.tools.common.model.util.EclipseResourceUtil;
+import org.jboss.tools.jst.web.model.helpers.WebAppHelper;
+import org.jboss.tools.jst.web.project.WebProject;
+import org.jboss.tools.jst.web.tld.TaglibMapping;
+import org.jboss.tools.test.util.JobUtils;
+
+/**
+ * Revalidation of tag library mapping rescans only added and modified libraries.
+ */
+public class TaglibMappingTest extends TestCase {
+	static final String SHARED_URI = "http://jboss.org/test/shared";
+	static final String A_URI = "http://jboss.org/test/a";
+	static final String B_URI = "http://jboss.org/test/b";
+	static final String NEW_URI = "http://jboss.org/test/new";
+
+	IProject project;
+	XModel model;
+	TaglibMapping mapping;
+	IFolder lib;
+	IFile jarA;
+	IFile jarB;
+
+	@Override
+	protected void setUp() throws Exception {
+		project = WebValidationTestSetup.findTestProject();
+		assertTrue(project.exists());
+		model = EclipseResourceUtil.createObjectForResource(project).getModel();
+		mapping = WebProject.getInstance(model).getTaglibMapping();
+		lib = project.getFolder("WebContent/WEB-INF/lib");
+		if(!lib.exists()) {
+			lib.create(true, true, null);
+		}
+		jarA = lib.getFile("taglib-a.jar");
+		jarB = lib.getFile("taglib-b.jar");
+		// Both libraries declare SHARED_URI, in tlds with different names.
+		writeJar(jarA, new String[]{"shared-a", "a"}, new String[]{SHARED_URI, A_URI});
+		writeJar(jarB, new String[]{"shared-b", "b"}, new String[]{SHARED_URI, B_URI});
+		update();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		jarA.delete(true, null);
+		jarB.delete(true, null);
+		update();
+	}
+
+	public void testRescanOfModifiedJar() throws Exception {
+		assertNotNull(mapping.getTaglibObject(A_URI));
+		assertNotNull(mapping.getTaglibObject(B_URI));
+		String sharedLocation = mapping.getTaglibPath(SHARED_URI);
+		assertNotNull(sharedLocation);
+		boolean aFirst = sharedLocation.endsWith("shared-a.tld");
+		assertTrue(aFirst || sharedLocation.endsWith("shared-b.tld"));
+		String sharedTld = aFirst ? "shared-a.tld" : "shared-b.tld";
+		int count = mapping.getScannedJarCount();
+
+		// Nothing changed, nothing is rescanned.
+		mapping.revalidate(WebAppHelper.getWebApp(model));
+		assertEquals(count, mapping.getScannedJarCount());
+
+		// Modify the library that takes precedence for SHARED_URI.
+		if(aFirst) {
+			writeJar(jarA, new String[]{"shared-a", "a", "new"}, new String[]{SHARED_URI, A_URI, NEW_URI});
+		} else {
+			writeJar(jarB, new String[]{"shared-b", "b", "new"}, new String[]{SHARED_URI, B_URI, NEW_URI});
+		}
+		update();
+
+		assertEquals("Only the modified library should be rescanned", count + 1, mapping.getScannedJarCount());
+		assertNotNull(mapping.getTaglibObject(NEW_URI));
+		assertNotNull(mapping.getTaglibObject(A_URI));
+		assertNotNull(mapping.getTaglibObject(B_URI));
+		String location = mapping.getTaglibPath(SHARED_URI);
+		assertNotNull(location);
+		assertTrue("Precedence of libraries is changed: " + location, location.endsWith(sharedTld));
+	}
+
+	private void update() throws CoreException {
+		project.refreshLocal(IResource.DEPTH_INFINITE, null);
+		JobUtils.waitForIdle();
+		model.update();
+		mapping.revalidate(WebAppHelper.getWebApp(model));
+	}
+
+	private static void writeJar(IFile file, String[] names, String[] uris) throws CoreException, IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JarOutputStream jar = new JarOutputStream(bytes);
+		for (int i = 0; i < names.length; i++) {
+			jar.putNextEntry(new ZipEntry("META-INF/" + names[i] + ".tld"));
+			jar.write(createTld(names[i], uris[i]).getBytes("UTF-8"));
+			jar.closeEntry();
+		}
+		jar.close();
+		ByteArrayInputStream content = new ByteArrayInputStream(bytes.toByteArray());
+		if(file.exists()) {
+			file.setContents(content, true, false, null);
+		} else {
+			file.create(content, true, null);
+		}
+	}
+
+	private static String createTld(String shortName, String uri) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<taglib xmlns=\"http://java.sun.com/xml/ns/j2ee\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xsi:schemaLocation=\"http://java.sun.com/xml/ns/j2ee http://java.sun.com/xml/ns/j2ee/web-jsptaglibrary_2_0.xsd\""
+			+ " version=\"2.0\">\n"
+			+ "<tlib-version>1.0</tlib-version>\n"
+			+ "<short-name>" + shortName + "</short-name>\n"
+			+ "<uri>" + uri + "</uri>\n"
+			+ "</taglib>\n";
+	}
+
+}
@@ -21,7 +21,10 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.osgi.util.NLS;
 import org.jboss.tools.common.base.test.validation.TestUtil;
+import org.jboss.tools.common.model.XModelObject;
+import org.jboss.tools.common.model.util.EclipseResourceUtil;
 import org.jboss.tools.common.validation.ValidatorManager;
+import org.jboss.tools.jst.web.validation.WebXMLValidationCache;
 import org.jboss.tools.jst.web.validation.WebXMLValidatorMessages;
 import org.jboss.tools.jst.web.webapp.model.WebAppConstants;
 import org.jboss.tools.test.util.JobUtils;
@@ -148,6 +151,53 @@ public class WebXMLValidationTest extends TestCase {
 		assertFalse(hasMarkerOnLine(markers, 24));
 	}
 
+	/**
+	 * Markers for a missing class, a missing resource, and urls mapped to a servlet
+	 * are the same when lookups are shared in a validation run and subtrees
+	 * without checks are skipped. Each problem is repeated so that the second
+	 * occurrence is found in the cache.
+	 */
+	public void testSharedLookups() throws Exception {
+		String path0 = "WebContent/WEB-INF/web.xml";
+		IFile webxml = project.getFile(path0);
+		replaceFile(project, "WebContent/WEB-INF/web.xml.cachetest", path0);
+		try {
+			IMarker[] markers = webxml.findMarkers(PROBLEM_TYPE, false, IResource.DEPTH_ZERO);
+			String missingClass = NLS.bind(WebXMLValidatorMessages.CLASS_NOT_EXISTS, "servlet-class", "test.MissingServlet");
+			assertEquals(missingClass, getMarkerOnLine(markers, 11).getAttribute(IMarker.MESSAGE, ""));
+			assertEquals(missingClass, getMarkerOnLine(markers, 15).getAttribute(IMarker.MESSAGE, ""));
+			String missingPath = NLS.bind(WebXMLValidatorMessages.PATH_NOT_EXISTS, "location", "/missing.html");
+			assertEquals(missingPath, getMarkerOnLine(markers, 23).getAttribute(IMarker.MESSAGE, ""));
+			assertEquals(missingPath, getMarkerOnLine(markers, 27).getAttribute(IMarker.MESSAGE, ""));
+			// Urls mapped to a servlet, with and without a query.
+			assertFalse(hasMarkerOnLine(markers, 32));
+			assertFalse(hasMarkerOnLine(markers, 33));
+			assertEquals(4, markers.length);
+
+			XModelObject o = EclipseResourceUtil.createObjectForResource(webxml);
+			assertNotNull(o);
+
+			WebXMLValidationCache cache = new WebXMLValidationCache();
+			assertTrue(cache.getServletMappings(o).contains("/loginServlet"));
+			assertSame(cache.getServletMappings(o), cache.getServletMappings(o));
+			assertSame(cache.getPaths(o.getModel(), "/missing.html"), cache.getPaths(o.getModel(), "/missing.html"));
+			assertNull(cache.getValidType("test.MissingServlet", o));
+			assertNotNull(cache.getValidType("test.MyApplication", o));
+
+			// A type found in the Java model is shared with checks.
+			IProject p = EclipseResourceUtil.getProject(o);
+			cache = new WebXMLValidationCache();
+			cache.findType("test.MyApplication", p, EclipseResourceUtil.getJavaProject(p));
+			cache.findType("test.MissingServlet", p, EclipseResourceUtil.getJavaProject(p));
+			Object type = cache.getValidType("test.MyApplication", p);
+			assertNotNull(type);
+			assertSame(type, cache.getValidType("test.MyApplication", o));
+			assertNull(cache.getValidType("test.MissingServlet", p));
+		} finally {
+			replaceFile(project, "WebContent/WEB-INF/web.xml.original", path0);
+		}
+	}
+
 	public static void replaceFile(IProject project, String sourcePath, String targetPath) throws CoreException {
 		boolean saveAutoBuild = ResourcesUtils.setBuildAutomatically(false);
 		try {
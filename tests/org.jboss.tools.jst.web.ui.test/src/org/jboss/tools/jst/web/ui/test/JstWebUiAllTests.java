@@ -29,6 +29,7 @@ public class JstWebUiAllTests {
 	public static Test suite() {
 		TestSuite suite = new TestSuite(JstWebUiAllTests.class.getName());
 		suite.addTestSuite(DefaultJSLibsText.class);
+		suite.addTestSuite(LatencyHistogramTest.class);
 
 		TestSuite s = new TestSuite("Palette content");
 		s.addTestSuite(StyleRangeInPaletteWizardPreviewTest.class);
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.jst.web.ui.test;
+
+import org.jboss.tools.jst.web.ui.internal.editor.jspeditor.LatencyHistogram;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram("test");
+		assertEquals(0, histogram.getPercentile(50));
+		for (int i = 0; i < 90; i++) {
+			histogram.add(100 * 1000L); // 100 us
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.add(5 * 1000 * 1000L); // 5 ms
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(128, histogram.getPercentile(50));
+		assertEquals(128, histogram.getPercentile(90));
+		assertEquals(8192, histogram.getPercentile(99));
+		assertEquals(5 * 1000 * 1000L, histogram.getMax());
+
+		histogram.clear();
+		assertEquals(0, histogram.getCount());
+	}
+}